@@ -0,0 +1,98 @@
+package com.example.transla_screen;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 设备上的帧编码耗时/体积基准：raw / NV21 / PNG / JPEG / 有损 WebP
+ *
+ * 使用应用实际使用的 {@link BitmapFrameEncoder}，语料与 JVM 上的 FrameEncoderBenchmarkTest 相同
+ * （src/test/resources/screenshots，作为 androidTest 的 assets 打包）。结果输出到 logcat，标签 FrameEncoderBench。
+ *
+ * 运行: ./gradlew :app:connectedDebugAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.example.transla_screen.BitmapFrameEncoderBenchmarkTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class BitmapFrameEncoderBenchmarkTest {
+    private static final String TAG = "FrameEncoderBench";
+    private static final String[] CORPUS = {
+            "chat.png", "settings.png", "article_photo.png", "game_dialog.png"};
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 10;
+
+    private final FrameBufferPool pool = new FrameBufferPool(1, new TileHasher(TileHasher.DEFAULT_TILE_SIZE));
+
+    @Test
+    public void benchmarkEncodeTimeAndSizePerFormat() throws IOException {
+        Object[][] variants = {
+                {new RawFrameEncoder(), 100},
+                {new Nv21FrameEncoder(), 100},
+                {BitmapFrameEncoder.png(), 100},
+                {BitmapFrameEncoder.jpeg(), 90},
+                {BitmapFrameEncoder.jpeg(), 80},
+                {BitmapFrameEncoder.jpeg(), 60},
+                {BitmapFrameEncoder.webpLossy(), 90},
+                {BitmapFrameEncoder.webpLossy(), 80},
+                {BitmapFrameEncoder.webpLossy(), 60},
+        };
+        for (String name : CORPUS) {
+            CapturedFrame frame = loadScreenshot(name);
+            for (Object[] variant : variants) {
+                FrameEncoder encoder = (FrameEncoder) variant[0];
+                int quality = (Integer) variant[1];
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                    out.reset();
+                    encoder.encode(frame, quality, out);
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                    out.reset();
+                    encoder.encode(frame, quality, out);
+                }
+                double msPerFrame = (System.nanoTime() - start) / 1e6 / MEASURED_ITERATIONS;
+                assertTrue(out.size() > 0);
+                Log.i(TAG, String.format("%-18s %dx%d %-4s q%-3d: %7.2f ms/frame, %8d bytes (base64 %d)",
+                        name, frame.width, frame.height, encoder.getFormat(), quality,
+                        msPerFrame, out.size(), (out.size() + 2) / 3 * 4));
+            }
+            frame.release();
+        }
+        for (Object[] variant : variants) {
+            ((FrameEncoder) variant[0]).release();
+        }
+    }
+
+    /**
+     * 把语料中的截图解码为 RGBA_8888 的 CapturedFrame：ARGB_8888 Bitmap 的内存字节序即为 RGBA
+     */
+    private CapturedFrame loadScreenshot(String name) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap;
+        try (InputStream in = InstrumentationRegistry.getInstrumentation().getContext()
+                .getAssets().open("screenshots/" + name)) {
+            bitmap = BitmapFactory.decodeStream(in, null, options);
+        }
+        assertNotNull("Missing screenshot " + name, bitmap);
+        pool.configure(bitmap.getWidth(), bitmap.getHeight());
+        CapturedFrame frame = pool.acquire();
+        bitmap.copyPixelsToBuffer(ByteBuffer.wrap(frame.pixels));
+        bitmap.recycle();
+        return frame;
+    }
+}
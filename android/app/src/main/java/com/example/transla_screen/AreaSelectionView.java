@@ -0,0 +1,127 @@
+package com.example.transla_screen;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * 区域选择视图 (AreaSelectionView)
+ *
+ * 覆盖全屏的半透明遮罩，用户拖动手指框选需要翻译的区域。
+ * 松手时若选框足够大则回调 {@link Listener#onAreaSelected(Rect)}（屏幕坐标），
+ * 轻触或选框过小则视为取消。
+ */
+public class AreaSelectionView extends View {
+
+    public interface Listener {
+        /**
+         * @param screenRect 选中的区域，屏幕像素坐标
+         */
+        void onAreaSelected(Rect screenRect);
+
+        void onSelectionCancelled();
+    }
+
+    private static final int MIN_SELECTION_DP = 24;
+
+    private final Listener listener;
+    private final Paint dimPaint = new Paint();
+    private final Paint borderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint hintPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF selection = new RectF();
+    private final int minSelectionPx;
+
+    private float startX;
+    private float startY;
+    private boolean hasSelection = false;
+    private boolean finished = false;
+
+    public AreaSelectionView(Context context, Listener listener) {
+        super(context);
+        this.listener = listener;
+        float density = context.getResources().getDisplayMetrics().density;
+        this.minSelectionPx = Math.round(MIN_SELECTION_DP * density);
+
+        dimPaint.setColor(Color.parseColor("#88000000"));
+        borderPaint.setColor(Color.WHITE);
+        borderPaint.setStyle(Paint.Style.STROKE);
+        borderPaint.setStrokeWidth(2 * density);
+        hintPaint.setColor(Color.WHITE);
+        hintPaint.setTextSize(16 * density);
+        hintPaint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        int w = getWidth();
+        int h = getHeight();
+        if (!hasSelection) {
+            canvas.drawRect(0, 0, w, h, dimPaint);
+            canvas.drawText("拖动框选需要翻译的区域，轻触取消", w / 2f, h / 2f, hintPaint);
+            return;
+        }
+        // 选框外的四块区域加深，选框内保持原样
+        canvas.drawRect(0, 0, w, selection.top, dimPaint);
+        canvas.drawRect(0, selection.bottom, w, h, dimPaint);
+        canvas.drawRect(0, selection.top, selection.left, selection.bottom, dimPaint);
+        canvas.drawRect(selection.right, selection.top, w, selection.bottom, dimPaint);
+        canvas.drawRect(selection, borderPaint);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (finished) {
+            return true;
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                startX = event.getX();
+                startY = event.getY();
+                hasSelection = false;
+                invalidate();
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                selection.set(
+                        Math.min(startX, event.getX()),
+                        Math.min(startY, event.getY()),
+                        Math.max(startX, event.getX()),
+                        Math.max(startY, event.getY()));
+                hasSelection = true;
+                invalidate();
+                return true;
+            case MotionEvent.ACTION_UP:
+                finished = true;
+                if (hasSelection && selection.width() >= minSelectionPx && selection.height() >= minSelectionPx) {
+                    listener.onAreaSelected(toScreenRect(selection));
+                } else {
+                    listener.onSelectionCancelled();
+                }
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                finished = true;
+                listener.onSelectionCancelled();
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    /**
+     * 视图坐标转换为屏幕坐标（窗口可能未覆盖状态栏）
+     */
+    private Rect toScreenRect(RectF viewRect) {
+        int[] location = new int[2];
+        getLocationOnScreen(location);
+        return new Rect(
+                Math.round(viewRect.left) + location[0],
+                Math.round(viewRect.top) + location[1],
+                Math.round(viewRect.right) + location[0],
+                Math.round(viewRect.bottom) + location[1]);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.transla_screen;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 基于 {@link Bitmap#compress} 的 PNG / JPEG / WebP 编码器
+ *
+ * Bitmap 在帧尺寸不变时复用，像素直接从帧缓冲区拷入。
+ * ARGB_8888 Bitmap 在内存中的字节序即为 RGBA，与截屏帧一致，无需转换。
+ */
+public class BitmapFrameEncoder implements FrameEncoder {
+    private final String format;
+    private final String mimeType;
+    private final Bitmap.CompressFormat compressFormat;
+    private final boolean lossless;
+    private Bitmap bitmap;
+
+    private BitmapFrameEncoder(String format, String mimeType, Bitmap.CompressFormat compressFormat, boolean lossless) {
+        this.format = format;
+        this.mimeType = mimeType;
+        this.compressFormat = compressFormat;
+        this.lossless = lossless;
+    }
+
+    public static BitmapFrameEncoder png() {
+        return new BitmapFrameEncoder(CapturedFrame.FORMAT_PNG, "image/png", Bitmap.CompressFormat.PNG, true);
+    }
+
+    public static BitmapFrameEncoder jpeg() {
+        return new BitmapFrameEncoder(CapturedFrame.FORMAT_JPEG, "image/jpeg", Bitmap.CompressFormat.JPEG, false);
+    }
+
+    /**
+     * 有损 WebP；API 30 以下没有 WEBP_LOSSY，旧的 WEBP 在 quality < 100 时同样是有损编码
+     */
+    @SuppressWarnings("deprecation")
+    public static BitmapFrameEncoder webpLossy() {
+        Bitmap.CompressFormat compressFormat = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY
+                : Bitmap.CompressFormat.WEBP;
+        return new BitmapFrameEncoder(CapturedFrame.FORMAT_WEBP, "image/webp", compressFormat, false);
+    }
+
+    @Override
+    public String getFormat() {
+        return format;
+    }
+
+    @Override
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    @Override
+    public void encode(CapturedFrame frame, int quality, OutputStream out) throws IOException {
+        if (bitmap == null || bitmap.getWidth() != frame.width || bitmap.getHeight() != frame.height) {
+            release();
+            bitmap = Bitmap.createBitmap(frame.width, frame.height, Bitmap.Config.ARGB_8888);
+        }
+        bitmap.copyPixelsFromBuffer(frame.pixelBuffer());
+        int effectiveQuality = lossless ? 100 : Math.max(1, Math.min(100, quality));
+        if (!bitmap.compress(compressFormat, effectiveQuality, out)) {
+            throw new IOException("Bitmap.compress failed for " + format);
+        }
+    }
+
+    @Override
+    public void release() {
+        if (bitmap != null) {
+            bitmap.recycle();
+            bitmap = null;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.transla_screen;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 自适应截屏调度器，决定 ImageReader 送来的某一帧是否需要处理（拷贝像素、计算哈希）
+ *
+ * 处理间隔随需求变化：
+ * - BURST:     有请求在等待帧，每一帧都处理，尽快交付；
+ * - STEADY:    最近 {@link #DEMAND_WINDOW_MS} 内有过请求，按基础间隔处理，保持缓存帧新鲜；
+ * - IDLE:      长时间没有请求，间隔拉长到接近停止；
+ * - THROTTLED: 非 BURST 时因持续高负载或设备发热而退避，间隔按倍数放大。
+ *
+ * 负载以处理耗时占处理间隔的比例（指数滑动平均）衡量；发热状态使用
+ * PowerManager.THERMAL_STATUS_* 的取值。所有时间都取自注入的 {@link Clock}，便于测试。
+ */
+public class CaptureScheduler {
+
+    public interface Clock {
+        long nowMs();
+
+        Clock SYSTEM = System::currentTimeMillis;
+    }
+
+    public enum Mode {
+        IDLE, STEADY, BURST, THROTTLED
+    }
+
+    public static final long BASE_INTERVAL_MS = 150;
+    public static final long IDLE_INTERVAL_MS = 2000;
+    public static final long DEMAND_WINDOW_MS = 3000;
+    /** 退避时 BURST 也至少间隔这么久，避免过热时仍满帧处理 */
+    public static final long THROTTLED_BURST_INTERVAL_MS = 66;
+    public static final long MAX_INTERVAL_MS = 4000;
+
+    /** 处理耗时超过间隔的该比例即视为持续高负载 */
+    static final double HIGH_LOAD_DUTY_CYCLE = 0.5;
+    /** 负载回落到该比例以下才解除退避，避免在阈值附近来回切换 */
+    static final double RECOVERED_DUTY_CYCLE = 0.25;
+    static final double COST_SMOOTHING = 0.2;
+
+    // 与 android.os.PowerManager.THERMAL_STATUS_* 一致
+    public static final int THERMAL_STATUS_NONE = 0;
+    public static final int THERMAL_STATUS_MODERATE = 2;
+    public static final int THERMAL_STATUS_SEVERE = 3;
+    public static final int THERMAL_STATUS_CRITICAL = 4;
+
+    private final Clock clock;
+
+    private int pendingRequests;
+    private long lastDemandMs = Long.MIN_VALUE;
+    private long lastProcessedMs = Long.MIN_VALUE;
+    private double smoothedCostMs;
+    private boolean highLoad;
+    private int thermalStatus = THERMAL_STATUS_NONE;
+
+    private long framesOffered;
+    private long framesProcessed;
+
+    public CaptureScheduler(Clock clock) {
+        this.clock = clock;
+    }
+
+    // --- 需求 ---
+
+    public synchronized void onRequestReceived() {
+        pendingRequests++;
+        lastDemandMs = clock.nowMs();
+    }
+
+    public synchronized void onRequestCompleted() {
+        if (pendingRequests > 0) {
+            pendingRequests--;
+        }
+        lastDemandMs = clock.nowMs();
+    }
+
+    // --- 负载 ---
+
+    public synchronized void setThermalStatus(int status) {
+        thermalStatus = status;
+    }
+
+    /**
+     * 记录一帧的处理耗时，用于估计持续负载
+     */
+    public synchronized void recordProcessingTime(long costMs) {
+        smoothedCostMs = smoothedCostMs == 0
+                ? costMs
+                : smoothedCostMs + COST_SMOOTHING * (costMs - smoothedCostMs);
+        double dutyCycle = smoothedCostMs / BASE_INTERVAL_MS;
+        if (dutyCycle >= HIGH_LOAD_DUTY_CYCLE) {
+            highLoad = true;
+        } else if (dutyCycle < RECOVERED_DUTY_CYCLE) {
+            highLoad = false;
+        }
+    }
+
+    // --- 调度 ---
+
+    /**
+     * 新帧到达时调用；返回 true 表示应处理该帧，并记为已处理
+     */
+    public synchronized boolean shouldProcessFrame() {
+        framesOffered++;
+        long now = clock.nowMs();
+        long interval = currentIntervalMs(now);
+        if (lastProcessedMs != Long.MIN_VALUE && now - lastProcessedMs < interval) {
+            return false;
+        }
+        lastProcessedMs = now;
+        framesProcessed++;
+        return true;
+    }
+
+    public synchronized Mode getMode() {
+        return modeAt(clock.nowMs());
+    }
+
+    public synchronized long getIntervalMs() {
+        return currentIntervalMs(clock.nowMs());
+    }
+
+    /**
+     * 新会话开始时重置节拍与计数；发热状态和等待中的请求数保留（请求可能跨越会话重建）
+     */
+    public synchronized void reset() {
+        lastDemandMs = Long.MIN_VALUE;
+        lastProcessedMs = Long.MIN_VALUE;
+        smoothedCostMs = 0;
+        highLoad = false;
+        framesOffered = 0;
+        framesProcessed = 0;
+    }
+
+    public synchronized Map<String, Object> toMap() {
+        long now = clock.nowMs();
+        long interval = currentIntervalMs(now);
+        Map<String, Object> map = new HashMap<>();
+        map.put("schedulerMode", modeAt(now).name().toLowerCase());
+        map.put("schedulerIntervalMs", interval);
+        map.put("schedulerRateFps", interval == 0 ? -1.0 : 1000.0 / interval); // -1 表示不限速
+        map.put("schedulerPendingRequests", pendingRequests);
+        map.put("schedulerThermalStatus", thermalStatus);
+        map.put("schedulerProcessingCostMs", smoothedCostMs);
+        map.put("schedulerFramesOffered", framesOffered);
+        map.put("schedulerFramesProcessed", framesProcessed);
+        return map;
+    }
+
+    private Mode modeAt(long now) {
+        if (pendingRequests > 0) {
+            return Mode.BURST;
+        }
+        if (backoffMultiplier() > 1) {
+            return Mode.THROTTLED;
+        }
+        return hasRecentDemand(now) ? Mode.STEADY : Mode.IDLE;
+    }
+
+    private long currentIntervalMs(long now) {
+        int multiplier = backoffMultiplier();
+        if (pendingRequests > 0) {
+            return multiplier > 1 ? THROTTLED_BURST_INTERVAL_MS : 0;
+        }
+        long base = hasRecentDemand(now) ? BASE_INTERVAL_MS : IDLE_INTERVAL_MS;
+        return Math.min(base * multiplier, Math.max(base, MAX_INTERVAL_MS));
+    }
+
+    private boolean hasRecentDemand(long now) {
+        return lastDemandMs != Long.MIN_VALUE && now - lastDemandMs <= DEMAND_WINDOW_MS;
+    }
+
+    private int backoffMultiplier() {
+        int multiplier = 1;
+        if (thermalStatus >= THERMAL_STATUS_CRITICAL) {
+            multiplier = 8;
+        } else if (thermalStatus >= THERMAL_STATUS_SEVERE) {
+            multiplier = 4;
+        } else if (thermalStatus >= THERMAL_STATUS_MODERATE) {
+            multiplier = 2;
+        }
+        if (highLoad) {
+            multiplier *= 2;
+        }
+        return multiplier;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.transla_screen;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 截屏会话计数器
+ *
+ * framesAcquired: 从 ImageReader 取到的帧数
+ * framesMaterialized: 真正拷贝出像素（并可能被编码）的帧数
+ * 两者的差值即懒加载模式下省掉的拷贝/编码次数。
+ */
+public class CaptureStats {
+    private final AtomicLong framesAcquired = new AtomicLong();
+    private final AtomicLong framesMaterialized = new AtomicLong();
+    private final AtomicLong framesEncoded = new AtomicLong();
+    private volatile long sessionStartMs = System.currentTimeMillis();
+
+    public void onFrameAcquired() {
+        framesAcquired.incrementAndGet();
+    }
+
+    public void onFrameMaterialized() {
+        framesMaterialized.incrementAndGet();
+    }
+
+    public void onFrameEncoded() {
+        framesEncoded.incrementAndGet();
+    }
+
+    public void reset() {
+        framesAcquired.set(0);
+        framesMaterialized.set(0);
+        framesEncoded.set(0);
+        sessionStartMs = System.currentTimeMillis();
+    }
+
+    public Map<String, Object> toMap(String captureMode) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("captureMode", captureMode);
+        map.put("framesAcquired", framesAcquired.get());
+        map.put("framesMaterialized", framesMaterialized.get());
+        map.put("framesEncoded", framesEncoded.get());
+        map.put("sessionDurationMs", System.currentTimeMillis() - sessionStartMs);
+        return map;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.transla_screen;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一帧屏幕截图的原始像素数据及其描述信息
+ *
+ * 像素以 RGBA_8888 紧密排列（行尾填充在拷贝时已去除），缓冲区来自 {@link FrameBufferPool}。
+ * 帧以引用计数的方式流转：持有者用 {@link #retain()} 增加引用，用完后调用 {@link #release()}，
+ * 引用归零时缓冲区回到池中复用，稳定状态下捕获循环不再分配新内存。
+ * 编码（PNG 等，见 {@link FrameEncoder}）只在调用方确实需要时才进行，捕获循环本身只负责拷贝像素。
+ */
+public class CapturedFrame {
+    public static final String PIXEL_FORMAT_RGBA_8888 = "RGBA_8888";
+    public static final String PIXEL_FORMAT_NV21 = "NV21";
+    public static final int BYTES_PER_PIXEL = 4;
+
+    public static final String FORMAT_RAW = "raw";
+    public static final String FORMAT_PNG = "png";
+    public static final String FORMAT_JPEG = "jpeg";
+    public static final String FORMAT_WEBP = "webp";
+    /** 未压缩的 NV21，供 ML Kit 直接从内存识别，见 {@link Nv21FrameEncoder} */
+    public static final String FORMAT_NV21 = "nv21";
+
+    public final byte[] pixels;
+    public final int width;
+    public final int height;
+    public final int rowStride;
+    public final int pixelStride = BYTES_PER_PIXEL;
+    public long timestampNs;
+    /** 截屏时的真实屏幕尺寸；与 width/height 不同时说明帧经过缩放 */
+    public int screenWidth;
+    public int screenHeight;
+    /** 区域截屏时完整帧的尺寸及本帧左上角在完整帧中的位置；整帧时与 width/height 相同、偏移为 0 */
+    public int sourceWidth;
+    public int sourceHeight;
+    public int offsetX;
+    public int offsetY;
+    /** 截取时的屏幕方向（0/90/180/270 度），与 screenWidth/screenHeight 一起描述帧所在的屏幕状态 */
+    public int rotation;
+
+    // --- 变化检测 (由 TileHasher 填充) ---
+    public final long[] tileHashes;
+    /** 计算 tileHashes 时的分块边长；为 0 时哈希无效（如区域帧不做变化检测），不发送给 Flutter */
+    public int hashedTileSize;
+    /** 帧序号，每次拷贝出新帧时递增 */
+    public long sequence;
+    /** 内容序号：与上一帧内容完全相同时沿用上一帧的值，否则等于 sequence */
+    public long contentSequence;
+    /** 与上一帧相比内容是否完全未变化 */
+    public boolean unchanged;
+    /** 相对上一帧的变化区域 [left, top, right, bottom, ...] */
+    public int[] dirtyRects = new int[0];
+
+    private final FrameBufferPool pool;
+    private final int poolGeneration;
+    private final ByteBuffer pixelBuffer;
+    private final IntBuffer pixelIntView;
+    private final AtomicInteger refCount = new AtomicInteger();
+
+    CapturedFrame(FrameBufferPool pool, int poolGeneration, int width, int height, int tileCount) {
+        this.pool = pool;
+        this.poolGeneration = poolGeneration;
+        this.width = width;
+        this.height = height;
+        this.rowStride = width * BYTES_PER_PIXEL;
+        this.pixels = new byte[rowStride * height];
+        this.pixelBuffer = ByteBuffer.wrap(pixels);
+        this.pixelIntView = pixelBuffer.asIntBuffer();
+        this.tileHashes = new long[tileCount];
+    }
+
+    /**
+     * 从 ImageReader 平面缓冲区拷贝像素，单次遍历去除行尾填充
+     *
+     * @param source         平面缓冲区（position 应位于第一个像素）
+     * @param sourceRowStride 源缓冲区每行字节数
+     */
+    public void copyFrom(ByteBuffer source, int sourceRowStride, long timestampNs) {
+        copyFrom(source, sourceRowStride, 0, 0, timestampNs);
+    }
+
+    /**
+     * 从源缓冲区拷贝以 (left, top) 为左上角、大小为本帧尺寸的区域，只读取区域内的像素
+     */
+    public void copyFrom(ByteBuffer source, int sourceRowStride, int left, int top, long timestampNs) {
+        this.timestampNs = timestampNs;
+        int base = source.position();
+        int regionBase = base + top * sourceRowStride + left * BYTES_PER_PIXEL;
+        if (sourceRowStride == rowStride && left == 0) {
+            source.position(regionBase);
+            source.get(pixels, 0, rowStride * height);
+        } else {
+            for (int row = 0; row < height; row++) {
+                source.position(regionBase + row * sourceRowStride);
+                source.get(pixels, row * rowStride, rowStride);
+            }
+        }
+        source.position(base);
+    }
+
+    /**
+     * 复用的像素缓冲区视图，供 Bitmap.copyPixelsFromBuffer 等使用；每次调用都会重置位置
+     */
+    public ByteBuffer pixelBuffer() {
+        pixelBuffer.clear();
+        return pixelBuffer;
+    }
+
+    /**
+     * 以像素为单位的只读视图（每个 int 为一个 RGBA 像素），供分块哈希使用
+     */
+    public IntBuffer pixelIntView() {
+        return pixelIntView;
+    }
+
+    /**
+     * 复制除像素外的描述信息，用于由 source 派生（如预处理）的同尺寸新帧；
+     * 分块哈希描述的是 source 的内容，派生帧沿用它作为内容标识
+     */
+    public void copyMetadataFrom(CapturedFrame source) {
+        hashedTileSize = source.hashedTileSize;
+        if (hashedTileSize > 0) {
+            System.arraycopy(source.tileHashes, 0, tileHashes, 0, Math.min(tileHashes.length, source.tileHashes.length));
+        }
+        timestampNs = source.timestampNs;
+        screenWidth = source.screenWidth;
+        screenHeight = source.screenHeight;
+        sourceWidth = source.sourceWidth;
+        sourceHeight = source.sourceHeight;
+        offsetX = source.offsetX;
+        offsetY = source.offsetY;
+        rotation = source.rotation;
+        sequence = source.sequence;
+        contentSequence = source.contentSequence;
+        unchanged = source.unchanged;
+        dirtyRects = source.dirtyRects;
+    }
+
+    public CapturedFrame retain() {
+        refCount.incrementAndGet();
+        return this;
+    }
+
+    public void release() {
+        int remaining = refCount.decrementAndGet();
+        if (remaining == 0) {
+            pool.recycle(this);
+        } else if (remaining < 0) {
+            throw new IllegalStateException("CapturedFrame released more times than retained");
+        }
+    }
+
+    int getPoolGeneration() {
+        return poolGeneration;
+    }
+
+    void resetRefCount() {
+        refCount.set(1);
+    }
+
+    /**
+     * 构建通过 MethodChannel 返回给 Flutter 的帧描述
+     *
+     * MethodChannel.Result.success 会同步序列化参数，因此 raw 格式可以直接传入池中的
+     * 像素数组，无需额外 clone；调用方在 success 返回后再 release 即可。
+     *
+     * @param format  payload 的格式（raw / nv21 / png / jpeg / webp）
+     * @param payload 帧数据；raw 时为像素缓冲区，nv21 时 Y 平面每行为补齐到偶数的宽度，其余格式为编码后的字节；
+     *                调用方已确认内容未变化时可传 null，只返回帧头
+     */
+    public Map<String, Object> toChannelMap(String format, byte[] payload) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("format", format);
+        map.put("bytes", payload);
+        map.put("width", width);
+        map.put("height", height);
+        if (FORMAT_NV21.equals(format)) {
+            map.put("rowStride", Nv21FrameEncoder.paddedSize(width));
+            map.put("pixelFormat", PIXEL_FORMAT_NV21);
+        } else {
+            map.put("rowStride", FORMAT_RAW.equals(format) ? rowStride : 0);
+            map.put("pixelFormat", PIXEL_FORMAT_RGBA_8888);
+        }
+        map.put("timestampNs", timestampNs);
+        map.put("screenWidth", screenWidth > 0 ? screenWidth : width);
+        map.put("screenHeight", screenHeight > 0 ? screenHeight : height);
+        map.put("sourceWidth", sourceWidth > 0 ? sourceWidth : width);
+        map.put("sourceHeight", sourceHeight > 0 ? sourceHeight : height);
+        map.put("offsetX", offsetX);
+        map.put("offsetY", offsetY);
+        map.put("rotation", rotation);
+        map.put("sequence", sequence);
+        map.put("contentSequence", contentSequence);
+        map.put("unchanged", unchanged);
+        map.put("dirtyRects", dirtyRects);
+        // Flutter 端按区域组合分块哈希，作为 OCR 结果缓存的键
+        if (hashedTileSize > 0) {
+            map.put("tileSize", hashedTileSize);
+            map.put("tileHashes", tileHashes);
+        }
+        // Flutter 端据此统计通道传输耗时
+        map.put("sentAtMs", System.currentTimeMillis());
+        return map;
+    }
+}
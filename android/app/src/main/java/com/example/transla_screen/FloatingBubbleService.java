@@ -11,6 +11,7 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.graphics.Color;
 import android.graphics.PixelFormat;
+import android.graphics.Rect;
 import android.graphics.drawable.GradientDrawable;
 import android.net.Uri;
 import android.os.Build;
@@ -31,6 +32,9 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import io.flutter.plugin.common.MethodChannel;
 
 /**
@@ -58,6 +62,7 @@ public class FloatingBubbleService extends Service {
     private static final String CHANNEL_ID = "FloatingBubbleChannel";
     private static final int NOTIFICATION_ID = 1001;
     private static final int BUBBLE_SIZE_DP = 56; // 悬浮球的直径 (dp)
+    private static final long BUBBLE_RESTORE_TIMEOUT_MS = 3000; // 区域截屏后等待 Flutter 返回的最长时间
 
     // =====================================================================================
     // 成员变量
@@ -66,6 +71,7 @@ public class FloatingBubbleService extends Service {
     private WindowManager windowManager;
     private View floatingView; // 悬浮球视图
     private View expandedView; // 展开后的菜单视图
+    private AreaSelectionView areaSelectionView; // 区域选择遮罩
     private FrameLayout circleContainer; // 悬浮球的圆形背景容器，方便后续修改颜色
     private ImageView iconView; // 悬浮球的图标，方便后续修改图标
 
@@ -83,6 +89,9 @@ public class FloatingBubbleService extends Service {
     private BroadcastReceiver overlayStateReceiver;
     // 用于保存原始的长按操作
     private Runnable onLongClickAction;
+    // 区域选择完成后恢复悬浮球
+    private final Handler bubbleRestoreHandler = new Handler();
+    private final Runnable restoreBubbleRunnable = this::restoreBubble;
 
     // =====================================================================================
     // 静态方法 - Flutter 通信接口
@@ -142,11 +151,14 @@ public class FloatingBubbleService extends Service {
         if (overlayStateReceiver != null) {
             unregisterReceiver(overlayStateReceiver);
         }
+        bubbleRestoreHandler.removeCallbacks(restoreBubbleRunnable);
         // 确保移除所有窗口视图，防止窗口泄漏
         removeView(floatingView);
         floatingView = null;
         removeView(expandedView);
         expandedView = null;
+        removeView(areaSelectionView);
+        areaSelectionView = null;
         // 停止前台服务
         stopForeground(true);
     }
@@ -209,10 +221,17 @@ public class FloatingBubbleService extends Service {
 
         // 5. 定义长按操作，并将其与单击展开菜单的操作一同传递给触摸监听器
         onLongClickAction = () -> {
+            // 端到端耗时从这里开始，到 TranslationOverlayService 创建完译文视图为止
+            long eventAtMs = System.currentTimeMillis();
+            long startNs = StageTrace.begin(LatencyStats.STAGE_BUBBLE_EVENT);
+            StageTrace.beginAsync(LatencyStats.STAGE_END_TO_END, StageTrace.cookieFor(eventAtMs));
             floatingView.performHapticFeedback(android.view.HapticFeedbackConstants.LONG_PRESS);
             if (channel != null) {
-                channel.invokeMethod("translate_fullscreen", null);
+                Map<String, Object> args = new HashMap<>();
+                args.put("eventAtMs", eventAtMs);
+                channel.invokeMethod("translate_fullscreen", args);
             }
+            StageTrace.end(LatencyStats.STAGE_BUBBLE_EVENT, startNs);
         };
         floatingView.setOnTouchListener(new DraggableTouchListener(bubbleParams, this::showBubbleMenu, onLongClickAction));
 
@@ -518,6 +537,9 @@ public class FloatingBubbleService extends Service {
                 // 此动作现在由 DraggableButtonTouchListener 直接处理，这里为空。
                 break;
             case "start_area_selection":
+                hideBubbleMenu();
+                startAreaSelection();
+                break;
             case "translate_fullscreen":
                 if (channel != null) {
                     channel.invokeMethod(action, null);
@@ -531,6 +553,108 @@ public class FloatingBubbleService extends Service {
         }
     }
 
+    /**
+     * 显示全屏的区域选择遮罩，选择期间隐藏悬浮球，避免其出现在截图中。
+     * 选择完成后通过 "area_selected" 把屏幕坐标 {l, t, r, b} 发送给 Flutter。
+     */
+    private void startAreaSelection() {
+        if (areaSelectionView != null) {
+            return;
+        }
+        if (floatingView != null) {
+            floatingView.setVisibility(View.GONE);
+        }
+        areaSelectionView = new AreaSelectionView(this, new AreaSelectionView.Listener() {
+            @Override
+            public void onAreaSelected(Rect screenRect) {
+                Log.d(TAG, "区域选择完成: " + screenRect);
+                // 悬浮球保持隐藏，等 Flutter 拿到选区的帧后再恢复，避免悬浮球出现在截图中
+                finishAreaSelection(false);
+                Map<String, Object> region = new HashMap<>();
+                region.put("l", screenRect.left);
+                region.put("t", screenRect.top);
+                region.put("r", screenRect.right);
+                region.put("b", screenRect.bottom);
+                // 遮罩移除的时刻：Flutter 据此只接受之后的帧，保证截图中不含遮罩；同时作为端到端耗时的起点
+                long dismissedAtMs = System.currentTimeMillis();
+                region.put("dismissedAtMs", dismissedAtMs);
+                StageTrace.beginAsync(LatencyStats.STAGE_END_TO_END, StageTrace.cookieFor(dismissedAtMs));
+                if (channel == null) {
+                    restoreBubble();
+                    return;
+                }
+                // Flutter 在选区的帧送达（或截屏失败）后才返回
+                channel.invokeMethod("area_selected", region, new MethodChannel.Result() {
+                    @Override
+                    public void success(@Nullable Object result) {
+                        restoreBubble();
+                    }
+
+                    @Override
+                    public void error(@NonNull String errorCode, @Nullable String errorMessage, @Nullable Object errorDetails) {
+                        Log.w(TAG, "area_selected 处理失败: " + errorMessage);
+                        restoreBubble();
+                    }
+
+                    @Override
+                    public void notImplemented() {
+                        restoreBubble();
+                    }
+                });
+                // Flutter 一直没有返回时兜底恢复悬浮球
+                bubbleRestoreHandler.postDelayed(restoreBubbleRunnable, BUBBLE_RESTORE_TIMEOUT_MS);
+            }
+
+            @Override
+            public void onSelectionCancelled() {
+                Log.d(TAG, "区域选择已取消");
+                finishAreaSelection(true);
+                if (channel != null) {
+                    channel.invokeMethod("area_selection_cancelled", null);
+                }
+            }
+        });
+
+        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.MATCH_PARENT,
+                WindowManager.LayoutParams.MATCH_PARENT,
+                getWindowLayoutType(),
+                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                        | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN
+                        | WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS,
+                PixelFormat.TRANSLUCENT
+        );
+        params.gravity = Gravity.TOP | Gravity.START;
+        try {
+            windowManager.addView(areaSelectionView, params);
+        } catch (Exception e) {
+            Log.e(TAG, "显示区域选择遮罩失败", e);
+            areaSelectionView = null;
+            if (floatingView != null) {
+                floatingView.setVisibility(View.VISIBLE);
+            }
+            if (channel != null) {
+                channel.invokeMethod("overlay_error", "显示区域选择遮罩失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private void finishAreaSelection(boolean showBubble) {
+        removeView(areaSelectionView);
+        areaSelectionView = null;
+        if (showBubble) {
+            restoreBubble();
+        }
+    }
+
+    private void restoreBubble() {
+        bubbleRestoreHandler.removeCallbacks(restoreBubbleRunnable);
+        // 选区期间用户打开了菜单时，悬浮球由 hideBubbleMenu() 负责恢复
+        if (floatingView != null && !isExpanded) {
+            floatingView.setVisibility(View.VISIBLE);
+        }
+    }
+
     /**
      * 处理没有悬浮窗权限的情况。
      */
@@ -0,0 +1,76 @@
+package com.example.transla_screen;
+
+import java.util.ArrayDeque;
+
+/**
+ * 按屏幕尺寸分配的帧缓冲池
+ *
+ * 屏幕尺寸变化（如旋转）时调用 {@link #configure(int, int)} 重建；旧尺寸的帧在释放时直接丢弃，
+ * 不会回到池中。池中最多保留 maxPooledFrames 个空闲帧，超出部分交给 GC。
+ */
+public class FrameBufferPool {
+    private final int maxPooledFrames;
+    private final TileHasher tileHasher;
+    private final ArrayDeque<CapturedFrame> freeFrames = new ArrayDeque<>();
+
+    private int width;
+    private int height;
+    private int generation;
+    private int allocatedFrames;
+
+    public FrameBufferPool(int maxPooledFrames, TileHasher tileHasher) {
+        this.maxPooledFrames = maxPooledFrames;
+        this.tileHasher = tileHasher;
+    }
+
+    /**
+     * 设置帧尺寸。尺寸未变化时保留现有缓冲区。
+     */
+    public synchronized void configure(int width, int height) {
+        if (this.width == width && this.height == height) {
+            return;
+        }
+        this.width = width;
+        this.height = height;
+        generation++;
+        freeFrames.clear();
+        allocatedFrames = 0;
+    }
+
+    /**
+     * 取得一个引用计数为 1 的帧。池为空时才分配新缓冲区。
+     */
+    public synchronized CapturedFrame acquire() {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalStateException("FrameBufferPool is not configured");
+        }
+        CapturedFrame frame = freeFrames.pollFirst();
+        if (frame == null) {
+            int tileCount = tileHasher.columnsFor(width) * tileHasher.rowsFor(height);
+            frame = new CapturedFrame(this, generation, width, height, tileCount);
+            allocatedFrames++;
+        }
+        frame.resetRefCount();
+        frame.hashedTileSize = 0;
+        return frame;
+    }
+
+    synchronized void recycle(CapturedFrame frame) {
+        if (frame.getPoolGeneration() != generation) {
+            return; // 尺寸已变化，旧缓冲区交给 GC
+        }
+        if (freeFrames.size() < maxPooledFrames) {
+            freeFrames.addFirst(frame);
+        } else {
+            allocatedFrames--;
+        }
+    }
+
+    public synchronized int getAllocatedFrames() {
+        return allocatedFrames;
+    }
+
+    public synchronized int getFreeFrames() {
+        return freeFrames.size();
+    }
+}
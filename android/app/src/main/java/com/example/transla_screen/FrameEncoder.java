@@ -0,0 +1,33 @@
+package com.example.transla_screen;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 帧编码器：把 {@link CapturedFrame} 的 RGBA_8888 像素编码成某种格式
+ *
+ * 格式由每个消费者按需选择：本地 OCR 使用无损的 PNG，上传到云端视觉接口时使用有损的
+ * WebP/JPEG（体积和编码耗时都小得多），Flutter 端直接处理像素时使用 raw。
+ * 实现不要求线程安全，同一实例只在截屏处理线程上使用。
+ */
+public interface FrameEncoder {
+    /** 有损格式的默认质量 */
+    int DEFAULT_QUALITY = 80;
+
+    /** 与 Flutter 端 FrameFormat 名称一致，如 "png" */
+    String getFormat();
+
+    /** data URI / Content-Type 使用的 MIME 类型 */
+    String getMimeType();
+
+    /**
+     * 编码一帧并写入 out
+     *
+     * @param quality 1~100，无损格式忽略该值
+     */
+    void encode(CapturedFrame frame, int quality, OutputStream out) throws IOException;
+
+    /** 释放编码器持有的缓存（如复用的 Bitmap） */
+    default void release() {
+    }
+}
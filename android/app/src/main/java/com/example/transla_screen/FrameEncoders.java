@@ -0,0 +1,46 @@
+package com.example.transla_screen;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按格式名查找 {@link FrameEncoder}，每种格式一个实例（复用其内部缓存）
+ */
+public class FrameEncoders {
+    private final Map<String, FrameEncoder> encoders = new LinkedHashMap<>();
+
+    public FrameEncoders(FrameEncoder... encoders) {
+        for (FrameEncoder encoder : encoders) {
+            this.encoders.put(encoder.getFormat(), encoder);
+        }
+    }
+
+    /**
+     * 截屏通道支持的全部格式
+     */
+    public static FrameEncoders createDefault() {
+        return new FrameEncoders(
+                new RawFrameEncoder(),
+                new Nv21FrameEncoder(),
+                BitmapFrameEncoder.png(),
+                BitmapFrameEncoder.jpeg(),
+                BitmapFrameEncoder.webpLossy());
+    }
+
+    public boolean supports(String format) {
+        return encoders.containsKey(format);
+    }
+
+    /**
+     * @return 对应格式的编码器；不支持时返回 null
+     */
+    public FrameEncoder get(String format) {
+        return encoders.get(format);
+    }
+
+    public void release() {
+        for (FrameEncoder encoder : encoders.values()) {
+            encoder.release();
+        }
+    }
+}
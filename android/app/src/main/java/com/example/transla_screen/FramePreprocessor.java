@@ -0,0 +1,191 @@
+package com.example.transla_screen;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * OCR 前的像素预处理：RGBA 转 8 位亮度，可选对比度拉伸或自适应二值化
+ *
+ * 亮度只有 1 字节/像素，raw 帧的传输量降为原来的 1/4；低对比度的游戏界面经过拉伸或二值化后
+ * 文字边缘更清晰，编码后的体积也更小。输入是带行跨度的 RGBA 缓冲区，
+ * 既可以是 ImageReader 的平面缓冲区，也可以是 {@link CapturedFrame#pixelBuffer()}。
+ *
+ * 亮度、积分图和直方图缓冲区不加锁地跨帧复用，同一实例不能并发调用。
+ */
+public class FramePreprocessor {
+    public static final String MODE_NONE = "none";
+    /** 只转为亮度 */
+    public static final String MODE_GRAYSCALE = "grayscale";
+    /** 亮度 + 按直方图两端 1% 拉伸到 0~255 */
+    public static final String MODE_CONTRAST = "contrast";
+    /** 亮度 + 局部均值自适应阈值二值化 */
+    public static final String MODE_BINARIZE = "binarize";
+
+    /** 8 位亮度，每行 width 字节 */
+    public static final String PIXEL_FORMAT_L_8 = "L_8";
+
+    /** 对比度拉伸时两端各裁掉的像素比例 */
+    static final double CLIP_FRACTION = 0.01;
+    /** 自适应阈值的窗口边长为长边的 1/WINDOW_DIVISOR */
+    static final int WINDOW_DIVISOR = 16;
+    /** 像素比窗口均值暗 THRESHOLD_OFFSET 以上时视为前景；用固定差值而非比例，亮背景上的浅色文字也能分离 */
+    static final int THRESHOLD_OFFSET = 10;
+
+    private final int[] histogram = new int[256];
+    private final byte[] lookupTable = new byte[256];
+    private byte[] luminance = new byte[0];
+    private int[] integral = new int[0];
+
+    public static boolean isSupported(String mode) {
+        return MODE_NONE.equals(mode) || MODE_GRAYSCALE.equals(mode)
+                || MODE_CONTRAST.equals(mode) || MODE_BINARIZE.equals(mode);
+    }
+
+    /**
+     * 按 mode 处理一帧
+     *
+     * @param source   RGBA_8888 像素，position 应位于第一个像素
+     * @param rowStride 源缓冲区每行字节数
+     * @return 复用的亮度缓冲区，前 width * height 字节有效，下一次调用前可用
+     */
+    public byte[] process(String mode, ByteBuffer source, int rowStride, int width, int height) {
+        int count = width * height;
+        if (luminance.length < count) {
+            luminance = new byte[count];
+        }
+        toLuminance(source, rowStride, width, height, luminance);
+        if (MODE_CONTRAST.equals(mode)) {
+            stretchContrast(luminance, count);
+        } else if (MODE_BINARIZE.equals(mode)) {
+            binarize(luminance, width, height);
+        }
+        return luminance;
+    }
+
+    /**
+     * BT.601 整数系数 (77, 150, 29) / 256，单次遍历并去除行尾填充；堆内缓冲区直接访问数组
+     */
+    static void toLuminance(ByteBuffer source, int rowStride, int width, int height, byte[] out) {
+        int base = source.position();
+        if (source.hasArray()) {
+            byte[] src = source.array();
+            int arrayBase = source.arrayOffset() + base;
+            for (int y = 0; y < height; y++) {
+                int p = arrayBase + y * rowStride;
+                int o = y * width;
+                int end = o + width;
+                for (; o < end; o++, p += CapturedFrame.BYTES_PER_PIXEL) {
+                    out[o] = (byte) ((77 * (src[p] & 0xFF) + 150 * (src[p + 1] & 0xFF) + 29 * (src[p + 2] & 0xFF)) >> 8);
+                }
+            }
+            return;
+        }
+        for (int y = 0; y < height; y++) {
+            int p = base + y * rowStride;
+            int o = y * width;
+            int end = o + width;
+            for (; o < end; o++, p += CapturedFrame.BYTES_PER_PIXEL) {
+                out[o] = (byte) ((77 * (source.get(p) & 0xFF) + 150 * (source.get(p + 1) & 0xFF)
+                        + 29 * (source.get(p + 2) & 0xFF)) >> 8);
+            }
+        }
+    }
+
+    /**
+     * 把直方图两端各 {@link #CLIP_FRACTION} 之间的亮度线性映射到 0~255；画面接近纯色时不处理
+     */
+    void stretchContrast(byte[] pixels, int count) {
+        Arrays.fill(histogram, 0);
+        for (int i = 0; i < count; i++) {
+            histogram[pixels[i] & 0xFF]++;
+        }
+        int clip = (int) (count * CLIP_FRACTION);
+        int low = 0;
+        for (int seen = 0; low < 255; low++) {
+            seen += histogram[low];
+            if (seen > clip) break;
+        }
+        int high = 255;
+        for (int seen = 0; high > 0; high--) {
+            seen += histogram[high];
+            if (seen > clip) break;
+        }
+        if (high - low < 2) {
+            return;
+        }
+        for (int v = 0; v < 256; v++) {
+            int stretched = (v - low) * 255 / (high - low);
+            lookupTable[v] = (byte) Math.max(0, Math.min(255, stretched));
+        }
+        for (int i = 0; i < count; i++) {
+            pixels[i] = lookupTable[pixels[i] & 0xFF];
+        }
+    }
+
+    /**
+     * 自适应阈值：用积分图求每个像素周围窗口的均值，明显暗于均值的像素为黑 (0)，其余为白 (255)。
+     * 局部阈值不受整体亮度渐变影响，适合半透明对话框、渐变背景上的文字。
+     * 该方法只能找出暗于周围的文字，因此整体偏暗（深色主题、游戏画面）时先反相，输出总是白底黑字。
+     */
+    void binarize(byte[] pixels, int width, int height) {
+        int count = width * height;
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += pixels[i] & 0xFF;
+        }
+        if (total < 128L * count) {
+            for (int i = 0; i < count; i++) {
+                pixels[i] = (byte) ~pixels[i];
+            }
+        }
+        int stride = width + 1;
+        int size = stride * (height + 1);
+        if (integral.length < size) {
+            integral = new int[size];
+        }
+        // 第 0 行 / 第 0 列为 0，integral[(y+1)*stride + x+1] = 左上角 (0,0)~(x,y) 的和
+        Arrays.fill(integral, 0, stride, 0);
+        for (int y = 0; y < height; y++) {
+            int rowSum = 0;
+            int row = (y + 1) * stride;
+            integral[row] = 0;
+            int o = y * width;
+            for (int x = 0; x < width; x++) {
+                rowSum += pixels[o + x] & 0xFF;
+                integral[row + x + 1] = integral[row - stride + x + 1] + rowSum;
+            }
+        }
+        int half = Math.max(1, Math.max(width, height) / WINDOW_DIVISOR / 2);
+        for (int y = 0; y < height; y++) {
+            int y0 = Math.max(0, y - half);
+            int y1 = Math.min(height, y + half + 1);
+            int top = y0 * stride;
+            int bottom = y1 * stride;
+            int o = y * width;
+            for (int x = 0; x < width; x++) {
+                int x0 = Math.max(0, x - half);
+                int x1 = Math.min(width, x + half + 1);
+                // 积分图在超大画面上可能溢出 int，但窗口和本身远小于 2^31，按 int 回绕相减结果仍然正确
+                long sum = integral[bottom + x1] - integral[bottom + x0] - integral[top + x1] + integral[top + x0];
+                long area = (long) (x1 - x0) * (y1 - y0);
+                long value = ((pixels[o + x] & 0xFF) + THRESHOLD_OFFSET) * area;
+                pixels[o + x] = value <= sum ? (byte) 0 : (byte) 0xFF;
+            }
+        }
+    }
+
+    /**
+     * 把亮度写回 RGBA 帧（R = G = B = 亮度，A = 255），供只接受彩色 Bitmap 的编码器使用
+     */
+    public static void expandToRgba(byte[] luminance, CapturedFrame target) {
+        byte[] rgba = target.pixels;
+        int count = target.width * target.height;
+        for (int i = 0, p = 0; i < count; i++, p += CapturedFrame.BYTES_PER_PIXEL) {
+            byte v = luminance[i];
+            rgba[p] = v;
+            rgba[p + 1] = v;
+            rgba[p + 2] = v;
+            rgba[p + 3] = (byte) 0xFF;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.transla_screen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 等待帧的请求队列，取代单一的待处理 Result 槽位
+ *
+ * 每个请求声明自己的新鲜度要求（任意缓存帧，或时间戳不早于某一时刻的帧）和超时时间。
+ * 新帧到达时一次取出所有可被该帧满足的请求，按 (格式, 质量, 区域, 预处理, 长边上限) 分组后交付，
+ * 同组的 N 个请求只需一次拷贝/编码。
+ *
+ * 线程安全：所有方法都是同步的，入队可以发生在主线程，交付和超时处理在截屏处理线程上进行。
+ *
+ * @param <R> 请求完成时回调的对象（生产环境为 MethodChannel.Result）
+ */
+public class FrameRequestQueue<R> {
+    /** 不要求新鲜度，任何已缓存的帧都可以 */
+    public static final long ANY_FRAME = Long.MIN_VALUE;
+    /** 不超时 */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    public static final class Request<R> {
+        public final R result;
+        public final String format;
+        /** 有损格式的编码质量 (1~100) */
+        public final int quality;
+        /** 截取区域，null 表示整帧；分组时用 equals 比较 */
+        public final Object region;
+        /** OCR 预处理方式，见 {@link FramePreprocessor} 的 MODE_* */
+        public final String preprocess;
+        /** 缩小后的长边上限（像素），0 表示不缩小，见 {@link FrameScaler} */
+        public final int maxEdge;
+        /** 调用方已持有的内容序号，内容未变化时只返回帧头；可为 null */
+        public final Long knownContentSequence;
+        /** 可接受的最早帧时间戳（纳秒，与 Image.getTimestamp 同一时基，包含该值） */
+        public final long minTimestampNs;
+        /** 超时时刻（毫秒，由调用方决定时基） */
+        public final long deadlineMs;
+
+        private Request(Builder<R> builder) {
+            this.result = builder.result;
+            this.format = builder.format;
+            this.quality = builder.quality;
+            this.region = builder.region;
+            this.preprocess = builder.preprocess;
+            this.maxEdge = builder.maxEdge;
+            this.knownContentSequence = builder.knownContentSequence;
+            this.minTimestampNs = builder.minTimestampNs;
+            this.deadlineMs = builder.deadlineMs;
+        }
+
+        /** 未设置的字段取默认值：默认质量、整帧、不预处理、不缩小、任意缓存帧、不超时 */
+        public static <R> Builder<R> builder(R result, String format) {
+            return new Builder<>(result, format);
+        }
+
+        public boolean acceptsFrame(long timestampNs) {
+            return timestampNs >= minTimestampNs;
+        }
+
+        public boolean isFullFrame() {
+            return region == null;
+        }
+
+        /** 同一分组的请求可以共用一次裁剪和编码 */
+        List<Object> deliveryKey() {
+            return Arrays.asList(format, quality, region, preprocess, maxEdge);
+        }
+
+        public static final class Builder<R> {
+            private final R result;
+            private final String format;
+            private int quality = FrameEncoder.DEFAULT_QUALITY;
+            private Object region;
+            private String preprocess = FramePreprocessor.MODE_NONE;
+            private int maxEdge;
+            private Long knownContentSequence;
+            private long minTimestampNs = ANY_FRAME;
+            private long deadlineMs = NO_DEADLINE;
+
+            private Builder(R result, String format) {
+                this.result = result;
+                this.format = format;
+            }
+
+            public Builder<R> quality(int quality) {
+                this.quality = quality;
+                return this;
+            }
+
+            public Builder<R> region(Object region) {
+                this.region = region;
+                return this;
+            }
+
+            public Builder<R> preprocess(String preprocess) {
+                this.preprocess = preprocess;
+                return this;
+            }
+
+            public Builder<R> maxEdge(int maxEdge) {
+                this.maxEdge = maxEdge;
+                return this;
+            }
+
+            public Builder<R> knownContentSequence(Long knownContentSequence) {
+                this.knownContentSequence = knownContentSequence;
+                return this;
+            }
+
+            public Builder<R> minTimestampNs(long minTimestampNs) {
+                this.minTimestampNs = minTimestampNs;
+                return this;
+            }
+
+            public Builder<R> deadlineMs(long deadlineMs) {
+                this.deadlineMs = deadlineMs;
+                return this;
+            }
+
+            public Request<R> build() {
+                return new Request<>(this);
+            }
+        }
+    }
+
+    private final List<Request<R>> pending = new ArrayList<>();
+
+    public synchronized void add(Request<R> request) {
+        pending.add(request);
+    }
+
+    public synchronized boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * 取出所有可以被时间戳为 timestampNs 的帧满足的请求，保持入队顺序
+     */
+    public synchronized List<Request<R>> takeSatisfiedBy(long timestampNs) {
+        List<Request<R>> satisfied = new ArrayList<>();
+        for (Iterator<Request<R>> it = pending.iterator(); it.hasNext(); ) {
+            Request<R> request = it.next();
+            if (request.acceptsFrame(timestampNs)) {
+                satisfied.add(request);
+                it.remove();
+            }
+        }
+        return satisfied;
+    }
+
+    /**
+     * 取出所有在 nowMs 时已超时的请求
+     */
+    public synchronized List<Request<R>> takeExpired(long nowMs) {
+        List<Request<R>> expired = new ArrayList<>();
+        for (Iterator<Request<R>> it = pending.iterator(); it.hasNext(); ) {
+            Request<R> request = it.next();
+            if (request.deadlineMs <= nowMs) {
+                expired.add(request);
+                it.remove();
+            }
+        }
+        return expired;
+    }
+
+    public synchronized List<Request<R>> takeAll() {
+        List<Request<R>> all = new ArrayList<>(pending);
+        pending.clear();
+        return all;
+    }
+
+    /**
+     * 最近的超时时刻；没有会超时的请求时返回 {@link #NO_DEADLINE}
+     */
+    public synchronized long nextDeadlineMs() {
+        long next = NO_DEADLINE;
+        for (Request<R> request : pending) {
+            next = Math.min(next, request.deadlineMs);
+        }
+        return next;
+    }
+
+    /**
+     * 按 (格式, 质量, 区域, 预处理, 长边上限) 分组，分组及组内顺序与入参顺序一致
+     */
+    public static <R> List<List<Request<R>>> groupForDelivery(List<Request<R>> requests) {
+        Map<List<Object>, List<Request<R>>> groups = new LinkedHashMap<>();
+        for (Request<R> request : requests) {
+            List<Request<R>> group = groups.get(request.deliveryKey());
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(request.deliveryKey(), group);
+            }
+            group.add(request);
+        }
+        return new ArrayList<>(groups.values());
+    }
+}
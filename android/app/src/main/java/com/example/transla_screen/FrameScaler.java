@@ -0,0 +1,103 @@
+package com.example.transla_screen;
+
+/**
+ * 按长边上限缩小 RGBA 帧，供云端 OCR 上传前使用
+ *
+ * 视觉模型本身会把大图缩小到约 2048 像素以内再识别，上传全分辨率截图只会增加编码耗时和请求体积。
+ * 缩小使用区域平均（box filter）：每个目标像素取其覆盖的源像素块的均值，文字笔画不会像最近邻那样断裂，
+ * 也不需要 Bitmap，可在 JVM 单元测试中验证。
+ *
+ * 缩小后的帧沿用源帧的描述信息，并把 sourceWidth/sourceHeight、区域偏移和变化区域换算到缩小后的坐标，
+ * 因此 Flutter 端按 screenWidth / sourceWidth 换算坐标时会自动还原到屏幕坐标。
+ * 分块哈希按源帧像素计算，对缩小后的帧无效，不再发送。
+ *
+ * 每个目标列对应的源列范围缓存在实例里，宽度不变时跨帧复用，同一实例不能并发调用。
+ */
+public class FrameScaler {
+    private int[] columnStart = new int[0];
+    private int[] columnEnd = new int[0];
+
+    /**
+     * 长边不超过 maxEdge 时的尺寸 {width, height}，等比缩小并至少为 1；
+     * maxEdge <= 0 或帧已足够小时返回原尺寸
+     */
+    public static int[] scaledSize(int width, int height, int maxEdge) {
+        int longEdge = Math.max(width, height);
+        if (maxEdge <= 0 || longEdge <= maxEdge) {
+            return new int[]{width, height};
+        }
+        double factor = (double) maxEdge / longEdge;
+        return new int[]{
+                Math.max(1, (int) Math.round(width * factor)),
+                Math.max(1, (int) Math.round(height * factor))};
+    }
+
+    public static boolean needsScaling(int width, int height, int maxEdge) {
+        return maxEdge > 0 && Math.max(width, height) > maxEdge;
+    }
+
+    /**
+     * 把 source 缩小到 target 的尺寸，并换算描述信息
+     */
+    public void scale(CapturedFrame source, CapturedFrame target) {
+        scale(source.pixels, source.rowStride, source.width, source.height,
+                target.pixels, target.rowStride, target.width, target.height);
+        target.copyMetadataFrom(source);
+        target.hashedTileSize = 0;
+        double factorX = (double) target.width / source.width;
+        double factorY = (double) target.height / source.height;
+        int sourceWidth = source.sourceWidth > 0 ? source.sourceWidth : source.width;
+        int sourceHeight = source.sourceHeight > 0 ? source.sourceHeight : source.height;
+        target.sourceWidth = (int) Math.round(sourceWidth * factorX);
+        target.sourceHeight = (int) Math.round(sourceHeight * factorY);
+        target.offsetX = (int) Math.round(source.offsetX * factorX);
+        target.offsetY = (int) Math.round(source.offsetY * factorY);
+        int[] dirty = new int[source.dirtyRects.length];
+        for (int i = 0; i + 3 < dirty.length; i += 4) {
+            dirty[i] = (int) Math.floor(source.dirtyRects[i] * factorX);
+            dirty[i + 1] = (int) Math.floor(source.dirtyRects[i + 1] * factorY);
+            dirty[i + 2] = (int) Math.ceil(source.dirtyRects[i + 2] * factorX);
+            dirty[i + 3] = (int) Math.ceil(source.dirtyRects[i + 3] * factorY);
+        }
+        target.dirtyRects = dirty;
+    }
+
+    /**
+     * RGBA 区域平均缩小；目标像素 (x, y) 取源像素 [x*sw/dw, (x+1)*sw/dw) × [y*sh/dh, (y+1)*sh/dh) 的均值
+     */
+    void scale(byte[] src, int srcStride, int srcWidth, int srcHeight,
+               byte[] dst, int dstStride, int dstWidth, int dstHeight) {
+        if (columnStart.length < dstWidth) {
+            columnStart = new int[dstWidth];
+            columnEnd = new int[dstWidth];
+        }
+        for (int x = 0; x < dstWidth; x++) {
+            int start = (int) ((long) x * srcWidth / dstWidth);
+            columnStart[x] = start * CapturedFrame.BYTES_PER_PIXEL;
+            columnEnd[x] = Math.max(start + 1, (int) ((long) (x + 1) * srcWidth / dstWidth)) * CapturedFrame.BYTES_PER_PIXEL;
+        }
+        for (int y = 0; y < dstHeight; y++) {
+            int rowStart = (int) ((long) y * srcHeight / dstHeight);
+            int rowEnd = Math.max(rowStart + 1, (int) ((long) (y + 1) * srcHeight / dstHeight));
+            int o = y * dstStride;
+            for (int x = 0; x < dstWidth; x++, o += CapturedFrame.BYTES_PER_PIXEL) {
+                int r = 0, g = 0, b = 0, a = 0;
+                for (int row = rowStart; row < rowEnd; row++) {
+                    int base = row * srcStride;
+                    for (int p = base + columnStart[x], end = base + columnEnd[x]; p < end; p += CapturedFrame.BYTES_PER_PIXEL) {
+                        r += src[p] & 0xFF;
+                        g += src[p + 1] & 0xFF;
+                        b += src[p + 2] & 0xFF;
+                        a += src[p + 3] & 0xFF;
+                    }
+                }
+                int count = (rowEnd - rowStart) * ((columnEnd[x] - columnStart[x]) / CapturedFrame.BYTES_PER_PIXEL);
+                int half = count / 2;
+                dst[o] = (byte) ((r + half) / count);
+                dst[o + 1] = (byte) ((g + half) / count);
+                dst[o + 2] = (byte) ((b + half) / count);
+                dst[o + 3] = (byte) ((a + half) / count);
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.transla_screen;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 推送帧流的信用 (credit) 背压控制
+ *
+ * Flutter 端每处理完一帧就归还信用；原生端只有在信用大于 0 时才发送，
+ * 因此在途帧数永远不超过 Flutter 已确认的数量。没有信用时只记住“有一帧未发送”
+ * （像素仍留在 ImageReader 的 Image 中，不拷贝），更新的帧到达时旧的直接丢弃，
+ * 信用恢复后只发送最新的一帧，不会积压队列。
+ *
+ * 只负责记账，拷贝和发送由调用方完成；所有方法都是同步的。
+ */
+public class FrameStreamController {
+    private boolean active;
+    private String format = CapturedFrame.FORMAT_PNG;
+    private int quality = FrameEncoder.DEFAULT_QUALITY;
+    private Object region;
+    private boolean skipUnchanged;
+
+    private int credits;
+    private boolean hasUndeliveredFrame;
+    private long lastDeliveredContentSequence = -1;
+
+    private long framesProduced;
+    private long framesDelivered;
+    private long framesDropped;
+    private long framesSkippedUnchanged;
+    private long startedAtMs;
+
+    /**
+     * 开始新的流，计数清零
+     *
+     * @param quality        有损格式的编码质量
+     * @param region         截取区域，null 表示整帧
+     * @param initialCredits 允许的最大在途帧数
+     * @param skipUnchanged  内容与上次发送的帧相同时不发送；只对整帧流有效，
+     *                       区域帧每次裁剪都是新的内容序号，无法判断是否变化
+     */
+    public synchronized void start(String format, int quality, Object region, int initialCredits,
+                                   boolean skipUnchanged, long nowMs) {
+        this.active = true;
+        this.format = format;
+        this.quality = quality;
+        this.region = region;
+        this.skipUnchanged = skipUnchanged && region == null;
+        this.credits = Math.max(1, initialCredits);
+        this.hasUndeliveredFrame = false;
+        this.lastDeliveredContentSequence = -1;
+        this.framesProduced = 0;
+        this.framesDelivered = 0;
+        this.framesDropped = 0;
+        this.framesSkippedUnchanged = 0;
+        this.startedAtMs = nowMs;
+    }
+
+    public synchronized void stop() {
+        active = false;
+        credits = 0;
+        hasUndeliveredFrame = false;
+    }
+
+    public synchronized boolean isActive() {
+        return active;
+    }
+
+    public synchronized String getFormat() {
+        return format;
+    }
+
+    public synchronized int getQuality() {
+        return quality;
+    }
+
+    public synchronized Object getRegion() {
+        return region;
+    }
+
+    /**
+     * 新帧到达。返回 true 表示有信用，应立即拷贝并发送；
+     * 否则该帧成为“未发送帧”，替换掉的上一帧计为丢弃。
+     */
+    public synchronized boolean onFrameProduced() {
+        if (!active) {
+            return false;
+        }
+        framesProduced++;
+        if (credits > 0) {
+            return true;
+        }
+        if (hasUndeliveredFrame) {
+            framesDropped++;
+        }
+        hasUndeliveredFrame = true;
+        return false;
+    }
+
+    /**
+     * Flutter 归还信用。返回 true 表示有一帧未发送，调用方应立即发送它。
+     */
+    public synchronized boolean grantCredits(int count) {
+        if (!active || count <= 0) {
+            return false;
+        }
+        credits += count;
+        return hasUndeliveredFrame;
+    }
+
+    /**
+     * 拷贝出帧之后、发送之前调用；返回 false 表示内容未变化，本帧跳过且不消耗信用
+     */
+    public synchronized boolean shouldDeliver(long contentSequence) {
+        if (skipUnchanged && contentSequence == lastDeliveredContentSequence) {
+            framesSkippedUnchanged++;
+            hasUndeliveredFrame = false;
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized void onFrameDelivered(long contentSequence) {
+        credits = Math.max(0, credits - 1);
+        framesDelivered++;
+        hasUndeliveredFrame = false;
+        lastDeliveredContentSequence = contentSequence;
+    }
+
+    /**
+     * 已发送的帧在流水线中被更新的帧挤掉：退还信用，改记为丢弃，
+     * 并忘记其内容序号，以免内容相同的下一帧被当作“未变化”跳过
+     */
+    public synchronized void onDeliveryDropped() {
+        if (!active) {
+            return;
+        }
+        credits++;
+        framesDelivered = Math.max(0, framesDelivered - 1);
+        framesDropped++;
+        lastDeliveredContentSequence = -1;
+    }
+
+    public synchronized int getCredits() {
+        return credits;
+    }
+
+    public synchronized Map<String, Object> toMap(long nowMs) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("active", active);
+        map.put("format", format);
+        map.put("credits", credits);
+        map.put("framesProduced", framesProduced);
+        map.put("framesDelivered", framesDelivered);
+        map.put("framesDropped", framesDropped);
+        map.put("framesSkippedUnchanged", framesSkippedUnchanged);
+        map.put("streamDurationMs", active ? nowMs - startedAtMs : 0L);
+        return map;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.transla_screen;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 各阶段耗时的滚动统计（最近 {@link #DEFAULT_WINDOW_SIZE} 次），用于定位“长按悬浮球到蒙版出现”之间的时间花在哪里
+ *
+ * 原生端的悬浮球事件、帧获取/转换/编码、蒙版解析/视图创建都记录到同一个进程内实例，
+ * Flutter 端测得的阶段经截屏通道的 recordLatency 并入，再通过 getLatencyStats 查询 p50/p95/p99。
+ * 记录由 {@link StageTrace} 完成，本类只负责统计，不依赖 Android API。
+ */
+public class LatencyStats {
+    public static final String STAGE_BUBBLE_EVENT = "bubble_event";
+    /** 只含 ImageReader.acquireLatestImage 本身 */
+    public static final String STAGE_FRAME_ACQUIRE = "frame_acquire";
+    public static final String STAGE_FRAME_CONVERT = "frame_convert";
+    public static final String STAGE_FRAME_PREPROCESS = "frame_preprocess";
+    public static final String STAGE_FRAME_ENCODE = "frame_encode";
+    /** 以下三个阶段由 Flutter 端测量，经 recordLatency 上报 */
+    public static final String STAGE_CHANNEL_TRANSFER = "channel_transfer";
+    public static final String STAGE_OCR = "ocr";
+    public static final String STAGE_TRANSLATE = "translate";
+    public static final String STAGE_OVERLAY_PARSE = "overlay_parse";
+    public static final String STAGE_OVERLAY_INFLATE = "overlay_inflate";
+    /** 从悬浮球事件到译文蒙版中的译文全部显示 */
+    public static final String STAGE_END_TO_END = "end_to_end";
+    /** 从悬浮球事件到第一条译文显示（流式翻译时先于全部显示） */
+    public static final String STAGE_END_TO_END_FIRST = "end_to_end_first";
+
+    public static final int DEFAULT_WINDOW_SIZE = 200;
+
+    private static final LatencyStats INSTANCE = new LatencyStats(DEFAULT_WINDOW_SIZE);
+
+    public static LatencyStats getInstance() {
+        return INSTANCE;
+    }
+
+    /** 单个阶段的环形缓冲区 */
+    private static final class Window {
+        final double[] samples;
+        int next;
+        int size;
+        long count;
+        double lastMs;
+
+        Window(int capacity) {
+            samples = new double[capacity];
+        }
+
+        void add(double ms) {
+            samples[next] = ms;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+            count++;
+            lastMs = ms;
+        }
+    }
+
+    private final int windowSize;
+    private final Map<String, Window> windows = new LinkedHashMap<>();
+
+    public LatencyStats(int windowSize) {
+        this.windowSize = Math.max(1, windowSize);
+    }
+
+    public synchronized void record(String stage, double durationMs) {
+        if (durationMs < 0) {
+            return; // 跨设备时钟调整等异常值
+        }
+        Window window = windows.get(stage);
+        if (window == null) {
+            window = new Window(windowSize);
+            windows.put(stage, window);
+        }
+        window.add(durationMs);
+    }
+
+    public synchronized void reset() {
+        windows.clear();
+    }
+
+    /**
+     * @return 阶段名 → {count, lastMs, p50, p95, p99}，百分位基于滚动窗口内的样本
+     */
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (Map.Entry<String, Window> entry : windows.entrySet()) {
+            Window window = entry.getValue();
+            double[] sorted = Arrays.copyOf(window.samples, window.size);
+            Arrays.sort(sorted);
+            Map<String, Object> stage = new HashMap<>();
+            stage.put("count", window.count);
+            stage.put("lastMs", window.lastMs);
+            stage.put("p50", percentile(sorted, 50));
+            stage.put("p95", percentile(sorted, 95));
+            stage.put("p99", percentile(sorted, 99));
+            map.put(entry.getKey(), stage);
+        }
+        return map;
+    }
+
+    /**
+     * 最近秩法：返回不小于 p% 样本的最小样本值
+     */
+    static double percentile(double[] sorted, int p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
@@ -81,7 +81,16 @@ public class NativeOverlayPlugin implements FlutterPlugin, MethodCallHandler, Ac
                     break;
                 case "showTranslationOverlay":
                     String translationData = call.argument("translationData");
-                    showTranslationOverlay(translationData, result);
+                    Number showSession = call.argument("session");
+                    showTranslationOverlay(translationData,
+                            showSession != null ? showSession.longValue() : TranslationOverlayService.NO_SESSION,
+                            result);
+                    break;
+                case "updateTranslationOverlay":
+                    String updateData = call.argument("updateData");
+                    Number updateSession = call.argument("session");
+                    result.success(updateData != null && updateSession != null
+                            && TranslationOverlayService.applyUpdates(updateSession.longValue(), updateData));
                     break;
                 case "hideTranslationOverlay":
                     hideTranslationOverlay();
@@ -166,7 +175,10 @@ public class NativeOverlayPlugin implements FlutterPlugin, MethodCallHandler, Ac
         context.stopService(new Intent(context, FloatingBubbleService.class));
     }
 
-    private void showTranslationOverlay(String translationData, Result result) {
+    /**
+     * 返回成功时服务可能还没解析和显示蒙版；{@code session} 的更新由服务暂存到蒙版显示后再应用
+     */
+    private void showTranslationOverlay(String translationData, long session, Result result) {
         if (context == null || translationData == null) {
             result.error("INVALID_ARGS", "上下文为空或翻译数据为空", null);
             return;
@@ -184,6 +196,8 @@ public class NativeOverlayPlugin implements FlutterPlugin, MethodCallHandler, Ac
         Log.d(TAG, "显示译文蒙版");
         Intent intent = new Intent(context, TranslationOverlayService.class);
         intent.putExtra("translation_data", translationData);
+        intent.putExtra(TranslationOverlayService.EXTRA_SESSION, session);
+        TranslationOverlayService.expectSession(session);
         
         try {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -194,6 +208,7 @@ public class NativeOverlayPlugin implements FlutterPlugin, MethodCallHandler, Ac
             result.success(true);
         } catch (Exception e) {
             Log.e(TAG, "启动TranslationOverlayService失败", e);
+            TranslationOverlayService.abandonSession(session);
             result.error("SERVICE_START_FAILED", e.getMessage(), null);
         }
     }
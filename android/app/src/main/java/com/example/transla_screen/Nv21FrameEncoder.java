@@ -0,0 +1,90 @@
+package com.example.transla_screen;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 把 RGBA_8888 转为 NV21（Y 平面 + 交错的 VU 平面），供 ML Kit 的 InputImage.fromBytes 直接识别
+ *
+ * Android 上 InputImage.fromBytes 只接受 NV21 / YV12，不接受 BGRA；在原生端转换后 Flutter 端
+ * 不必再把 PNG 写入临时文件、由 ML Kit 读回并解码。输出约为 1.5 字节/像素，转换是单次遍历，
+ * 远比 PNG 压缩便宜。
+ *
+ * 色度按 2x2 采样，宽高为奇数时向上补齐到偶数（复制最后一列/行），Y 平面每行
+ * {@link #paddedSize(int)} 字节。系数为全范围 BT.601，与 {@link FramePreprocessor} 的亮度一致，
+ * 灰度帧（R = G = B）转换后 Y 与原值相同、色度恒为 128。
+ */
+public class Nv21FrameEncoder implements FrameEncoder {
+    private byte[] buffer = new byte[0];
+
+    /** 向上补齐到偶数 */
+    public static int paddedSize(int size) {
+        return (size + 1) & ~1;
+    }
+
+    /** width x height 的帧转为 NV21 后的字节数 */
+    public static int outputLength(int width, int height) {
+        int paddedWidth = paddedSize(width);
+        int paddedHeight = paddedSize(height);
+        return paddedWidth * paddedHeight * 3 / 2;
+    }
+
+    @Override
+    public String getFormat() {
+        return CapturedFrame.FORMAT_NV21;
+    }
+
+    @Override
+    public String getMimeType() {
+        return "application/octet-stream";
+    }
+
+    @Override
+    public void encode(CapturedFrame frame, int quality, OutputStream out) throws IOException {
+        int length = outputLength(frame.width, frame.height);
+        if (buffer.length < length) {
+            buffer = new byte[length];
+        }
+        convert(frame.pixels, frame.rowStride, frame.width, frame.height, buffer);
+        out.write(buffer, 0, length);
+    }
+
+    /**
+     * RGBA → NV21，写入 out 的前 {@link #outputLength} 字节
+     */
+    static void convert(byte[] rgba, int rowStride, int width, int height, byte[] out) {
+        int paddedWidth = paddedSize(width);
+        int paddedHeight = paddedSize(height);
+        for (int y = 0; y < paddedHeight; y++) {
+            int src = Math.min(y, height - 1) * rowStride;
+            int o = y * paddedWidth;
+            for (int x = 0; x < paddedWidth; x++) {
+                int p = src + Math.min(x, width - 1) * CapturedFrame.BYTES_PER_PIXEL;
+                out[o + x] = (byte) ((77 * (rgba[p] & 0xFF) + 150 * (rgba[p + 1] & 0xFF) + 29 * (rgba[p + 2] & 0xFF)) >> 8);
+            }
+        }
+        // 每个 2x2 块取左上角像素的色度，OCR 只依赖亮度，不做平均
+        int chroma = paddedWidth * paddedHeight;
+        for (int y = 0; y < paddedHeight; y += 2) {
+            int src = Math.min(y, height - 1) * rowStride;
+            int o = chroma + (y / 2) * paddedWidth;
+            for (int x = 0; x < paddedWidth; x += 2) {
+                int p = src + Math.min(x, width - 1) * CapturedFrame.BYTES_PER_PIXEL;
+                int r = rgba[p] & 0xFF;
+                int g = rgba[p + 1] & 0xFF;
+                int b = rgba[p + 2] & 0xFF;
+                out[o + x] = clamp(((128 * r - 107 * g - 21 * b) >> 8) + 128);
+                out[o + x + 1] = clamp(((-43 * r - 85 * g + 128 * b) >> 8) + 128);
+            }
+        }
+    }
+
+    private static byte clamp(int value) {
+        return (byte) Math.max(0, Math.min(255, value));
+    }
+
+    @Override
+    public void release() {
+        buffer = new byte[0];
+    }
+}
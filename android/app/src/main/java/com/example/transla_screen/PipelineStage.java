@@ -0,0 +1,160 @@
+package com.example.transla_screen;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 截屏流水线中的一个阶段（转换、编码等），在独立的单线程执行器上按帧序号依次处理任务
+ *
+ * 上游阶段把任务交给 {@link #submit} 后立即返回，不等待处理完成；阶段之间通过
+ * {@link SequencedDropOldestQueue} 交接，积压时丢弃最旧的可丢弃任务。
+ * 可丢弃任务的序号小于已处理过的可丢弃任务时视为过期，同样丢弃，保证输出不会倒序。
+ * 被丢弃或处理失败的任务都会收到 {@link Job#onDiscarded}，由任务自行释放帧、结束请求。
+ */
+public class PipelineStage<J extends PipelineStage.Job> {
+
+    public interface Job extends SequencedDropOldestQueue.Job {
+        /** 任务被丢弃或处理失败，reason 用于日志和错误信息 */
+        void onDiscarded(String reason);
+    }
+
+    public interface Processor<J> {
+        void process(J job) throws Exception;
+    }
+
+    private final String name;
+    private final Processor<J> processor;
+    private final SequencedDropOldestQueue<J> queue;
+    private final ExecutorService executor;
+    private final Object lock = new Object();
+
+    private boolean draining;
+    private long lastDroppableSequence = Long.MIN_VALUE;
+
+    private long jobsSubmitted;
+    private long jobsProcessed;
+    private long jobsDropped;
+    private long jobsFailed;
+    private int maxQueueDepth;
+
+    /**
+     * @param capacity 可丢弃任务的队列容量
+     */
+    public PipelineStage(String name, int capacity, Processor<J> processor) {
+        this.name = name;
+        this.processor = processor;
+        this.queue = new SequencedDropOldestQueue<>(capacity);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void submit(J job) {
+        J dropped;
+        boolean startDrain = false;
+        synchronized (lock) {
+            jobsSubmitted++;
+            dropped = queue.offer(job);
+            if (dropped != null) {
+                jobsDropped++;
+            }
+            maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+            if (!draining) {
+                draining = true;
+                startDrain = true;
+            }
+        }
+        if (dropped != null) {
+            dropped.onDiscarded(name + " queue full");
+        }
+        if (startDrain) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * 在本阶段的线程上执行一个与任务无关的操作（如释放只在该线程使用的资源）
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * 丢弃所有排队中的任务（会话结束时调用）
+     */
+    public void clear(String reason) {
+        List<J> pending;
+        synchronized (lock) {
+            pending = queue.clear();
+            lastDroppableSequence = Long.MIN_VALUE;
+        }
+        for (J job : pending) {
+            job.onDiscarded(reason);
+        }
+    }
+
+    public void shutdown() {
+        clear(name + " shut down");
+        executor.shutdown();
+    }
+
+    private void drain() {
+        while (true) {
+            J job;
+            boolean stale;
+            synchronized (lock) {
+                job = queue.poll();
+                if (job == null) {
+                    draining = false;
+                    return;
+                }
+                stale = job.isDroppable() && job.getSequence() < lastDroppableSequence;
+                if (stale) {
+                    jobsDropped++;
+                } else if (job.isDroppable()) {
+                    lastDroppableSequence = job.getSequence();
+                }
+            }
+            if (stale) {
+                job.onDiscarded(name + " received an out-of-order frame");
+                continue;
+            }
+            try {
+                processor.process(job);
+                synchronized (lock) {
+                    jobsProcessed++;
+                }
+            } catch (Exception e) {
+                synchronized (lock) {
+                    jobsFailed++;
+                }
+                job.onDiscarded(name + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @param prefix 统计项名称前缀，如 "encode"
+     */
+    public Map<String, Object> toMap(String prefix) {
+        Map<String, Object> map = new HashMap<>();
+        synchronized (lock) {
+            map.put(prefix + "QueueDepth", queue.size());
+            map.put(prefix + "MaxQueueDepth", maxQueueDepth);
+            map.put(prefix + "JobsSubmitted", jobsSubmitted);
+            map.put(prefix + "JobsProcessed", jobsProcessed);
+            map.put(prefix + "JobsDropped", jobsDropped);
+            map.put(prefix + "JobsFailed", jobsFailed);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.transla_screen;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 不编码，原样输出紧密排列的 RGBA_8888 像素
+ *
+ * 截屏通道交付 raw 帧时直接传递池中的像素数组（零拷贝），不经过本类；
+ * 本类用于需要统一走 {@link FrameEncoder} 的场合，如编码基准中的体积对照。
+ */
+public class RawFrameEncoder implements FrameEncoder {
+
+    @Override
+    public String getFormat() {
+        return CapturedFrame.FORMAT_RAW;
+    }
+
+    @Override
+    public String getMimeType() {
+        return "application/octet-stream";
+    }
+
+    @Override
+    public void encode(CapturedFrame frame, int quality, OutputStream out) throws IOException {
+        out.write(frame.pixels, 0, frame.width * frame.height * CapturedFrame.BYTES_PER_PIXEL);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.transla_screen;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 流水线阶段之间的有界交接队列：按帧序号排序，满时丢弃最旧的可丢弃任务
+ *
+ * 只有可丢弃的任务（推送帧流等“有更新的帧就不需要旧帧”的场合）计入容量；
+ * 携带 Flutter 请求的任务必须交付，从不丢弃，其数量受未完成请求数限制。
+ * 序号相同的任务保持入队顺序。非线程安全，由 {@link PipelineStage} 加锁使用。
+ */
+public class SequencedDropOldestQueue<J extends SequencedDropOldestQueue.Job> {
+
+    public interface Job {
+        /** 帧序号，决定处理顺序 */
+        long getSequence();
+
+        /** 是否可以在队列满或过期时被丢弃 */
+        boolean isDroppable();
+    }
+
+    private final int capacity;
+    private final List<J> items = new ArrayList<>();
+    private int droppableCount;
+
+    /**
+     * @param capacity 可丢弃任务的最大数量，至少为 1
+     */
+    public SequencedDropOldestQueue(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * 按序号插入任务
+     *
+     * @return 因容量不足被挤出的最旧可丢弃任务（可能就是 job 本身），没有时返回 null
+     */
+    public J offer(J job) {
+        int index = items.size();
+        while (index > 0 && items.get(index - 1).getSequence() > job.getSequence()) {
+            index--;
+        }
+        items.add(index, job);
+        if (!job.isDroppable()) {
+            return null;
+        }
+        droppableCount++;
+        if (droppableCount <= capacity) {
+            return null;
+        }
+        for (Iterator<J> it = items.iterator(); it.hasNext(); ) {
+            J candidate = it.next();
+            if (candidate.isDroppable()) {
+                it.remove();
+                droppableCount--;
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 取出序号最小的任务，队列为空时返回 null
+     */
+    public J poll() {
+        if (items.isEmpty()) {
+            return null;
+        }
+        J job = items.remove(0);
+        if (job.isDroppable()) {
+            droppableCount--;
+        }
+        return job;
+    }
+
+    public List<J> clear() {
+        List<J> all = new ArrayList<>(items);
+        items.clear();
+        droppableCount = 0;
+        return all;
+    }
+
+    public int size() {
+        return items.size();
+    }
+}
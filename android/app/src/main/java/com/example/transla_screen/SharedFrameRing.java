@@ -0,0 +1,236 @@
+package com.example.transla_screen;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 与 Flutter 共享的帧内存环：raw 帧写入 mmap 的槽位文件，通道上只传递槽位描述
+ *
+ * 每个槽位是应用缓存目录下的一个文件，原生端以读写方式映射，Flutter 端通过 dart:ffi 的 mmap
+ * 以只读方式映射同一文件描述符（同一进程内，fd 直接有效），像素以外部 TypedData 视图读取，
+ * 不再经过 StandardMessageCodec 序列化和 Dart 堆拷贝。
+ *
+ * 槽位布局：[0, 8) 代数 (little-endian long)，[{@link #HEADER_SIZE}, ...) 像素。
+ * 写入前先把代数清零，写完像素后再写入新代数，Flutter 端用完后比对代数即可判断数据是否被覆盖。
+ * 交给 Flutter 的槽位处于租用状态，Flutter 调用 releaseSharedFrame 归还后才会被复用；
+ * 所有槽位都被租用时 {@link #write} 返回 null，调用方退回通道拷贝。
+ *
+ * 线程安全：所有方法都是同步的。
+ */
+public class SharedFrameRing implements Closeable {
+    public static final String TRANSPORT_CHANNEL = "channel";
+    public static final String TRANSPORT_SHARED = "shared";
+
+    /** 槽位头部大小，像素从该偏移开始，保证 64 字节对齐 */
+    public static final int HEADER_SIZE = 64;
+
+    /**
+     * 可交给 Flutter 映射的文件描述符（生产环境为 ParcelFileDescriptor）
+     */
+    public interface Descriptor extends Closeable {
+        int getFd();
+    }
+
+    public interface DescriptorOpener {
+        Descriptor open(File file) throws IOException;
+    }
+
+    /**
+     * 一次写入的结果，{@link #putInto} 写入帧描述供 Flutter 映射
+     */
+    public static final class Lease {
+        public final int slot;
+        public final long generation;
+        public final int fd;
+        /** 描述符在进程内的唯一编号：fd 数值关闭后会被复用，Flutter 端据此判断是否需要重新映射 */
+        public final long descriptorId;
+        public final int capacity;
+        public final int length;
+
+        Lease(int slot, long generation, int fd, long descriptorId, int capacity, int length) {
+            this.slot = slot;
+            this.generation = generation;
+            this.fd = fd;
+            this.descriptorId = descriptorId;
+            this.capacity = capacity;
+            this.length = length;
+        }
+
+        public void putInto(Map<String, Object> map) {
+            map.put("transport", TRANSPORT_SHARED);
+            map.put("slot", slot);
+            map.put("generation", generation);
+            map.put("fd", fd);
+            map.put("descriptorId", descriptorId);
+            map.put("capacity", capacity);
+            map.put("offset", HEADER_SIZE);
+            map.put("length", length);
+        }
+    }
+
+    private static final class Slot {
+        final File file;
+        RandomAccessFile randomAccessFile;
+        MappedByteBuffer buffer;
+        Descriptor descriptor;
+        long descriptorId;
+        int capacity;
+        long generation;
+        boolean leased;
+
+        Slot(File file) {
+            this.file = file;
+        }
+    }
+
+    private static final AtomicLong nextDescriptorId = new AtomicLong(1);
+
+    private final File directory;
+    private final DescriptorOpener opener;
+    private final Slot[] slots;
+    private long nextGeneration = 1;
+    private long writes;
+    private long fallbacks;
+
+    public SharedFrameRing(File directory, int slotCount, DescriptorOpener opener) {
+        this.directory = directory;
+        this.opener = opener;
+        this.slots = new Slot[Math.max(1, slotCount)];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(new File(directory, "frame_slot_" + i));
+        }
+    }
+
+    /**
+     * 把 data 的前 length 字节写入一个空闲槽位并租给 Flutter
+     *
+     * @return 槽位描述；没有空闲槽位时返回 null
+     */
+    public synchronized Lease write(byte[] data, int length) throws IOException {
+        Slot slot = null;
+        int index = -1;
+        for (int i = 0; i < slots.length; i++) {
+            if (!slots[i].leased) {
+                slot = slots[i];
+                index = i;
+                break;
+            }
+        }
+        if (slot == null) {
+            fallbacks++;
+            return null;
+        }
+        ensureCapacity(slot, HEADER_SIZE + length);
+        MappedByteBuffer buffer = slot.buffer;
+        buffer.putLong(0, 0L);
+        buffer.position(HEADER_SIZE);
+        buffer.put(data, 0, length);
+        slot.generation = nextGeneration++;
+        buffer.putLong(0, slot.generation);
+        slot.leased = true;
+        writes++;
+        return new Lease(index, slot.generation, slot.descriptor.getFd(), slot.descriptorId, slot.capacity, length);
+    }
+
+    /**
+     * Flutter 用完槽位后归还；代数不匹配（槽位已被回收重用）时忽略
+     */
+    public synchronized boolean release(int index, long generation) {
+        if (index < 0 || index >= slots.length) {
+            return false;
+        }
+        Slot slot = slots[index];
+        if (!slot.leased || slot.generation != generation) {
+            return false;
+        }
+        slot.leased = false;
+        return true;
+    }
+
+    /**
+     * 收回所有租约（会话结束、Flutter 端重启等），之后的写入可能覆盖 Flutter 仍持有的视图
+     */
+    public synchronized void releaseAll() {
+        for (Slot slot : slots) {
+            slot.leased = false;
+        }
+    }
+
+    public synchronized int getLeasedSlots() {
+        int leased = 0;
+        for (Slot slot : slots) {
+            if (slot.leased) {
+                leased++;
+            }
+        }
+        return leased;
+    }
+
+    public synchronized void putStats(Map<String, Object> map) {
+        map.put("sharedFrameWrites", writes);
+        map.put("sharedFrameFallbacks", fallbacks);
+        map.put("sharedFrameLeased", getLeasedSlots());
+    }
+
+    /**
+     * 关闭并删除所有槽位文件；映射在 GC 时解除
+     */
+    @Override
+    public synchronized void close() {
+        for (Slot slot : slots) {
+            closeSlot(slot);
+            slot.leased = false;
+            //noinspection ResultOfMethodCallIgnored
+            slot.file.delete();
+        }
+    }
+
+    /**
+     * 槽位容量不足时按需扩大：文件只增不减，Flutter 端发现容量变化后重新映射
+     */
+    private void ensureCapacity(Slot slot, int required) throws IOException {
+        if (slot.buffer != null && slot.capacity >= required) {
+            return;
+        }
+        if (slot.randomAccessFile == null) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create shared frame directory: " + directory);
+            }
+            slot.randomAccessFile = new RandomAccessFile(slot.file, "rw");
+        }
+        slot.randomAccessFile.setLength(required);
+        slot.buffer = slot.randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, required);
+        slot.buffer.order(ByteOrder.LITTLE_ENDIAN);
+        slot.capacity = required;
+        if (slot.descriptor == null) {
+            slot.descriptor = opener.open(slot.file);
+            slot.descriptorId = nextDescriptorId.getAndIncrement();
+        }
+    }
+
+    private static void closeSlot(Slot slot) {
+        try {
+            if (slot.descriptor != null) {
+                slot.descriptor.close();
+            }
+            if (slot.randomAccessFile != null) {
+                slot.randomAccessFile.close();
+            }
+        } catch (IOException ignored) {
+            // 关闭失败不影响后续使用，文件随后被删除
+        } finally {
+            slot.descriptor = null;
+            slot.descriptorId = 0;
+            slot.randomAccessFile = null;
+            slot.buffer = null;
+            slot.capacity = 0;
+        }
+    }
+}
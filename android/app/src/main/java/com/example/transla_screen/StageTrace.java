@@ -0,0 +1,56 @@
+package com.example.transla_screen;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * 阶段耗时埋点：同时输出 systrace/Perfetto 的 Trace 区段并记录到 {@link LatencyStats}
+ *
+ * 同步阶段用 {@link #begin}/{@link #end} 包住，必须在同一线程上成对调用；
+ * 跨线程、跨服务的阶段（如悬浮球事件到蒙版显示）用 async 区段，以 cookie 配对。
+ */
+public final class StageTrace {
+    private static final String SECTION_PREFIX = "TranslaScreen:";
+
+    private StageTrace() {
+    }
+
+    /**
+     * @return 开始时刻，传给 {@link #end}
+     */
+    public static long begin(String stage) {
+        Trace.beginSection(SECTION_PREFIX + stage);
+        return System.nanoTime();
+    }
+
+    public static void end(String stage, long startNs) {
+        Trace.endSection();
+        LatencyStats.getInstance().record(stage, (System.nanoTime() - startNs) / 1_000_000.0);
+    }
+
+    /**
+     * 开始一个跨线程的 async 区段；API 29 以下只记录耗时，不输出区段
+     */
+    public static void beginAsync(String stage, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(SECTION_PREFIX + stage, cookie);
+        }
+    }
+
+    /**
+     * 结束 async 区段并记录从 startEpochMs 到现在的耗时
+     */
+    public static void endAsync(String stage, int cookie, long startEpochMs) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(SECTION_PREFIX + stage, cookie);
+        }
+        LatencyStats.getInstance().record(stage, System.currentTimeMillis() - startEpochMs);
+    }
+
+    /**
+     * 由事件时刻（epoch 毫秒）生成 async 区段的 cookie，两端各自计算即可配对
+     */
+    public static int cookieFor(long startEpochMs) {
+        return (int) (startEpochMs ^ (startEpochMs >>> 32));
+    }
+}
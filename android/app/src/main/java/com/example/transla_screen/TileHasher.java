@@ -0,0 +1,124 @@
+package com.example.transla_screen;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按固定尺寸的网格对 RGBA 帧计算分块哈希，用于判断画面是否变化以及变化的区域
+ *
+ * 每个分块使用 FNV-1a（以像素为单位）计算 64 位哈希：每一步都是双射，
+ * 因此分块内任意单个像素的变化都必然改变该分块的哈希值。
+ */
+public class TileHasher {
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int tileSize;
+
+    public TileHasher(int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize must be positive");
+        }
+        this.tileSize = tileSize;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int columnsFor(int width) {
+        return (width + tileSize - 1) / tileSize;
+    }
+
+    public int rowsFor(int height) {
+        return (height + tileSize - 1) / tileSize;
+    }
+
+    /**
+     * 计算所有分块的哈希
+     *
+     * @param pixels         以像素为单位的视图（每个 int 为一个 RGBA 像素）
+     * @param strideInPixels 每行的像素数（含填充）
+     * @param out            长度至少为 columnsFor(width) * rowsFor(height)，按行优先写入
+     */
+    public void hash(IntBuffer pixels, int width, int height, int strideInPixels, long[] out) {
+        int cols = columnsFor(width);
+        int rows = rowsFor(height);
+        for (int i = 0; i < cols * rows; i++) {
+            out[i] = FNV_OFFSET_BASIS;
+        }
+        // 按行扫描整帧，保证内存顺序访问；每行依次喂给该行所在分块行的各个分块
+        for (int y = 0; y < height; y++) {
+            int tileRowBase = (y / tileSize) * cols;
+            int rowStart = y * strideInPixels;
+            for (int tileCol = 0; tileCol < cols; tileCol++) {
+                int x0 = tileCol * tileSize;
+                int x1 = Math.min(x0 + tileSize, width);
+                long h = out[tileRowBase + tileCol];
+                for (int i = rowStart + x0, end = rowStart + x1; i < end; i++) {
+                    h = (h ^ pixels.get(i)) * FNV_PRIME;
+                }
+                out[tileRowBase + tileCol] = h;
+            }
+        }
+    }
+
+    /**
+     * 比较两组分块哈希，返回变化区域（像素坐标，已裁剪到帧尺寸）
+     *
+     * 相邻的变化分块会被合并：先在每一行内合并连续分块，再把上下跨度相同的行段合并成矩形。
+     *
+     * @return 扁平数组 [left, top, right, bottom, ...]；无变化时为空数组
+     */
+    public int[] dirtyRects(long[] previous, long[] current, int width, int height) {
+        int cols = columnsFor(width);
+        int rows = rowsFor(height);
+        List<int[]> open = new ArrayList<>();   // {c0, c1, r0, r1}，r1 为不包含的结束行
+        List<int[]> closed = new ArrayList<>();
+
+        for (int r = 0; r < rows; r++) {
+            List<int[]> nextOpen = new ArrayList<>();
+            int c = 0;
+            while (c < cols) {
+                if (previous[r * cols + c] == current[r * cols + c]) {
+                    c++;
+                    continue;
+                }
+                int c0 = c;
+                while (c < cols && previous[r * cols + c] != current[r * cols + c]) {
+                    c++;
+                }
+                int[] extended = null;
+                for (int[] rect : open) {
+                    if (rect[0] == c0 && rect[1] == c && rect[3] == r) {
+                        extended = rect;
+                        break;
+                    }
+                }
+                if (extended != null) {
+                    open.remove(extended);
+                    extended[3] = r + 1;
+                    nextOpen.add(extended);
+                } else {
+                    nextOpen.add(new int[]{c0, c, r, r + 1});
+                }
+            }
+            closed.addAll(open);
+            open = nextOpen;
+        }
+        closed.addAll(open);
+
+        int[] result = new int[closed.size() * 4];
+        for (int i = 0; i < closed.size(); i++) {
+            int[] rect = closed.get(i);
+            result[i * 4] = rect[0] * tileSize;
+            result[i * 4 + 1] = rect[2] * tileSize;
+            result[i * 4 + 2] = Math.min(rect[1] * tileSize, width);
+            result[i * 4 + 3] = Math.min(rect[3] * tileSize, height);
+        }
+        return result;
+    }
+}
@@ -30,12 +30,21 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import io.flutter.plugin.common.MethodChannel;
 
 /**
  * 译文蒙版服务 - 在屏幕上显示翻译结果
+ *
+ * 流式翻译时蒙版先以占位样式显示原文（pending 项），译文到达后经 {@link #applyUpdates} 逐项填入：
+ * 只修改对应的 TextView，不重建整个蒙版。端到端耗时分别记录到第一条译文显示（{@link LatencyStats#STAGE_END_TO_END_FIRST}）
+ * 和全部译文显示（{@link LatencyStats#STAGE_END_TO_END}）。
+ *
+ * 每次显示蒙版属于 Flutter 端分配的一个会话，逐项更新带上会话编号。服务启动是异步的，显示请求返回后
+ * 蒙版可能还没解析和显示：此时到达的该会话的更新先暂存，蒙版显示后按顺序应用，不会落到上一个蒙版上。
  */
 public class TranslationOverlayService extends Service {
     private static final String TAG = "TranslationOverlay";
@@ -44,12 +53,26 @@ public class TranslationOverlayService extends Service {
     // 定义广播动作 (Broadcast Actions)
     public static final String ACTION_OVERLAY_SHOWN = "com.example.transla_screen.ACTION_OVERLAY_SHOWN";
     public static final String ACTION_OVERLAY_HIDDEN = "com.example.transla_screen.ACTION_OVERLAY_HIDDEN";
+    /** 启动服务时携带的蒙版会话编号 */
+    public static final String EXTRA_SESSION = "overlay_session";
+    /** 没有会话 */
+    public static final long NO_SESSION = 0;
     
     private WindowManager windowManager;
     private View overlayView;
     private FrameLayout maskContainer;
     private static MethodChannel channel;
+    // 正在运行的实例，供插件在主线程上直接推送逐项更新
+    private static TranslationOverlayService instance;
+    // 最近一次请求显示的会话，及其蒙版显示前到达的更新（均只在主线程读写）
+    private static long requestedSession = NO_SESSION;
+    private static final List<String> heldUpdates = new ArrayList<>();
+    private long shownSession = NO_SESSION; // 当前蒙版所属的会话
     private List<TranslationMaskItem> maskItems = new ArrayList<>();
+    private long traceStartMs; // 端到端计时起点 (epoch 毫秒)，来自翻译数据
+    private long finishedTraceStartMs; // 最近一次已结束的计时起点
+    private boolean firstTranslationTraced; // 本次计时是否已记录第一条译文
+    private boolean partial; // 之后还会追加块，收到最后一次更新前不结束端到端计时
     
     /**
      * 翻译项数据模型
@@ -58,11 +81,22 @@ public class TranslationOverlayService extends Service {
         public Rect bbox;
         public String translatedText;
         public String originalText;
+        /** 逐项更新时使用的编号，由 Flutter 端指定 */
+        public int id;
+        /** 译文尚未到达，以占位样式显示原文 */
+        public boolean pending;
+        TextView textView;
         
         public TranslationMaskItem(Rect bbox, String translatedText, String originalText) {
+            this(bbox, translatedText, originalText, -1, false);
+        }
+
+        public TranslationMaskItem(Rect bbox, String translatedText, String originalText, int id, boolean pending) {
             this.bbox = bbox;
             this.translatedText = translatedText;
             this.originalText = originalText;
+            this.id = id;
+            this.pending = pending;
         }
     }
     
@@ -75,6 +109,7 @@ public class TranslationOverlayService extends Service {
     public void onCreate() {
         super.onCreate();
         Log.d(TAG, "译文蒙版服务创建");
+        instance = this;
         
         // 创建通知通道
         createNotificationChannel();
@@ -83,8 +118,27 @@ public class TranslationOverlayService extends Service {
         startForeground(NOTIFICATION_ID, createNotification());
     }
     
+    /**
+     * 插件启动服务前调用：之后到达的 {@code session} 的更新暂存到蒙版显示，更早的会话的更新被拒绝
+     */
+    public static void expectSession(long session) {
+        requestedSession = session;
+        heldUpdates.clear();
+    }
+
+    /**
+     * 会话的蒙版未能显示或已关闭：丢弃暂存的更新，之后的更新返回 false，由 Flutter 端重新显示整个蒙版
+     */
+    static void abandonSession(long session) {
+        if (requestedSession == session) {
+            requestedSession = NO_SESSION;
+            heldUpdates.clear();
+        }
+    }
+
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        long session = intent != null ? intent.getLongExtra(EXTRA_SESSION, NO_SESSION) : NO_SESSION;
         // 检查悬浮窗权限
         if (!checkOverlayPermission()) {
             Log.e(TAG, "没有悬浮窗权限，译文蒙版无法显示");
@@ -92,22 +146,30 @@ public class TranslationOverlayService extends Service {
                 channel.invokeMethod("overlay_permission_denied", "无法显示译文蒙版：未获得悬浮窗权限");
             }
             Toast.makeText(this, "无法显示译文蒙版，请允许悬浮窗权限", Toast.LENGTH_LONG).show();
+            abandonSession(session);
             stopSelf();
             return START_NOT_STICKY;
         }
         
+        boolean parsed = false;
         if (intent != null && intent.hasExtra("translation_data")) {
             String translationData = intent.getStringExtra("translation_data");
+            long parseStartNs = StageTrace.begin(LatencyStats.STAGE_OVERLAY_PARSE);
             try {
                 parseTranslationData(translationData);
+                parsed = true;
             } catch (JSONException e) {
                 Log.e(TAG, "解析翻译数据失败", e);
+                abandonSession(session);
                 if (channel != null) {
                     channel.invokeMethod("overlay_error", "解析翻译数据失败: " + e.getMessage());
                 }
+            } finally {
+                StageTrace.end(LatencyStats.STAGE_OVERLAY_PARSE, parseStartNs);
             }
         }
         
+        long inflateStartNs = StageTrace.begin(LatencyStats.STAGE_OVERLAY_INFLATE);
         if (overlayView == null) {
             try {
                 createOverlayView();
@@ -117,16 +179,24 @@ public class TranslationOverlayService extends Service {
                 shownIntent.setPackage(getPackageName());
                 sendBroadcast(shownIntent);
             } catch (Exception e) {
+                StageTrace.end(LatencyStats.STAGE_OVERLAY_INFLATE, inflateStartNs);
                 Log.e(TAG, "创建译文蒙版失败: " + e.getMessage(), e);
                 if (channel != null) {
                     channel.invokeMethod("overlay_error", e.getMessage());
                 }
+                abandonSession(session);
                 stopSelf();
                 return START_NOT_STICKY;
             }
         } else {
             updateOverlayView();
         }
+        StageTrace.end(LatencyStats.STAGE_OVERLAY_INFLATE, inflateStartNs);
+        finishEndToEndTrace();
+        if (parsed) {
+            shownSession = session;
+            applyHeldUpdates();
+        }
         
         return START_NOT_STICKY;
     }
@@ -190,6 +260,110 @@ public class TranslationOverlayService extends Service {
         return true; // 旧版本Android默认允许
     }
     
+    /**
+     * 译文视图更新后，在下一次布局时结束从悬浮球事件开始的端到端计时：第一条译文出现时记录
+     * {@link LatencyStats#STAGE_END_TO_END_FIRST}，没有待填入的译文且不会再追加块后记录 {@link LatencyStats#STAGE_END_TO_END}
+     */
+    private void finishEndToEndTrace() {
+        final long startMs = traceStartMs;
+        if (startMs <= 0 || overlayView == null) {
+            return;
+        }
+        boolean anyTranslated = false;
+        boolean anyPending = false;
+        for (TranslationMaskItem item : maskItems) {
+            if (item.pending) {
+                anyPending = true;
+            } else {
+                anyTranslated = true;
+            }
+        }
+        if (anyTranslated && !firstTranslationTraced) {
+            firstTranslationTraced = true;
+            overlayView.post(() -> LatencyStats.getInstance().record(
+                    LatencyStats.STAGE_END_TO_END_FIRST, System.currentTimeMillis() - startMs));
+        }
+        if (!anyPending && !partial) {
+            traceStartMs = 0;
+            finishedTraceStartMs = startMs;
+            overlayView.post(() -> StageTrace.endAsync(
+                    LatencyStats.STAGE_END_TO_END, StageTrace.cookieFor(startMs), startMs));
+        }
+    }
+
+    /**
+     * 把逐项更新应用到 {@code session} 的蒙版，必须在主线程调用；蒙版还在显示途中时先暂存
+     *
+     * @param data {"updates": [{"id": 编号, "translatedText": 译文}], "final": 是否为最后一次更新}；
+     *             最后一次更新后仍未收到译文的项恢复为普通样式显示原文
+     * @return 会话不是最近一次请求显示的，或其蒙版已关闭时返回 false
+     */
+    public static boolean applyUpdates(long session, String data) throws JSONException {
+        if (session == NO_SESSION || session != requestedSession) {
+            return false;
+        }
+        TranslationOverlayService service = instance;
+        if (service == null || service.overlayView == null || service.shownSession != session) {
+            heldUpdates.add(data);
+            return true;
+        }
+        service.applyUpdateData(data);
+        return true;
+    }
+
+    /**
+     * 蒙版显示后按到达顺序应用暂存的更新；之后又有会话请求显示时，暂存的更新属于那个会话，保留给它
+     */
+    private void applyHeldUpdates() {
+        if (requestedSession != shownSession || heldUpdates.isEmpty()) {
+            return;
+        }
+        List<String> held = new ArrayList<>(heldUpdates);
+        heldUpdates.clear();
+        for (String data : held) {
+            try {
+                applyUpdateData(data);
+            } catch (JSONException e) {
+                Log.e(TAG, "应用暂存的译文更新失败", e);
+            }
+        }
+    }
+
+    private void applyUpdateData(String data) throws JSONException {
+        long parseStartNs = StageTrace.begin(LatencyStats.STAGE_OVERLAY_PARSE);
+        JSONObject jsonObject = new JSONObject(data);
+        JSONArray updates = jsonObject.optJSONArray("updates");
+        Map<Integer, String> translations = new HashMap<>();
+        if (updates != null) {
+            for (int i = 0; i < updates.length(); i++) {
+                JSONObject update = updates.getJSONObject(i);
+                translations.put(update.getInt("id"), update.getString("translatedText"));
+            }
+        }
+        boolean isFinal = jsonObject.optBoolean("final", false);
+        StageTrace.end(LatencyStats.STAGE_OVERLAY_PARSE, parseStartNs);
+        if (isFinal) {
+            partial = false;
+        }
+
+        for (TranslationMaskItem item : maskItems) {
+            String translated = translations.get(item.id);
+            if (translated != null) {
+                item.translatedText = translated;
+                item.pending = false;
+            } else if (isFinal && item.pending) {
+                item.translatedText = item.originalText;
+                item.pending = false;
+            } else {
+                continue;
+            }
+            if (item.textView != null) {
+                bindText(item.textView, item);
+            }
+        }
+        finishEndToEndTrace();
+    }
+
     /**
      * 解析翻译数据
      */
@@ -197,6 +371,14 @@ public class TranslationOverlayService extends Service {
         maskItems.clear();
         
         JSONObject jsonObject = new JSONObject(data);
+        // 触发本次翻译的悬浮球事件时刻，没有时为 0；同一次翻译重新显示蒙版（流式 OCR 追加了块）时
+        // 沿用进行中的计时，已结束的计时不再重新开始
+        long startMs = jsonObject.optLong("traceStartMs", 0);
+        if (startMs != traceStartMs) {
+            traceStartMs = startMs == finishedTraceStartMs ? 0 : startMs;
+            firstTranslationTraced = false;
+        }
+        partial = jsonObject.optBoolean("partial", false);
         if (jsonObject.has("items") && jsonObject.get("items") instanceof JSONArray) {
             JSONArray itemsArray = jsonObject.getJSONArray("items");
             for (int i = 0; i < itemsArray.length(); i++) {
@@ -211,9 +393,11 @@ public class TranslationOverlayService extends Service {
                     
                     String translatedText = item.getString("translatedText");
                     String originalText = item.optString("originalText", "");
+                    int id = item.optInt("id", i);
+                    boolean pending = item.optBoolean("pending", false);
                     
                     Rect rect = new Rect(left, top, left + width, top + height);
-                    TranslationMaskItem maskItem = new TranslationMaskItem(rect, translatedText, originalText);
+                    TranslationMaskItem maskItem = new TranslationMaskItem(rect, translatedText, originalText, id, pending);
                     maskItems.add(maskItem);
                 }
             }
@@ -295,8 +479,8 @@ public class TranslationOverlayService extends Service {
                 maskItemView.setBackgroundColor(0x66000000); // 40%透明度黑色
                 // 创建译文文本
                 TextView textView = new TextView(this);
-                textView.setText(item.translatedText);
-                textView.setTextColor(0xFFFFFFFF); // 白色
+                item.textView = textView;
+                bindText(textView, item);
                 // 调整文本大小，使其更易读
                 textView.setTextSize(Math.max(14, item.bbox.height() * 0.2f));
                 textView.setGravity(Gravity.LEFT | Gravity.CENTER_VERTICAL);
@@ -329,6 +513,19 @@ public class TranslationOverlayService extends Service {
         }
     }
     
+    /**
+     * 按项的状态设置文字：待填入的项以半透明文字显示原文作为占位，译文到达后换成白色译文
+     */
+    private void bindText(TextView textView, TranslationMaskItem item) {
+        if (item.pending) {
+            textView.setText(item.originalText);
+            textView.setTextColor(0x99FFFFFF); // 60%不透明的白色
+        } else {
+            textView.setText(item.translatedText);
+            textView.setTextColor(0xFFFFFFFF); // 白色
+        }
+    }
+
     /**
      * 关闭译文蒙版
      */
@@ -355,6 +552,11 @@ public class TranslationOverlayService extends Service {
     
     @Override
     public void onDestroy() {
+        if (instance == this) {
+            instance = null;
+        }
+        // 没有更晚的会话在等待显示时，本会话之后的更新返回 false，由 Flutter 端重新显示蒙版
+        abandonSession(shownSession);
         // 通知悬浮球服务，遮罩已关闭
         // 将广播限定在应用内
         Intent hiddenIntent = new Intent(ACTION_OVERLAY_HIDDEN);
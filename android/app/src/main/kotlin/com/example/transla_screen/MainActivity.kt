@@ -4,8 +4,8 @@ import android.app.Activity
 import android.content.Context
 import android.content.Intent
 import android.content.res.Configuration
-import android.graphics.Bitmap
 import android.graphics.PixelFormat
+import android.graphics.Rect
 import android.hardware.display.DisplayManager
 import android.hardware.display.VirtualDisplay
 import android.media.Image
@@ -16,6 +16,9 @@ import android.os.Build
 import android.os.Handler
 import android.os.HandlerThread
 import android.os.Looper
+import android.os.ParcelFileDescriptor
+import android.os.PowerManager
+import android.os.SystemClock
 import android.util.DisplayMetrics
 import android.util.Log
 import android.view.Surface
@@ -23,42 +26,124 @@ import android.view.WindowManager
 import androidx.annotation.NonNull
 import io.flutter.embedding.android.FlutterActivity
 import io.flutter.embedding.engine.FlutterEngine
+import io.flutter.plugin.common.EventChannel
 import io.flutter.plugin.common.MethodChannel
 import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.util.concurrent.atomic.AtomicLong
 
 class MainActivity : FlutterActivity() {
     private val CHANNEL = "com.example.transla_screen/screen_capture"
+    private val FRAME_STREAM_CHANNEL = "com.example.transla_screen/frame_stream"
     private val REQUEST_CODE_SCREEN_CAPTURE = 1002
     private val TAG = "MainActivityCapture"
 
     private var mediaProjectionManager: MediaProjectionManager? = null
-    private var flutterResultForScreenCapture: MethodChannel.Result? = null
+    // 等待帧的请求；新帧到达时一次满足所有新鲜度要求符合的请求，超时的请求以错误结束
+    private val frameRequests = FrameRequestQueue<MethodChannel.Result>()
+    // 截屏权限请求进行中；期间到达的请求直接入队，会话启动后一起满足
+    private var isPermissionRequestPending = false
+    private val expireFrameRequestsRunnable = Runnable { expireFrameRequests() }
 
     private var mediaProjection: MediaProjection? = null
     private var virtualDisplay: VirtualDisplay? = null
     private var imageReader: ImageReader? = null
+    // 另一方向（宽高互换）的预分配 ImageReader，旋转时只需把 VirtualDisplay 的 surface 换过去
+    private var standbyImageReader: ImageReader? = null
+    // 监听默认屏幕的旋转；Activity 在后台时收不到 onConfigurationChanged
+    private var displayListener: DisplayManager.DisplayListener? = null
 
     // 用于跟踪屏幕尺寸以应对旋转
     private var screenWidth: Int = 0
     private var screenHeight: Int = 0
     private var screenDensity: Int = 0
+    // 当前 ImageReader 中帧的屏幕方向（0/90/180/270 度），只在 imageProcessHandler 线程上修改
+    @Volatile private var captureRotation: Int = 0
 
-    @Volatile private var latestFrameBytes: ByteArray? = null
+    // 截屏缩放：VirtualDisplay/ImageReader 以 screen * captureScale 的分辨率创建，
+    // 像素、编码和上传开销随面积下降；坐标换算信息随帧头返回给 Flutter
+    @Volatile private var captureScale: Float = 1.0f
+    private var captureWidth: Int = 0
+    private var captureHeight: Int = 0
+
+    // 最新一帧的原始像素；只在有请求时才编码，捕获循环本身不做 PNG 压缩
+    // 该引用持有一次 retain，替换时释放回 framePool
+    private var latestFrame: CapturedFrame? = null // 受 frameLock 保护
     private var isCaptureSessionActive = false
 
+    // --- Capture Mode ---
+    // lazy: ImageReader 只保留最新的 Image 引用，有请求时才拷贝像素
+    // eager: 按节流间隔持续拷贝每一帧
+    @Volatile private var captureMode: String = CAPTURE_MODE_LAZY
+    private val frameLock = Any()
+    private var heldImage: Image? = null // 懒加载模式下最新的未拷贝帧，受 frameLock 保护
+    // 帧缓冲池：按屏幕尺寸复用像素缓冲区，旋转时重建
+    private val tileHasher = TileHasher(TileHasher.DEFAULT_TILE_SIZE)
+    private val framePool = FrameBufferPool(4, tileHasher)
+    // 区域截屏使用单独的池，选区尺寸变化时重建
+    private val regionPool = FrameBufferPool(2, tileHasher)
+    // 预处理后写回 RGBA 的帧（源帧可能被其他请求共享，不能原地修改）；预处理器只在转换阶段线程上使用
+    private val preprocessPool = FrameBufferPool(2, tileHasher)
+    private val framePreprocessor = FramePreprocessor()
+    // 按长边上限缩小的帧（云端 OCR 上传）；同样只在转换阶段线程上使用
+    private val scalePool = FrameBufferPool(2, tileHasher)
+    private val frameScaler = FrameScaler()
+    private val frameSequence = AtomicLong() // 整帧在处理线程上、区域帧也可能在转换阶段分配序号
+    private val captureStats = CaptureStats()
+
     // --- Threading and Handler Setup ---
     private val mainHandler: Handler = Handler(Looper.getMainLooper())
     private var imageProcessThread: HandlerThread? = null
     private var imageProcessHandler: Handler? = null // For ImageReader callbacks and VirtualDisplay callbacks
 
-    // --- Frame Throttling ---
-    @Volatile private var lastFrameProcessTimeMs: Long = 0
-    // Process one frame every 150ms (15 FPS). Adjust as needed.
-    // Set to 0 if you want to process every frame (might be CPU intensive).
-    private val FRAME_PROCESS_INTERVAL_MS: Long = 150
+    // --- Frame Scheduling ---
+    // eager 模式下决定哪些帧需要处理：无请求时接近停止，有请求时每帧处理，发热/高负载时退避
+    private val captureScheduler = CaptureScheduler(CaptureScheduler.Clock.SYSTEM)
+    private var thermalStatusListener: PowerManager.OnThermalStatusChangedListener? = null
+
+    companion object {
+        const val CAPTURE_MODE_LAZY = "lazy"
+        const val CAPTURE_MODE_EAGER = "eager"
+        const val MIN_CAPTURE_SCALE = 0.25f
+        const val MAX_CAPTURE_SCALE = 1.0f
+        const val DEFAULT_FRAME_REQUEST_TIMEOUT_MS = 3000L
+        // 流水线各阶段最多积压的推送帧数
+        const val PIPELINE_QUEUE_CAPACITY = 2
+        // Flutter 可同时持有的共享帧数，超出时退回通道拷贝
+        const val SHARED_FRAME_SLOTS = 3
+    }
+
+    // --- Frame Stream ---
+    // 推送帧流：信用背压，无信用时只保留最新一帧（仍在 Image 中，不拷贝）
+    private val frameStream = FrameStreamController()
+    private var frameStreamSink: EventChannel.EventSink? = null // 只在主线程访问
+
+    // --- Frame Pipeline ---
+    // 获取/拷贝 (imageProcessHandler) → 转换 (区域裁剪) → 编码，各阶段在独立线程上运行，
+    // 旧帧编码期间 ImageReader 仍能及时取到新帧；阶段之间按帧序号交接，积压时丢弃最旧的推送帧
+    private val convertStage = PipelineStage<FrameJob>("FrameConvert", PIPELINE_QUEUE_CAPACITY) { convertFrameJob(it) }
+    private val encodeStage = PipelineStage<FrameJob>("FrameEncode", PIPELINE_QUEUE_CAPACITY) { encodeFrameJob(it) }
 
     // --- Reusable Objects ---
+    // 以下对象只在编码阶段的线程上使用
     private val reusableOutputStream = ByteArrayOutputStream()
+    // 每种格式一个编码器，由请求方按需选择（raw / png / jpeg / webp）
+    private val frameEncoders = FrameEncoders.createDefault()
+
+    // --- Shared Frame Transport ---
+    // shared: raw 帧写入与 Flutter 共享的 mmap 槽位，通道上只传槽位描述；channel: 像素随消息序列化
+    @Volatile private var frameTransport: String = SharedFrameRing.TRANSPORT_CHANNEL
+    private val sharedFrameRing by lazy {
+        SharedFrameRing(File(cacheDir, "shared_frames"), SHARED_FRAME_SLOTS) { file ->
+            val pfd = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY)
+            object : SharedFrameRing.Descriptor {
+                override fun getFd(): Int = pfd.fd
+                override fun close() = pfd.close()
+            }
+        }
+    }
 
     // --- 原生悬浮窗插件 ---
     private val nativeOverlayPlugin = NativeOverlayPlugin()
@@ -70,9 +155,7 @@ class MainActivity : FlutterActivity() {
             Log.w(TAG, "MediaProjection.Callback onStop() called.")
             // Ensure UI/Flutter interaction happens on main thread
             mainHandler.post {
-                val resultToNotify = this@MainActivity.flutterResultForScreenCapture
-                this@MainActivity.flutterResultForScreenCapture = null
-                resultToNotify?.error("PROJECTION_STOPPED", "MediaProjection stopped unexpectedly.", null)
+                failAllFrameRequests("PROJECTION_STOPPED", "MediaProjection stopped unexpectedly.")
                 // Call cleanup, but avoid recursive calls if onStop is part of cleanup
                 if (isCaptureSessionActive) { // only if it was active
                     cleanUpScreenCaptureResources(true)
@@ -96,56 +179,196 @@ class MainActivity : FlutterActivity() {
             imageProcessHandler = Handler(looper)
         }
         Log.d(TAG, "ImageProcessingThread started.")
+        registerThermalStatusListener()
 
         MethodChannel(flutterEngine.dartExecutor.binaryMessenger, CHANNEL).setMethodCallHandler { call, result ->
             when (call.method) {
                 "startScreenCapture" -> {
-                    Log.d(TAG, "startScreenCapture method call received.")
-                    val currentFrame = latestFrameBytes // Read volatile once
-                    if (isCaptureSessionActive && currentFrame != null) {
-                        Log.d(TAG, "Capture session active and frame available. Returning latest frame.")
-                        result.success(currentFrame.clone()) // Send a clone
-                    } else if (isCaptureSessionActive && currentFrame == null) {
-                        Log.d(TAG, "Capture session active but no frame yet. Waiting for next frame.")
-                        if (this.flutterResultForScreenCapture != null && this.flutterResultForScreenCapture != result) {
-                            Log.w(TAG, "startScreenCapture: Another FlutterResult is already pending for a frame. Overwriting previous.")
-                            // Optionally, error out the previous or current request.
-                            // this.flutterResultForScreenCapture?.error("SUPERSEDED", "Request superseded by new one.", null)
-                        }
-                        this.flutterResultForScreenCapture = result
+                    val format = call.argument<String>("format") ?: CapturedFrame.FORMAT_PNG
+                    if (!frameEncoders.supports(format)) {
+                        result.error("INVALID_ARGS", "Unsupported frame format: $format", null)
+                        return@setMethodCallHandler
+                    }
+                    // 有损格式 (jpeg / webp) 的编码质量
+                    val quality = (call.argument<Number>("quality")?.toInt() ?: FrameEncoder.DEFAULT_QUALITY).coerceIn(1, 100)
+                    // 调用方已持有的内容序号；最新帧内容与之相同时只返回帧头
+                    val knownContentSequence = call.argument<Number>("knownContentSequence")?.toLong()
+                    // 只截取屏幕上的某个区域（屏幕坐标 l/t/r/b），裁剪在拷贝像素时完成
+                    val region = parseRegion(call.argument<Map<String, Number>>("region"))
+                    // 新鲜度：newerThanMs (epoch 毫秒) 之后的帧才可接受；缺省时任意缓存帧均可
+                    val minTimestampNs = toFrameTimestampNs(call.argument<Number>("newerThanMs")?.toLong())
+                    val timeoutMs = call.argument<Number>("timeoutMs")?.toLong() ?: DEFAULT_FRAME_REQUEST_TIMEOUT_MS
+                    // OCR 预处理：灰度 / 对比度拉伸 / 二值化，在流水线的转换阶段完成
+                    val preprocess = call.argument<String>("preprocess") ?: FramePreprocessor.MODE_NONE
+                    if (!FramePreprocessor.isSupported(preprocess)) {
+                        result.error("INVALID_ARGS", "Unsupported preprocess mode: $preprocess", null)
+                        return@setMethodCallHandler
+                    }
+                    // 长边上限：超过时在转换阶段缩小后再编码，0 表示保持截屏分辨率
+                    val maxEdge = Math.max(0, call.argument<Number>("maxEdge")?.toInt() ?: 0)
+                    Log.d(TAG, "startScreenCapture method call received. Format: $format ($quality), preprocess: $preprocess, maxEdge: $maxEdge, region: $region, minTimestampNs: $minTimestampNs")
+                    captureScheduler.onRequestReceived()
+                    val handler = imageProcessHandler
+                    val requestBuilder = FrameRequestQueue.Request.builder(result, format)
+                        .quality(quality)
+                        .region(region)
+                        .preprocess(preprocess)
+                        .maxEdge(maxEdge)
+                        .knownContentSequence(knownContentSequence)
+                        .minTimestampNs(minTimestampNs)
+                    if (isCaptureSessionActive && handler != null) {
+                        val request = requestBuilder.deadlineMs(SystemClock.uptimeMillis() + timeoutMs).build()
+                        // 在处理线程上按需拷贝最新帧；没有满足要求的帧时入队等待
+                        handler.post { handleFrameRequest(request) }
                     } else { // Session not active or first call
-                        Log.d(TAG, "Capture session not active. Initiating permission request.")
-                        if (this.flutterResultForScreenCapture != null) {
-                            Log.w(TAG, "startScreenCapture: Another permission request is already pending. Aborting new request.")
-                            result.error("ALREADY_PENDING_PERMISSION", "A screen capture permission request is already in progress.", null)
+                        // 等待用户授权的时间不计入超时
+                        frameRequests.add(requestBuilder.build())
+                        if (isPermissionRequestPending) {
+                            Log.d(TAG, "startScreenCapture: Permission request already in progress. Request queued (${frameRequests.size()} waiting).")
                             return@setMethodCallHandler
                         }
-                        this.flutterResultForScreenCapture = result
+                        Log.d(TAG, "Capture session not active. Initiating permission request.")
                         if (mediaProjectionManager != null) {
+                            isPermissionRequestPending = true
                             startActivityForResult(mediaProjectionManager!!.createScreenCaptureIntent(), REQUEST_CODE_SCREEN_CAPTURE)
                         } else {
                             Log.e(TAG, "MediaProjectionManager is null.")
-                            val res = this.flutterResultForScreenCapture
-                            this.flutterResultForScreenCapture = null
-                            res?.error("UNAVAILABLE", "MediaProjectionManager not available.", null)
+                            failAllFrameRequests("UNAVAILABLE", "MediaProjectionManager not available.")
                         }
                     }
                 }
+                "setCaptureMode" -> {
+                    val mode = call.argument<String>("mode")
+                    if (mode != CAPTURE_MODE_LAZY && mode != CAPTURE_MODE_EAGER) {
+                        result.error("INVALID_ARGS", "Unknown capture mode: $mode", null)
+                        return@setMethodCallHandler
+                    }
+                    Log.d(TAG, "Capture mode set to $mode")
+                    captureMode = mode
+                    if (mode == CAPTURE_MODE_EAGER) {
+                        imageProcessHandler?.post { releaseHeldImage() }
+                    }
+                    result.success(true)
+                }
+                "setCaptureScale" -> {
+                    val scale = call.argument<Number>("scale")?.toFloat()
+                    if (scale == null || scale.isNaN()) {
+                        result.error("INVALID_ARGS", "Missing capture scale.", null)
+                        return@setMethodCallHandler
+                    }
+                    val clamped = scale.coerceIn(MIN_CAPTURE_SCALE, MAX_CAPTURE_SCALE)
+                    if (clamped != captureScale) {
+                        Log.d(TAG, "Capture scale changed: $captureScale -> $clamped")
+                        captureScale = clamped
+                        if (isCaptureSessionActive) {
+                            setupContinuousCapture()
+                        }
+                    }
+                    result.success(true)
+                }
+                "setFrameTransport" -> {
+                    val transport = call.argument<String>("transport")
+                    if (transport != SharedFrameRing.TRANSPORT_CHANNEL && transport != SharedFrameRing.TRANSPORT_SHARED) {
+                        result.error("INVALID_ARGS", "Unknown frame transport: $transport", null)
+                        return@setMethodCallHandler
+                    }
+                    Log.d(TAG, "Frame transport set to $transport")
+                    frameTransport = transport
+                    result.success(true)
+                }
+                "releaseSharedFrame" -> {
+                    // Flutter 用完共享帧后归还槽位
+                    val slot = call.argument<Number>("slot")?.toInt()
+                    val generation = call.argument<Number>("generation")?.toLong()
+                    if (slot == null || generation == null) {
+                        result.error("INVALID_ARGS", "Missing slot or generation.", null)
+                        return@setMethodCallHandler
+                    }
+                    result.success(sharedFrameRing.release(slot, generation))
+                }
+                "grantFrameCredits" -> {
+                    // Flutter 处理完帧后归还信用；有未发送的最新帧时立即发送
+                    val credits = call.argument<Number>("credits")?.toInt() ?: 1
+                    if (frameStream.grantCredits(credits)) {
+                        imageProcessHandler?.post { sendUndeliveredStreamFrame() }
+                    }
+                    result.success(true)
+                }
+                "getFrameStreamStats" -> {
+                    result.success(frameStream.toMap(System.currentTimeMillis()))
+                }
+                "getLatencyStats" -> {
+                    result.success(LatencyStats.getInstance().toMap())
+                }
+                "recordLatency" -> {
+                    // Flutter 端测得的阶段耗时（通道传输、OCR、翻译）并入同一份统计
+                    val stage = call.argument<String>("stage")
+                    val durationMs = call.argument<Number>("durationMs")?.toDouble()
+                    if (stage == null || durationMs == null) {
+                        result.error("INVALID_ARGS", "Missing stage or durationMs.", null)
+                        return@setMethodCallHandler
+                    }
+                    LatencyStats.getInstance().record(stage, durationMs)
+                    result.success(true)
+                }
+                "resetLatencyStats" -> {
+                    LatencyStats.getInstance().reset()
+                    result.success(true)
+                }
+                "getCaptureStats" -> {
+                    val stats = captureStats.toMap(captureMode)
+                    stats.putAll(captureScheduler.toMap())
+                    stats.putAll(convertStage.toMap("convert"))
+                    stats.putAll(encodeStage.toMap("encode"))
+                    sharedFrameRing.putStats(stats)
+                    result.success(stats)
+                }
                 else -> {
                     result.notImplemented()
                 }
             }
         }
         Log.d(TAG, "MethodChannel for screen_capture configured.")
+
+        EventChannel(flutterEngine.dartExecutor.binaryMessenger, FRAME_STREAM_CHANNEL).setStreamHandler(
+            object : EventChannel.StreamHandler {
+                override fun onListen(arguments: Any?, events: EventChannel.EventSink) {
+                    val args = arguments as? Map<*, *>
+                    val format = args?.get("format") as? String ?: CapturedFrame.FORMAT_RAW
+                    if (!frameEncoders.supports(format)) {
+                        events.error("INVALID_ARGS", "Unsupported frame format: $format", null)
+                        return
+                    }
+                    val quality = ((args?.get("quality") as? Number)?.toInt() ?: FrameEncoder.DEFAULT_QUALITY).coerceIn(1, 100)
+                    @Suppress("UNCHECKED_CAST")
+                    val region = parseRegion(args?.get("region") as? Map<String, Number>)
+                    val initialCredits = (args?.get("initialCredits") as? Number)?.toInt() ?: 1
+                    val skipUnchanged = args?.get("skipUnchanged") as? Boolean ?: true
+                    Log.d(TAG, "Frame stream started. Format: $format, region: $region, credits: $initialCredits")
+                    frameStreamSink = events
+                    frameStream.start(format, quality, region, initialCredits, skipUnchanged, System.currentTimeMillis())
+                    // 截屏会话已有帧时立即发送当前帧，否则等待会话的下一帧；没有帧时不计入产生的帧数
+                    imageProcessHandler?.post {
+                        val hasFrame = synchronized(frameLock) { heldImage != null || latestFrame != null }
+                        if (hasFrame && frameStream.onFrameProduced()) sendUndeliveredStreamFrame()
+                    }
+                }
+
+                override fun onCancel(arguments: Any?) {
+                    Log.d(TAG, "Frame stream cancelled. Stats: ${frameStream.toMap(System.currentTimeMillis())}")
+                    frameStream.stop()
+                    frameStreamSink = null
+                }
+            }
+        )
     }
 
     override fun onActivityResult(requestCode: Int, resultCode: Int, data: Intent?) {
         super.onActivityResult(requestCode, resultCode, data)
         Log.d(TAG, "onActivityResult: requestCode=$requestCode, resultCode=$resultCode")
 
-        val currentPendingResult = this.flutterResultForScreenCapture // Capture before any async operation
-        if (currentPendingResult == null) {
-            Log.w(TAG, "onActivityResult: flutterResultForScreenCapture is null. This might happen if request timed out or activity was recreated. No action taken.")
+        if (!isPermissionRequestPending) {
+            Log.w(TAG, "onActivityResult: No permission request pending. This might happen if the activity was recreated. No action taken.")
             // If we successfully got permission but the result handler is gone, we might have started a service
             // that needs stopping if it's not intended to run indefinitely.
             if (resultCode == Activity.RESULT_OK) {
@@ -163,17 +386,16 @@ class MainActivity : FlutterActivity() {
 
                 // 延迟是为了确保服务启动和MediaProjection准备就绪
                 mainHandler.post {
-                     if (this@MainActivity.flutterResultForScreenCapture != currentPendingResult) {
-                        Log.w(TAG, "onActivityResult: flutterResultForScreenCapture changed or nulled during delay. Aborting projection setup.")
+                    if (!isPermissionRequestPending) {
+                        Log.w(TAG, "onActivityResult: Permission request was cancelled during delay. Aborting projection setup.")
                         return@post
                     }
+                    isPermissionRequestPending = false
                     try {
                         mediaProjection = this@MainActivity.mediaProjectionManager?.getMediaProjection(finalResultCode, finalData)
                         if (mediaProjection == null) {
                             Log.e(TAG, "getMediaProjection returned null even after service start.")
-                            val result = this@MainActivity.flutterResultForScreenCapture
-                            this@MainActivity.flutterResultForScreenCapture = null
-                            result?.error("PROJECTION_ERROR", "Failed to get MediaProjection post-service-start.", null)
+                            failAllFrameRequests("PROJECTION_ERROR", "Failed to get MediaProjection post-service-start.")
                             cleanUpScreenCaptureResources(true)
                             return@post
                         }
@@ -182,23 +404,18 @@ class MainActivity : FlutterActivity() {
                         setupContinuousCapture()
                     } catch (e: SecurityException) {
                         Log.e(TAG, "SecurityException when getting MediaProjection: ${e.message}", e)
-                        val result = this@MainActivity.flutterResultForScreenCapture
-                        this@MainActivity.flutterResultForScreenCapture = null
-                        result?.error("SECURITY_EXCEPTION_POST_SERVICE", "SecurityException: ${e.message}", null)
+                        failAllFrameRequests("SECURITY_EXCEPTION_POST_SERVICE", "SecurityException: ${e.message}")
                         cleanUpScreenCaptureResources(true)
                     } catch (e: Exception) {
                         Log.e(TAG, "Generic Exception when getting MediaProjection: ${e.message}", e)
-                        val result = this@MainActivity.flutterResultForScreenCapture
-                        this@MainActivity.flutterResultForScreenCapture = null
-                        result?.error("EXCEPTION_POST_SERVICE", "Exception: ${e.message}", null)
+                        failAllFrameRequests("EXCEPTION_POST_SERVICE", "Exception: ${e.message}")
                         cleanUpScreenCaptureResources(true)
                     }
                 }
             } else {
                 Log.w(TAG, "Screen capture permission denied by user or cancelled. Result code: $resultCode")
-                val result = this.flutterResultForScreenCapture
-                this.flutterResultForScreenCapture = null
-                result?.error("USER_DENIED", "Screen capture permission denied by user.", null)
+                isPermissionRequestPending = false
+                failAllFrameRequests("USER_DENIED", "Screen capture permission denied by user.")
             }
         } else {
             Log.d(TAG, "onActivityResult received for requestCode $requestCode, not SCREEN_CAPTURE. Ignoring.")
@@ -208,9 +425,7 @@ class MainActivity : FlutterActivity() {
     private fun setupContinuousCapture() {
         if (mediaProjection == null || imageProcessHandler == null) {
             Log.e(TAG, "setupContinuousCapture: MediaProjection is null or imageProcessHandler not ready.")
-            val result = this.flutterResultForScreenCapture
-            this.flutterResultForScreenCapture = null // Clear it
-            mainHandler.post { result?.error("INTERNAL_ERROR_SETUP", "MediaProjection became null or handler not ready.", null) }
+            failAllFrameRequests("INTERNAL_ERROR_SETUP", "MediaProjection became null or handler not ready.")
             cleanUpScreenCaptureResources(true)
             return
         }
@@ -231,25 +446,55 @@ class MainActivity : FlutterActivity() {
         val newScreenWidth = displayMetrics.widthPixels
         val newScreenHeight = displayMetrics.heightPixels
         val newScreenDensity = displayMetrics.densityDpi
+        val newRotation = rotationDegrees(windowManager.defaultDisplay.rotation)
+        val scale = captureScale
+        val newCaptureWidth = scaledDimension(newScreenWidth, scale)
+        val newCaptureHeight = scaledDimension(newScreenHeight, scale)
+        val newCaptureDensity = Math.max(1, (newScreenDensity * scale).toInt())
 
-        // 检查屏幕尺寸是否变化，避免不必要的重新创建
-        if (newScreenWidth == screenWidth && newScreenHeight == screenHeight && imageReader != null) {
-             Log.d(TAG, "Screen dimensions have not changed. Skipping reconfiguration.")
+        // 检查屏幕尺寸和缩放是否变化，避免不必要的重新创建
+        if (newScreenWidth == screenWidth && newScreenHeight == screenHeight &&
+            newCaptureWidth == captureWidth && newCaptureHeight == captureHeight && imageReader != null) {
+             if (newRotation != captureRotation) {
+                 // 180 度翻转：尺寸不变，只更新之后帧的方向
+                 imageProcessHandler?.post { captureRotation = newRotation }
+             }
+             Log.d(TAG, "Screen dimensions and capture scale have not changed. Skipping reconfiguration.")
              return
         }
-        
+
+        val display = virtualDisplay
+        if (display != null && isCaptureSessionActive) {
+            // 会话进行中（旋转、缩放变化）：原地调整 VirtualDisplay 尺寸，不中断截屏
+            screenWidth = newScreenWidth
+            screenHeight = newScreenHeight
+            screenDensity = newScreenDensity
+            imageProcessHandler?.post {
+                resizeCapture(display, newCaptureWidth, newCaptureHeight, newCaptureDensity, newRotation)
+            }
+            return
+        }
+
         screenWidth = newScreenWidth
         screenHeight = newScreenHeight
         screenDensity = newScreenDensity
+        captureWidth = newCaptureWidth
+        captureHeight = newCaptureHeight
+        captureRotation = newRotation
 
+        releaseHeldImage()
+        replaceLatestFrame(null)
+        framePool.configure(captureWidth, captureHeight)
         imageReader?.close() // Close existing reader if any
-        imageReader = ImageReader.newInstance(screenWidth, screenHeight, PixelFormat.RGBA_8888, 2 /*maxImages*/)
-        Log.d(TAG, "ImageReader created/recreated with size: $screenWidth x $screenHeight")
+        standbyImageReader?.close()
+        imageReader = newImageReader(captureWidth, captureHeight)
+        standbyImageReader = newImageReader(captureHeight, captureWidth)
+        Log.d(TAG, "ImageReader created/recreated with size: $captureWidth x $captureHeight (screen $screenWidth x $screenHeight, scale $scale)")
 
         virtualDisplay?.release() // Release existing display if any
         virtualDisplay = mediaProjection?.createVirtualDisplay(
             "ContinuousScreenCapture",
-            screenWidth, screenHeight, screenDensity,
+            captureWidth, captureHeight, newCaptureDensity,
             DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR,
             imageReader?.surface,
             null, // VirtualDisplay.Callback (optional)
@@ -258,81 +503,769 @@ class MainActivity : FlutterActivity() {
 
         if (virtualDisplay == null) {
             Log.e(TAG, "Failed to create VirtualDisplay.")
-            val result = this.flutterResultForScreenCapture
-            this.flutterResultForScreenCapture = null // Clear it
-            mainHandler.post { result?.error("VIRTUAL_DISPLAY_FAIL_CONTINUOUS", "Failed to create VirtualDisplay.", null) }
+            failAllFrameRequests("VIRTUAL_DISPLAY_FAIL_CONTINUOUS", "Failed to create VirtualDisplay.")
             cleanUpScreenCaptureResources(true)
             return
         }
         isCaptureSessionActive = true
-        lastFrameProcessTimeMs = 0 // Reset throttling timer for new session
+        captureScheduler.reset() // 新会话重新开始调度节拍
+        captureStats.reset()
+        registerDisplayListener()
         Log.d(TAG, "VirtualDisplay for continuous capture created.")
 
-        imageReader?.setOnImageAvailableListener({ reader ->
-            // This listener now runs on imageProcessHandler (background thread)
-            var image: Image? = null
+        imageReader?.setOnImageAvailableListener(onImageAvailableListener, imageProcessHandler) // Use background handler
+    }
+
+    /**
+     * 截屏尺寸变化时原地调整：VirtualDisplay.resize 后把 surface 换到新尺寸的 ImageReader。
+     * 旋转时直接使用预分配的 standbyImageReader，旧 reader 留作下一次旋转的备用；
+     * 已拷贝的最新帧保留，旋转期间“任意帧”请求仍可立即得到结果。必须在 imageProcessHandler 线程上调用。
+     */
+    private fun resizeCapture(display: VirtualDisplay, width: Int, height: Int, densityDpi: Int, rotation: Int) {
+        if (!isCaptureSessionActive || virtualDisplay !== display) return
+        val previous = imageReader
+        val standby = standbyImageReader
+        val next = if (standby != null && standby.width == width && standby.height == height) {
+            // 丢弃该 reader 上次作为活动 reader 时遗留的旧帧
+            standby.acquireLatestImage()?.close()
+            standbyImageReader = null
+            standby
+        } else {
+            newImageReader(width, height)
+        }
+
+        releaseHeldImage()
+        previous?.setOnImageAvailableListener(null, null)
+        captureWidth = width
+        captureHeight = height
+        captureRotation = rotation
+        framePool.configure(width, height)
+        next.setOnImageAvailableListener(onImageAvailableListener, imageProcessHandler)
+        display.resize(width, height, densityDpi)
+        display.surface = next.surface
+        imageReader = next
+
+        // 旧 reader 恰好是另一方向时留作备用，否则换成新尺寸的备用 reader
+        if (previous != null && previous.width == height && previous.height == width) {
+            standbyImageReader?.close()
+            standbyImageReader = previous
+        } else {
+            previous?.close()
+            if (standbyImageReader?.let { it.width == height && it.height == width } != true) {
+                standbyImageReader?.close()
+                standbyImageReader = newImageReader(height, width)
+            }
+        }
+        Log.d(TAG, "Capture resized in place to $width x $height (rotation $rotation, screen $screenWidth x $screenHeight)")
+    }
+
+    // 懒加载模式会长期持有一帧，因此多留一个槽位给 acquireLatestImage
+    private fun newImageReader(width: Int, height: Int): ImageReader =
+        ImageReader.newInstance(width, height, PixelFormat.RGBA_8888, 3 /*maxImages*/)
+
+    private fun rotationDegrees(surfaceRotation: Int): Int = when (surfaceRotation) {
+        Surface.ROTATION_90 -> 90
+        Surface.ROTATION_180 -> 180
+        Surface.ROTATION_270 -> 270
+        else -> 0
+    }
+
+    /**
+     * 默认屏幕变化（旋转）时重新检查截屏尺寸；后台时同样生效
+     */
+    private fun registerDisplayListener() {
+        if (displayListener != null) return
+        val listener = object : DisplayManager.DisplayListener {
+            override fun onDisplayAdded(displayId: Int) {}
+            override fun onDisplayRemoved(displayId: Int) {}
+            override fun onDisplayChanged(displayId: Int) {
+                if (displayId == android.view.Display.DEFAULT_DISPLAY && isCaptureSessionActive) {
+                    setupContinuousCapture()
+                }
+            }
+        }
+        (getSystemService(Context.DISPLAY_SERVICE) as DisplayManager).registerDisplayListener(listener, mainHandler)
+        displayListener = listener
+    }
+
+    private fun unregisterDisplayListener() {
+        val listener = displayListener ?: return
+        (getSystemService(Context.DISPLAY_SERVICE) as DisplayManager).unregisterDisplayListener(listener)
+        displayListener = null
+    }
+
+    private val onImageAvailableListener = ImageReader.OnImageAvailableListener { reader ->
+        // This listener now runs on imageProcessHandler (background thread)
+        var image: Image? = null
+        try {
+            // 只计取帧本身；拷贝、分块哈希和请求交付不计入，避免与转换/编码阶段重叠
+            val acquireStartNs = StageTrace.begin(LatencyStats.STAGE_FRAME_ACQUIRE)
             try {
                 image = reader.acquireLatestImage()
-                if (image == null) {
-                    // Log.v(TAG, "OnImageAvailable: acquireLatestImage returned null.")
-                    return@setOnImageAvailableListener
-                }
-
-                // Frame Throttling
-                if (FRAME_PROCESS_INTERVAL_MS > 0) {
-                    val currentTimeMs = System.currentTimeMillis()
-                    if (currentTimeMs - lastFrameProcessTimeMs < FRAME_PROCESS_INTERVAL_MS) {
-                        image.close() // MUST close the image even if not processing
-                        // Log.v(TAG, "OnImageAvailable: Frame skipped due to throttling.")
-                        return@setOnImageAvailableListener
+            } finally {
+                StageTrace.end(LatencyStats.STAGE_FRAME_ACQUIRE, acquireStartNs)
+            }
+            if (image == null) {
+                // Log.v(TAG, "OnImageAvailable: acquireLatestImage returned null.")
+                return@OnImageAvailableListener
+            }
+            if (reader !== imageReader) {
+                // 尺寸切换前已排队的回调，来自已换下的 reader
+                return@OnImageAvailableListener
+            }
+            captureStats.onFrameAcquired()
+
+            // 满足所有等待中且可以接受这一帧的请求（首帧、或在等待更新的帧）
+            val satisfied = frameRequests.takeSatisfiedBy(image.timestamp)
+            if (satisfied.isNotEmpty()) {
+                Log.d(TAG, "OnImageAvailable: Fulfilling ${satisfied.size} pending frame request(s).")
+                scheduleFrameRequestExpiry()
+                if (satisfied.any { it.isFullFrame }) {
+                    // 只拷贝一次整帧，区域请求也从这份拷贝中裁剪
+                    releaseHeldImage()
+                    val frame = materializeFrame(image)
+                    if (frameStream.onFrameProduced()) {
+                        sendStreamFrame(frame.retain(), frameStream.region as Rect?)
                     }
-                    lastFrameProcessTimeMs = currentTimeMs
+                    fulfilFrameRequests(satisfied, frame.retain(), null)
+                    return@OnImageAvailableListener
                 }
+                // 只有区域请求：直接从 Image 裁剪，之后照常持有/处理这一帧
+                fulfilFrameRequests(satisfied, null, image)
+            }
 
-                val planes = image.planes
-                val buffer = planes[0].buffer
-                val pixelStride = planes[0].pixelStride
-                val rowStride = planes[0].rowStride
-                val rowPadding = rowStride - pixelStride * screenWidth // In bytes
+            if (frameStream.isActive) {
+                if (frameStream.onFrameProduced()) {
+                    streamFrameFromImage(image)
+                    return@OnImageAvailableListener
+                }
+                // 没有信用：只持有最新的 Image，信用恢复时再拷贝；被替换的帧计为丢弃
+                synchronized(frameLock) {
+                    heldImage?.close()
+                    heldImage = image
+                }
+                image = null // Ownership moved to heldImage
+                return@OnImageAvailableListener
+            }
 
-                val paddedBitmap: Bitmap
-                val finalBitmap: Bitmap
+            if (captureMode == CAPTURE_MODE_LAZY) {
+                // 只替换引用，不拷贝不编码；旧帧立即归还给 ImageReader
+                synchronized(frameLock) {
+                    heldImage?.close()
+                    heldImage = image
+                }
+                image = null // Ownership moved to heldImage
+                return@OnImageAvailableListener
+            }
 
-                val bitmapWidthWithPadding = screenWidth + rowPadding / pixelStride
-                paddedBitmap = Bitmap.createBitmap(bitmapWidthWithPadding, screenHeight, Bitmap.Config.ARGB_8888)
-                paddedBitmap.copyPixelsFromBuffer(buffer)
+            // 自适应调度：由 captureScheduler 决定本帧是否处理
+            if (!captureScheduler.shouldProcessFrame()) {
+                // Log.v(TAG, "OnImageAvailable: Frame skipped by scheduler.")
+                return@OnImageAvailableListener
+            }
+            val startMs = SystemClock.elapsedRealtime()
+            materializeFrame(image)
+            captureScheduler.recordProcessingTime(SystemClock.elapsedRealtime() - startMs)
+        } catch (e: Exception) {
+            Log.e(TAG, "Exception in OnImageAvailableListener: ${e.message}", e)
+            // Consider more robust error handling, e.g., stopping capture on repeated errors.
+        } finally {
+            image?.close() // CRUCIAL: Always close the image in a finally block
+        }
+    }
 
-                if (rowPadding > 0 || bitmapWidthWithPadding > screenWidth) { // Check if actual width from buffer was larger
-                    finalBitmap = Bitmap.createBitmap(paddedBitmap, 0, 0, screenWidth, screenHeight)
-                    paddedBitmap.recycle()
-                } else {
-                    finalBitmap = paddedBitmap
+    /**
+     * 按缩放比例计算截屏尺寸，取偶数以兼容编码器对齐要求
+     */
+    private fun scaledDimension(size: Int, scale: Float): Int {
+        val scaled = Math.round(size * scale)
+        return Math.max(2, scaled - scaled % 2)
+    }
+
+    /**
+     * 把 Image 的像素拷贝到池中的帧并缓存为最新帧。只拷贝，不编码。
+     * 返回的帧由 latestFrame 持有，调用方如需跨线程使用必须自行 retain。
+     */
+    private fun materializeFrame(image: Image): CapturedFrame {
+        if (image.width != captureWidth || image.height != captureHeight) {
+            framePool.configure(image.width, image.height)
+        }
+        val plane = image.planes[0]
+        val frame = framePool.acquire()
+        frame.copyFrom(plane.buffer, plane.rowStride, image.timestamp)
+        frame.screenWidth = screenWidth
+        frame.screenHeight = screenHeight
+        frame.rotation = captureRotation
+        frame.sourceWidth = frame.width
+        frame.sourceHeight = frame.height
+        frame.offsetX = 0
+        frame.offsetY = 0
+        analyzeFrameChanges(frame)
+        replaceLatestFrame(frame)
+        captureStats.onFrameMaterialized()
+        return frame
+    }
+
+    /**
+     * 解析 Flutter 传入的区域参数 {l, t, r, b}（屏幕坐标）
+     */
+    private fun parseRegion(args: Map<String, Number>?): Rect? {
+        if (args == null) return null
+        val l = args["l"]?.toInt() ?: return null
+        val t = args["t"]?.toInt() ?: return null
+        val r = args["r"]?.toInt() ?: return null
+        val b = args["b"]?.toInt() ?: return null
+        return Rect(l, t, r, b)
+    }
+
+    /**
+     * 从整帧缓冲区中只拷贝选定区域，返回引用计数为 1 的区域帧；区域与画面不相交时返回 null。
+     * 区域帧不参与整帧的变化检测，也不会替换 latestFrame。
+     * 处理线程（从 Image 裁剪）和转换阶段（从已拷贝的整帧裁剪）都会调用。
+     *
+     * @param region 屏幕坐标，按截屏缩放比例换算到帧坐标（向外取整）
+     * @param sourceScreenWidth 源帧截取时的屏幕尺寸及方向；从旋转前缓存的整帧裁剪时与当前值不同
+     */
+    private fun cropFrame(source: ByteBuffer, sourceRowStride: Int, sourceWidth: Int, sourceHeight: Int,
+                          timestampNs: Long, region: Rect, sourceScreenWidth: Int = screenWidth,
+                          sourceScreenHeight: Int = screenHeight, rotation: Int = captureRotation): CapturedFrame? {
+        val sx = if (sourceScreenWidth > 0) sourceWidth.toFloat() / sourceScreenWidth else 1f
+        val sy = if (sourceScreenHeight > 0) sourceHeight.toFloat() / sourceScreenHeight else 1f
+        val crop = Rect(
+            Math.floor((region.left * sx).toDouble()).toInt(),
+            Math.floor((region.top * sy).toDouble()).toInt(),
+            Math.ceil((region.right * sx).toDouble()).toInt(),
+            Math.ceil((region.bottom * sy).toDouble()).toInt()
+        )
+        if (!crop.intersect(0, 0, sourceWidth, sourceHeight) || crop.isEmpty) {
+            return null
+        }
+        val frame = synchronized(regionPool) {
+            regionPool.configure(crop.width(), crop.height())
+            regionPool.acquire()
+        }
+        frame.copyFrom(source, sourceRowStride, crop.left, crop.top, timestampNs)
+        frame.screenWidth = sourceScreenWidth
+        frame.screenHeight = sourceScreenHeight
+        frame.rotation = rotation
+        frame.sourceWidth = sourceWidth
+        frame.sourceHeight = sourceHeight
+        frame.offsetX = crop.left
+        frame.offsetY = crop.top
+        frame.sequence = frameSequence.incrementAndGet()
+        frame.contentSequence = frame.sequence
+        frame.unchanged = false
+        frame.dirtyRects = intArrayOf(0, 0, frame.width, frame.height)
+        captureStats.onFrameMaterialized()
+        return frame
+    }
+
+    /**
+     * 计算分块哈希并与上一帧比较，填充 sequence / contentSequence / unchanged / dirtyRects
+     */
+    private fun analyzeFrameChanges(frame: CapturedFrame) {
+        tileHasher.hash(frame.pixelIntView(), frame.width, frame.height, frame.width, frame.tileHashes)
+        frame.hashedTileSize = tileHasher.tileSize
+        frame.sequence = frameSequence.incrementAndGet()
+        synchronized(frameLock) {
+            val previous = latestFrame
+            if (previous != null && previous.width == frame.width && previous.height == frame.height) {
+                frame.dirtyRects = tileHasher.dirtyRects(previous.tileHashes, frame.tileHashes, frame.width, frame.height)
+                frame.unchanged = frame.dirtyRects.isEmpty()
+                frame.contentSequence = if (frame.unchanged) previous.contentSequence else frame.sequence
+            } else {
+                frame.dirtyRects = intArrayOf(0, 0, frame.width, frame.height)
+                frame.unchanged = false
+                frame.contentSequence = frame.sequence
+            }
+        }
+    }
+
+    private fun replaceLatestFrame(frame: CapturedFrame?) {
+        synchronized(frameLock) {
+            val previous = latestFrame
+            latestFrame = frame
+            previous?.release()
+        }
+    }
+
+    /**
+     * 处理一次帧请求，必须在 imageProcessHandler 线程上调用。
+     * 已有满足新鲜度要求的帧（持有的 Image 或缓存帧）时立即交付，否则入队等待新帧或超时。
+     * 懒加载模式下只有这里才会拷贝持有的 Image；区域请求直接从 Image 裁剪，不消耗它。
+     */
+    private fun handleFrameRequest(request: FrameRequestQueue.Request<MethodChannel.Result>) {
+        try {
+            if (request.isFullFrame) {
+                materializeHeldImage()
+                val frame = synchronized(frameLock) {
+                    latestFrame?.takeIf { request.acceptsFrame(it.timestampNs) }?.retain()
+                }
+                if (frame != null) {
+                    Log.d(TAG, "Capture session active and frame available. Returning latest frame.")
+                    fulfilFrameRequests(listOf(request), frame, null)
+                    return
                 }
+            } else {
+                var served = false
+                synchronized(frameLock) {
+                    val image = heldImage
+                    val cached = latestFrame
+                    if (image != null && request.acceptsFrame(image.timestamp)) {
+                        fulfilFrameRequests(listOf(request), null, image)
+                        served = true
+                    } else if (cached != null && request.acceptsFrame(cached.timestampNs)) {
+                        fulfilFrameRequests(listOf(request), cached.retain(), null)
+                        served = true
+                    }
+                }
+                if (served) return
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to serve frame request: ${e.message}", e)
+            failFrameRequests(listOf(request), "FRAME_ENCODE_FAILED", "Failed to serve frame: ${e.message}")
+            return
+        }
 
-                reusableOutputStream.reset()
-                finalBitmap.compress(Bitmap.CompressFormat.PNG, 90, reusableOutputStream) // Quality 90
-                val newFrameBytes = reusableOutputStream.toByteArray()
-                finalBitmap.recycle()
+        frameRequests.add(request)
+        Log.d(TAG, "No acceptable frame yet. Request queued (${frameRequests.size()} waiting).")
+        scheduleFrameRequestExpiry()
+    }
 
-                this@MainActivity.latestFrameBytes = newFrameBytes // Update volatile variable
-                // Log.d(TAG, "OnImageAvailable: New frame processed, size: ${newFrameBytes.size}")
+    /**
+     * 懒加载模式下把持有的 Image 拷贝为最新帧
+     */
+    private fun materializeHeldImage() {
+        try {
+            synchronized(frameLock) {
+                val image = heldImage
+                if (image != null) {
+                    heldImage = null
+                    try {
+                        materializeFrame(image)
+                    } finally {
+                        image.close()
+                    }
+                }
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to materialize held image: ${e.message}", e)
+        }
+    }
 
-                // If there's a pending Flutter result (e.g., first frame after setup, or waiting for next), fulfill it.
-                val pendingResult = this@MainActivity.flutterResultForScreenCapture
-                if (pendingResult != null) {
-                    Log.d(TAG, "OnImageAvailable: Fulfilling pending Flutter request on main thread.")
-                    this@MainActivity.flutterResultForScreenCapture = null // Clear before posting
-                    mainHandler.post {
-                        pendingResult.success(newFrameBytes.clone()) // Send a clone
+    /**
+     * 用同一帧满足一组请求，必须在 imageProcessHandler 线程上调用。
+     * 按 (格式, 区域) 分组：每组只裁剪/编码一次，再分发给组内所有请求。
+     *
+     * @param fullFrame 已拷贝的整帧（调用方 retain 一次，由本方法释放）；为 null 时区域请求从 image 裁剪
+     * @param image     尚未拷贝的 Image，只在 fullFrame 为 null 时使用，不会被关闭
+     */
+    private fun fulfilFrameRequests(requests: List<FrameRequestQueue.Request<MethodChannel.Result>>,
+                                    fullFrame: CapturedFrame?, image: Image?) {
+        try {
+            for (group in FrameRequestQueue.groupForDelivery(requests)) {
+                val format = group[0].format
+                val quality = group[0].quality
+                val region = group[0].region as Rect?
+                val preprocess = group[0].preprocess
+                val maxEdge = group[0].maxEdge
+                if (region == null) {
+                    val frame = fullFrame ?: continue
+                    // 内容未变化的请求只需帧头
+                    val (headerOnly, needsPayload) = group.partition { it.knownContentSequence == frame.contentSequence }
+                    if (headerOnly.isNotEmpty()) {
+                        Log.d(TAG, "Frame content unchanged for ${headerOnly.size} request(s). Returning header only.")
+                        deliverFrame(headerOnly.map { it.result }, frame.retain(), format, quality, preprocess, maxEdge, headerOnly = true)
                     }
+                    if (needsPayload.isNotEmpty()) {
+                        deliverFrame(needsPayload.map { it.result }, frame.retain(), format, quality, preprocess, maxEdge)
+                    }
+                    continue
+                }
+                if (fullFrame != null) {
+                    // 从已拷贝的整帧裁剪，交给转换阶段完成
+                    deliverFrame(group.map { it.result }, fullFrame.retain(), format, quality, preprocess, maxEdge, region = region)
+                    continue
                 }
+                // Image 在本方法返回后即被关闭/替换，只能在当前线程裁剪
+                val cropped = image?.let {
+                    val plane = it.planes[0]
+                    cropFrame(plane.buffer, plane.rowStride, it.width, it.height, it.timestamp, region)
+                }
+                if (cropped == null) {
+                    failFrameRequests(group, "INVALID_REGION", "Capture region is outside the screen: $region")
+                } else {
+                    Log.d(TAG, "Returning ${cropped.width}x${cropped.height} region at (${cropped.offsetX}, ${cropped.offsetY}) to ${group.size} request(s).")
+                    deliverFrame(group.map { it.result }, cropped, format, quality, preprocess, maxEdge)
+                }
+            }
+        } finally {
+            fullFrame?.release()
+        }
+    }
+
+    private fun failFrameRequests(requests: List<FrameRequestQueue.Request<MethodChannel.Result>>, code: String, message: String) {
+        if (requests.isEmpty()) return
+        requests.forEach { _ -> captureScheduler.onRequestCompleted() }
+        mainHandler.post {
+            for (request in requests) {
+                request.result.error(code, message, null)
+            }
+        }
+    }
+
+    /**
+     * 以错误结束所有等待中的请求（权限被拒、会话结束等）
+     */
+    private fun failAllFrameRequests(code: String, message: String) {
+        val requests = frameRequests.takeAll()
+        if (requests.isNotEmpty()) {
+            Log.w(TAG, "Failing ${requests.size} pending frame request(s): $code")
+        }
+        failFrameRequests(requests, code, message)
+    }
+
+    /**
+     * 在最近的超时时刻检查一次队列；每次队列变化后调用
+     */
+    private fun scheduleFrameRequestExpiry() {
+        val handler = imageProcessHandler ?: return
+        handler.removeCallbacks(expireFrameRequestsRunnable)
+        val nextDeadline = frameRequests.nextDeadlineMs()
+        if (nextDeadline == FrameRequestQueue.NO_DEADLINE) return
+        handler.postAtTime(expireFrameRequestsRunnable, nextDeadline)
+    }
+
+    private fun expireFrameRequests() {
+        val expired = frameRequests.takeExpired(SystemClock.uptimeMillis())
+        if (expired.isNotEmpty()) {
+            Log.w(TAG, "${expired.size} frame request(s) timed out waiting for an acceptable frame.")
+            failFrameRequests(expired, "FRAME_TIMEOUT", "No frame satisfying the request arrived before the timeout.")
+        }
+        scheduleFrameRequestExpiry()
+    }
+
+    /**
+     * 把 epoch 毫秒换算为 Image 时间戳的时基（System.nanoTime，单调时钟）
+     */
+    private fun toFrameTimestampNs(epochMs: Long?): Long {
+        if (epochMs == null) return FrameRequestQueue.ANY_FRAME
+        val ageMs = System.currentTimeMillis() - epochMs
+        return System.nanoTime() - ageMs * 1_000_000L
+    }
+
+    private fun releaseHeldImage() {
+        synchronized(frameLock) {
+            try {
+                heldImage?.close()
             } catch (e: Exception) {
-                Log.e(TAG, "Exception in OnImageAvailableListener: ${e.message}", e)
-                // Consider more robust error handling, e.g., stopping capture on repeated errors.
+                Log.w(TAG, "Exception closing held image: ${e.message}")
+            }
+            heldImage = null
+        }
+    }
+
+    /**
+     * 按请求的格式把同一帧交给一组 Flutter 请求，编码在流水线中进行且每组只进行一次。
+     * 调用方传入一次 retain 的引用，由流水线负责释放。
+     * headerOnly 为 true 时既不拷贝也不编码，直接返回帧头（内容未变化的快速路径）。
+     *
+     * @param preprocess 不为 none 时在转换阶段做 OCR 预处理（见 [FramePreprocessor]）
+     * @param maxEdge 大于 0 且帧的长边超过它时在转换阶段缩小（见 [FrameScaler]）
+     * @param region 不为 null 时先在转换阶段从 frame 中裁剪该区域
+     */
+    private fun deliverFrame(results: List<MethodChannel.Result>, frame: CapturedFrame, format: String, quality: Int,
+                             preprocess: String = FramePreprocessor.MODE_NONE, maxEdge: Int = 0,
+                             headerOnly: Boolean = false, region: Rect? = null) {
+        results.forEach { _ -> captureScheduler.onRequestCompleted() }
+        if (headerOnly) {
+            val response = frame.toChannelMap(format, null)
+            frame.release()
+            mainHandler.post { results.forEach { it.success(response) } }
+            return
+        }
+        dispatchFrame(FrameJob(frame, region, format, quality, droppable = false,
+            onSuccess = { response -> results.forEach { it.success(response) } },
+            onError = { code, message -> results.forEach { it.error(code, message, null) } },
+            preprocess = preprocess, maxEdge = maxEdge))
+    }
+
+    /**
+     * 流水线任务：一帧（持有一次 retain，由任务负责释放）及其交付目标。
+     * 携带请求的任务不可丢弃；推送帧流的任务可被更新的帧挤掉，丢弃时退还信用。
+     */
+    private inner class FrameJob(
+        var frame: CapturedFrame?,
+        var region: Rect?,
+        val format: String,
+        val quality: Int,
+        private val droppable: Boolean,
+        val onSuccess: (Map<String, Any>) -> Unit,
+        val onError: (String, String) -> Unit,
+        private val onDropped: () -> Unit = {},
+        val preprocess: String = FramePreprocessor.MODE_NONE,
+        val maxEdge: Int = 0
+    ) : PipelineStage.Job {
+        private val sequence = frame?.sequence ?: 0L
+
+        override fun getSequence(): Long = sequence
+
+        override fun isDroppable(): Boolean = droppable
+
+        override fun onDiscarded(reason: String) {
+            if (droppable) {
+                Log.d(TAG, "Frame job #$sequence dropped: $reason")
+                frame?.release()
+                frame = null
+                onDropped()
+            } else {
+                Log.e(TAG, "Frame job #$sequence failed: $reason")
+                fail("FRAME_ENCODE_FAILED", "Failed to encode frame: $reason")
+            }
+        }
+
+        fun fail(code: String, message: String) {
+            frame?.release()
+            frame = null
+            mainHandler.post { onError(code, message) }
+        }
+    }
+
+    /**
+     * 流水线入口：需要裁剪、缩小或预处理的任务先进入转换阶段，其余直接交给编码阶段
+     */
+    private fun dispatchFrame(job: FrameJob) {
+        if (job.region != null || job.preprocess != FramePreprocessor.MODE_NONE || job.maxEdge > 0) {
+            convertStage.submit(job)
+        } else {
+            submitForEncoding(job)
+        }
+    }
+
+    /**
+     * 转换阶段：从整帧中裁剪出区域帧，按长边上限缩小，再按需做 OCR 预处理
+     */
+    private fun convertFrameJob(job: FrameJob) {
+        val region = job.region
+        if (region != null) {
+            val source = job.frame ?: return
+            job.frame = null
+            val startNs = StageTrace.begin(LatencyStats.STAGE_FRAME_CONVERT)
+            val cropped = try {
+                cropFrame(source.pixelBuffer(), source.rowStride, source.width, source.height, source.timestampNs, region,
+                    source.screenWidth, source.screenHeight, source.rotation)
+            } finally {
+                source.release()
+                StageTrace.end(LatencyStats.STAGE_FRAME_CONVERT, startNs)
+            }
+            if (cropped == null) {
+                job.fail("INVALID_REGION", "Capture region is outside the screen: $region")
+                return
+            }
+            job.frame = cropped
+            job.region = null
+        }
+        scaleFrameJob(job)
+        if (job.preprocess != FramePreprocessor.MODE_NONE) {
+            preprocessFrameJob(job)
+        } else {
+            submitForEncoding(job)
+        }
+    }
+
+    /**
+     * 长边超过 maxEdge 时缩小到池中的新帧；预处理在缩小后的帧上进行，像素更少
+     */
+    private fun scaleFrameJob(job: FrameJob) {
+        val frame = job.frame ?: return
+        if (!FrameScaler.needsScaling(frame.width, frame.height, job.maxEdge)) return
+        job.frame = null
+        val startNs = StageTrace.begin(LatencyStats.STAGE_FRAME_CONVERT)
+        try {
+            val size = FrameScaler.scaledSize(frame.width, frame.height, job.maxEdge)
+            val scaled = synchronized(scalePool) {
+                scalePool.configure(size[0], size[1])
+                scalePool.acquire()
+            }
+            frameScaler.scale(frame, scaled)
+            job.frame = scaled
+        } finally {
+            frame.release()
+            StageTrace.end(LatencyStats.STAGE_FRAME_CONVERT, startNs)
+        }
+    }
+
+    /**
+     * OCR 预处理：转为亮度并按模式拉伸对比度或二值化。
+     * raw 格式直接返回 L_8 亮度（1 字节/像素）；编码格式把亮度写回新的 RGBA 帧后交给编码阶段
+     */
+    private fun preprocessFrameJob(job: FrameJob) {
+        val frame = job.frame ?: return
+        job.frame = null
+        val startNs = StageTrace.begin(LatencyStats.STAGE_FRAME_PREPROCESS)
+        val output = try {
+            val luminance = framePreprocessor.process(job.preprocess, frame.pixelBuffer(), frame.rowStride,
+                frame.width, frame.height)
+            if (job.format == CapturedFrame.FORMAT_RAW) {
+                val response = frame.toChannelMap(CapturedFrame.FORMAT_RAW, luminance.copyOf(frame.width * frame.height))
+                response["pixelFormat"] = FramePreprocessor.PIXEL_FORMAT_L_8
+                response["rowStride"] = frame.width
+                response["preprocess"] = job.preprocess
+                mainHandler.post { job.onSuccess(response) }
+                null
+            } else {
+                val gray = synchronized(preprocessPool) {
+                    preprocessPool.configure(frame.width, frame.height)
+                    preprocessPool.acquire()
+                }
+                gray.copyMetadataFrom(frame)
+                FramePreprocessor.expandToRgba(luminance, gray)
+                gray
+            }
+        } finally {
+            frame.release()
+            StageTrace.end(LatencyStats.STAGE_FRAME_PREPROCESS, startNs)
+        }
+        if (output != null) {
+            job.frame = output
+            encodeStage.submit(job)
+        }
+    }
+
+    /**
+     * raw 格式不编码：共享传输时把像素写入共享槽位，只发送槽位描述；
+     * 否则直接在主线程传递池中的像素数组，回调中同步序列化后才释放引用，因此无需 clone
+     */
+    private fun submitForEncoding(job: FrameJob) {
+        if (job.format != CapturedFrame.FORMAT_RAW) {
+            encodeStage.submit(job)
+            return
+        }
+        val frame = job.frame ?: return
+        job.frame = null
+        if (frameTransport == SharedFrameRing.TRANSPORT_SHARED) {
+            val response = writeSharedFrame(frame)
+            if (response != null) {
+                frame.release()
+                mainHandler.post { job.onSuccess(response) }
+                return
+            }
+        }
+        mainHandler.post {
+            try {
+                job.onSuccess(frame.toChannelMap(CapturedFrame.FORMAT_RAW, frame.pixels))
             } finally {
-                image?.close() // CRUCIAL: Always close the image in a finally block
+                frame.release()
+            }
+        }
+    }
+
+    /**
+     * 把 raw 帧写入共享槽位并返回只含描述的帧头；没有空闲槽位或写入失败时返回 null，由调用方退回通道拷贝
+     */
+    private fun writeSharedFrame(frame: CapturedFrame): Map<String, Any>? {
+        val lease = try {
+            sharedFrameRing.write(frame.pixels, frame.rowStride * frame.height)
+        } catch (e: IOException) {
+            Log.e(TAG, "Failed to write shared frame: ${e.message}", e)
+            null
+        }
+        if (lease == null) {
+            Log.d(TAG, "No free shared frame slot. Falling back to channel copy.")
+            return null
+        }
+        val response = frame.toChannelMap(CapturedFrame.FORMAT_RAW, null)
+        lease.putInto(response)
+        return response
+    }
+
+    /**
+     * 编码阶段：用 format 对应的 [FrameEncoder] 编码并在主线程回调；异常由 [PipelineStage] 交给 [FrameJob.onDiscarded]
+     */
+    private fun encodeFrameJob(job: FrameJob) {
+        val frame = job.frame ?: return
+        val encoder = frameEncoders.get(job.format) ?: throw IllegalArgumentException("Unsupported frame format: ${job.format}")
+        reusableOutputStream.reset()
+        val startNs = StageTrace.begin(LatencyStats.STAGE_FRAME_ENCODE)
+        try {
+            encoder.encode(frame, job.quality, reusableOutputStream)
+        } finally {
+            StageTrace.end(LatencyStats.STAGE_FRAME_ENCODE, startNs)
+        }
+        val response = frame.toChannelMap(job.format, reusableOutputStream.toByteArray())
+        if (job.preprocess != FramePreprocessor.MODE_NONE) {
+            response["preprocess"] = job.preprocess
+        }
+        job.frame = null
+        frame.release()
+        captureStats.onFrameEncoded()
+        mainHandler.post { job.onSuccess(response) }
+    }
+
+    /**
+     * 有信用时从刚到达的 Image 拷贝（整帧或区域）并发送给帧流
+     */
+    private fun streamFrameFromImage(image: Image) {
+        val region = frameStream.region as Rect?
+        val frame = if (region == null) {
+            releaseHeldImage()
+            materializeFrame(image).retain()
+        } else {
+            val plane = image.planes[0]
+            cropFrame(plane.buffer, plane.rowStride, image.width, image.height, image.timestamp, region)
+        }
+        if (frame == null) {
+            Log.w(TAG, "Frame stream region is outside the screen: $region")
+            return
+        }
+        sendStreamFrame(frame)
+    }
+
+    /**
+     * 信用恢复后发送之前因缺少信用而未发送的最新帧，必须在 imageProcessHandler 线程上调用
+     */
+    private fun sendUndeliveredStreamFrame() {
+        if (!frameStream.isActive || frameStream.credits <= 0) return
+        val region = frameStream.region as Rect?
+        val frame = synchronized(frameLock) {
+            val image = heldImage
+            if (image != null) {
+                if (region == null) {
+                    heldImage = null
+                    try {
+                        materializeFrame(image).retain()
+                    } finally {
+                        image.close()
+                    }
+                } else {
+                    val plane = image.planes[0]
+                    cropFrame(plane.buffer, plane.rowStride, image.width, image.height, image.timestamp, region)
+                }
+            } else {
+                // 持有的 Image 已被其他请求拷贝，直接使用缓存帧，区域在转换阶段裁剪
+                val cached = latestFrame ?: return
+                sendStreamFrame(cached.retain(), region)
+                return
             }
-        }, imageProcessHandler) // Use background handler
+        } ?: return
+        sendStreamFrame(frame)
+    }
+
+    /**
+     * 发送一帧给帧流并消耗一个信用；内容未变化时跳过。调用方传入一次 retain 的引用。
+     *
+     * @param region 不为 null 时先在转换阶段从 frame 中裁剪该区域
+     */
+    private fun sendStreamFrame(frame: CapturedFrame, region: Rect? = null) {
+        if (region == null && !frameStream.shouldDeliver(frame.contentSequence)) {
+            frame.release()
+            return
+        }
+        frameStream.onFrameDelivered(frame.contentSequence)
+        dispatchFrame(FrameJob(frame, region, frameStream.format, frameStream.quality, droppable = true,
+            onSuccess = { response -> frameStreamSink?.success(response) },
+            onError = { code, message -> frameStreamSink?.error(code, message, null) },
+            onDropped = { frameStream.onDeliveryDropped() }))
     }
 
     private fun cleanUpScreenCaptureResources(stopServiceAlso: Boolean) {
@@ -359,7 +1292,8 @@ class MainActivity : FlutterActivity() {
         }
 
         isCaptureSessionActive = false // Mark as inactive first
-        latestFrameBytes = null
+        unregisterDisplayListener()
+        replaceLatestFrame(null)
 
         try {
             virtualDisplay?.release()
@@ -370,6 +1304,7 @@ class MainActivity : FlutterActivity() {
             virtualDisplay = null
         }
 
+        releaseHeldImage()
         try {
             imageReader?.setOnImageAvailableListener(null, null) // Remove listener first
             imageReader?.close()
@@ -379,6 +1314,8 @@ class MainActivity : FlutterActivity() {
         } finally {
             imageReader = null
         }
+        standbyImageReader?.close()
+        standbyImageReader = null
 
         try {
             if (mediaProjection != null) {
@@ -403,13 +1340,15 @@ class MainActivity : FlutterActivity() {
         imageProcessThread = null
         Log.d(TAG, "ImageProcessingThread stopped.")
 
-        val pendingResult = this.flutterResultForScreenCapture
-        if (pendingResult != null) {
-            Log.w(TAG, "flutterResultForScreenCapture was not null during final cleanup. Notifying error on main thread.")
-            this.flutterResultForScreenCapture = null // Clear before posting
-            mainHandler.post {
-                pendingResult.error("CAPTURE_CLEANED_UP", "Screen capture resources were cleaned up.", null)
-            }
+        failAllFrameRequests("CAPTURE_CLEANED_UP", "Screen capture resources were cleaned up.")
+        convertStage.clear("Screen capture resources were cleaned up.")
+        encodeStage.clear("Screen capture resources were cleaned up.")
+        encodeStage.execute { frameEncoders.release() } // 编码器只在编码线程上使用，在该线程上回收 Bitmap
+        sharedFrameRing.releaseAll()
+        val sink = frameStreamSink
+        if (sink != null && frameStream.isActive) {
+            frameStream.stop()
+            mainHandler.post { sink.endOfStream() }
         }
 
         if (stopServiceAlso) {
@@ -418,18 +1357,48 @@ class MainActivity : FlutterActivity() {
         }
     }
 
+    /**
+     * 监听设备发热状态 (API 29+)，交给 captureScheduler 调整处理节拍
+     */
+    private fun registerThermalStatusListener() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q || thermalStatusListener != null) {
+            return
+        }
+        val powerManager = getSystemService(Context.POWER_SERVICE) as PowerManager
+        captureScheduler.setThermalStatus(powerManager.currentThermalStatus)
+        val listener = PowerManager.OnThermalStatusChangedListener { status ->
+            Log.d(TAG, "Thermal status changed: $status")
+            captureScheduler.setThermalStatus(status)
+        }
+        powerManager.addThermalStatusListener(mainExecutor, listener)
+        thermalStatusListener = listener
+    }
+
+    private fun unregisterThermalStatusListener() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return
+        }
+        val listener = thermalStatusListener ?: return
+        (getSystemService(Context.POWER_SERVICE) as PowerManager).removeThermalStatusListener(listener)
+        thermalStatusListener = null
+    }
+
     override fun onDestroy() {
         Log.d(TAG, "onDestroy called.")
+        unregisterThermalStatusListener()
         cleanUpScreenCaptureResources(true) // Ensure everything is stopped and service is requested to stop
+        convertStage.shutdown()
+        encodeStage.shutdown()
+        sharedFrameRing.close()
         super.onDestroy()
     }
 
     override fun onConfigurationChanged(newConfig: Configuration) {
         super.onConfigurationChanged(newConfig)
         Log.d(TAG, "onConfigurationChanged: New orientation: ${newConfig.orientation}")
-        // 当屏幕旋转时，重新设置捕捉
+        // 当屏幕旋转时调整截屏尺寸（原地 resize，不重建）；后台时由 displayListener 处理
         if (isCaptureSessionActive) {
-            Log.d(TAG, "Re-setting up capture due to configuration change.")
+            Log.d(TAG, "Re-checking capture size due to configuration change.")
             // 使用 Handler 延迟执行，以确保窗口尺寸已更新
             mainHandler.post {
                 setupContinuousCapture()
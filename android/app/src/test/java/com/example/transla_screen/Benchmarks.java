@@ -0,0 +1,20 @@
+package com.example.transla_screen;
+
+import org.junit.Assume;
+
+/**
+ * 耗时基准的开关：默认的单元测试运行中跳过，只在显式开启时执行
+ *
+ * 运行: ./gradlew :app:testDebugUnitTest -Pbenchmark --tests "*BenchmarkTest*" -i
+ */
+final class Benchmarks {
+    static final String PROPERTY = "transla.benchmark";
+
+    private Benchmarks() {
+    }
+
+    /** 未开启时以 assumption 失败结束当前测试，JUnit 记为跳过 */
+    static void assumeEnabled() {
+        Assume.assumeTrue("benchmark disabled, run with -Pbenchmark", Boolean.getBoolean(PROPERTY));
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.transla_screen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * CaptureScheduler 的模式切换与节拍测试，使用可手动推进的时钟
+ */
+public class CaptureSchedulerTest {
+
+    private static class FakeClock implements CaptureScheduler.Clock {
+        long now = 1_000_000;
+
+        @Override
+        public long nowMs() {
+            return now;
+        }
+
+        void advance(long ms) {
+            now += ms;
+        }
+    }
+
+    private final FakeClock clock = new FakeClock();
+    private final CaptureScheduler scheduler = new CaptureScheduler(clock);
+
+    @Test
+    public void idleWithoutDemand() {
+        assertEquals(CaptureScheduler.Mode.IDLE, scheduler.getMode());
+        assertEquals(CaptureScheduler.IDLE_INTERVAL_MS, scheduler.getIntervalMs());
+
+        assertTrue(scheduler.shouldProcessFrame());
+        clock.advance(CaptureScheduler.BASE_INTERVAL_MS);
+        assertFalse(scheduler.shouldProcessFrame());
+        clock.advance(CaptureScheduler.IDLE_INTERVAL_MS);
+        assertTrue(scheduler.shouldProcessFrame());
+    }
+
+    @Test
+    public void pendingRequestBurstsEveryFrame() {
+        assertTrue(scheduler.shouldProcessFrame());
+        scheduler.onRequestReceived();
+
+        assertEquals(CaptureScheduler.Mode.BURST, scheduler.getMode());
+        assertEquals(0, scheduler.getIntervalMs());
+        assertTrue(scheduler.shouldProcessFrame());
+        clock.advance(1);
+        assertTrue(scheduler.shouldProcessFrame());
+    }
+
+    @Test
+    public void recentDemandKeepsSteadyRateThenDecaysToIdle() {
+        scheduler.onRequestReceived();
+        scheduler.onRequestCompleted();
+
+        assertEquals(CaptureScheduler.Mode.STEADY, scheduler.getMode());
+        assertTrue(scheduler.shouldProcessFrame());
+        clock.advance(CaptureScheduler.BASE_INTERVAL_MS - 1);
+        assertFalse(scheduler.shouldProcessFrame());
+        clock.advance(1);
+        assertTrue(scheduler.shouldProcessFrame());
+
+        clock.advance(CaptureScheduler.DEMAND_WINDOW_MS + 1);
+        assertEquals(CaptureScheduler.Mode.IDLE, scheduler.getMode());
+    }
+
+    @Test
+    public void thermalStatusBacksOff() {
+        scheduler.onRequestReceived();
+        scheduler.onRequestCompleted();
+
+        scheduler.setThermalStatus(CaptureScheduler.THERMAL_STATUS_MODERATE);
+        assertEquals(CaptureScheduler.Mode.THROTTLED, scheduler.getMode());
+        assertEquals(CaptureScheduler.BASE_INTERVAL_MS * 2, scheduler.getIntervalMs());
+
+        scheduler.setThermalStatus(CaptureScheduler.THERMAL_STATUS_SEVERE);
+        assertEquals(CaptureScheduler.BASE_INTERVAL_MS * 4, scheduler.getIntervalMs());
+
+        // 发热时请求仍会突发处理，但有最小间隔
+        scheduler.onRequestReceived();
+        assertEquals(CaptureScheduler.Mode.BURST, scheduler.getMode());
+        assertEquals(CaptureScheduler.THROTTLED_BURST_INTERVAL_MS, scheduler.getIntervalMs());
+
+        scheduler.onRequestCompleted();
+        scheduler.setThermalStatus(CaptureScheduler.THERMAL_STATUS_NONE);
+        assertEquals(CaptureScheduler.Mode.STEADY, scheduler.getMode());
+    }
+
+    @Test
+    public void sustainedCpuLoadBacksOffWithHysteresis() {
+        scheduler.onRequestReceived();
+        scheduler.onRequestCompleted();
+
+        for (int i = 0; i < 20; i++) {
+            scheduler.recordProcessingTime(CaptureScheduler.BASE_INTERVAL_MS);
+        }
+        assertEquals(CaptureScheduler.Mode.THROTTLED, scheduler.getMode());
+        assertEquals(CaptureScheduler.BASE_INTERVAL_MS * 2, scheduler.getIntervalMs());
+
+        // 负载略低于阈值时保持退避
+        for (int i = 0; i < 20; i++) {
+            scheduler.recordProcessingTime(CaptureScheduler.BASE_INTERVAL_MS * 2 / 5);
+        }
+        assertEquals(CaptureScheduler.Mode.THROTTLED, scheduler.getMode());
+
+        for (int i = 0; i < 40; i++) {
+            scheduler.recordProcessingTime(1);
+        }
+        assertEquals(CaptureScheduler.Mode.STEADY, scheduler.getMode());
+    }
+
+    @Test
+    public void intervalIsCapped() {
+        scheduler.setThermalStatus(CaptureScheduler.THERMAL_STATUS_CRITICAL);
+        for (int i = 0; i < 20; i++) {
+            scheduler.recordProcessingTime(CaptureScheduler.BASE_INTERVAL_MS);
+        }
+        assertEquals(CaptureScheduler.MAX_INTERVAL_MS, scheduler.getIntervalMs());
+    }
+
+    @Test
+    public void metricsReportModeAndRate() {
+        scheduler.onRequestReceived();
+        scheduler.onRequestCompleted();
+        scheduler.shouldProcessFrame();
+        scheduler.shouldProcessFrame();
+
+        assertEquals("steady", scheduler.toMap().get("schedulerMode"));
+        assertEquals(1000.0 / CaptureScheduler.BASE_INTERVAL_MS,
+                (Double) scheduler.toMap().get("schedulerRateFps"), 1e-9);
+        assertEquals(2L, scheduler.toMap().get("schedulerFramesOffered"));
+        assertEquals(1L, scheduler.toMap().get("schedulerFramesProcessed"));
+
+        scheduler.reset();
+        assertEquals("idle", scheduler.toMap().get("schedulerMode"));
+        assertEquals(0L, scheduler.toMap().get("schedulerFramesOffered"));
+    }
+}
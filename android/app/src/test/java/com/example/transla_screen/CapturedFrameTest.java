@@ -0,0 +1,104 @@
+package com.example.transla_screen;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * CapturedFrame 像素拷贝（去除行尾填充、区域裁剪）和帧描述的测试
+ */
+public class CapturedFrameTest {
+    private final FrameBufferPool pool = new FrameBufferPool(2, new TileHasher(TileHasher.DEFAULT_TILE_SIZE));
+
+    @Test
+    public void copyFromStripsRowPadding() {
+        int width = 5;
+        int height = 3;
+        int sourceRowStride = width * CapturedFrame.BYTES_PER_PIXEL + 12;
+        ByteBuffer source = patternBuffer(sourceRowStride, height);
+
+        pool.configure(width, height);
+        CapturedFrame frame = pool.acquire();
+        frame.copyFrom(source, sourceRowStride, 42L);
+
+        assertEquals(42L, frame.timestampNs);
+        assertEquals(0, source.position());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(pixelAt(x, y), frame.pixelIntView().get(y * width + x));
+            }
+        }
+        frame.release();
+    }
+
+    @Test
+    public void tileHashesAreSentOnlyWhileValidAndFollowDerivedFrames() {
+        TileHasher hasher = new TileHasher(TileHasher.DEFAULT_TILE_SIZE);
+        pool.configure(100, 70);
+        CapturedFrame frame = pool.acquire();
+        frame.copyFrom(patternBuffer(100 * CapturedFrame.BYTES_PER_PIXEL, 70), 100 * CapturedFrame.BYTES_PER_PIXEL, 1L);
+
+        assertFalse(frame.toChannelMap(CapturedFrame.FORMAT_RAW, null).containsKey("tileHashes"));
+
+        hasher.hash(frame.pixelIntView(), frame.width, frame.height, frame.width, frame.tileHashes);
+        frame.hashedTileSize = hasher.getTileSize();
+        Map<String, Object> map = frame.toChannelMap(CapturedFrame.FORMAT_NV21, null);
+        assertEquals(TileHasher.DEFAULT_TILE_SIZE, map.get("tileSize"));
+        assertArrayEquals(frame.tileHashes, (long[]) map.get("tileHashes"));
+
+        CapturedFrame derived = pool.acquire();
+        derived.copyMetadataFrom(frame);
+        assertArrayEquals(frame.tileHashes, derived.tileHashes);
+        frame.release();
+        derived.release();
+
+        CapturedFrame reused = pool.acquire();
+        assertEquals(0, reused.hashedTileSize);
+        reused.release();
+    }
+
+    @Test
+    public void copyFromRegionReadsOnlyTheRegion() {
+        int sourceWidth = 10;
+        int sourceHeight = 8;
+        int sourceRowStride = sourceWidth * CapturedFrame.BYTES_PER_PIXEL + 8;
+        ByteBuffer source = patternBuffer(sourceRowStride, sourceHeight);
+
+        int left = 3;
+        int top = 2;
+        int width = 4;
+        int height = 5;
+        pool.configure(width, height);
+        CapturedFrame frame = pool.acquire();
+        frame.copyFrom(source, sourceRowStride, left, top, 0L);
+
+        assertEquals(0, source.position());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(pixelAt(left + x, top + y), frame.pixelIntView().get(y * width + x));
+            }
+        }
+        frame.release();
+    }
+
+    /** 每个像素的值由坐标决定，便于校验拷贝位置 */
+    private static int pixelAt(int x, int y) {
+        return (y << 16) | x;
+    }
+
+    private static ByteBuffer patternBuffer(int rowStride, int height) {
+        ByteBuffer buffer = ByteBuffer.allocate(rowStride * height);
+        int width = rowStride / CapturedFrame.BYTES_PER_PIXEL;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                buffer.putInt(y * rowStride + x * CapturedFrame.BYTES_PER_PIXEL, pixelAt(x, y));
+            }
+        }
+        return buffer;
+    }
+}
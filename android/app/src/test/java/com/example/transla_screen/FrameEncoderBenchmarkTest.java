@@ -0,0 +1,228 @@
+package com.example.transla_screen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/**
+ * 帧编码器的正确性测试与编码耗时/体积基准
+ *
+ * 语料为 src/test/resources/screenshots 下的截图（聊天、设置列表、带照片的文章、游戏对话框），
+ * 每个格式/质量组合输出平均编码耗时和输出体积。
+ * PNG / JPEG 由 JVM 上的 {@link ImageIoFrameEncoder} 编码，耗时只能用于同一台机器上的相对比较，
+ * 不代表设备上 {@link BitmapFrameEncoder} 的开销；ImageIO 不支持 WebP，这里没有 WebP 一行。
+ * 设备上的 PNG / JPEG / 有损 WebP 对比见 androidTest 中的 BitmapFrameEncoderBenchmarkTest。
+ *
+ * 基准默认跳过，运行: ./gradlew :app:testDebugUnitTest -Pbenchmark --tests "*FrameEncoderBenchmarkTest*" -i
+ */
+public class FrameEncoderBenchmarkTest {
+    private static final String[] CORPUS = {
+            "chat.png", "settings.png", "article_photo.png", "game_dialog.png"};
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int MEASURED_ITERATIONS = 5;
+
+    private final FrameBufferPool pool = new FrameBufferPool(1, new TileHasher(TileHasher.DEFAULT_TILE_SIZE));
+
+    @Test
+    public void rawEncoderWritesTightlyPackedPixels() throws IOException {
+        CapturedFrame frame = loadScreenshot(CORPUS[0]);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new RawFrameEncoder().encode(frame, FrameEncoder.DEFAULT_QUALITY, out);
+
+        assertEquals(frame.width * frame.height * CapturedFrame.BYTES_PER_PIXEL, out.size());
+        frame.release();
+    }
+
+    @Test
+    public void nv21EncoderUsesBt601AndPadsOddSizes() throws IOException {
+        FrameBufferPool oddPool = new FrameBufferPool(1, new TileHasher(TileHasher.DEFAULT_TILE_SIZE));
+        oddPool.configure(3, 3);
+        CapturedFrame frame = oddPool.acquire();
+        int[][] rgb = {{255, 0, 0}, {0, 255, 0}, {0, 0, 255}, {255, 255, 255}, {0, 0, 0}, {128, 128, 128},
+                {10, 10, 10}, {20, 20, 20}, {30, 30, 30}};
+        for (int i = 0; i < rgb.length; i++) {
+            int p = (i / 3) * frame.rowStride + (i % 3) * CapturedFrame.BYTES_PER_PIXEL;
+            frame.pixels[p] = (byte) rgb[i][0];
+            frame.pixels[p + 1] = (byte) rgb[i][1];
+            frame.pixels[p + 2] = (byte) rgb[i][2];
+            frame.pixels[p + 3] = (byte) 0xFF;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new Nv21FrameEncoder().encode(frame, FrameEncoder.DEFAULT_QUALITY, out);
+
+        byte[] nv21 = out.toByteArray();
+        assertEquals(Nv21FrameEncoder.outputLength(3, 3), nv21.length);
+        assertEquals(4 * 4 * 3 / 2, nv21.length);
+        // 4x4 的 Y 平面：第 3 列 / 第 3 行复制最后一列 / 行
+        int[] expectedY = {76, 149, 28, 28, 255, 0, 128, 128, 10, 20, 30, 30, 10, 20, 30, 30};
+        for (int i = 0; i < expectedY.length; i++) {
+            assertEquals("Y " + i, expectedY[i], nv21[i] & 0xFF);
+        }
+        // 左上块取红色像素：V 偏高、U 偏低；右下块是灰色：色度为 128
+        assertTrue((nv21[16] & 0xFF) > 200);
+        assertTrue((nv21[17] & 0xFF) < 128);
+        assertEquals(128, nv21[22] & 0xFF);
+        assertEquals(128, nv21[23] & 0xFF);
+        Map<String, Object> map = frame.toChannelMap(CapturedFrame.FORMAT_NV21, nv21);
+        assertEquals(4, map.get("rowStride"));
+        assertEquals(CapturedFrame.PIXEL_FORMAT_NV21, map.get("pixelFormat"));
+        frame.release();
+    }
+
+    @Test
+    public void pngRoundTripIsLossless() throws IOException {
+        CapturedFrame frame = loadScreenshot(CORPUS[1]);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIoFrameEncoder.png().encode(frame, FrameEncoder.DEFAULT_QUALITY, out);
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        for (int y = 0; y < frame.height; y += 7) {
+            for (int x = 0; x < frame.width; x += 7) {
+                assertEquals(rgbAt(frame, x, y), decoded.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+        frame.release();
+    }
+
+    @Test
+    public void lowerJpegQualityProducesSmallerOutput() throws IOException {
+        CapturedFrame frame = loadScreenshot(CORPUS[2]);
+        FrameEncoder jpeg = ImageIoFrameEncoder.jpeg();
+
+        int high = encodedSize(jpeg, frame, 95);
+        int low = encodedSize(jpeg, frame, 60);
+
+        assertTrue("q60=" + low + " q95=" + high, low < high);
+        frame.release();
+    }
+
+    @Test
+    public void benchmarkEncodeTimeAndSizePerFormat() throws IOException {
+        Benchmarks.assumeEnabled();
+        Object[][] variants = {
+                {new RawFrameEncoder(), 100},
+                {new Nv21FrameEncoder(), 100},
+                {ImageIoFrameEncoder.png(), 100},
+                {ImageIoFrameEncoder.jpeg(), 90},
+                {ImageIoFrameEncoder.jpeg(), 80},
+                {ImageIoFrameEncoder.jpeg(), 60},
+        };
+        for (String name : CORPUS) {
+            CapturedFrame frame = loadScreenshot(name);
+            for (Object[] variant : variants) {
+                FrameEncoder encoder = (FrameEncoder) variant[0];
+                int quality = (Integer) variant[1];
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                    out.reset();
+                    encoder.encode(frame, quality, out);
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                    out.reset();
+                    encoder.encode(frame, quality, out);
+                }
+                double msPerFrame = (System.nanoTime() - start) / 1e6 / MEASURED_ITERATIONS;
+                System.out.printf("FrameEncoder (JVM) %-18s %dx%d %-4s q%-3d: %7.2f ms/frame, %8d bytes (base64 %d)%n",
+                        name, frame.width, frame.height, encoder.getFormat(), quality,
+                        msPerFrame, out.size(), (out.size() + 2) / 3 * 4);
+            }
+            frame.release();
+        }
+    }
+
+    /**
+     * 云端 OCR 上传体积：全分辨率 PNG 与按长边缩小后的有损编码对比（base64 后的请求体积）。
+     * 语料为 720x1600，按 1440x3200 的高分屏放大一倍后再缩小，模拟设备上的实际输入
+     */
+    @Test
+    public void benchmarkUploadSizeWithDownscale() throws IOException {
+        Benchmarks.assumeEnabled();
+        int[] maxEdges = {0, 2048, 1600, 1280};
+        FrameScaler scaler = new FrameScaler();
+        FrameBufferPool largePool = new FrameBufferPool(1, new TileHasher(TileHasher.DEFAULT_TILE_SIZE));
+        FrameBufferPool scaledPool = new FrameBufferPool(1, new TileHasher(TileHasher.DEFAULT_TILE_SIZE));
+        for (String name : CORPUS) {
+            CapturedFrame frame = loadScreenshot(name);
+            largePool.configure(frame.width * 2, frame.height * 2);
+            CapturedFrame large = largePool.acquire();
+            for (int y = 0; y < large.height; y++) {
+                for (int x = 0; x < large.width; x++) {
+                    System.arraycopy(frame.pixels, (y / 2) * frame.rowStride + (x / 2) * CapturedFrame.BYTES_PER_PIXEL,
+                            large.pixels, y * large.rowStride + x * CapturedFrame.BYTES_PER_PIXEL,
+                            CapturedFrame.BYTES_PER_PIXEL);
+                }
+            }
+            frame.release();
+            int png = encodedSize(ImageIoFrameEncoder.png(), large, 100);
+            System.out.printf("Upload %-18s %dx%d png: %8d bytes (base64 %d)%n",
+                    name, large.width, large.height, png, (png + 2) / 3 * 4);
+            for (int maxEdge : maxEdges) {
+                int[] size = FrameScaler.scaledSize(large.width, large.height, maxEdge);
+                scaledPool.configure(size[0], size[1]);
+                CapturedFrame scaled = scaledPool.acquire();
+                long start = System.nanoTime();
+                scaler.scale(large, scaled);
+                double scaleMs = (System.nanoTime() - start) / 1e6;
+                int jpeg = encodedSize(ImageIoFrameEncoder.jpeg(), scaled, 80);
+                System.out.printf("Upload %-18s %dx%d jpeg q80 (max edge %4d, scale %6.2f ms): %8d bytes (base64 %d, %.1f%% of png)%n",
+                        name, scaled.width, scaled.height, maxEdge, scaleMs, jpeg, (jpeg + 2) / 3 * 4,
+                        100.0 * jpeg / png);
+                if (maxEdge > 0) {
+                    assertTrue(Math.max(scaled.width, scaled.height) <= maxEdge);
+                }
+                scaled.release();
+            }
+            large.release();
+        }
+    }
+
+    private static int encodedSize(FrameEncoder encoder, CapturedFrame frame, int quality) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(frame, quality, out);
+        return out.size();
+    }
+
+    private static int rgbAt(CapturedFrame frame, int x, int y) {
+        int i = y * frame.rowStride + x * CapturedFrame.BYTES_PER_PIXEL;
+        return (frame.pixels[i] & 0xFF) << 16 | (frame.pixels[i + 1] & 0xFF) << 8 | (frame.pixels[i + 2] & 0xFF);
+    }
+
+    /**
+     * 把语料中的截图解码为 RGBA_8888 的 CapturedFrame，与 ImageReader 拷贝出的帧布局一致
+     */
+    private CapturedFrame loadScreenshot(String name) throws IOException {
+        BufferedImage image;
+        try (InputStream in = getClass().getResourceAsStream("/screenshots/" + name)) {
+            assertNotNull("Missing screenshot " + name, in);
+            image = ImageIO.read(in);
+        }
+        pool.configure(image.getWidth(), image.getHeight());
+        CapturedFrame frame = pool.acquire();
+        int[] row = new int[image.getWidth()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, image.getWidth(), 1, row, 0, image.getWidth());
+            int offset = y * frame.rowStride;
+            for (int x = 0; x < row.length; x++) {
+                int i = offset + x * CapturedFrame.BYTES_PER_PIXEL;
+                frame.pixels[i] = (byte) (row[x] >> 16);
+                frame.pixels[i + 1] = (byte) (row[x] >> 8);
+                frame.pixels[i + 2] = (byte) row[x];
+                frame.pixels[i + 3] = (byte) 0xFF;
+            }
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.transla_screen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import javax.imageio.ImageIO;
+
+/**
+ * OCR 预处理的正确性测试、耗时/体积基准和文字分离精度基准
+ *
+ * 耗时和体积以 src/test/resources/screenshots 下的截图为语料。
+ * JVM 上没有 ML Kit，识别精度用合成夹具近似：在低对比度、渐变、深色背景上绘制已知的笔画，
+ * 以输出中黑色像素与笔画掩码的 IoU 衡量文字能否与背景分离（未预处理时按全局阈值切分）。
+ * 实际 OCR 准确率需在设备上用同一组截图对比。
+ *
+ * 基准默认跳过，运行: ./gradlew :app:testDebugUnitTest -Pbenchmark --tests "*FramePreprocessorBenchmarkTest*" -i
+ */
+public class FramePreprocessorBenchmarkTest {
+    private static final String[] CORPUS = {
+            "chat.png", "settings.png", "article_photo.png", "game_dialog.png"};
+    private static final String[] MODES = {
+            FramePreprocessor.MODE_GRAYSCALE, FramePreprocessor.MODE_CONTRAST, FramePreprocessor.MODE_BINARIZE};
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int MEASURED_ITERATIONS = 5;
+
+    private final FrameBufferPool pool = new FrameBufferPool(2, new TileHasher(TileHasher.DEFAULT_TILE_SIZE));
+    private final FramePreprocessor preprocessor = new FramePreprocessor();
+
+    @Test
+    public void luminanceUsesBt601WeightsAndSkipsRowPadding() {
+        int width = 3;
+        int height = 2;
+        int rowStride = width * 4 + 8;
+        ByteBuffer source = ByteBuffer.allocateDirect(rowStride * height);
+        int[][] rgb = {{255, 0, 0}, {0, 255, 0}, {0, 0, 255}, {255, 255, 255}, {0, 0, 0}, {128, 128, 128}};
+        for (int i = 0; i < rgb.length; i++) {
+            int p = (i / width) * rowStride + (i % width) * 4;
+            source.put(p, (byte) rgb[i][0]);
+            source.put(p + 1, (byte) rgb[i][1]);
+            source.put(p + 2, (byte) rgb[i][2]);
+            source.put(p + 3, (byte) 0xFF);
+        }
+
+        byte[] out = preprocessor.process(FramePreprocessor.MODE_GRAYSCALE, source, rowStride, width, height);
+
+        int[] expected = {76, 149, 28, 255, 0, 128};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("pixel " + i, expected[i], out[i] & 0xFF);
+        }
+    }
+
+    @Test
+    public void contrastStretchSpreadsNarrowRangeToFullScale() {
+        byte[] pixels = new byte[1000];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) (100 + i % 41);
+        }
+
+        preprocessor.stretchContrast(pixels, pixels.length);
+
+        int min = 255;
+        int max = 0;
+        for (byte p : pixels) {
+            min = Math.min(min, p & 0xFF);
+            max = Math.max(max, p & 0xFF);
+        }
+        assertEquals(0, min);
+        assertEquals(255, max);
+    }
+
+    @Test
+    public void binarizeSeparatesFaintStrokesOnGradientBetterThanGlobalThreshold() {
+        Fixture fixture = Fixture.gradient(480, 160);
+
+        double binarized = strokeIoU(fixture, FramePreprocessor.MODE_BINARIZE);
+        double grayscale = strokeIoU(fixture, FramePreprocessor.MODE_GRAYSCALE);
+
+        assertTrue("binarize IoU " + binarized, binarized > 0.8);
+        assertTrue("binarize " + binarized + " vs grayscale " + grayscale, binarized > grayscale);
+    }
+
+    @Test
+    public void binarizeOutputsDarkTextOnLightBackgroundForDarkThemes() {
+        Fixture fixture = Fixture.darkTheme(320, 120);
+
+        assertTrue(strokeIoU(fixture, FramePreprocessor.MODE_BINARIZE) > 0.8);
+    }
+
+    @Test
+    public void benchmarkPreprocessTimeAndPayloadPerMode() throws IOException {
+        Benchmarks.assumeEnabled();
+        ImageIoFrameEncoder png = ImageIoFrameEncoder.png();
+        for (String name : CORPUS) {
+            CapturedFrame frame = loadScreenshot(name);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            png.encode(frame, FrameEncoder.DEFAULT_QUALITY, out);
+            System.out.printf("FramePreprocessor %-18s %dx%d %-9s: %7s ms/frame, raw %8d bytes, png %8d bytes%n",
+                    name, frame.width, frame.height, FramePreprocessor.MODE_NONE, "-",
+                    frame.pixels.length, out.size());
+            for (String mode : MODES) {
+                for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                    preprocessor.process(mode, frame.pixelBuffer(), frame.rowStride, frame.width, frame.height);
+                }
+                long start = System.nanoTime();
+                byte[] luminance = null;
+                for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                    luminance = preprocessor.process(mode, frame.pixelBuffer(), frame.rowStride, frame.width, frame.height);
+                }
+                double msPerFrame = (System.nanoTime() - start) / 1e6 / MEASURED_ITERATIONS;
+
+                pool.configure(frame.width, frame.height);
+                CapturedFrame gray = pool.acquire();
+                FramePreprocessor.expandToRgba(luminance, gray);
+                out.reset();
+                png.encode(gray, FrameEncoder.DEFAULT_QUALITY, out);
+                gray.release();
+                System.out.printf("FramePreprocessor %-18s %dx%d %-9s: %7.2f ms/frame, raw %8d bytes, png %8d bytes%n",
+                        name, frame.width, frame.height, mode, msPerFrame,
+                        frame.width * frame.height, out.size());
+            }
+            frame.release();
+        }
+        for (Fixture fixture : new Fixture[]{Fixture.gradient(480, 160), Fixture.darkTheme(320, 120)}) {
+            for (String mode : MODES) {
+                System.out.printf("FramePreprocessor fixture %-10s %-9s: stroke IoU %.3f%n",
+                        fixture.name, mode, strokeIoU(fixture, mode));
+            }
+        }
+    }
+
+    /**
+     * 输出中黑色（前景）像素与笔画掩码的交并比；二值化输出直接判断，其余模式按 Otsu 全局阈值切分，
+     * 较少的一类视为前景
+     */
+    private double strokeIoU(Fixture fixture, String mode) {
+        int count = fixture.width * fixture.height;
+        byte[] out = preprocessor.process(mode, ByteBuffer.wrap(fixture.rgba), fixture.width * 4,
+                fixture.width, fixture.height);
+        boolean[] foreground = new boolean[count];
+        if (FramePreprocessor.MODE_BINARIZE.equals(mode)) {
+            for (int i = 0; i < count; i++) {
+                foreground[i] = out[i] == 0;
+            }
+        } else {
+            int threshold = otsuThreshold(out, count);
+            int below = 0;
+            for (int i = 0; i < count; i++) {
+                if ((out[i] & 0xFF) <= threshold) below++;
+            }
+            boolean darkIsForeground = below <= count / 2;
+            for (int i = 0; i < count; i++) {
+                foreground[i] = ((out[i] & 0xFF) <= threshold) == darkIsForeground;
+            }
+        }
+        int intersection = 0;
+        int union = 0;
+        for (int i = 0; i < count; i++) {
+            if (foreground[i] && fixture.mask[i]) intersection++;
+            if (foreground[i] || fixture.mask[i]) union++;
+        }
+        return union == 0 ? 1.0 : (double) intersection / union;
+    }
+
+    private static int otsuThreshold(byte[] pixels, int count) {
+        long[] histogram = new long[256];
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            histogram[pixels[i] & 0xFF]++;
+            sum += pixels[i] & 0xFF;
+        }
+        long weightBelow = 0;
+        long sumBelow = 0;
+        double best = -1;
+        int threshold = 0;
+        for (int t = 0; t < 256; t++) {
+            weightBelow += histogram[t];
+            sumBelow += t * histogram[t];
+            long weightAbove = count - weightBelow;
+            if (weightBelow == 0 || weightAbove == 0) continue;
+            double meanBelow = (double) sumBelow / weightBelow;
+            double meanAbove = (double) (sum - sumBelow) / weightAbove;
+            double between = (double) weightBelow * weightAbove * (meanBelow - meanAbove) * (meanBelow - meanAbove);
+            if (between > best) {
+                best = between;
+                threshold = t;
+            }
+        }
+        return threshold;
+    }
+
+    /**
+     * 合成夹具：背景上绘制 2 px 宽的横竖笔画（近似文字），mask 标记笔画像素
+     */
+    private static final class Fixture {
+        final String name;
+        final int width;
+        final int height;
+        final byte[] rgba;
+        final boolean[] mask;
+
+        private Fixture(String name, int width, int height) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.rgba = new byte[width * height * 4];
+            this.mask = new boolean[width * height];
+        }
+
+        /** 从左到右 60→220 的亮度渐变上，笔画只比背景暗 30 */
+        static Fixture gradient(int width, int height) {
+            Fixture f = new Fixture("gradient", width, height);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int background = 60 + 160 * x / width;
+                    boolean stroke = isStroke(x, y);
+                    f.set(x, y, stroke ? background - 30 : background, stroke);
+                }
+            }
+            return f;
+        }
+
+        /** 深色背景 (40) 上的浅色文字 (110) */
+        static Fixture darkTheme(int width, int height) {
+            Fixture f = new Fixture("darkTheme", width, height);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    boolean stroke = isStroke(x, y);
+                    f.set(x, y, stroke ? 110 : 40, stroke);
+                }
+            }
+            return f;
+        }
+
+        /** 每 16x20 的字格内一个“口”字形笔画，四周留白 */
+        private static boolean isStroke(int x, int y) {
+            int cx = x % 16;
+            int cy = y % 20;
+            boolean inGlyph = cx >= 3 && cx <= 12 && cy >= 4 && cy <= 15;
+            boolean onEdge = cx <= 4 || cx >= 11 || cy <= 5 || cy >= 14;
+            return inGlyph && onEdge;
+        }
+
+        private void set(int x, int y, int value, boolean stroke) {
+            int p = (y * width + x) * 4;
+            rgba[p] = (byte) value;
+            rgba[p + 1] = (byte) value;
+            rgba[p + 2] = (byte) value;
+            rgba[p + 3] = (byte) 0xFF;
+            mask[y * width + x] = stroke;
+        }
+    }
+
+    /**
+     * 把语料中的截图解码为 RGBA_8888 的 CapturedFrame，与 ImageReader 拷贝出的帧布局一致
+     */
+    private CapturedFrame loadScreenshot(String name) throws IOException {
+        BufferedImage image;
+        try (InputStream in = getClass().getResourceAsStream("/screenshots/" + name)) {
+            assertNotNull("Missing screenshot " + name, in);
+            image = ImageIO.read(in);
+        }
+        pool.configure(image.getWidth(), image.getHeight());
+        CapturedFrame frame = pool.acquire();
+        int[] row = new int[image.getWidth()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, image.getWidth(), 1, row, 0, image.getWidth());
+            int offset = y * frame.rowStride;
+            for (int x = 0; x < row.length; x++) {
+                int i = offset + x * CapturedFrame.BYTES_PER_PIXEL;
+                frame.pixels[i] = (byte) (row[x] >> 16);
+                frame.pixels[i + 1] = (byte) (row[x] >> 8);
+                frame.pixels[i + 2] = (byte) row[x];
+                frame.pixels[i + 3] = (byte) 0xFF;
+            }
+        }
+        return frame;
+    }
+}
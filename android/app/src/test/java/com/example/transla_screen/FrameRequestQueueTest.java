@@ -0,0 +1,141 @@
+package com.example.transla_screen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * FrameRequestQueue 的新鲜度、超时和分组测试
+ */
+public class FrameRequestQueueTest {
+    private final FrameRequestQueue<String> queue = new FrameRequestQueue<>();
+
+    private static FrameRequestQueue.Request<String> request(String name, String format, Object region,
+                                                             long minTimestampNs, long deadlineMs) {
+        return FrameRequestQueue.Request.builder(name, format)
+                .region(region)
+                .minTimestampNs(minTimestampNs)
+                .deadlineMs(deadlineMs)
+                .build();
+    }
+
+    @Test
+    public void newFrameSatisfiesOnlyRequestsItIsFreshEnoughFor() {
+        queue.add(request("any", CapturedFrame.FORMAT_PNG, null, FrameRequestQueue.ANY_FRAME, 1000));
+        queue.add(request("after100", CapturedFrame.FORMAT_PNG, null, 100, 1000));
+        queue.add(request("after200", CapturedFrame.FORMAT_PNG, null, 200, 1000));
+
+        List<FrameRequestQueue.Request<String>> satisfied = queue.takeSatisfiedBy(150);
+
+        assertEquals(2, satisfied.size());
+        assertEquals("any", satisfied.get(0).result);
+        assertEquals("after100", satisfied.get(1).result);
+        assertEquals(1, queue.size());
+        assertEquals("after200", queue.takeSatisfiedBy(200).get(0).result);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void expiredRequestsAreRemovedAndNextDeadlineTracked() {
+        queue.add(request("a", CapturedFrame.FORMAT_PNG, null, 0, 500));
+        queue.add(request("b", CapturedFrame.FORMAT_PNG, null, 0, 300));
+        queue.add(request("c", CapturedFrame.FORMAT_PNG, null, 0, FrameRequestQueue.NO_DEADLINE));
+
+        assertEquals(300, queue.nextDeadlineMs());
+        assertEquals(0, queue.takeExpired(299).size());
+
+        List<FrameRequestQueue.Request<String>> expired = queue.takeExpired(300);
+        assertEquals(1, expired.size());
+        assertEquals("b", expired.get(0).result);
+        assertEquals(500, queue.nextDeadlineMs());
+
+        queue.takeExpired(500);
+        assertEquals(FrameRequestQueue.NO_DEADLINE, queue.nextDeadlineMs());
+        assertEquals(1, queue.takeAll().size());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void groupsShareFormatAndRegion() {
+        List<Integer> regionA = Arrays.asList(0, 0, 10, 10);
+        List<Integer> regionAEqual = Arrays.asList(0, 0, 10, 10);
+        queue.add(request("png1", CapturedFrame.FORMAT_PNG, null, 0, 1000));
+        queue.add(request("raw1", CapturedFrame.FORMAT_RAW, null, 0, 1000));
+        queue.add(request("png2", CapturedFrame.FORMAT_PNG, null, 0, 1000));
+        queue.add(request("regionPng1", CapturedFrame.FORMAT_PNG, regionA, 0, 1000));
+        queue.add(request("regionPng2", CapturedFrame.FORMAT_PNG, regionAEqual, 0, 1000));
+
+        List<List<FrameRequestQueue.Request<String>>> groups =
+                FrameRequestQueue.groupForDelivery(queue.takeSatisfiedBy(0));
+
+        assertEquals(3, groups.size());
+        assertEquals(2, groups.get(0).size());
+        assertEquals("png1", groups.get(0).get(0).result);
+        assertEquals("png2", groups.get(0).get(1).result);
+        assertEquals("raw1", groups.get(1).get(0).result);
+        assertEquals(2, groups.get(2).size());
+    }
+
+    @Test
+    public void builderDefaultsToAnyCachedFullFrameWithoutDeadline() {
+        FrameRequestQueue.Request<String> request =
+                FrameRequestQueue.Request.builder("r", CapturedFrame.FORMAT_PNG).build();
+
+        assertEquals(FrameEncoder.DEFAULT_QUALITY, request.quality);
+        assertTrue(request.isFullFrame());
+        assertEquals(FramePreprocessor.MODE_NONE, request.preprocess);
+        assertEquals(0, request.maxEdge);
+        assertNull(request.knownContentSequence);
+        assertTrue(request.acceptsFrame(Long.MIN_VALUE));
+        assertEquals(FrameRequestQueue.NO_DEADLINE, request.deadlineMs);
+    }
+
+    @Test
+    public void differentQualitiesAreEncodedSeparately() {
+        queue.add(FrameRequestQueue.Request.builder("webp80", CapturedFrame.FORMAT_WEBP).quality(80).build());
+        queue.add(FrameRequestQueue.Request.builder("webp50", CapturedFrame.FORMAT_WEBP).quality(50).build());
+        queue.add(FrameRequestQueue.Request.builder("webp80b", CapturedFrame.FORMAT_WEBP).quality(80).build());
+
+        List<List<FrameRequestQueue.Request<String>>> groups =
+                FrameRequestQueue.groupForDelivery(queue.takeSatisfiedBy(0));
+
+        assertEquals(2, groups.size());
+        assertEquals("webp80b", groups.get(0).get(1).result);
+        assertEquals("webp50", groups.get(1).get(0).result);
+    }
+
+    @Test
+    public void differentPreprocessModesAreProcessedSeparately() {
+        queue.add(FrameRequestQueue.Request.builder("plain", CapturedFrame.FORMAT_PNG).build());
+        queue.add(FrameRequestQueue.Request.builder("binary", CapturedFrame.FORMAT_PNG)
+                .preprocess(FramePreprocessor.MODE_BINARIZE).build());
+        queue.add(FrameRequestQueue.Request.builder("plain2", CapturedFrame.FORMAT_PNG)
+                .preprocess(FramePreprocessor.MODE_NONE).build());
+
+        List<List<FrameRequestQueue.Request<String>>> groups =
+                FrameRequestQueue.groupForDelivery(queue.takeSatisfiedBy(0));
+
+        assertEquals(2, groups.size());
+        assertEquals("plain2", groups.get(0).get(1).result);
+        assertEquals("binary", groups.get(1).get(0).result);
+    }
+
+    @Test
+    public void differentMaxEdgesAreScaledSeparately() {
+        queue.add(FrameRequestQueue.Request.builder("full", CapturedFrame.FORMAT_WEBP).build());
+        queue.add(FrameRequestQueue.Request.builder("scaled", CapturedFrame.FORMAT_WEBP).maxEdge(1600).build());
+        queue.add(FrameRequestQueue.Request.builder("full2", CapturedFrame.FORMAT_WEBP).maxEdge(0).build());
+
+        List<List<FrameRequestQueue.Request<String>>> groups =
+                FrameRequestQueue.groupForDelivery(queue.takeSatisfiedBy(0));
+
+        assertEquals(2, groups.size());
+        assertEquals("full2", groups.get(0).get(1).result);
+        assertEquals("scaled", groups.get(1).get(0).result);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.transla_screen;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * FrameScaler 的尺寸计算、区域平均和坐标换算测试
+ */
+public class FrameScalerTest {
+    private final TileHasher tileHasher = new TileHasher(TileHasher.DEFAULT_TILE_SIZE);
+
+    private CapturedFrame frame(int width, int height) {
+        FrameBufferPool pool = new FrameBufferPool(1, tileHasher);
+        pool.configure(width, height);
+        return pool.acquire();
+    }
+
+    @Test
+    public void scaledSizeKeepsAspectRatioAndSkipsSmallFrames() {
+        assertArrayEquals(new int[]{720, 1600}, FrameScaler.scaledSize(1440, 3200, 1600));
+        assertArrayEquals(new int[]{1600, 900}, FrameScaler.scaledSize(2560, 1440, 1600));
+        assertArrayEquals(new int[]{720, 1600}, FrameScaler.scaledSize(720, 1600, 1600));
+        assertArrayEquals(new int[]{1440, 3200}, FrameScaler.scaledSize(1440, 3200, 0));
+        assertFalse(FrameScaler.needsScaling(720, 1600, 1600));
+        assertTrue(FrameScaler.needsScaling(721, 1601, 1600));
+    }
+
+    @Test
+    public void eachOutputPixelAveragesItsSourceBlock() {
+        CapturedFrame source = frame(4, 2);
+        // 左侧 2x2 块：0 和 100 交替，均值 50；右侧 2x2 块：全部 200
+        int[] values = {0, 100, 200, 200, 100, 0, 200, 200};
+        for (int i = 0; i < values.length; i++) {
+            int p = i * CapturedFrame.BYTES_PER_PIXEL;
+            source.pixels[p] = (byte) values[i];
+            source.pixels[p + 1] = (byte) values[i];
+            source.pixels[p + 2] = (byte) values[i];
+            source.pixels[p + 3] = (byte) 0xFF;
+        }
+        CapturedFrame target = frame(2, 1);
+
+        new FrameScaler().scale(source, target);
+
+        assertEquals(50, target.pixels[0] & 0xFF);
+        assertEquals(50, target.pixels[2] & 0xFF);
+        assertEquals(255, target.pixels[3] & 0xFF);
+        assertEquals(200, target.pixels[4] & 0xFF);
+        source.release();
+        target.release();
+    }
+
+    @Test
+    public void regionMetadataIsConvertedToScaledCoordinates() {
+        CapturedFrame source = frame(400, 200);
+        source.screenWidth = 1080;
+        source.screenHeight = 2400;
+        source.sourceWidth = 1080;
+        source.sourceHeight = 2400;
+        source.offsetX = 100;
+        source.offsetY = 1000;
+        source.dirtyRects = new int[]{0, 0, 65, 65};
+        source.hashedTileSize = TileHasher.DEFAULT_TILE_SIZE;
+        int[] size = FrameScaler.scaledSize(source.width, source.height, 200);
+        CapturedFrame target = frame(size[0], size[1]);
+
+        new FrameScaler().scale(source, target);
+
+        Map<String, Object> map = target.toChannelMap(CapturedFrame.FORMAT_JPEG, new byte[0]);
+        assertEquals(200, map.get("width"));
+        assertEquals(100, map.get("height"));
+        // 屏幕尺寸不变，完整帧尺寸和偏移按同一比例缩小：Flutter 端换算后仍落在原来的屏幕位置
+        assertEquals(1080, map.get("screenWidth"));
+        assertEquals(540, map.get("sourceWidth"));
+        assertEquals(1200, map.get("sourceHeight"));
+        assertEquals(50, map.get("offsetX"));
+        assertEquals(500, map.get("offsetY"));
+        assertArrayEquals(new int[]{0, 0, 33, 33}, (int[]) map.get("dirtyRects"));
+        assertFalse(map.containsKey("tileHashes"));
+        source.release();
+        target.release();
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.transla_screen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * FrameStreamController 的信用背压与统计测试
+ */
+public class FrameStreamControllerTest {
+    private final FrameStreamController stream = new FrameStreamController();
+
+    @Test
+    public void neverDeliversMoreThanGrantedCredits() {
+        stream.start(CapturedFrame.FORMAT_RAW, FrameEncoder.DEFAULT_QUALITY, null, 1, false, 0);
+
+        assertTrue(stream.onFrameProduced());
+        stream.onFrameDelivered(1);
+        assertEquals(0, stream.getCredits());
+
+        // 没有信用：后续帧只保留最新的一帧，其余丢弃
+        assertFalse(stream.onFrameProduced());
+        assertFalse(stream.onFrameProduced());
+        assertFalse(stream.onFrameProduced());
+
+        assertTrue(stream.grantCredits(1));
+        stream.onFrameDelivered(4);
+
+        Map<String, Object> stats = stream.toMap(10);
+        assertEquals(4L, stats.get("framesProduced"));
+        assertEquals(2L, stats.get("framesDelivered"));
+        assertEquals(2L, stats.get("framesDropped"));
+    }
+
+    @Test
+    public void grantWithoutUndeliveredFrameWaitsForNextFrame() {
+        stream.start(CapturedFrame.FORMAT_PNG, FrameEncoder.DEFAULT_QUALITY, null, 1, false, 0);
+        assertTrue(stream.onFrameProduced());
+        stream.onFrameDelivered(1);
+
+        assertFalse(stream.grantCredits(2));
+        assertTrue(stream.onFrameProduced());
+        stream.onFrameDelivered(2);
+        assertTrue(stream.onFrameProduced());
+        stream.onFrameDelivered(3);
+        assertFalse(stream.onFrameProduced());
+    }
+
+    @Test
+    public void unchangedFramesAreSkippedWithoutSpendingCredit() {
+        stream.start(CapturedFrame.FORMAT_PNG, FrameEncoder.DEFAULT_QUALITY, null, 2, true, 0);
+        assertTrue(stream.onFrameProduced());
+        assertTrue(stream.shouldDeliver(7));
+        stream.onFrameDelivered(7);
+
+        assertTrue(stream.onFrameProduced());
+        assertFalse(stream.shouldDeliver(7));
+        assertEquals(1, stream.getCredits());
+        assertEquals(1L, stream.toMap(0).get("framesSkippedUnchanged"));
+    }
+
+    @Test
+    public void regionStreamNeverSkipsFrames() {
+        stream.start(CapturedFrame.FORMAT_PNG, FrameEncoder.DEFAULT_QUALITY, new Object(), 2, true, 0);
+        assertTrue(stream.onFrameProduced());
+        stream.onFrameDelivered(7);
+
+        assertTrue(stream.onFrameProduced());
+        assertTrue(stream.shouldDeliver(7));
+        assertEquals(0L, stream.toMap(0).get("framesSkippedUnchanged"));
+    }
+
+    @Test
+    public void droppedDeliveryRefundsCreditAndAllowsSameContent() {
+        stream.start(CapturedFrame.FORMAT_PNG, FrameEncoder.DEFAULT_QUALITY, null, 1, true, 0);
+        assertTrue(stream.onFrameProduced());
+        assertTrue(stream.shouldDeliver(3));
+        stream.onFrameDelivered(3);
+
+        stream.onDeliveryDropped();
+
+        assertEquals(1, stream.getCredits());
+        assertTrue(stream.shouldDeliver(3));
+        assertEquals(0L, stream.toMap(0).get("framesDelivered"));
+        assertEquals(1L, stream.toMap(0).get("framesDropped"));
+    }
+
+    @Test
+    public void stoppedStreamIgnoresFramesAndCredits() {
+        stream.start(CapturedFrame.FORMAT_PNG, FrameEncoder.DEFAULT_QUALITY, null, 1, false, 0);
+        stream.stop();
+
+        assertFalse(stream.onFrameProduced());
+        assertFalse(stream.grantCredits(5));
+        assertFalse(stream.isActive());
+    }
+}
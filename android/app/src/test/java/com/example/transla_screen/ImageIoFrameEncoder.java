@@ -0,0 +1,78 @@
+package com.example.transla_screen;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * JVM 上基于 javax.imageio 的 PNG / JPEG 编码器，只用于单元测试和编码基准
+ *
+ * 设备上使用 {@link BitmapFrameEncoder}；android.graphics.Bitmap 在 JVM 单元测试中不可用。
+ */
+class ImageIoFrameEncoder implements FrameEncoder {
+    private final String format;
+    private final String mimeType;
+    private final String imageIoFormat;
+    private BufferedImage image;
+
+    private ImageIoFrameEncoder(String format, String mimeType, String imageIoFormat) {
+        this.format = format;
+        this.mimeType = mimeType;
+        this.imageIoFormat = imageIoFormat;
+    }
+
+    static ImageIoFrameEncoder png() {
+        return new ImageIoFrameEncoder(CapturedFrame.FORMAT_PNG, "image/png", "png");
+    }
+
+    static ImageIoFrameEncoder jpeg() {
+        return new ImageIoFrameEncoder(CapturedFrame.FORMAT_JPEG, "image/jpeg", "jpeg");
+    }
+
+    @Override
+    public String getFormat() {
+        return format;
+    }
+
+    @Override
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    @Override
+    public void encode(CapturedFrame frame, int quality, OutputStream out) throws IOException {
+        if (image == null || image.getWidth() != frame.width || image.getHeight() != frame.height) {
+            image = new BufferedImage(frame.width, frame.height, BufferedImage.TYPE_INT_RGB);
+        }
+        int[] row = new int[frame.width];
+        for (int y = 0; y < frame.height; y++) {
+            int offset = y * frame.rowStride;
+            for (int x = 0; x < frame.width; x++) {
+                int i = offset + x * CapturedFrame.BYTES_PER_PIXEL;
+                row[x] = (frame.pixels[i] & 0xFF) << 16 | (frame.pixels[i + 1] & 0xFF) << 8 | (frame.pixels[i + 2] & 0xFF);
+            }
+            image.setRGB(0, y, frame.width, 1, row, 0, frame.width);
+        }
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(imageIoFormat);
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (CapturedFrame.FORMAT_JPEG.equals(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(Math.max(1, Math.min(100, quality)) / 100f);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.transla_screen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * LatencyStats 的百分位与滚动窗口测试
+ */
+public class LatencyStatsTest {
+
+    @Test
+    public void percentilesUseNearestRank() {
+        LatencyStats stats = new LatencyStats(100);
+        for (int i = 1; i <= 100; i++) {
+            stats.record(LatencyStats.STAGE_FRAME_ENCODE, i);
+        }
+
+        Map<?, ?> encode = (Map<?, ?>) stats.toMap().get(LatencyStats.STAGE_FRAME_ENCODE);
+
+        assertEquals(100L, encode.get("count"));
+        assertEquals(50.0, encode.get("p50"));
+        assertEquals(95.0, encode.get("p95"));
+        assertEquals(99.0, encode.get("p99"));
+        assertEquals(100.0, encode.get("lastMs"));
+    }
+
+    @Test
+    public void windowKeepsOnlyRecentSamples() {
+        LatencyStats stats = new LatencyStats(10);
+        for (int i = 0; i < 10; i++) {
+            stats.record(LatencyStats.STAGE_FRAME_ACQUIRE, 1000);
+        }
+        for (int i = 0; i < 10; i++) {
+            stats.record(LatencyStats.STAGE_FRAME_ACQUIRE, 2);
+        }
+
+        Map<?, ?> acquire = (Map<?, ?>) stats.toMap().get(LatencyStats.STAGE_FRAME_ACQUIRE);
+
+        assertEquals(20L, acquire.get("count"));
+        assertEquals(2.0, acquire.get("p99"));
+    }
+
+    @Test
+    public void stagesAreReportedSeparatelyAndNegativeSamplesIgnored() {
+        LatencyStats stats = new LatencyStats(10);
+        stats.record(LatencyStats.STAGE_OVERLAY_PARSE, 3);
+        stats.record(LatencyStats.STAGE_OVERLAY_INFLATE, 12);
+        stats.record(LatencyStats.STAGE_END_TO_END, -5);
+
+        Map<String, Object> map = stats.toMap();
+
+        assertEquals(2, map.size());
+        assertTrue(map.containsKey(LatencyStats.STAGE_OVERLAY_PARSE));
+        assertEquals(0, LatencyStats.percentile(new double[0], 50), 0);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.transla_screen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流水线阶段的有界交接队列（按序号排序、丢弃最旧）与异步处理测试
+ */
+public class PipelineStageTest {
+
+    private static final class TestJob implements PipelineStage.Job {
+        final long sequence;
+        final boolean droppable;
+        String discardReason;
+
+        TestJob(long sequence, boolean droppable) {
+            this.sequence = sequence;
+            this.droppable = droppable;
+        }
+
+        @Override
+        public long getSequence() {
+            return sequence;
+        }
+
+        @Override
+        public boolean isDroppable() {
+            return droppable;
+        }
+
+        @Override
+        public void onDiscarded(String reason) {
+            discardReason = reason;
+        }
+    }
+
+    @Test
+    public void queueOrdersBySequenceAndDropsOldestDroppable() {
+        SequencedDropOldestQueue<TestJob> queue = new SequencedDropOldestQueue<>(2);
+        TestJob frame3 = new TestJob(3, true);
+        TestJob frame1 = new TestJob(1, true);
+        TestJob request2 = new TestJob(2, false);
+
+        assertNull(queue.offer(frame3));
+        assertNull(queue.offer(frame1));
+        assertNull(queue.offer(request2));
+        // 第三个可丢弃任务挤掉序号最小的可丢弃任务，携带请求的任务保留
+        assertEquals(1, queue.offer(new TestJob(4, true)).sequence);
+
+        assertEquals(2, queue.poll().sequence);
+        assertEquals(3, queue.poll().sequence);
+        assertEquals(4, queue.poll().sequence);
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void nonDroppableJobsAreNeverDropped() {
+        SequencedDropOldestQueue<TestJob> queue = new SequencedDropOldestQueue<>(1);
+        for (int i = 0; i < 5; i++) {
+            assertNull(queue.offer(new TestJob(i, false)));
+        }
+        assertEquals(5, queue.size());
+    }
+
+    @Test
+    public void busyStageDropsBacklogAndProcessesInSequenceOrder() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch allDone = new CountDownLatch(3);
+        List<Long> processed = Collections.synchronizedList(new ArrayList<>());
+        PipelineStage<TestJob> stage = new PipelineStage<>("TestEncode", 2, job -> {
+            if (job.sequence == 1) {
+                firstStarted.countDown();
+                releaseFirst.await(5, TimeUnit.SECONDS);
+            }
+            processed.add(job.sequence);
+            allDone.countDown();
+        });
+
+        stage.submit(new TestJob(1, true));
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        // 第一帧编码期间到达的帧：容量为 2，最旧的一帧被丢弃
+        TestJob dropped = new TestJob(2, true);
+        stage.submit(dropped);
+        stage.submit(new TestJob(4, true));
+        stage.submit(new TestJob(3, true));
+        releaseFirst.countDown();
+
+        assertTrue(allDone.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1L, 3L, 4L), processed);
+        assertTrue(dropped.discardReason.contains("queue full"));
+        assertEquals(1L, stage.toMap("encode").get("encodeJobsDropped"));
+        stage.shutdown();
+    }
+
+    @Test
+    public void failedJobIsDiscardedAndStageKeepsRunning() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        PipelineStage<TestJob> stage = new PipelineStage<>("TestConvert", 2, job -> {
+            if (job.sequence == 1) {
+                throw new IllegalStateException("boom");
+            }
+            done.countDown();
+        });
+        TestJob failing = new TestJob(1, false);
+
+        stage.submit(failing);
+        stage.submit(new TestJob(2, false));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(failing.discardReason.contains("boom"));
+        assertEquals(1L, stage.toMap("convert").get("convertJobsFailed"));
+        stage.shutdown();
+    }
+}
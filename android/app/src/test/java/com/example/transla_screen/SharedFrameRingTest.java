@@ -0,0 +1,143 @@
+package com.example.transla_screen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SharedFrameRing 的槽位租用、代数和扩容测试
+ */
+public class SharedFrameRingTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File directory;
+    private SharedFrameRing ring;
+
+    @Before
+    public void setUp() {
+        directory = new File(temp.getRoot(), "frames");
+        ring = new SharedFrameRing(directory, 2, file -> new SharedFrameRing.Descriptor() {
+            @Override
+            public int getFd() {
+                return 42;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        ring.close();
+    }
+
+    private static byte[] pattern(int length, int seed) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return data;
+    }
+
+    /** 以另一个映射读取槽位文件，模拟 Flutter 端看到的内容 */
+    private ByteBuffer readSlot(int slot) throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "frame_slot_" + slot), "r")) {
+            byte[] bytes = new byte[(int) file.length()];
+            file.readFully(bytes);
+            return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    @Test
+    public void writtenPixelsAndGenerationAreVisibleThroughTheFile() throws Exception {
+        byte[] data = pattern(1000, 7);
+
+        SharedFrameRing.Lease lease = ring.write(data, data.length);
+
+        assertNotNull(lease);
+        assertEquals(42, lease.fd);
+        assertEquals(data.length, lease.length);
+        ByteBuffer slot = readSlot(lease.slot);
+        assertEquals(lease.generation, slot.getLong(0));
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(data[i], slot.get(SharedFrameRing.HEADER_SIZE + i));
+        }
+
+        Map<String, Object> map = new HashMap<>();
+        lease.putInto(map);
+        assertEquals(SharedFrameRing.TRANSPORT_SHARED, map.get("transport"));
+        assertEquals(SharedFrameRing.HEADER_SIZE, map.get("offset"));
+    }
+
+    @Test
+    public void leasedSlotsAreNotReusedUntilReleased() throws Exception {
+        byte[] data = pattern(100, 1);
+        SharedFrameRing.Lease first = ring.write(data, data.length);
+        SharedFrameRing.Lease second = ring.write(data, data.length);
+
+        assertNotNull(second);
+        assertTrue(first.slot != second.slot);
+        assertNull(ring.write(data, data.length));
+        assertEquals(2, ring.getLeasedSlots());
+
+        assertFalse(ring.release(first.slot, first.generation + 100));
+        assertTrue(ring.release(first.slot, first.generation));
+        assertFalse(ring.release(first.slot, first.generation));
+
+        SharedFrameRing.Lease third = ring.write(data, data.length);
+        assertEquals(first.slot, third.slot);
+        assertTrue(third.generation > second.generation);
+
+        Map<String, Object> stats = new HashMap<>();
+        ring.putStats(stats);
+        assertEquals(3L, stats.get("sharedFrameWrites"));
+        assertEquals(1L, stats.get("sharedFrameFallbacks"));
+    }
+
+    @Test
+    public void slotGrowsForLargerFrames() throws Exception {
+        SharedFrameRing.Lease small = ring.write(pattern(64, 0), 64);
+        ring.release(small.slot, small.generation);
+
+        byte[] large = pattern(4096, 3);
+        SharedFrameRing.Lease lease = ring.write(large, large.length);
+
+        assertEquals(small.slot, lease.slot);
+        assertTrue(lease.capacity >= SharedFrameRing.HEADER_SIZE + large.length);
+        assertEquals(large[4095], readSlot(lease.slot).get(SharedFrameRing.HEADER_SIZE + 4095));
+        assertEquals(small.descriptorId, lease.descriptorId);
+    }
+
+    @Test
+    public void reopenedSlotGetsNewDescriptorIdEvenIfFdIsReused() throws Exception {
+        SharedFrameRing.Lease before = ring.write(pattern(64, 0), 64);
+        ring.close();
+
+        SharedFrameRing.Lease after = ring.write(pattern(64, 1), 64);
+
+        assertEquals(before.slot, after.slot);
+        assertEquals(before.fd, after.fd);
+        assertTrue(after.descriptorId != before.descriptorId);
+        Map<String, Object> map = new HashMap<>();
+        after.putInto(map);
+        assertEquals(after.descriptorId, map.get("descriptorId"));
+    }
+}
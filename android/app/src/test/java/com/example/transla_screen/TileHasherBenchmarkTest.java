@@ -0,0 +1,97 @@
+package com.example.transla_screen;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+
+/**
+ * TileHasher 的正确性测试与每帧哈希耗时基准
+ *
+ * 基准默认跳过，运行: ./gradlew :app:testDebugUnitTest -Pbenchmark --tests "*TileHasherBenchmarkTest*" -i
+ */
+public class TileHasherBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 20;
+
+    private final TileHasher hasher = new TileHasher(TileHasher.DEFAULT_TILE_SIZE);
+
+    @Test
+    public void identicalFramesHaveNoDirtyRects() {
+        int width = 300;
+        int height = 200;
+        IntBuffer pixels = randomFrame(width, height, 1);
+        long[] a = hashFrame(pixels, width, height);
+        long[] b = hashFrame(pixels, width, height);
+
+        assertArrayEquals(a, b);
+        assertEquals(0, hasher.dirtyRects(a, b, width, height).length);
+    }
+
+    @Test
+    public void singlePixelChangeMarksOnlyItsTile() {
+        int width = 300;
+        int height = 200;
+        IntBuffer pixels = randomFrame(width, height, 2);
+        long[] before = hashFrame(pixels, width, height);
+        pixels.put(130 * width + 70, pixels.get(130 * width + 70) ^ 1);
+        long[] after = hashFrame(pixels, width, height);
+
+        assertArrayEquals(new int[]{64, 128, 128, 192}, hasher.dirtyRects(before, after, width, height));
+    }
+
+    @Test
+    public void adjacentDirtyTilesMergeIntoOneRectClippedToFrame() {
+        int width = 300; // 5 列，最后一列宽 44
+        int height = 200; // 4 行，最后一行高 8
+        long[] before = new long[hasher.columnsFor(width) * hasher.rowsFor(height)];
+        long[] after = before.clone();
+        // 第 2~3 行的第 3~4 列发生变化
+        for (int row = 2; row < 4; row++) {
+            for (int col = 3; col < 5; col++) {
+                after[row * 5 + col] = 1;
+            }
+        }
+
+        assertArrayEquals(new int[]{192, 128, 300, 200}, hasher.dirtyRects(before, after, width, height));
+    }
+
+    @Test
+    public void benchmarkHashCostPerFrameSize() {
+        Benchmarks.assumeEnabled();
+        int[][] sizes = {{720, 1600}, {1080, 2400}, {1440, 3200}};
+        for (int[] size : sizes) {
+            int width = size[0];
+            int height = size[1];
+            IntBuffer pixels = randomFrame(width, height, width);
+            long[] hashes = new long[hasher.columnsFor(width) * hasher.rowsFor(height)];
+
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                hasher.hash(pixels, width, height, width, hashes);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                hasher.hash(pixels, width, height, width, hashes);
+            }
+            double msPerFrame = (System.nanoTime() - start) / 1e6 / MEASURED_ITERATIONS;
+            System.out.printf("TileHasher %dx%d (%d tiles): %.2f ms/frame%n",
+                    width, height, hashes.length, msPerFrame);
+        }
+    }
+
+    private long[] hashFrame(IntBuffer pixels, int width, int height) {
+        long[] out = new long[hasher.columnsFor(width) * hasher.rowsFor(height)];
+        hasher.hash(pixels, width, height, width, out);
+        return out;
+    }
+
+    private static IntBuffer randomFrame(int width, int height, long seed) {
+        byte[] bytes = new byte[width * height * CapturedFrame.BYTES_PER_PIXEL];
+        new Random(seed).nextBytes(bytes);
+        return ByteBuffer.wrap(bytes).asIntBuffer();
+    }
+}
@@ -0,0 +1,126 @@
+import 'package:flutter_test/flutter_test.dart';
+import 'package:integration_test/integration_test.dart';
+import 'package:logger/logger.dart';
+import 'package:transla_screen/app/core/constants/enums.dart';
+import 'package:transla_screen/app/core/models/captured_frame.dart';
+import 'package:transla_screen/app/core/models/ocr_result.dart';
+import 'package:transla_screen/app/services/logger_service.dart';
+import 'package:transla_screen/app/services/native_bridge.dart';
+import 'package:transla_screen/app/services/ocr_service.dart';
+import 'package:transla_screen/app/services/ocr_tiling.dart';
+
+/// 对当前屏幕比较整帧与分块识别的耗时和召回率
+///
+/// 运行: flutter test integration_test/ocr_tiling_benchmark_test.dart（连接设备，首次截屏时需手动授权）
+void main() {
+  IntegrationTestWidgetsFlutterBinding.ensureInitialized();
+  LoggerService.logger = Logger(level: Level.warning);
+
+  testWidgets('whole-frame vs tiled OCR', (tester) async {
+    final LocalOcrService service = LocalOcrService();
+    try {
+      final CapturedFrame? frame =
+          await NativeBridge.captureFrame(format: FrameFormat.nv21);
+      expect(frame, isNotNull, reason: '截图失败');
+      final Map<String, dynamic> report =
+          await OcrTilingBenchmark.run(service, frame!);
+      // ignore: avoid_print
+      print('OcrTilingBenchmark: $report');
+      expect(report['tiledResults'], greaterThan(0));
+    } finally {
+      service.dispose();
+    }
+  }, timeout: const Timeout(Duration(minutes: 5)));
+}
+
+/// 整帧与分块 OCR 的耗时/召回对比（设备上运行，ML Kit 无法在 JVM 单元测试中使用）
+///
+/// 对同一帧分别整帧识别和分块识别各 [iterations] 次，取耗时中位数。召回率按词元计算：
+/// 拉丁文字按单词（忽略大小写），CJK 等表意文字按单字。给出 [expectedText]（夹具截图的标注文本）时
+/// 以其为基准，否则以两种方式识别结果的并集为基准，衡量各自漏掉了多少。
+///
+/// 夹具截图 (android/app/src/test/resources/screenshots) 需在设备上全屏打开后截屏运行；
+/// 1440p 以上的平板上分块的收益最明显。
+class OcrTilingBenchmark {
+  static Future<Map<String, dynamic>> run(
+      LocalOcrService service, CapturedFrame frame,
+      {OcrTilingConfig config = const OcrTilingConfig(minFrameSize: 0),
+      int iterations = 3,
+      String? expectedText}) async {
+    final List<double> wholeMs = [];
+    final List<double> tiledMs = [];
+    List<OcrResult> whole = [];
+    List<OcrResult> tiled = [];
+    // 交替运行，避免识别器预热、温控降频只影响其中一种方式
+    for (int i = 0; i < iterations; i++) {
+      Stopwatch stopwatch = Stopwatch()..start();
+      whole = await service.processWholeFrame(frame);
+      wholeMs.add(stopwatch.elapsedMicroseconds / 1000.0);
+      stopwatch = Stopwatch()..start();
+      tiled = await service.processTiledFrame(frame, config);
+      tiledMs.add(stopwatch.elapsedMicroseconds / 1000.0);
+    }
+
+    final Map<String, int> wholeTokens = tokenize(_text(whole));
+    final Map<String, int> tiledTokens = tokenize(_text(tiled));
+    final Map<String, int> reference = expectedText != null
+        ? tokenize(expectedText)
+        : _union(wholeTokens, tiledTokens);
+    return {
+      'frame': '${frame.width}x${frame.height}',
+      'tiles': OcrTiling.plan(frame, config).length,
+      'config': config.toString(),
+      'wholeMs': _median(wholeMs),
+      'tiledMs': _median(tiledMs),
+      'wholeResults': whole.length,
+      'tiledResults': tiled.length,
+      'referenceTokens': _count(reference),
+      'wholeRecall': recall(wholeTokens, reference),
+      'tiledRecall': recall(tiledTokens, reference),
+    };
+  }
+
+  /// 词元 → 出现次数
+  static Map<String, int> tokenize(String text) {
+    final Map<String, int> tokens = {};
+    for (final Match match
+        in RegExp(r'[A-Za-z0-9À-ɏ]+|[^\sA-Za-z0-9À-ɏ\p{P}\p{S}]',
+                unicode: true)
+            .allMatches(text)) {
+      final String token = match.group(0)!.toLowerCase();
+      tokens[token] = (tokens[token] ?? 0) + 1;
+    }
+    return tokens;
+  }
+
+  /// 基准词元中被识别出的比例（按次数计）
+  static double recall(Map<String, int> found, Map<String, int> reference) {
+    final int total = _count(reference);
+    if (total == 0) return 1;
+    int hit = 0;
+    reference.forEach((token, count) {
+      final int f = found[token] ?? 0;
+      hit += f < count ? f : count;
+    });
+    return hit / total;
+  }
+
+  static Map<String, int> _union(Map<String, int> a, Map<String, int> b) {
+    final Map<String, int> union = Map<String, int>.of(a);
+    b.forEach((token, count) {
+      if ((union[token] ?? 0) < count) union[token] = count;
+    });
+    return union;
+  }
+
+  static int _count(Map<String, int> tokens) =>
+      tokens.values.fold(0, (sum, c) => sum + c);
+
+  static String _text(List<OcrResult> results) =>
+      results.map((r) => r.text).join('\n');
+
+  static double _median(List<double> values) {
+    final List<double> sorted = List<double>.of(values)..sort();
+    return sorted.isEmpty ? 0 : sorted[sorted.length ~/ 2];
+  }
+}
@@ -1 +1,17 @@
-enum OcrEngineType { local, openai }
+/// OCR 引擎；hybrid 由本地检测文字，只把低置信度的区域交给云端识别
+enum OcrEngineType { local, openai, hybrid }
+
+/// 本地 OCR 使用的文字体系；auto 按识别结果自动选择
+enum OcrScript { auto, latin, chinese, japanese, korean, devanagari }
+
+/// 原生截屏通道返回的帧数据格式；jpeg / webp 为有损编码，质量由请求方指定
+enum FrameFormat { raw, nv21, png, jpeg, webp }
+
+/// 原生端的 OCR 预处理：grayscale 只转亮度，contrast 再拉伸对比度，binarize 自适应二值化（白底黑字）
+enum FramePreprocess { none, grayscale, contrast, binarize }
+
+/// raw 帧的传输方式：channel 随消息序列化像素，shared 写入共享内存槽位、通道只传描述
+enum FrameTransport { channel, shared }
+
+/// 原生截屏模式：lazy 只在有请求时拷贝帧，eager 按节流间隔持续拷贝
+enum CaptureMode { lazy, eager }
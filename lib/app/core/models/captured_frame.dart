@@ -0,0 +1,191 @@
+import 'dart:typed_data';
+import 'dart:ui' as ui;
+
+import 'package:transla_screen/app/core/constants/enums.dart';
+import 'package:transla_screen/app/core/models/ocr_result.dart';
+
+/// 原生截屏通道返回的一帧数据
+///
+/// [format] 为 [FrameFormat.raw] 时 [bytes] 是 RGBA_8888 像素（经过 OCR 预处理时为 L_8 亮度），
+/// 每行 [rowStride] 字节；为 [FrameFormat.nv21] 时 [bytes] 是 NV21（宽高补齐到偶数，
+/// Y 平面每行 [rowStride] 字节），可直接交给 ML Kit 的 InputImage.fromBytes；
+/// 为其他格式时 [bytes] 是编码后的图片，宽高直接取自帧头，无需再解码。
+///
+/// 原生端对每帧计算 64×64 分块哈希：[contentSequence] 在内容未变化时保持不变，
+/// [dirtyRects] 是相对上一帧的变化区域。请求时传入已知的内容序号，内容未变化则
+/// 只返回帧头，[bytes] 为空。
+///
+/// 截屏可按比例缩放：[width]/[height] 是帧的像素尺寸，[screenWidth]/[screenHeight]
+/// 是真实屏幕尺寸，OCR 结果需经 [toScreenSpace] 换算后才能用于悬浮窗定位。
+/// 区域截屏时本帧是完整帧（[sourceWidth]×[sourceHeight]）中以
+/// ([offsetX], [offsetY]) 为左上角的一块。
+///
+/// 屏幕旋转时截屏不中断，旋转前后的帧可能交替到达：[rotation] 与 [screenWidth]/[screenHeight]
+/// 描述的是这一帧截取时的屏幕方向和尺寸，坐标换算以帧自身的值为准。
+///
+/// 整帧还附带分块哈希 [tileHashes]（每块 [tileSize] 像素，按行优先），可组合成任意分块区域的内容哈希；
+/// 区域帧不做变化检测，没有分块哈希。
+///
+/// 共享内存传输时 [bytes] 是原生槽位 [sharedSlot] 的外部视图，用完必须交给
+/// NativeBridge.releaseFrame 归还槽位，之后不能再访问 [bytes]。
+class CapturedFrame {
+  final FrameFormat format;
+  final Uint8List bytes;
+  final int width;
+  final int height;
+  final int rowStride;
+  final String pixelFormat;
+  final FramePreprocess preprocess;
+  final int timestampNs;
+  final int screenWidth;
+  final int screenHeight;
+  final int sourceWidth;
+  final int sourceHeight;
+  final int offsetX;
+  final int offsetY;
+  final int rotation;
+  final int sequence;
+  final int contentSequence;
+  final bool unchanged;
+  final List<ui.Rect> dirtyRects;
+  final int tileSize;
+  final Int64List? tileHashes;
+  final int? sharedSlot;
+  final int sharedGeneration;
+
+  CapturedFrame({
+    required this.format,
+    required this.bytes,
+    required this.width,
+    required this.height,
+    required this.rowStride,
+    required this.pixelFormat,
+    required this.timestampNs,
+    this.preprocess = FramePreprocess.none,
+    int? screenWidth,
+    int? screenHeight,
+    int? sourceWidth,
+    int? sourceHeight,
+    this.offsetX = 0,
+    this.offsetY = 0,
+    this.rotation = 0,
+    this.sequence = 0,
+    this.contentSequence = 0,
+    this.unchanged = false,
+    this.dirtyRects = const [],
+    this.tileSize = 0,
+    this.tileHashes,
+    this.sharedSlot,
+    this.sharedGeneration = 0,
+  })  : screenWidth = screenWidth ?? width,
+        screenHeight = screenHeight ?? height,
+        sourceWidth = sourceWidth ?? width,
+        sourceHeight = sourceHeight ?? height;
+
+  factory CapturedFrame.fromChannel(Map<dynamic, dynamic> map) {
+    final String formatName = map['format'] as String? ?? FrameFormat.png.name;
+    return CapturedFrame(
+      format: FrameFormat.values.firstWhere((f) => f.name == formatName,
+          orElse: () => FrameFormat.png),
+      bytes: map['bytes'] as Uint8List? ?? Uint8List(0),
+      width: map['width'] as int,
+      height: map['height'] as int,
+      rowStride: map['rowStride'] as int? ?? 0,
+      pixelFormat: map['pixelFormat'] as String? ?? 'RGBA_8888',
+      timestampNs: map['timestampNs'] as int? ?? 0,
+      preprocess: FramePreprocess.values.firstWhere(
+          (p) => p.name == map['preprocess'],
+          orElse: () => FramePreprocess.none),
+      screenWidth: map['screenWidth'] as int?,
+      screenHeight: map['screenHeight'] as int?,
+      sourceWidth: map['sourceWidth'] as int?,
+      sourceHeight: map['sourceHeight'] as int?,
+      offsetX: map['offsetX'] as int? ?? 0,
+      offsetY: map['offsetY'] as int? ?? 0,
+      rotation: map['rotation'] as int? ?? 0,
+      sequence: map['sequence'] as int? ?? 0,
+      contentSequence: map['contentSequence'] as int? ?? 0,
+      unchanged: map['unchanged'] as bool? ?? false,
+      dirtyRects: _parseRects(map['dirtyRects'] as Int32List?),
+      tileSize: map['tileSize'] as int? ?? 0,
+      tileHashes: map['tileHashes'] as Int64List?,
+      sharedSlot: map['slot'] as int?,
+      sharedGeneration: map['generation'] as int? ?? 0,
+    );
+  }
+
+  static List<ui.Rect> _parseRects(Int32List? flat) {
+    if (flat == null) return const [];
+    final List<ui.Rect> rects = [];
+    for (int i = 0; i + 3 < flat.length; i += 4) {
+      rects.add(ui.Rect.fromLTRB(flat[i].toDouble(), flat[i + 1].toDouble(),
+          flat[i + 2].toDouble(), flat[i + 3].toDouble()));
+    }
+    return rects;
+  }
+
+  /// 帧像素坐标到屏幕坐标的缩放系数
+  double get scaleX => sourceWidth == 0 ? 1.0 : screenWidth / sourceWidth;
+  double get scaleY => sourceHeight == 0 ? 1.0 : screenHeight / sourceHeight;
+
+  bool get isScaled => screenWidth != sourceWidth || screenHeight != sourceHeight;
+
+  /// 是否为区域截屏
+  bool get isRegion => width != sourceWidth || height != sourceHeight;
+
+  /// 把基于本帧像素坐标的 OCR 结果换算为屏幕坐标（先加区域偏移，再缩放）
+  List<OcrResult> toScreenSpace(List<OcrResult> results) {
+    if (!isScaled && offsetX == 0 && offsetY == 0) return results;
+    final double sx = scaleX;
+    final double sy = scaleY;
+    return results
+        .map((r) =>
+            r.transformed(sx, sy, dx: offsetX * sx, dy: offsetY * sy))
+        .toList();
+  }
+
+  /// 把本帧像素坐标下的矩形换算为屏幕坐标，与 [toScreenSpace] 的换算一致
+  ui.Rect toScreenRect(ui.Rect rect) {
+    final double sx = scaleX;
+    final double sy = scaleY;
+    return ui.Rect.fromLTRB((rect.left + offsetX) * sx,
+        (rect.top + offsetY) * sy, (rect.right + offsetX) * sx,
+        (rect.bottom + offsetY) * sy);
+  }
+
+  /// 是否带有可用的分块哈希
+  bool get hasTileHashes => tileSize > 0 && tileHashes != null;
+
+  /// 像素位于与原生端共享的内存槽位中
+  bool get isShared => sharedSlot != null;
+
+  /// 是否为编码后的图片（可直接预览或上传），raw / nv21 为未压缩的像素
+  bool get isEncoded => format != FrameFormat.raw && format != FrameFormat.nv21;
+
+  /// 只有帧头、没有像素数据（调用方已持有相同内容）
+  bool get isHeaderOnly => bytes.isEmpty;
+
+  /// data URI 所用的 MIME 类型
+  String get mimeType {
+    switch (format) {
+      case FrameFormat.png:
+        return 'image/png';
+      case FrameFormat.jpeg:
+        return 'image/jpeg';
+      case FrameFormat.webp:
+        return 'image/webp';
+      case FrameFormat.raw:
+      case FrameFormat.nv21:
+        return 'application/octet-stream';
+    }
+  }
+
+  @override
+  String toString() {
+    return 'CapturedFrame(${format.name}, ${width}x$height'
+        '${isRegion ? ' at ($offsetX, $offsetY)' : ''}'
+        '${isScaled ? ' of ${screenWidth}x$screenHeight' : ''}, ${bytes.length} bytes'
+        '${isShared ? ' in slot $sharedSlot' : ''}'
+        '${preprocess != FramePreprocess.none ? ', ${preprocess.name}' : ''})';
+  }
+}
@@ -6,12 +6,56 @@ class OcrResult {
   final ui.Rect boundingBox;
   final List<Point<int>> cornerPoints; // Changed to Point<int>
 
+  /// 识别置信度 0~1，本地 OCR 取块内各行置信度的最小值；引擎不提供时为 null
+  final double? confidence;
+
   OcrResult({
     required this.text,
     required this.boundingBox,
     required this.cornerPoints,
+    this.confidence,
   });
 
+  /// 轴对齐矩形框的结果，角点取 [box] 的四个角（左上起顺时针，取整到像素）
+  factory OcrResult.fromRect(String text, ui.Rect box, {double? confidence}) =>
+      OcrResult(
+        text: text,
+        boundingBox: box,
+        cornerPoints: [
+          Point<int>(box.left.round(), box.top.round()),
+          Point<int>(box.right.round(), box.top.round()),
+          Point<int>(box.right.round(), box.bottom.round()),
+          Point<int>(box.left.round(), box.bottom.round()),
+        ],
+        confidence: confidence,
+      );
+
+  /// 替换文字，坐标和置信度不变（混合 OCR 用云端识别的文字替换本地结果）
+  OcrResult withText(String newText) => OcrResult(
+      text: newText,
+      boundingBox: boundingBox,
+      cornerPoints: cornerPoints,
+      confidence: confidence);
+
+  /// 按比例缩放并平移坐标，用于把缩放截图上的识别结果换算回屏幕坐标
+  OcrResult transformed(double scaleX, double scaleY,
+      {double dx = 0, double dy = 0}) {
+    return OcrResult(
+      text: text,
+      boundingBox: ui.Rect.fromLTRB(
+        boundingBox.left * scaleX + dx,
+        boundingBox.top * scaleY + dy,
+        boundingBox.right * scaleX + dx,
+        boundingBox.bottom * scaleY + dy,
+      ),
+      cornerPoints: cornerPoints
+          .map((p) =>
+              Point<int>((p.x * scaleX + dx).round(), (p.y * scaleY + dy).round()))
+          .toList(),
+      confidence: confidence,
+    );
+  }
+
   Map<String, dynamic> toJson() {
     return {
       'text': text,
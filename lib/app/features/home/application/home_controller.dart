@@ -6,10 +6,15 @@ import 'dart:ui' as ui;
 import 'package:flutter/material.dart';
 import 'package:permission_handler/permission_handler.dart';
 import 'package:transla_screen/app/services/native_bridge.dart';
+import 'package:transla_screen/app/services/hybrid_ocr_service.dart';
 import 'package:transla_screen/app/services/ocr_service.dart';
+import 'package:transla_screen/app/services/recognizer_pool.dart';
+import 'package:transla_screen/app/services/ocr_region_cache.dart';
 import 'package:transla_screen/app/services/openai_ocr_service.dart';
 import 'package:transla_screen/app/services/openai_translation_service.dart';
 import 'package:transla_screen/app/services/settings_service.dart';
+import 'package:transla_screen/app/services/translation_memory.dart';
+import 'package:transla_screen/app/core/models/captured_frame.dart';
 import 'package:transla_screen/app/core/models/ocr_result.dart';
 import 'package:transla_screen/app/core/constants/enums.dart';
 import 'package:transla_screen/app/services/logger_service.dart';
@@ -21,12 +26,19 @@ typedef CommandHandlerCallback = void Function(
     String action, Map<String, dynamic>? params);
 
 class HomeController {
+  // 流式 OCR 时每批翻译的结果条数
+  static const int _streamTranslateBatchSize = 6;
+  // 渐进显示译文时，第一条之后的蒙版更新按该间隔合并发送
+  static const Duration _overlayUpdateInterval = Duration(milliseconds: 50);
+
   final VoidCallback updateUi;
   final BuildContext Function() getContext;
   StreamSubscription<dynamic>? _overlayMessageSubscription;
 
   // 使用新的原生悬浮窗服务
   final NativeOverlayService _nativeOverlayService = NativeOverlayService();
+  // 译文蒙版的会话编号：每次显示蒙版加一，逐项更新只作用于同一会话的蒙版；关闭蒙版时也加一，作废进行中的更新
+  int _overlaySession = 0;
 
   bool _isOverlayPermissionGranted = false; // 是否授予了悬浮窗权限
   bool _isScreenCapturePermissionGranted = false; // 新增：是否授予了截屏权限
@@ -35,17 +47,32 @@ class HomeController {
   Uint8List? capturedImageBytes;
   List<OcrResult> ocrResults = [];
 
+  // 识别器池在控制器生命周期内保留，重新加载设置时已加载的模型不会被关闭
+  final RecognizerPool _recognizerPool = RecognizerPool();
+  // 按区域内容哈希缓存的 OCR 结果，同样随控制器保留
+  final OcrRegionCache _ocrRegionCache = OcrRegionCache();
+  // 持久化的翻译记忆，重建翻译服务时保留
+  final TranslationMemory _translationMemory = TranslationMemory();
   late LocalOcrService _localOcrService;
   OpenAiOcrService? _openAiOcrService;
+  // 混合引擎：本地检测 + _openAiOcrService 识别低置信度的块
+  HybridOcrService? _hybridOcrService;
   late SettingsService _settingsService;
   OcrEngineType _selectedOcrEngine = OcrEngineType.local;
   bool isInitializing = true;
 
   OpenAiTranslationService? _translationService;
+  // 译文蒙版先显示原文占位，流式译文逐条填入
+  bool _progressiveTranslation = true;
   final TextEditingController targetLanguageController =
       TextEditingController(text: '中文'); // Default to Chinese
   String translatedText = "";
 
+  // 上一次完整处理（OCR + 翻译）的帧内容序号及结果，画面未变化时直接复用
+  int? _lastProcessedContentSequence;
+  List<OcrResult> _lastOcrResults = [];
+  Map<String, String> _lastTranslations = {};
+
   bool get isOverlayEffectivelyVisible => _isControlOverlayActive;
   bool get isTranslationServiceAvailable => _translationService != null;
 
@@ -53,18 +80,26 @@ class HomeController {
     // 设置原生悬浮窗服务的回调
     _nativeOverlayService.onBubbleActionReceived = _handleBubbleAction;
     _nativeOverlayService.onOverlayError = _handleOverlayError;
+    _nativeOverlayService.onAreaSelected = _handleAreaSelected;
   }
 
   void _handleBubbleAction(String action) {
     log.i("[HomeController] 收到悬浮球命令: $action");
     switch (action) {
       case 'translate_fullscreen':
-        toggleScreenCaptureAndOcr(sendToTranslationMask: true);
+        toggleScreenCaptureAndOcr(
+            sendToTranslationMask: true,
+            traceStart: _nativeOverlayService.lastBubbleEventAt);
         break;
       case 'start_area_selection':
-        _updateStatusMessageUI('区域选择功能尚未实现。');
+        // 选区遮罩由原生悬浮球服务显示，选择完成后回调 _handleAreaSelected
+        _updateStatusMessageUI('请在屏幕上框选需要翻译的区域...');
+        break;
+      case 'area_selection_cancelled':
+        _updateStatusMessageUI('区域选择已取消');
         break;
       case 'mask_closed':
+        _overlaySession++;
         _updateStatusMessageUI('翻译蒙版已关闭');
         break;
       default:
@@ -72,6 +107,25 @@ class HomeController {
     }
   }
 
+  /// 在选区的帧送达（或截屏结束）时完成，原生端据此恢复悬浮球
+  Future<void> _handleAreaSelected(ui.Rect region, DateTime dismissedAt) {
+    log.i("[HomeController] 区域选择完成: $region");
+    final Completer<void> frameDelivered = Completer<void>();
+    void delivered() {
+      if (!frameDelivered.isCompleted) frameDelivered.complete();
+    }
+
+    // 只接受选区遮罩消失之后的帧，避免截到半透明遮罩
+    toggleScreenCaptureAndOcr(
+            sendToTranslationMask: true,
+            region: region,
+            newerThan: dismissedAt,
+            traceStart: dismissedAt,
+            onFrameCaptured: delivered)
+        .whenComplete(delivered);
+    return frameDelivered.future;
+  }
+
   void _handleOverlayError(String error) {
     log.e("[HomeController] 悬浮窗错误: $error");
     _updateStatusMessageUI('悬浮窗错误: $error');
@@ -84,7 +138,9 @@ class HomeController {
     _updateStatusMessageUI("正在初始化服务...");
 
     _settingsService = SettingsService();
-    _localOcrService = LocalOcrService();
+    _localOcrService = LocalOcrService(pool: _recognizerPool);
+    // 翻译记忆在后台加载，不阻塞初始化；第一次翻译时若尚未加载完会等待
+    unawaited(_translationMemory.warmUp());
 
     // Load target language first as it might be part of the initial status
     targetLanguageController.text = await _settingsService.getTargetLanguage();
@@ -100,21 +156,39 @@ class HomeController {
 
   void dispose() {
     _localOcrService.dispose();
+    _recognizerPool.dispose();
     _openAiOcrService?.dispose();
     _translationService?.dispose();
     targetLanguageController.dispose();
     _overlayMessageSubscription?.cancel();
   }
 
+  // 系统内存紧张时只保留最近使用的识别器
+  void onMemoryPressure() {
+    _recognizerPool.trim();
+  }
+
   Future<void> loadAndInitializeServices() async {
     isInitializing = true; // Mark as initializing
     translatedText = "";
+    _invalidateProcessedFrame(); // OCR/翻译配置可能已变化
     _updateStatusMessageUI("加载OCR和翻译配置...");
 
+    // 截屏缩放比例交给原生端，OCR 结果在返回后换算回屏幕坐标
+    await NativeBridge.setCaptureScale(await _settingsService.getCaptureScale());
+
     _selectedOcrEngine = await _settingsService.getSelectedOcrEngine();
+    _localOcrService = LocalOcrService(
+        pool: _recognizerPool,
+        script: await _settingsService.getLocalOcrScript(),
+        tiling: await _settingsService.getLocalOcrTiling(),
+        regionCache: _ocrRegionCache,
+        preferredPreprocess:
+            await _settingsService.getOcrPreprocess(OcrEngineType.local));
     String ocrStatus = "OCR引擎: ${_selectedOcrEngine.name}. ";
 
-    if (_selectedOcrEngine == OcrEngineType.openai) {
+    _hybridOcrService = null;
+    if (_selectedOcrEngine != OcrEngineType.local) {
       final openAIConfig = await _settingsService.getOpenAiConfig();
       if (openAIConfig['apiKey'] != null &&
           openAIConfig['apiKey']!.isNotEmpty &&
@@ -123,8 +197,23 @@ class HomeController {
           apiKey: openAIConfig['apiKey']!,
           apiEndpoint: openAIConfig['apiEndpoint']!,
           model: openAIConfig['modelName']!,
+          preferredPreprocess:
+              await _settingsService.getOcrPreprocess(OcrEngineType.openai),
+          maxUploadEdge: await _settingsService.getOpenAiOcrMaxEdge(),
+          streamResults: await _settingsService.getOpenAiOcrStream(),
         );
-        ocrStatus += "OpenAI OCR 配置成功.";
+        if (_selectedOcrEngine == OcrEngineType.hybrid) {
+          _hybridOcrService = HybridOcrService(
+            local: _localOcrService,
+            cloud: _openAiOcrService!,
+            confidenceThreshold: await _settingsService.getHybridOcrThreshold(),
+            preferredPreprocess:
+                await _settingsService.getOcrPreprocess(OcrEngineType.hybrid),
+          );
+          ocrStatus += "混合 OCR 配置成功.";
+        } else {
+          ocrStatus += "OpenAI OCR 配置成功.";
+        }
       } else {
         _selectedOcrEngine = OcrEngineType.local; // Fallback
         await _settingsService
@@ -145,10 +234,13 @@ class HomeController {
     if (translationConfig['apiKey'] != null &&
         translationConfig['apiKey']!.isNotEmpty &&
         translationConfig['apiKey'] != 'YOUR_OPENAI_API_KEY') {
+      _progressiveTranslation =
+          await _settingsService.getOpenAiTranslationStream();
       _translationService = OpenAiTranslationService(
         apiKey: translationConfig['apiKey']!,
         apiEndpoint: translationConfig['apiEndpoint']!,
         model: translationConfig['modelName']!,
+        memory: _translationMemory,
       );
       translationStatus =
           "OpenAI 翻译服务已配置 (目标语言: ${targetLanguageController.text}).";
@@ -208,8 +300,8 @@ class HomeController {
       // 2. 请求截屏权限
       if (_isOverlayPermissionGranted) {
         _updateStatusMessageUI('请求截屏权限中...');
-        final Uint8List? captureGranted =
-            await NativeBridge.startScreenCapture();
+        final CapturedFrame? captureGranted =
+            await NativeBridge.captureFrame(format: FrameFormat.raw);
         if (captureGranted != null) {
           _isScreenCapturePermissionGranted = true;
           _updateStatusMessageUI('截屏权限已授予。');
@@ -226,38 +318,97 @@ class HomeController {
     await _updatePermissionsStatus(); // Refresh full status
   }
 
+  /// [region] 不为空时只截取并识别该屏幕区域；[newerThan] 要求帧晚于该时刻；
+  /// [traceStart] 为触发本次翻译的悬浮球事件时刻，随译文数据交给原生端统计端到端耗时；
+  /// [onFrameCaptured] 在截屏返回后、OCR 开始前调用
   Future<void> toggleScreenCaptureAndOcr(
-      {bool sendToTranslationMask = true}) async {
+      {bool sendToTranslationMask = true,
+      ui.Rect? region,
+      DateTime? newerThan,
+      DateTime? traceStart,
+      void Function()? onFrameCaptured}) async {
     capturedImageBytes = null;
     ocrResults = [];
     translatedText = "";
     _updateStatusMessageUI('准备捕获屏幕...');
 
     _updateStatusMessageUI('正在请求屏幕捕获权限和截图...');
-    final Uint8List? imageBytes = await NativeBridge.startScreenCapture();
+    final bool useOpenAiOcr =
+        _selectedOcrEngine == OcrEngineType.openai && _openAiOcrService != null;
+    final HybridOcrService? hybridOcr =
+        _selectedOcrEngine == OcrEngineType.hybrid ? _hybridOcrService : null;
+    // 按OCR引擎的需要请求帧格式，宽高直接取自帧头；混合引擎按本地识别的需要请求整帧
+    final FrameFormat frameFormat = useOpenAiOcr
+        ? _openAiOcrService!.preferredFrameFormat
+        : (hybridOcr?.preferredFrameFormat ??
+            _localOcrService.preferredFrameFormat);
+    final int? frameQuality = useOpenAiOcr
+        ? _openAiOcrService!.preferredFrameQuality
+        : _localOcrService.preferredFrameQuality;
+    final FramePreprocess preprocess = useOpenAiOcr
+        ? _openAiOcrService!.preferredPreprocess
+        : (hybridOcr?.preferredPreprocess ??
+            _localOcrService.preferredPreprocess);
+    // 云端 OCR 上传前在原生端缩小，本地 OCR 使用截屏分辨率
+    final int? maxEdge =
+        useOpenAiOcr ? _openAiOcrService!.preferredMaxEdge : null;
+    // 区域截屏的内容序号与整帧无关，不走“画面未变化”的快速路径
+    final CapturedFrame? frame = await NativeBridge.captureFrame(
+        format: frameFormat,
+        quality: frameQuality,
+        preprocess: preprocess,
+        maxEdge: maxEdge,
+        knownContentSequence:
+            region == null ? _lastProcessedContentSequence : null,
+        region: region,
+        newerThan: newerThan);
+    onFrameCaptured?.call();
+
+    if (frame != null && frame.isHeaderOnly) {
+      // 快速路径：画面与上次处理时完全相同，跳过OCR和翻译
+      log.i(
+          '[HomeController] 画面未变化 (contentSequence=${frame.contentSequence})，复用上次结果');
+      ocrResults = _lastOcrResults;
+      translatedText = ocrResults
+          .map((e) => _lastTranslations[e.text] ?? e.text)
+          .join("\n");
+      if (sendToTranslationMask && _lastTranslations.isNotEmpty) {
+        await _displayTranslationMask(ocrResults, _lastTranslations,
+            traceStart: traceStart);
+      }
+      _updateStatusMessageUI('画面未变化，已复用上次的识别和翻译结果。');
+      return;
+    }
 
-    if (imageBytes != null) {
-      capturedImageBytes = imageBytes;
+    if (frame != null) {
+      if (kDebugMode) _logCaptureDiagnostics(frame, hybridOcr);
+      // 编码后的帧 (png / jpeg / webp) 可以直接预览
+      capturedImageBytes = frame.isEncoded ? frame.bytes : null;
       _updateStatusMessageUI('截图成功！正在进行OCR (${_selectedOcrEngine.name})...');
 
-      final codec = await ui.instantiateImageCodec(imageBytes);
-      final frame = await codec.getNextFrame();
-      final int imageWidth = frame.image.width;
-      final int imageHeight = frame.image.height;
-      frame.image.dispose(); // Dispose codec and frame image
-
       List<OcrResult> currentResultsList = [];
+      // 流式 OCR 时边识别边翻译，识别结束时这里是已在进行中的翻译
+      Future<Map<String, String>>? pendingTranslations;
+      // 流式 OCR 已边识别边显示了蒙版
+      bool maskShown = false;
       try {
-        if (_selectedOcrEngine == OcrEngineType.openai &&
-            _openAiOcrService != null) {
-          currentResultsList = await _openAiOcrService!
-              .processImageBytes(imageBytes, imageWidth, imageHeight);
+        if (useOpenAiOcr && _openAiOcrService!.streamResults) {
+          final _StreamedOcr streamed = await _streamOcrAndTranslate(frame,
+              sendToTranslationMask: sendToTranslationMask,
+              traceStart: traceStart);
+          currentResultsList = streamed.results;
+          pendingTranslations = streamed.translations;
+          maskShown = streamed.maskShown;
+        } else if (useOpenAiOcr) {
+          currentResultsList = await _openAiOcrService!.processFrame(frame);
+        } else if (hybridOcr != null) {
+          currentResultsList = await hybridOcr.processFrame(frame);
         } else {
-          currentResultsList =
-              await _localOcrService.processImageBytes(imageBytes);
+          currentResultsList = await _localOcrService.processFrame(frame);
         }
 
-        ocrResults = currentResultsList;
+        // 缩放截图上的坐标换算回屏幕坐标，供译文遮罩定位
+        ocrResults = frame.toScreenSpace(currentResultsList);
 
         if (ocrResults.isEmpty) {
           _updateStatusMessageUI('OCR未能识别任何文本。');
@@ -266,9 +417,16 @@ class HomeController {
             _updateStatusMessageUI(
                 'OCR识别完成。正在翻译到${targetLanguageController.text}...');
 
-            // 使用结构化翻译API
-            Map<String, String> translations = await _translationService!
-                .translateStructured(ocrResults, targetLanguageController.text);
+            // 使用结构化翻译API；需要显示蒙版时优先流式翻译，译文逐条填入已显示的蒙版。
+            // 流式 OCR 的各批翻译已在进行中，其译文由 _streamOcrAndTranslate 填入蒙版
+            final bool progressive = sendToTranslationMask &&
+                pendingTranslations == null &&
+                _progressiveTranslation;
+            Map<String, String> translations = progressive
+                ? await _translateIntoMask(ocrResults, traceStart: traceStart)
+                : await (pendingTranslations ??
+                    _translationService!.translateStructured(
+                        ocrResults, targetLanguageController.text));
 
             // 检查是否有错误
             if (translations.containsKey('error')) {
@@ -286,15 +444,18 @@ class HomeController {
               }
 
               translatedText = translatedText.trim();
+              _rememberProcessedFrame(frame, ocrResults, translations);
               _updateStatusMessageUI('翻译完成。');
 
-              // 如果需要发送到overlay，则展示译文遮罩
-              if (sendToTranslationMask) {
-                await _displayTranslationMask(ocrResults, translations);
+              // 如果需要发送到overlay，则展示译文遮罩（渐进模式下已显示）
+              if (sendToTranslationMask && !progressive && !maskShown) {
+                await _displayTranslationMask(ocrResults, translations,
+                    traceStart: traceStart);
               }
             }
           } else {
             translatedText = ocrResults.map((e) => e.text).join("\n");
+            _rememberProcessedFrame(frame, ocrResults, {});
             _updateStatusMessageUI('OCR识别完成。未配置翻译服务。');
           }
         }
@@ -310,9 +471,159 @@ class HomeController {
     updateUi();
   }
 
-  Future<void> _displayTranslationMask(
-      List<OcrResult> ocrResults, Map<String, String> translations) async {
-    if (ocrResults.isEmpty) return;
+  /// 调试构建中记录截屏、阶段耗时和各缓存的统计。原生端的统计经平台通道获取，不等待，
+  /// 不占用截屏到 OCR 的路径，也不计入所统计的阶段
+  void _logCaptureDiagnostics(CapturedFrame frame, HybridOcrService? hybridOcr) {
+    final int dirtyRects = frame.dirtyRects.length;
+    unawaited(Future.wait([
+      NativeBridge.getCaptureStats(),
+      NativeBridge.getLatencyStats(),
+    ]).then((List<Map<String, dynamic>> stats) {
+      log.d('[HomeController] 截屏统计: ${stats[0]}, 变化区域: $dirtyRects个');
+      log.d('[HomeController] 阶段耗时: ${stats[1]}');
+    }));
+    log.d('[HomeController] 识别器: ${_recognizerPool.report()}');
+    log.d('[HomeController] OCR 区域缓存: ${_ocrRegionCache.stats()}');
+    log.d('[HomeController] 翻译记忆: ${_translationMemory.stats()}');
+    if (hybridOcr != null) {
+      log.d('[HomeController] 混合 OCR 上一帧: ${hybridOcr.lastStats}');
+    }
+  }
+
+  /// 流式云端 OCR：结果逐条到达，每攒够 [_streamTranslateBatchSize] 条就先翻译这一批，
+  /// 翻译与模型继续生成后续区域同时进行。[sendToTranslationMask] 且开启渐进显示时，第一批结果就以原文占位
+  /// 显示蒙版，之后每批追加到蒙版中，各批译文完成后按编号填入。
+  /// 返回全部结果（帧坐标）、合并各批译文的 Future，以及蒙版是否已由本方法显示
+  Future<_StreamedOcr> _streamOcrAndTranslate(CapturedFrame frame,
+      {bool sendToTranslationMask = false, DateTime? traceStart}) async {
+    final OpenAiTranslationService? translationService = _translationService;
+    final String targetLanguage = targetLanguageController.text;
+    final _ProgressiveMask? mask = sendToTranslationMask &&
+            _progressiveTranslation &&
+            translationService != null
+        ? _ProgressiveMask(this, traceStart: traceStart)
+        : null;
+    final List<OcrResult> results = [];
+    final List<Future<Map<String, String>>> batches = [];
+    int translated = 0;
+    Future<void> flush() async {
+      if (translationService == null || translated == results.length) return;
+      final List<OcrResult> batch = results.sublist(translated);
+      translated = results.length;
+      final Future<Map<String, String>> translation =
+          translationService.translateStructured(batch, targetLanguage);
+      batches.add(translation);
+      if (mask == null) return;
+      // 蒙版按屏幕坐标定位
+      await mask.addResults(frame.toScreenSpace(batch));
+      // 失败的批次由 _mergeTranslations 汇总，这里只填入成功的译文
+      unawaited(translation.then((Map<String, String> t) async {
+        if (!t.containsKey('error')) await mask.addTranslations(t);
+      }, onError: (Object _) {}));
+    }
+
+    try {
+      await for (final OcrResult result
+          in _openAiOcrService!.processFrameStream(frame)) {
+        results.add(result);
+        if (results.length == 1) {
+          _updateStatusMessageUI('已识别出第一段文字，正在继续识别并翻译...');
+        }
+        if (results.length - translated >= _streamTranslateBatchSize) {
+          await flush();
+        }
+      }
+      await flush();
+    } catch (_) {
+      // 已显示的项不再等待译文
+      await mask?.finish();
+      rethrow;
+    }
+    log.d(
+        '[HomeController] 流式 OCR: ${results.length} 条结果，${batches.length} 批翻译');
+    if (translationService == null) return _StreamedOcr(results, null, false);
+    final Future<Map<String, String>> merged =
+        _mergeTranslations(batches).then((Map<String, String> m) async {
+      await mask?.finish();
+      return m;
+    });
+    return _StreamedOcr(results, merged, mask != null && results.isNotEmpty);
+  }
+
+  /// 渐进显示译文：先以原文占位显示蒙版，流式译文每到一条就填入对应的项（同一原文的多个块一起填入），
+  /// 用户看到译文的等待时间取决于第一条而不是最后一条译文。
+  /// 返回收到的全部译文；一条译文都没有且流出错时返回 {'error': ...}
+  Future<Map<String, String>> _translateIntoMask(List<OcrResult> results,
+      {DateTime? traceStart}) async {
+    final _ProgressiveMask mask =
+        _ProgressiveMask(this, traceStart: traceStart);
+    await mask.addResults(results);
+
+    String? error;
+    try {
+      await for (final MapEntry<String, String> entry
+          in _translationService!.translateStructuredStream(
+              results, targetLanguageController.text)) {
+        if (mask.translations.isEmpty) {
+          _updateStatusMessageUI('已显示第一条译文，正在继续翻译...');
+        }
+        await mask.addTranslations({entry.key: entry.value});
+      }
+    } catch (e, s) {
+      log.e('[HomeController] 流式翻译错误: $e', error: e, stackTrace: s);
+      error = '$e';
+    }
+    await mask.finish();
+    if (mask.translations.isEmpty && error != null) return {'error': error};
+    return mask.translations;
+  }
+
+  /// 按批次顺序合并各批译文：部分批次失败时保留成功的译文，全部失败才返回错误
+  static Future<Map<String, String>> _mergeTranslations(
+      List<Future<Map<String, String>>> batches) async {
+    final Map<String, String> merged = {};
+    String? error;
+    int failed = 0;
+    for (final Map<String, String> batch in await Future.wait(batches)) {
+      if (batch.containsKey('error')) {
+        error ??= batch['error'];
+        failed++;
+      } else {
+        merged.addAll(batch);
+      }
+    }
+    if (failed > 0) {
+      log.w('[HomeController] 流式 OCR 翻译: $failed/${batches.length} 批失败: $error');
+    }
+    if (batches.isNotEmpty && failed == batches.length) return {'error': error!};
+    return merged;
+  }
+
+  void _rememberProcessedFrame(CapturedFrame frame, List<OcrResult> results,
+      Map<String, String> translations) {
+    if (frame.isRegion) {
+      // 区域结果不能代表整屏，不作为整帧快速路径的依据
+      _invalidateProcessedFrame();
+      return;
+    }
+    _lastProcessedContentSequence = frame.contentSequence;
+    _lastOcrResults = results;
+    _lastTranslations = translations;
+  }
+
+  void _invalidateProcessedFrame() {
+    _lastProcessedContentSequence = null;
+    _lastOcrResults = [];
+    _lastTranslations = {};
+  }
+
+  /// [pending] 为 true 时没有译文的项以占位样式显示原文，之后经 updateTranslationOverlay 按编号填入
+  /// [partial] 为 true 时之后还会追加块重新显示
+  /// 返回本次显示的会话编号，未能显示时返回 null
+  Future<int?> _displayTranslationMask(
+      List<OcrResult> ocrResults, Map<String, String> translations,
+      {bool pending = false, bool partial = false, DateTime? traceStart}) async {
+    if (ocrResults.isEmpty) return null;
 
     log.i('[HomeController] 准备显示翻译遮罩，OCR结果: ${ocrResults.length}个');
 
@@ -335,12 +646,20 @@ class HomeController {
         },
         'originalText': result.text,
         'translatedText': translatedText,
+        'id': i,
+        if (pending && !translations.containsKey(result.text)) 'pending': true,
       });
     }
 
     // 使用原生实现显示译文蒙版
-    await _nativeOverlayService.showTranslationOverlay(maskItems);
+    final int session = ++_overlaySession;
+    final bool shown = await _nativeOverlayService.showTranslationOverlay(
+        maskItems,
+        traceStart: traceStart,
+        session: session,
+        partial: partial);
     _updateStatusMessageUI('已显示译文遮罩');
+    return shown ? session : null;
   }
 
   Future<void> toggleOverlay() async {
@@ -386,6 +705,7 @@ class HomeController {
       }
 
       // 同时关闭译文遮罩
+      _overlaySession++;
       await _nativeOverlayService.hideTranslationOverlay();
     } catch (e, s) {
       log.e('[HomeController] 关闭悬浮窗失败: $e', error: e, stackTrace: s);
@@ -399,6 +719,7 @@ class HomeController {
     if (language.isNotEmpty) {
       targetLanguageController.text = language;
       await _settingsService.setTargetLanguage(language);
+      _invalidateProcessedFrame();
       _updateStatusMessageUI('目标语言已设置为: $language');
     }
   }
@@ -410,3 +731,107 @@ class HomeController {
     updateUi();
   }
 }
+
+/// 流式 OCR 的全部结果及其翻译（未配置翻译服务时为 null）
+class _StreamedOcr {
+  final List<OcrResult> results;
+  final Future<Map<String, String>>? translations;
+  final bool maskShown;
+
+  _StreamedOcr(this.results, this.translations, this.maskShown);
+}
+
+/// 渐进显示的译文蒙版：块先以原文占位显示，译文到达后经 updateTranslationOverlay 按编号填入，不重建蒙版。
+/// 第一条译文立即发送，之后的更新按 [HomeController._overlayUpdateInterval] 合并，减少通道调用；
+/// 追加块时重新显示整个蒙版（编号按追加顺序，不变）。更新未生效（蒙版未能显示或已被系统关闭）时，
+/// 带上目前的全部译文重新显示，之后的更新发往新蒙版。
+class _ProgressiveMask {
+  final HomeController _controller;
+  final DateTime? _traceStart;
+
+  /// 已显示的块（屏幕坐标），下标即编号
+  final List<OcrResult> results = [];
+
+  /// 已收到的全部译文
+  final Map<String, String> translations = {};
+  final Map<String, List<int>> _idsByText = {};
+  final Map<int, String> _buffered = {};
+  int? _session;
+  Future<int?>? _showing;
+  Timer? _flushTimer;
+  bool _finished = false;
+
+  _ProgressiveMask(this._controller, {DateTime? traceStart})
+      : _traceStart = traceStart;
+
+  /// 追加块并重新显示蒙版，还没有译文的块以占位样式显示原文
+  Future<void> addResults(List<OcrResult> more) async {
+    if (more.isEmpty) return;
+    for (final OcrResult result in more) {
+      (_idsByText[result.text] ??= []).add(results.length);
+      results.add(result);
+    }
+    await _show(pending: true);
+  }
+
+  /// 填入译文（同一原文的多个块一起填入）
+  Future<void> addTranslations(Map<String, String> more) async {
+    final bool first = translations.isEmpty;
+    translations.addAll(more);
+    more.forEach((text, translation) {
+      for (final int id in _idsByText[text] ?? const <int>[]) {
+        _buffered[id] = translation;
+      }
+    });
+    if (first) {
+      await _flush();
+    } else {
+      _flushTimer ??=
+          Timer(HomeController._overlayUpdateInterval, () => _flush());
+    }
+  }
+
+  /// 不会再有块和译文：发送最后一次更新，仍在等待译文的块改为显示原文
+  Future<void> finish() {
+    _finished = true;
+    return _flush();
+  }
+
+  Future<void> _show({required bool pending}) async {
+    _buffered.clear(); // 显示的数据已包含目前的全部译文
+    final Future<int?> showing = _controller._displayTranslationMask(
+        results, translations,
+        pending: pending, partial: !_finished, traceStart: _traceStart);
+    _showing = showing;
+    final int? session = await showing;
+    if (!identical(_showing, showing)) return; // 之后又重新显示了
+    _showing = null;
+    _session = session;
+    // 显示期间到达的译文和结束通知
+    if (_buffered.isNotEmpty || _finished) await _flush();
+  }
+
+  Future<void> _flush() async {
+    _flushTimer?.cancel();
+    _flushTimer = null;
+    // 显示中的蒙版还没有会话编号，显示完成后再发送
+    if (_showing != null) return;
+    final bool isFinal = _finished;
+    if (_buffered.isEmpty && !isFinal) return;
+    final int? target = _session;
+    final Map<int, String> batch = Map<int, String>.of(_buffered);
+    _buffered.clear();
+    // 蒙版未能显示，或已被关闭/被新的蒙版取代
+    if (target == null || target != _controller._overlaySession) return;
+    final bool applied = await _controller._nativeOverlayService
+        .updateTranslationOverlay(target, batch, isFinal: isFinal);
+    if (!applied &&
+        _showing == null &&
+        target == _session &&
+        target == _controller._overlaySession) {
+      log.w(
+          '[HomeController] 译文蒙版更新未生效，按已收到的 ${translations.length} 条译文重新显示');
+      await _show(pending: false);
+    }
+  }
+}
@@ -45,6 +45,12 @@ class MyHomePageState extends State<MyHomePage> with WidgetsBindingObserver {
     }
   }
 
+  @override
+  void didHaveMemoryPressure() {
+    super.didHaveMemoryPressure();
+    _controller.onMemoryPressure();
+  }
+
   @override
   Widget build(BuildContext context) {
     return Scaffold(
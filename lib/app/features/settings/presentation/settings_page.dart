@@ -1,6 +1,9 @@
 import 'package:flutter/material.dart';
 import 'package:transla_screen/app/services/settings_service.dart';
 import 'package:transla_screen/app/core/constants/enums.dart';
+import 'package:transla_screen/app/services/hybrid_ocr_service.dart';
+import 'package:transla_screen/app/services/ocr_tiling.dart';
+import 'package:transla_screen/app/services/openai_ocr_service.dart';
 
 class SettingsPage extends StatefulWidget {
   const SettingsPage({super.key});
@@ -10,8 +13,19 @@ class SettingsPage extends StatefulWidget {
 }
 
 class _SettingsPageState extends State<SettingsPage> {
+  // 上传图片长边的可选值，0 表示原始分辨率
+  static const List<int> _maxEdgeOptions = [0, 2048, 1600, 1280, 1024];
+
   final SettingsService _settingsService = SettingsService();
   OcrEngineType _selectedEngine = OcrEngineType.local;
+  double _captureScale = SettingsService.defaultCaptureScale;
+  final Map<OcrEngineType, FramePreprocess> _ocrPreprocess = {};
+  OcrScript _localOcrScript = OcrScript.auto;
+  OcrTilingConfig? _localOcrTiling;
+  int _openAiOcrMaxEdge = OpenAiOcrService.defaultMaxUploadEdge;
+  bool _openAiOcrStream = true;
+  bool _translationStream = true;
+  double _hybridOcrThreshold = HybridOcrService.defaultConfidenceThreshold;
   final _apiKeyController = TextEditingController();
   final _apiEndpointController = TextEditingController();
   final _modelNameController = TextEditingController();
@@ -32,6 +46,15 @@ class _SettingsPageState extends State<SettingsPage> {
   Future<void> _loadSettings() async {
     setState(() => _isLoading = true);
     _selectedEngine = await _settingsService.getSelectedOcrEngine();
+    _captureScale = await _settingsService.getCaptureScale();
+    _localOcrScript = await _settingsService.getLocalOcrScript();
+    _localOcrTiling = await _settingsService.getLocalOcrTiling();
+    _openAiOcrMaxEdge = await _settingsService.getOpenAiOcrMaxEdge();
+    _openAiOcrStream = await _settingsService.getOpenAiOcrStream();
+    _hybridOcrThreshold = await _settingsService.getHybridOcrThreshold();
+    for (final OcrEngineType engine in OcrEngineType.values) {
+      _ocrPreprocess[engine] = await _settingsService.getOcrPreprocess(engine);
+    }
     // Load OCR settings
     _apiKeyController.text = await _settingsService.getOpenAiApiKey() ?? '';
     _apiEndpointController.text = await _settingsService.getOpenAiApiEndpoint();
@@ -44,19 +67,31 @@ class _SettingsPageState extends State<SettingsPage> {
         await _settingsService.getOpenAiTranslationApiEndpoint();
     _translationModelNameController.text =
         await _settingsService.getOpenAiTranslationModelName();
+    _translationStream = await _settingsService.getOpenAiTranslationStream();
 
     setState(() => _isLoading = false);
   }
 
   Future<void> _saveSettings() async {
     await _settingsService.setSelectedOcrEngine(_selectedEngine);
+    await _settingsService.setCaptureScale(_captureScale);
+    await _settingsService.setLocalOcrScript(_localOcrScript);
+    await _settingsService.setLocalOcrTiling(_localOcrTiling != null,
+        config: _localOcrTiling ?? const OcrTilingConfig());
+    for (final MapEntry<OcrEngineType, FramePreprocess> entry
+        in _ocrPreprocess.entries) {
+      await _settingsService.setOcrPreprocess(entry.key, entry.value);
+    }
     // Save OCR settings
-    if (_selectedEngine == OcrEngineType.openai) {
+    if (_selectedEngine != OcrEngineType.local) {
       await _settingsService.setOpenAiApiKey(_apiKeyController.text.trim());
       await _settingsService
           .setOpenAiApiEndpoint(_apiEndpointController.text.trim());
       await _settingsService
           .setOpenAiModelName(_modelNameController.text.trim());
+      await _settingsService.setOpenAiOcrMaxEdge(_openAiOcrMaxEdge);
+      await _settingsService.setOpenAiOcrStream(_openAiOcrStream);
+      await _settingsService.setHybridOcrThreshold(_hybridOcrThreshold);
     }
 
     // Save Translation settings (always save, as they are independent)
@@ -66,6 +101,7 @@ class _SettingsPageState extends State<SettingsPage> {
         _translationApiEndpointController.text.trim());
     await _settingsService.setOpenAiTranslationModelName(
         _translationModelNameController.text.trim());
+    await _settingsService.setOpenAiTranslationStream(_translationStream);
 
     if (mounted) {
       ScaffoldMessenger.of(context).showSnackBar(
@@ -112,6 +148,48 @@ class _SettingsPageState extends State<SettingsPage> {
                     }
                   },
                 ),
+                if (_selectedEngine != OcrEngineType.openai)
+                  ListTile(
+                    contentPadding: const EdgeInsets.only(left: 16.0),
+                    title: const Text('识别文字'),
+                    subtitle: const Text('自动模式按识别结果切换中/日/韩/天城文模型'),
+                    trailing: DropdownButton<OcrScript>(
+                      value: _localOcrScript,
+                      items: const [
+                        DropdownMenuItem(
+                            value: OcrScript.auto, child: Text('自动')),
+                        DropdownMenuItem(
+                            value: OcrScript.latin, child: Text('拉丁字母')),
+                        DropdownMenuItem(
+                            value: OcrScript.chinese, child: Text('中文')),
+                        DropdownMenuItem(
+                            value: OcrScript.japanese, child: Text('日文')),
+                        DropdownMenuItem(
+                            value: OcrScript.korean, child: Text('韩文')),
+                        DropdownMenuItem(
+                            value: OcrScript.devanagari, child: Text('天城文')),
+                      ],
+                      onChanged: (OcrScript? value) {
+                        if (value != null) {
+                          setState(() {
+                            _localOcrScript = value;
+                          });
+                        }
+                      },
+                    ),
+                  ),
+                if (_selectedEngine != OcrEngineType.openai)
+                  SwitchListTile(
+                    contentPadding: const EdgeInsets.only(left: 16.0),
+                    title: const Text('高分辨率分块识别'),
+                    subtitle: const Text('长边 2000 像素以上的屏幕分块并行识别，小字更不易漏掉'),
+                    value: _localOcrTiling != null,
+                    onChanged: (bool value) {
+                      setState(() {
+                        _localOcrTiling = value ? const OcrTilingConfig() : null;
+                      });
+                    },
+                  ),
                 RadioListTile<OcrEngineType>(
                   title: const Text('云端 OCR (OpenAI)'),
                   value: OcrEngineType.openai,
@@ -124,7 +202,40 @@ class _SettingsPageState extends State<SettingsPage> {
                     }
                   },
                 ),
-                if (_selectedEngine == OcrEngineType.openai) ...[
+                RadioListTile<OcrEngineType>(
+                  title: const Text('混合 OCR (本地检测 + 云端识别)'),
+                  subtitle: const Text('只把本地没把握的文字块裁剪后交给 OpenAI，清晰的文字不上传'),
+                  value: OcrEngineType.hybrid,
+                  groupValue: _selectedEngine,
+                  onChanged: (OcrEngineType? value) {
+                    if (value != null) {
+                      setState(() {
+                        _selectedEngine = value;
+                      });
+                    }
+                  },
+                ),
+                if (_selectedEngine == OcrEngineType.hybrid) ...[
+                  ListTile(
+                    contentPadding: const EdgeInsets.only(left: 16.0),
+                    title: Text(
+                        '云端识别阈值: ${(_hybridOcrThreshold * 100).round()}%'),
+                    subtitle: const Text('本地置信度低于该值的文字块交给云端；调高更准确，但上传更多'),
+                  ),
+                  Slider(
+                    value: _hybridOcrThreshold,
+                    min: 0.0,
+                    max: 1.0,
+                    divisions: 20,
+                    label: '${(_hybridOcrThreshold * 100).round()}%',
+                    onChanged: (double value) {
+                      setState(() {
+                        _hybridOcrThreshold = value;
+                      });
+                    },
+                  ),
+                ],
+                if (_selectedEngine != OcrEngineType.local) ...[
                   const SizedBox(height: 20),
                   const Text('OpenAI API 配置',
                       style:
@@ -157,6 +268,91 @@ class _SettingsPageState extends State<SettingsPage> {
                     ),
                   ),
                 ],
+                if (_selectedEngine == OcrEngineType.openai) ...[
+                  ListTile(
+                    contentPadding: EdgeInsets.zero,
+                    title: const Text('上传图片长边'),
+                    subtitle: const Text('上传前缩小截图，减少上传体积和等待时间；过小会影响小字识别'),
+                    trailing: DropdownButton<int>(
+                      value: _openAiOcrMaxEdge,
+                      items: [
+                        for (final int edge in _maxEdgeOptions)
+                          DropdownMenuItem(
+                              value: edge,
+                              child: Text(edge == 0 ? '原始' : '$edge')),
+                        if (!_maxEdgeOptions.contains(_openAiOcrMaxEdge))
+                          DropdownMenuItem(
+                              value: _openAiOcrMaxEdge,
+                              child: Text('$_openAiOcrMaxEdge')),
+                      ],
+                      onChanged: (int? value) {
+                        if (value != null) {
+                          setState(() {
+                            _openAiOcrMaxEdge = value;
+                          });
+                        }
+                      },
+                    ),
+                  ),
+                  SwitchListTile(
+                    contentPadding: EdgeInsets.zero,
+                    title: const Text('流式返回识别结果'),
+                    subtitle: const Text('边生成边解析，先识别出的文字先开始翻译；接口不支持 stream 时关闭'),
+                    value: _openAiOcrStream,
+                    onChanged: (bool value) {
+                      setState(() {
+                        _openAiOcrStream = value;
+                      });
+                    },
+                  ),
+                ],
+                const Divider(height: 40, thickness: 1),
+                const Text('截屏设置',
+                    style:
+                        TextStyle(fontSize: 18, fontWeight: FontWeight.bold)),
+                ListTile(
+                  contentPadding: EdgeInsets.zero,
+                  title: Text('截屏分辨率: ${(_captureScale * 100).round()}%'),
+                  subtitle: const Text('降低分辨率可减少截屏、编码和上传耗时，但过低会影响识别精度'),
+                ),
+                Slider(
+                  value: _captureScale,
+                  min: SettingsService.minCaptureScale,
+                  max: SettingsService.maxCaptureScale,
+                  divisions: 15,
+                  label: '${(_captureScale * 100).round()}%',
+                  onChanged: (double value) {
+                    setState(() {
+                      _captureScale = value;
+                    });
+                  },
+                ),
+                ListTile(
+                  contentPadding: EdgeInsets.zero,
+                  title: const Text('OCR 预处理'),
+                  subtitle: const Text('在原生端转为灰度、拉伸对比度或二值化，低对比度界面上可提高识别率'),
+                  trailing: DropdownButton<FramePreprocess>(
+                    value: _ocrPreprocess[_selectedEngine] ??
+                        FramePreprocess.none,
+                    items: const [
+                      DropdownMenuItem(
+                          value: FramePreprocess.none, child: Text('无')),
+                      DropdownMenuItem(
+                          value: FramePreprocess.grayscale, child: Text('灰度')),
+                      DropdownMenuItem(
+                          value: FramePreprocess.contrast, child: Text('对比度增强')),
+                      DropdownMenuItem(
+                          value: FramePreprocess.binarize, child: Text('二值化')),
+                    ],
+                    onChanged: (FramePreprocess? value) {
+                      if (value != null) {
+                        setState(() {
+                          _ocrPreprocess[_selectedEngine] = value;
+                        });
+                      }
+                    },
+                  ),
+                ),
                 const Divider(height: 40, thickness: 1),
                 const Text('OpenAI 翻译配置',
                     style:
@@ -188,6 +384,17 @@ class _SettingsPageState extends State<SettingsPage> {
                     hintText: 'gpt-3.5-turbo or gpt-4 etc.',
                   ),
                 ),
+                SwitchListTile(
+                  contentPadding: EdgeInsets.zero,
+                  title: const Text('逐条显示译文'),
+                  subtitle: const Text('蒙版先显示原文，译文流式到达后逐条替换；接口不支持 stream 时关闭'),
+                  value: _translationStream,
+                  onChanged: (bool value) {
+                    setState(() {
+                      _translationStream = value;
+                    });
+                  },
+                ),
                 const SizedBox(height: 30),
                 ElevatedButton(
                   onPressed: _saveSettings,
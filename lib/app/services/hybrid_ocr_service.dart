@@ -0,0 +1,194 @@
+import 'dart:collection';
+import 'dart:math';
+import 'dart:ui' as ui;
+
+import 'package:transla_screen/app/core/constants/enums.dart';
+import 'package:transla_screen/app/core/models/captured_frame.dart';
+import 'package:transla_screen/app/core/models/ocr_result.dart';
+import 'package:transla_screen/app/services/latency_tracer.dart';
+import 'package:transla_screen/app/services/logger_service.dart';
+import 'package:transla_screen/app/services/native_bridge.dart';
+import 'package:transla_screen/app/services/ocr_service.dart';
+import 'package:transla_screen/app/services/openai_ocr_service.dart';
+
+/// 按屏幕坐标截取一块区域的编码帧，默认通过原生端的区域截屏获取
+typedef CropLoader = Future<CapturedFrame?> Function(ui.Rect screenRect);
+
+/// 混合 OCR：本地检测，云端只识别本地没把握的区域
+///
+/// 先用 [LocalOcrService] 识别整帧，得到文字块的位置和置信度；置信度低于 [confidenceThreshold] 的块
+/// 按框（外扩少许边距）向原生端请求区域截屏，编码成小张 WebP，一次请求批量交给 [OpenAiOcrService.recognizeCrops]。
+/// 云端只返回每块的文字，框仍用本地检测的结果，最后与高置信度的本地结果合并成一个列表。
+/// 上传体积、云端耗时和费用随画面中“难认”部分的比例下降，全是清晰文字的画面不会发出任何请求。
+///
+/// 同一位置、本地识别文字相同的块（多半来自 [LocalOcrService.regionCache] 命中的未变化区域）复用上次云端的文字，
+/// 不会重复上传。ML Kit 不提供置信度的平台（如 iOS）上所有块都视为可信，退化为纯本地识别。
+///
+/// 裁剪取自原生端当前持有的帧，若本地识别期间画面已变化，裁剪内容可能与本地结果不一致；
+/// 云端文字只替换对应块的文字，最坏情况等同于一次错误识别，下一次截屏即恢复。
+class HybridOcrService {
+  static const double defaultConfidenceThreshold = 0.8;
+
+  /// 一次请求最多上传的裁剪数，超出时只上传置信度最低的几块
+  static const int maxCloudCrops = 24;
+
+  /// 裁剪框外扩的边距：块高度的比例，至少 [_minCropPadding] 像素（帧坐标）
+  static const double _cropPaddingRatio = 0.2;
+  static const double _minCropPadding = 4;
+
+  /// 云端文字备忘录的容量（块数）
+  static const int _memoCapacity = 256;
+
+  /// 两个服务都由调用方持有和释放
+  final LocalOcrService local;
+  final OpenAiOcrService cloud;
+
+  /// 块置信度低于该值时交给云端识别
+  final double confidenceThreshold;
+
+  /// 截屏时在原生端做的预处理，只作用于本地识别用的整帧，云端裁剪不做预处理
+  final FramePreprocess preferredPreprocess;
+
+  final CropLoader _loadCrop;
+
+  // 位置 + 本地文字 -> 云端文字，按最近使用淘汰
+  final LinkedHashMap<String, String> _memo = LinkedHashMap();
+
+  /// 上一帧的 {blocks, lowConfidence, cloudCrops, memoHits, cropAreaFraction, cloudMs, requestBytes}
+  Map<String, dynamic> lastStats = const {};
+
+  HybridOcrService({
+    required this.local,
+    required this.cloud,
+    this.confidenceThreshold = defaultConfidenceThreshold,
+    this.preferredPreprocess = FramePreprocess.none,
+    CropLoader? cropLoader,
+  }) : _loadCrop = cropLoader ?? _captureRegion;
+
+  /// 本地识别使用 NV21 整帧
+  FrameFormat get preferredFrameFormat => local.preferredFrameFormat;
+
+  int? get preferredFrameQuality => local.preferredFrameQuality;
+
+  /// 裁剪与整帧上传一样使用有损 WebP，不缩小
+  static Future<CapturedFrame?> _captureRegion(ui.Rect screenRect) =>
+      NativeBridge.captureFrame(
+          format: FrameFormat.webp, quality: 80, region: screenRect);
+
+  /// 返回基于本帧像素坐标的结果，与 [LocalOcrService.processFrame] 一致
+  Future<List<OcrResult>> processFrame(CapturedFrame frame) async {
+    final List<OcrResult> results =
+        List<OcrResult>.of(await local.processFrame(frame));
+    final List<int> low = [];
+    for (int i = 0; i < results.length; i++) {
+      final double? c = results[i].confidence;
+      if (c != null &&
+          c < confidenceThreshold &&
+          results[i].text.trim().isNotEmpty) {
+        low.add(i);
+      }
+    }
+    if (low.isEmpty) {
+      lastStats = {'blocks': results.length, 'lowConfidence': 0};
+      return results;
+    }
+
+    // 先用备忘录命中的文字，其余按置信度从低到高取前 maxCloudCrops 块上传
+    int memoHits = 0;
+    final List<int> pending = [];
+    for (final int i in low) {
+      final String? text = _memoLookup(_memoKey(results[i]));
+      if (text != null) {
+        results[i] = results[i].withText(text);
+        memoHits++;
+      } else {
+        pending.add(i);
+      }
+    }
+    pending.sort(
+        (a, b) => results[a].confidence!.compareTo(results[b].confidence!));
+    final List<int> upload = pending.take(maxCloudCrops).toList();
+
+    double cropArea = 0;
+    double cloudMs = 0;
+    if (upload.isNotEmpty) {
+      final Stopwatch stopwatch = Stopwatch()..start();
+      final List<ui.Rect> boxes = [
+        for (final int i in upload) _cropBox(results[i].boundingBox, frame)
+      ];
+      cropArea = boxes.fold(0.0, (sum, b) => sum + b.width * b.height);
+      try {
+        final List<CapturedFrame?> crops = await Future.wait([
+          for (final ui.Rect box in boxes) _loadCrop(frame.toScreenRect(box))
+        ]);
+        final List<int> sent = [];
+        final List<CapturedFrame> sentCrops = [];
+        for (int k = 0; k < crops.length; k++) {
+          final CapturedFrame? crop = crops[k];
+          if (crop != null && crop.isEncoded && !crop.isHeaderOnly) {
+            sent.add(upload[k]);
+            sentCrops.add(crop);
+          }
+        }
+        final List<String?> texts = await cloud.recognizeCrops(sentCrops);
+        for (int k = 0; k < sent.length; k++) {
+          final String? text = texts[k];
+          // 云端没有给出文字时保留本地结果
+          if (text == null || text.trim().isEmpty) continue;
+          final int i = sent[k];
+          _memoStore(_memoKey(results[i]), text);
+          results[i] = results[i].withText(text);
+        }
+      } catch (e, s) {
+        log.e('[HybridOcrService] Cloud recognition of crops failed: $e',
+            error: e, stackTrace: s);
+      }
+      cloudMs = stopwatch.elapsedMicroseconds / 1000.0;
+      LatencyTracer.record(LatencyTracer.stageOcrHybridCloud, cloudMs);
+    }
+
+    lastStats = {
+      'blocks': results.length,
+      'lowConfidence': low.length,
+      'cloudCrops': upload.length,
+      'memoHits': memoHits,
+      'cropAreaFraction': frame.width * frame.height == 0
+          ? 0.0
+          : cropArea / (frame.width * frame.height),
+      'cloudMs': cloudMs,
+      if (upload.isNotEmpty)
+        'requestBytes': cloud.lastUploadStats['requestBytes'],
+    };
+    log.d('[HybridOcrService] $lastStats');
+    return results;
+  }
+
+  /// 块的框外扩边距后限制在帧内（帧坐标）
+  static ui.Rect _cropBox(ui.Rect box, CapturedFrame frame) {
+    final double padding =
+        max(_minCropPadding, box.height * _cropPaddingRatio);
+    return ui.Rect.fromLTRB(
+      max(0.0, box.left - padding),
+      max(0.0, box.top - padding),
+      min(frame.width.toDouble(), box.right + padding),
+      min(frame.height.toDouble(), box.bottom + padding),
+    );
+  }
+
+  static String _memoKey(OcrResult result) {
+    final ui.Rect b = result.boundingBox;
+    return '${b.left.round()},${b.top.round()},${b.right.round()},${b.bottom.round()}|${result.text}';
+  }
+
+  String? _memoLookup(String key) {
+    final String? text = _memo.remove(key);
+    if (text != null) _memo[key] = text;
+    return text;
+  }
+
+  void _memoStore(String key, String text) {
+    _memo.remove(key);
+    _memo[key] = text;
+    if (_memo.length > _memoCapacity) _memo.remove(_memo.keys.first);
+  }
+}
@@ -0,0 +1,142 @@
+import 'dart:convert';
+
+import 'package:transla_screen/app/services/logger_service.dart';
+
+/// 增量解析模型流式输出的 JSON 数组：每当数组中的一个对象闭合就立即解码返回
+///
+/// 模型输出的是形如 `[{"text": ..., "bbox": [...]}, ...]` 的数组，前面可能带有 ```json 之类的
+/// Markdown 围栏或说明文字。数组只从两种 `[` 开始：位于开头（之前只有空白和可选的围栏行），
+/// 或紧跟着 `{`（中间可有空白）；说明文字中的 `[bbox in px]` 之类不会被当成数组。
+/// 解析时只跟踪字符串、转义和括号深度，只缓存当前尚未闭合的对象，不需要等整个回复结束。
+/// 顶层数组中嵌套的数组（如 `[[{...}], [{...}]]`）展开处理，最外层数组闭合后的内容全部忽略。
+class JsonArrayStreamParser {
+  final StringBuffer _current = StringBuffer();
+  // 数组开始之前：是否仍位于开头、是否在围栏行内、上一个非空白字符是否为待确认的 `[`
+  bool _leading = true;
+  bool _inFence = false;
+  bool _bracketPending = false;
+  bool _finished = false;
+  bool _inString = false;
+  bool _escaped = false;
+  // 对象之外的数组嵌套深度：0 表示数组尚未开始
+  int _arrayDepth = 0;
+  // 对象内的嵌套深度：0 表示位于对象之间，>0 表示位于对象（或其内部的数组）内
+  int _depth = 0;
+
+  /// 数组是否已闭合
+  bool get isFinished => _finished;
+
+  /// 送入一段输出，返回其中闭合的对象；无法解码的对象被跳过
+  List<Map<String, dynamic>> add(String chunk) {
+    final List<Map<String, dynamic>> objects = [];
+    for (int i = 0; i < chunk.length && !_finished; i++) {
+      final String c = chunk[i];
+      if (_arrayDepth == 0) {
+        if (!_startsArray(c)) continue;
+        _arrayDepth = 1;
+        // 由 `[{` 确认的数组，当前字符是第一个对象的 `{`，继续按对象之间处理
+        if (c == '[') continue;
+      }
+      if (_inString) {
+        if (_depth > 0) _current.write(c);
+        if (_escaped) {
+          _escaped = false;
+        } else if (c == '\\') {
+          _escaped = true;
+        } else if (c == '"') {
+          _inString = false;
+        }
+        continue;
+      }
+      if (_depth == 0) {
+        if (c == '"') {
+          _inString = true;
+        } else if (c == '{') {
+          _depth = 1;
+          _current
+            ..clear()
+            ..write(c);
+        } else if (c == '[') {
+          _arrayDepth++;
+        } else if (c == ']') {
+          _arrayDepth--;
+          if (_arrayDepth == 0) _finished = true;
+        }
+        continue;
+      }
+      _current.write(c);
+      if (c == '"') {
+        _inString = true;
+      } else if (c == '{' || c == '[') {
+        _depth++;
+      } else if (c == '}' || c == ']') {
+        _depth--;
+        if (_depth == 0) {
+          final Map<String, dynamic>? object = _decode(_current.toString());
+          if (object != null) objects.add(object);
+          _current.clear();
+        }
+      }
+    }
+    return objects;
+  }
+
+  /// 数组开始之前逐字符调用，返回数组是否从当前字符（开头的 `[`，或 `[` 之后的 `{`）开始
+  bool _startsArray(String c) {
+    if (_inFence) {
+      if (c == '\n') _inFence = false;
+      return false;
+    }
+    if (_bracketPending) {
+      if (_isWhitespace(c)) return false;
+      _bracketPending = false;
+      if (c == '{') return true;
+    }
+    if (c == '[') {
+      if (_leading) return true;
+      _bracketPending = true;
+      return false;
+    }
+    if (_leading) {
+      if (_isWhitespace(c)) return false;
+      if (c == '`') {
+        // ```json 围栏行，读到行尾后仍视为开头
+        _inFence = true;
+        return false;
+      }
+    }
+    _leading = false;
+    return false;
+  }
+
+  static bool _isWhitespace(String c) =>
+      c == ' ' || c == '\n' || c == '\r' || c == '\t';
+
+  /// OpenAI 流式接口 SSE 的一行：`data: {...}` 中 choices[0].delta.content 的文本；
+  /// 其他行（注释、空行、[DONE]）返回 null
+  static String? sseDelta(String line) {
+    if (!line.startsWith('data:')) return null;
+    final String payload = line.substring(5).trim();
+    if (payload.isEmpty || payload == '[DONE]') return null;
+    try {
+      final dynamic event = jsonDecode(payload);
+      final dynamic choices =
+          event is Map<String, dynamic> ? event['choices'] : null;
+      if (choices is! List || choices.isEmpty) return null;
+      final dynamic delta = choices[0]['delta'];
+      return delta is Map<String, dynamic> ? delta['content'] as String? : null;
+    } on FormatException {
+      log.w('[JsonArrayStreamParser] Skipping malformed SSE event: $payload');
+      return null;
+    }
+  }
+
+  static Map<String, dynamic>? _decode(String text) {
+    try {
+      final dynamic value = jsonDecode(text);
+      return value is Map<String, dynamic> ? value : null;
+    } on FormatException {
+      return null;
+    }
+  }
+}
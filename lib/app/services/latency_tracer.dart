@@ -0,0 +1,54 @@
+import 'dart:developer';
+
+import 'package:transla_screen/app/services/native_bridge.dart';
+
+/// Flutter 端的阶段耗时埋点：输出 DevTools Timeline 事件，并把耗时上报给原生端的滚动统计
+///
+/// 原生端（悬浮球事件、帧获取/转换/编码、蒙版解析/视图创建）自行记录，
+/// 所有阶段的 p50/p95/p99 统一通过 NativeBridge.getLatencyStats 查询。
+class LatencyTracer {
+  static const String stageChannelTransfer = 'channel_transfer';
+  static const String stageOcr = 'ocr';
+  // 本地 OCR 按输入方式分开统计（构建 InputImage + 识别），用于对比临时文件与内存输入
+  static const String stageOcrLocalFile = 'ocr_local_file';
+  static const String stageOcrLocalBytes = 'ocr_local_bytes';
+  // 本地 OCR 按文字体系分开统计，阶段名为 ocr_script_<体系>
+  static const String stageOcrScriptPrefix = 'ocr_script_';
+  // 云端 OCR 从开始发送请求到收到响应头的时间
+  static const String stageOcrCloudTtfb = 'ocr_cloud_ttfb';
+  // 流式云端 OCR 从发送请求到产出第一条结果的时间
+  static const String stageOcrCloudFirstResult = 'ocr_cloud_first_result';
+  // 混合 OCR 的云端补充识别（裁剪低置信度区域 + 一次批量请求）
+  static const String stageOcrHybridCloud = 'ocr_hybrid_cloud';
+  static const String stageTranslate = 'translate';
+  // 流式翻译从开始到产出第一条译文的时间
+  static const String stageTranslateFirstItem = 'translate_first_item';
+
+  static const String _eventPrefix = 'TranslaScreen:';
+
+  /// 在 Timeline 上以异步任务包住 [body]，结束后记录耗时（失败也记录）
+  static Future<T> trace<T>(String stage, Future<T> Function() body,
+      {Map<String, dynamic>? arguments}) async {
+    final TimelineTask task = TimelineTask();
+    task.start('$_eventPrefix$stage', arguments: arguments);
+    final Stopwatch stopwatch = Stopwatch()..start();
+    try {
+      return await body();
+    } finally {
+      task.finish();
+      record(stage, stopwatch.elapsedMicroseconds / 1000.0);
+    }
+  }
+
+  /// 记录从 [startEpochMs]（原生端的时刻）到现在的耗时，用于跨通道的阶段
+  static void recordSince(String stage, int startEpochMs) {
+    final int durationMs = DateTime.now().millisecondsSinceEpoch - startEpochMs;
+    Timeline.instantSync('$_eventPrefix$stage',
+        arguments: {'durationMs': durationMs});
+    record(stage, durationMs.toDouble());
+  }
+
+  /// 上报一次耗时；不等待原生端应答，统计失败不影响主流程
+  static void record(String stage, double durationMs) =>
+      NativeBridge.recordLatency(stage, durationMs);
+}
@@ -1,23 +1,240 @@
+import 'dart:ui' as ui;
+
 import 'package:flutter/services.dart';
+import 'package:transla_screen/app/core/constants/enums.dart';
+import 'package:transla_screen/app/core/models/captured_frame.dart';
+import 'package:transla_screen/app/services/latency_tracer.dart';
 import 'package:transla_screen/app/services/logger_service.dart';
+import 'package:transla_screen/app/services/shared_frame_memory.dart';
 
 class NativeBridge {
   static const MethodChannel _channel =
       MethodChannel('com.example.transla_screen/screen_capture');
+  static const EventChannel _frameStreamChannel =
+      EventChannel('com.example.transla_screen/frame_stream');
 
-  // 启动屏幕捕获意图并返回截图的字节数据
-  static Future<Uint8List?> startScreenCapture() async {
+  // 启动屏幕捕获（首次调用会请求权限）并返回指定格式的最新一帧
+  // [knownContentSequence] 为调用方已处理过的内容序号，内容未变化时只返回帧头
+  // [region] 为屏幕坐标下的截取区域，原生端只拷贝/编码该区域
+  // [newerThan] 为空时任意缓存帧均可，否则只接受该时刻之后的帧；
+  // [timeout] 内没有满足要求的帧时原生端以 FRAME_TIMEOUT 结束请求
+  // [quality] 为有损格式 (jpeg / webp) 的编码质量 1~100，缺省由原生端决定
+  // [preprocess] 为原生端的 OCR 预处理；raw 格式时返回 L_8 亮度，其余格式编码灰度/二值图
+  // [maxEdge] 不为空且帧的长边超过它时原生端先等比缩小，帧头中的尺寸随之换算
+  static Future<CapturedFrame?> captureFrame(
+      {FrameFormat format = FrameFormat.png,
+      int? quality,
+      FramePreprocess preprocess = FramePreprocess.none,
+      int? maxEdge,
+      int? knownContentSequence,
+      ui.Rect? region,
+      DateTime? newerThan,
+      Duration? timeout}) async {
     try {
-      final Uint8List? imageBytes =
-          await _channel.invokeMethod<Uint8List>('startScreenCapture');
-      return imageBytes;
+      final Map<dynamic, dynamic>? frame =
+          await _channel.invokeMethod<Map<dynamic, dynamic>>(
+              'startScreenCapture', {
+        'format': format.name,
+        if (quality != null) 'quality': quality,
+        if (preprocess != FramePreprocess.none) 'preprocess': preprocess.name,
+        if (maxEdge != null) 'maxEdge': maxEdge,
+        if (knownContentSequence != null)
+          'knownContentSequence': knownContentSequence,
+        if (region != null)
+          'region': {
+            'l': region.left.floor(),
+            't': region.top.floor(),
+            'r': region.right.ceil(),
+            'b': region.bottom.ceil(),
+          },
+        if (newerThan != null) 'newerThanMs': newerThan.millisecondsSinceEpoch,
+        if (timeout != null) 'timeoutMs': timeout.inMilliseconds,
+      });
+      return frame == null ? null : _frameFromChannel(frame);
     } on PlatformException catch (e) {
       log.e(
-          "[NativeBridge] Failed to start screen capture or get image bytes: '${e.message}'. Code: ${e.code}. Details: ${e.details}",
+          "[NativeBridge] Failed to start screen capture or get frame: '${e.message}'. Code: ${e.code}. Details: ${e.details}",
           error: e
           // stackTrace: e.stacktrace, // Removed as e.stacktrace is String? and logger can handle it from error: e
           );
       return null;
     }
   }
+
+  // 切换原生截屏模式（默认 lazy）
+  static Future<bool> setCaptureMode(CaptureMode mode) async {
+    try {
+      return await _channel
+              .invokeMethod<bool>('setCaptureMode', {'mode': mode.name}) ??
+          false;
+    } on PlatformException catch (e) {
+      log.e("[NativeBridge] Failed to set capture mode: '${e.message}'",
+          error: e);
+      return false;
+    }
+  }
+
+  // 设置截屏缩放比例 (0.25 ~ 1.0)，会话进行中时原生端会重建 VirtualDisplay
+  static Future<bool> setCaptureScale(double scale) async {
+    try {
+      return await _channel
+              .invokeMethod<bool>('setCaptureScale', {'scale': scale}) ??
+          false;
+    } on PlatformException catch (e) {
+      log.e("[NativeBridge] Failed to set capture scale: '${e.message}'",
+          error: e);
+      return false;
+    }
+  }
+
+  // 设置 raw 帧的传输方式；shared 时帧像素位于共享内存，用完必须调用 [releaseFrame]。
+  // 切回 channel 时解除共享内存映射，调用前须已归还所有共享帧
+  static Future<bool> setFrameTransport(FrameTransport transport) async {
+    try {
+      final bool ok = await _channel.invokeMethod<bool>(
+              'setFrameTransport', {'transport': transport.name}) ??
+          false;
+      if (ok && transport == FrameTransport.channel) {
+        SharedFrameMemory.dispose();
+      }
+      return ok;
+    } on PlatformException catch (e) {
+      log.e("[NativeBridge] Failed to set frame transport: '${e.message}'",
+          error: e);
+      return false;
+    }
+  }
+
+  // 归还共享内存帧的槽位，之后不能再访问 frame.bytes；非共享帧直接忽略
+  static Future<void> releaseFrame(CapturedFrame frame) async {
+    if (!frame.isShared) return;
+    try {
+      await _channel.invokeMethod<bool>('releaseSharedFrame',
+          {'slot': frame.sharedSlot, 'generation': frame.sharedGeneration});
+    } on PlatformException catch (e) {
+      log.e("[NativeBridge] Failed to release shared frame: '${e.message}'",
+          error: e);
+    }
+  }
+
+  // 共享内存帧是否仍未被原生端覆盖（会话结束时原生端会收回所有槽位）；非共享帧总是有效
+  static bool isFrameIntact(CapturedFrame frame) {
+    if (!frame.isShared) return true;
+    return SharedFrameMemory.generationOf(frame.sharedSlot!) ==
+        frame.sharedGeneration;
+  }
+
+  // 获取截屏会话计数：取到的帧数 vs 实际拷贝/编码的帧数
+  static Future<Map<String, dynamic>> getCaptureStats() async {
+    try {
+      final Map<dynamic, dynamic>? stats =
+          await _channel.invokeMethod<Map<dynamic, dynamic>>('getCaptureStats');
+      return stats == null ? {} : Map<String, dynamic>.from(stats);
+    } on PlatformException catch (e) {
+      log.e("[NativeBridge] Failed to get capture stats: '${e.message}'",
+          error: e);
+      return {};
+    }
+  }
+
+  // 持续推送帧流（需先通过 captureFrame 启动截屏会话）
+  // 原生端最多推送 [maxInFlight] 帧未确认的帧，处理完一帧后必须调用 [acknowledgeFrames] 归还信用；
+  // 没有信用期间只保留最新一帧，其余丢弃。[skipUnchanged] 为 true 时内容未变化的帧不推送，
+  // 只对整帧流有效：指定 [region] 时每一帧都会推送
+  static Stream<CapturedFrame> frameStream(
+      {FrameFormat format = FrameFormat.raw,
+      int? quality,
+      int maxInFlight = 1,
+      ui.Rect? region,
+      bool skipUnchanged = true}) {
+    return _frameStreamChannel.receiveBroadcastStream({
+      'format': format.name,
+      if (quality != null) 'quality': quality,
+      'initialCredits': maxInFlight,
+      'skipUnchanged': skipUnchanged,
+      if (region != null)
+        'region': {
+          'l': region.left.floor(),
+          't': region.top.floor(),
+          'r': region.right.ceil(),
+          'b': region.bottom.ceil(),
+        },
+    }).map((event) => _frameFromChannel(event as Map<dynamic, dynamic>));
+  }
+
+  // 原生端在发送前写入 sentAtMs，据此统计通道传输耗时；
+  // 共享内存传输的帧只有槽位描述，像素以共享内存的外部视图作为 bytes
+  static CapturedFrame _frameFromChannel(Map<dynamic, dynamic> map) {
+    final int? sentAtMs = map['sentAtMs'] as int?;
+    if (sentAtMs != null) {
+      LatencyTracer.recordSince(LatencyTracer.stageChannelTransfer, sentAtMs);
+    }
+    if (map['transport'] == FrameTransport.shared.name) {
+      map = Map<dynamic, dynamic>.of(map)
+        ..['bytes'] = SharedFrameMemory.view(
+          slot: map['slot'] as int,
+          fd: map['fd'] as int,
+          descriptorId: map['descriptorId'] as int? ?? 0,
+          capacity: map['capacity'] as int,
+          offset: map['offset'] as int,
+          length: map['length'] as int,
+        );
+    }
+    return CapturedFrame.fromChannel(map);
+  }
+
+  // 归还帧流信用，原生端有未发送的最新帧时会立即推送
+  static Future<void> acknowledgeFrames([int credits = 1]) async {
+    try {
+      await _channel.invokeMethod<bool>('grantFrameCredits', {'credits': credits});
+    } on PlatformException catch (e) {
+      log.e("[NativeBridge] Failed to grant frame credits: '${e.message}'",
+          error: e);
+    }
+  }
+
+  // 获取帧流计数：产生 / 推送 / 丢弃 / 因内容未变化跳过的帧数
+  static Future<Map<String, dynamic>> getFrameStreamStats() async {
+    try {
+      final Map<dynamic, dynamic>? stats = await _channel
+          .invokeMethod<Map<dynamic, dynamic>>('getFrameStreamStats');
+      return stats == null ? {} : Map<String, dynamic>.from(stats);
+    } on PlatformException catch (e) {
+      log.e("[NativeBridge] Failed to get frame stream stats: '${e.message}'",
+          error: e);
+      return {};
+    }
+  }
+
+  // 获取各阶段耗时的滚动统计：阶段名 → {count, lastMs, p50, p95, p99}
+  static Future<Map<String, dynamic>> getLatencyStats() async {
+    try {
+      final Map<dynamic, dynamic>? stats =
+          await _channel.invokeMethod<Map<dynamic, dynamic>>('getLatencyStats');
+      return stats == null ? {} : Map<String, dynamic>.from(stats);
+    } on PlatformException catch (e) {
+      log.e("[NativeBridge] Failed to get latency stats: '${e.message}'",
+          error: e);
+      return {};
+    }
+  }
+
+  // 上报一次阶段耗时到原生端的滚动统计；不等待应答，失败只记日志
+  static void recordLatency(String stage, double durationMs) {
+    _channel.invokeMethod<bool>('recordLatency',
+        {'stage': stage, 'durationMs': durationMs}).catchError((e) {
+      log.w("[NativeBridge] Failed to record latency for $stage: $e");
+      return false;
+    });
+  }
+
+  // 清空耗时统计，便于对比修改前后的数据
+  static Future<void> resetLatencyStats() async {
+    try {
+      await _channel.invokeMethod<bool>('resetLatencyStats');
+    } on PlatformException catch (e) {
+      log.e("[NativeBridge] Failed to reset latency stats: '${e.message}'",
+          error: e);
+    }
+  }
 }
@@ -1,4 +1,5 @@
 import 'dart:convert';
+import 'dart:ui' as ui;
 import 'package:flutter/services.dart';
 import 'package:transla_screen/app/services/logger_service.dart';
 import 'dart:io';
@@ -19,6 +20,13 @@ class NativeOverlayService {
   /// 回调处理
   Function(String action)? onBubbleActionReceived;
 
+  /// 区域选择完成回调，参数为屏幕坐标下的选区及选区遮罩消失的时刻；
+  /// 返回的 Future 在选区的帧送达后完成，原生端在此之前保持悬浮球隐藏
+  Future<void> Function(ui.Rect region, DateTime dismissedAt)? onAreaSelected;
+
+  /// 最近一次长按悬浮球的时刻，随译文数据回传给原生端作为端到端耗时的起点
+  DateTime? lastBubbleEventAt;
+
   /// 错误处理回调
   Function(String error)? onOverlayError;
 
@@ -29,6 +37,13 @@ class NativeOverlayService {
 
       switch (call.method) {
         case 'translate_fullscreen':
+          final args = call.arguments is Map
+              ? Map<String, dynamic>.from(call.arguments as Map)
+              : const <String, dynamic>{};
+          lastBubbleEventAt = args['eventAtMs'] != null
+              ? DateTime.fromMillisecondsSinceEpoch(
+                  (args['eventAtMs'] as num).toInt())
+              : DateTime.now();
           if (onBubbleActionReceived != null) {
             onBubbleActionReceived!('translate_fullscreen');
           }
@@ -38,6 +53,27 @@ class NativeOverlayService {
             onBubbleActionReceived!('start_area_selection');
           }
           break;
+        case 'area_selected':
+          final args = Map<String, dynamic>.from(call.arguments as Map);
+          final region = ui.Rect.fromLTRB(
+            (args['l'] as num).toDouble(),
+            (args['t'] as num).toDouble(),
+            (args['r'] as num).toDouble(),
+            (args['b'] as num).toDouble(),
+          );
+          final dismissedAt = args['dismissedAtMs'] != null
+              ? DateTime.fromMillisecondsSinceEpoch(
+                  (args['dismissedAtMs'] as num).toInt())
+              : DateTime.now();
+          if (onAreaSelected != null) {
+            await onAreaSelected!(region, dismissedAt);
+          }
+          break;
+        case 'area_selection_cancelled':
+          if (onBubbleActionReceived != null) {
+            onBubbleActionReceived!('area_selection_cancelled');
+          }
+          break;
         case 'mask_closed':
           if (onBubbleActionReceived != null) {
             onBubbleActionReceived!('mask_closed');
@@ -145,7 +181,12 @@ class NativeOverlayService {
 
   /// 显示译文蒙版
   /// [items] 要显示的译文项列表
-  Future<bool> showTranslationOverlay(List<Map<String, dynamic>> items) async {
+  /// [traceStart] 触发本次翻译的事件时刻，原生端据此统计端到端耗时
+  /// [session] 本次显示的会话编号，之后的 [updateTranslationOverlay] 带上同一编号；
+  /// 返回 true 时原生端可能还没显示蒙版，该会话的更新会暂存到蒙版显示后再应用
+  /// [partial] 为 true 时之后还会重新显示追加了块的蒙版，原生端收到最后一次更新前不结束端到端计时
+  Future<bool> showTranslationOverlay(List<Map<String, dynamic>> items,
+      {DateTime? traceStart, int session = 0, bool partial = false}) async {
     try {
       // 先检查权限
       if (Platform.isAndroid) {
@@ -165,10 +206,13 @@ class NativeOverlayService {
       final data = {
         'items': items,
         'timestamp': DateTime.now().millisecondsSinceEpoch,
+        if (traceStart != null)
+          'traceStartMs': traceStart.millisecondsSinceEpoch,
+        if (partial) 'partial': true,
       };
 
       return await _channel.invokeMethod('showTranslationOverlay',
-              {'translationData': jsonEncode(data)}) ??
+              {'translationData': jsonEncode(data), 'session': session}) ??
           false;
     } catch (e) {
       log.e('[NativeOverlayService] 显示译文蒙版失败', error: e);
@@ -179,6 +223,30 @@ class NativeOverlayService {
     }
   }
 
+  /// 逐项填入 [session] 的译文蒙版中的译文，不重建蒙版
+  /// [translations] 项编号（显示时的 id）到译文
+  /// [isFinal] 为 true 时表示不会再有更新，仍在等待译文的项改为显示原文
+  /// 返回 false 表示该会话的蒙版已不存在（未能显示、已关闭或已被新的蒙版取代），更新没有生效
+  Future<bool> updateTranslationOverlay(
+      int session, Map<int, String> translations,
+      {bool isFinal = false}) async {
+    try {
+      final data = {
+        'updates': [
+          for (final MapEntry<int, String> e in translations.entries)
+            {'id': e.key, 'translatedText': e.value}
+        ],
+        'final': isFinal,
+      };
+      return await _channel.invokeMethod('updateTranslationOverlay',
+              {'updateData': jsonEncode(data), 'session': session}) ??
+          false;
+    } catch (e) {
+      log.e('[NativeOverlayService] 更新译文蒙版失败', error: e);
+      return false;
+    }
+  }
+
   /// 隐藏译文蒙版
   Future<bool> hideTranslationOverlay() async {
     try {
@@ -0,0 +1,206 @@
+import 'dart:collection';
+import 'dart:math';
+import 'dart:typed_data';
+import 'dart:ui' as ui;
+
+import 'package:transla_screen/app/core/models/captured_frame.dart';
+import 'package:transla_screen/app/core/models/ocr_result.dart';
+
+/// 帧中的一个 OCR 区域：整宽、覆盖分块行 [firstRow, endRow)
+class OcrRegion {
+  final int firstRow;
+  final int endRow;
+
+  const OcrRegion(this.firstRow, this.endRow);
+
+  @override
+  String toString() => 'OcrRegion($firstRow..$endRow)';
+}
+
+/// 按区域内容哈希缓存 OCR 结果
+///
+/// 帧按分块行切成整宽的横条（每条 [bandRows] 行分块），跨条的文字块会把相邻的条合并成一个区域，
+/// 保证每个结果完整地属于一个区域。区域的键由原生端计算的分块哈希组合而成，内容不变时键不变：
+/// 下一次截屏时未变化的区域直接复用缓存的文字和坐标，只有变化的区域需要重新识别。
+/// 结果以区域左上角为原点保存，同样的内容出现在其他位置（如整条滚动）时也能命中。
+///
+/// 缓存按估算的内存占用限制在 [budgetBytes] 以内，超出时淘汰最久未用的区域。
+class OcrRegionCache {
+  static const int defaultBudgetBytes = 512 * 1024;
+  static const int defaultBandRows = 4;
+
+  static const int _fnvOffsetBasis = 0xcbf29ce484222325;
+  static const int _fnvPrime = 0x100000001b3;
+
+  final int budgetBytes;
+  final int bandRows;
+
+  final LinkedHashMap<int, _Entry> _entries = LinkedHashMap();
+  int _bytes = 0;
+  int hits = 0;
+  int misses = 0;
+  int evictions = 0;
+
+  // 上一帧的区域划分，仅在帧尺寸相同时沿用
+  List<OcrRegion> _layout = const [];
+  int _layoutWidth = 0;
+  int _layoutHeight = 0;
+
+  OcrRegionCache(
+      {this.budgetBytes = defaultBudgetBytes, this.bandRows = defaultBandRows});
+
+  /// 当前帧应使用的区域划分：尺寸未变时沿用上一帧的划分，否则按固定横条切分
+  List<OcrRegion> layoutFor(CapturedFrame frame) {
+    if (_layoutWidth == frame.width &&
+        _layoutHeight == frame.height &&
+        _layout.isNotEmpty) {
+      return _layout;
+    }
+    return _bands(_rowsOf(frame), const []);
+  }
+
+  /// 区域内容的键：组合区域内所有分块哈希，[context] 区分会影响识别结果的设置（文字体系、预处理等）
+  int keyOf(CapturedFrame frame, OcrRegion region, String context) {
+    final Int64List hashes = frame.tileHashes!;
+    final int columns = (frame.width + frame.tileSize - 1) ~/ frame.tileSize;
+    int h = _fnvOffsetBasis;
+    h = (h ^ columns) * _fnvPrime;
+    h = (h ^ (region.endRow - region.firstRow)) * _fnvPrime;
+    h = (h ^ context.hashCode) * _fnvPrime;
+    // 最后一行分块可能不满，高度不同的区域即使哈希相同也不能互换
+    h = (h ^ regionBounds(frame, region).height.round()) * _fnvPrime;
+    for (int i = region.firstRow * columns; i < region.endRow * columns; i++) {
+      h = (h ^ hashes[i]) * _fnvPrime;
+    }
+    return h;
+  }
+
+  /// 区域在帧坐标中的范围
+  ui.Rect regionBounds(CapturedFrame frame, OcrRegion region) {
+    return ui.Rect.fromLTRB(
+        0,
+        (region.firstRow * frame.tileSize).toDouble(),
+        frame.width.toDouble(),
+        min(region.endRow * frame.tileSize, frame.height).toDouble());
+  }
+
+  /// 命中时返回换算到帧坐标的结果，并计入命中次数
+  List<OcrResult>? lookup(int key, ui.Rect bounds) {
+    final _Entry? entry = _entries.remove(key);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    _entries[key] = entry; // 移到末尾，标记为最近使用
+    hits++;
+    return entry.results
+        .map((r) => r.transformed(1, 1, dx: bounds.left, dy: bounds.top))
+        .toList();
+  }
+
+  /// 记住本帧的结果：按结果重新划分区域，并把每个区域的结果以区域左上角为原点存入缓存
+  void remember(CapturedFrame frame, List<OcrResult> results, String context) {
+    final List<OcrRegion> layout = _bands(_rowsOf(frame), [
+      for (final OcrResult r in results) _rowSpan(frame, r.boundingBox),
+    ]);
+    for (final OcrRegion region in layout) {
+      final ui.Rect bounds = regionBounds(frame, region);
+      final int key = keyOf(frame, region, context);
+      final _Entry? existing = _entries.remove(key);
+      if (existing != null) {
+        _entries[key] = existing;
+        continue;
+      }
+      _store(
+          key,
+          results
+              .where((r) => _belongsTo(r.boundingBox, bounds))
+              .map((r) => r.transformed(1, 1, dx: -bounds.left, dy: -bounds.top))
+              .toList());
+    }
+    _layout = layout;
+    _layoutWidth = frame.width;
+    _layoutHeight = frame.height;
+  }
+
+  /// 结果的中心落在区域内即属于该区域
+  static bool _belongsTo(ui.Rect box, ui.Rect bounds) {
+    final double centerY = box.center.dy;
+    return centerY >= bounds.top && centerY < bounds.bottom;
+  }
+
+  void _store(int key, List<OcrResult> results) {
+    final _Entry entry = _Entry(results);
+    _entries[key] = entry;
+    _bytes += entry.bytes;
+    while (_bytes > budgetBytes && _entries.length > 1) {
+      final int oldest = _entries.keys.first;
+      _bytes -= _entries.remove(oldest)!.bytes;
+      evictions++;
+    }
+  }
+
+  /// 先按 [bandRows] 切成横条，再把被同一个结果跨越的相邻横条合并
+  List<OcrRegion> _bands(int rows, List<List<int>> spans) {
+    final int bandCount = (rows + bandRows - 1) ~/ bandRows;
+    // joined[k] 表示第 k 条与第 k+1 条之间的边界被某个结果跨越
+    final List<bool> joined = List<bool>.filled(max(0, bandCount - 1), false);
+    for (final List<int> span in spans) {
+      for (int k = span[0] ~/ bandRows; k < (span[1] - 1) ~/ bandRows; k++) {
+        if (k >= 0 && k < joined.length) joined[k] = true;
+      }
+    }
+    final List<OcrRegion> regions = [];
+    int start = 0;
+    for (int k = 0; k < bandCount; k++) {
+      if (k < joined.length && joined[k]) continue;
+      regions.add(OcrRegion(start * bandRows, min((k + 1) * bandRows, rows)));
+      start = k + 1;
+    }
+    return regions;
+  }
+
+  static int _rowsOf(CapturedFrame frame) =>
+      (frame.height + frame.tileSize - 1) ~/ frame.tileSize;
+
+  /// 结果框覆盖的分块行 [first, end)
+  static List<int> _rowSpan(CapturedFrame frame, ui.Rect box) {
+    final int first = max(0, box.top.floor()) ~/ frame.tileSize;
+    final int end = max(
+        first + 1, (box.bottom.ceil() + frame.tileSize - 1) ~/ frame.tileSize);
+    return [first, end];
+  }
+
+  int get bytes => _bytes;
+
+  Map<String, dynamic> stats() => {
+        'entries': _entries.length,
+        'bytes': _bytes,
+        'budgetBytes': budgetBytes,
+        'hits': hits,
+        'misses': misses,
+        'evictions': evictions,
+      };
+
+  void clear() {
+    _entries.clear();
+    _bytes = 0;
+    _layout = const [];
+  }
+}
+
+class _Entry {
+  final List<OcrResult> results;
+  final int bytes;
+
+  _Entry(this.results) : bytes = _estimate(results);
+
+  /// 粗略估算：每个结果的对象、框和角点约 160 字节，文字按 UTF-16 计
+  static int _estimate(List<OcrResult> results) {
+    int bytes = 64;
+    for (final OcrResult r in results) {
+      bytes += 160 + r.text.length * 2;
+    }
+    return bytes;
+  }
+}
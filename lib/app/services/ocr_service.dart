@@ -1,62 +1,255 @@
 import 'dart:io';
+import 'dart:math';
 import 'dart:typed_data';
+import 'dart:ui' as ui;
 
 import 'package:google_mlkit_text_recognition/google_mlkit_text_recognition.dart';
 import 'package:path_provider/path_provider.dart'; // For temporary directory
+import 'package:transla_screen/app/core/constants/enums.dart';
+import 'package:transla_screen/app/core/models/captured_frame.dart';
 import 'package:transla_screen/app/core/models/ocr_result.dart';
+import 'package:transla_screen/app/services/latency_tracer.dart';
 import 'package:transla_screen/app/services/logger_service.dart';
+import 'package:transla_screen/app/services/ocr_region_cache.dart';
+import 'package:transla_screen/app/services/ocr_tiling.dart';
+import 'package:transla_screen/app/services/recognizer_pool.dart';
 
+/// 本地 ML Kit OCR
+///
+/// 识别器来自 [RecognizerPool]，按文字体系懒加载。[script] 为 [OcrScript.auto] 时沿用上一帧判断出的体系
+/// （首次按系统语言猜测），识别后用 [ScriptDetector] 检查结果：当前模型认出了其他体系的字符
+/// （如中文模型看到假名）时换用对应模型重识别；拉丁模型的结果大多是符号碎片时依次试用 CJK 模型，
+/// 取结果最好的一个。只有画面换了文字体系时才会多识别一次。
 class LocalOcrService {
-  final TextRecognizer _textRecognizer;
+  /// 识别结果中字母/表意文字的比例低于该值时，认为拉丁模型认错了文字体系
+  static const double minRecognitionQuality = 0.6;
 
-  LocalOcrService()
-      : _textRecognizer = TextRecognizer(script: TextRecognitionScript.latin);
+  final RecognizerPool _pool;
+  final bool _ownsPool;
 
+  /// 用户固定的文字体系，auto 时自动选择
+  final OcrScript script;
+
+  /// 截屏时在原生端做的预处理，由设置按引擎选择
+  final FramePreprocess preferredPreprocess;
+
+  /// 不为 null 时大帧分块识别，见 [OcrTilingConfig]
+  final OcrTilingConfig? tiling;
+
+  /// 不为 null 时按区域内容哈希缓存结果，只重新识别变化的区域，见 [OcrRegionCache]
+  final OcrRegionCache? regionCache;
+
+  /// 默认请求原生端转换好的 NV21，经 InputImage.fromBytes 直接识别，不经过临时文件和 PNG 编解码；
+  /// 传入 [FrameFormat.png] 时退回临时文件输入（用于对比两种输入方式的耗时）
+  final FrameFormat preferredFrameFormat;
+
+  /// [pool] 由调用方持有时，重建服务（如设置变更后）不会关闭已加载的识别器
+  LocalOcrService(
+      {RecognizerPool? pool,
+      this.script = OcrScript.auto,
+      this.tiling,
+      this.regionCache,
+      this.preferredPreprocess = FramePreprocess.none,
+      this.preferredFrameFormat = FrameFormat.nv21})
+      : _pool = pool ?? RecognizerPool(),
+        _ownsPool = pool == null;
+
+  /// NV21 / PNG 都不经过有损压缩，不使用质量参数
+  int? get preferredFrameQuality => null;
+
+  Future<List<OcrResult>> processFrame(CapturedFrame frame) async {
+    final Future<List<OcrResult>> Function() body;
+    switch (frame.format) {
+      case FrameFormat.nv21:
+        body = () => LatencyTracer.trace(LatencyTracer.stageOcrLocalBytes,
+            () => processNv21Frame(frame));
+        break;
+      case FrameFormat.png:
+        body = () => LatencyTracer.trace(LatencyTracer.stageOcrLocalFile,
+            () => processImageBytes(frame.bytes));
+        break;
+      default:
+        log.e(
+            "[LocalOcrService] Unsupported frame format ${frame.format.name}, expected nv21 or png.");
+        return [];
+    }
+    return LatencyTracer.trace(LatencyTracer.stageOcr, body, arguments: {
+      'engine': 'local',
+      'format': frame.format.name,
+      'width': frame.width,
+      'height': frame.height,
+      'preprocess': frame.preprocess.name,
+      'script': script.name,
+      'tiled': tiling?.appliesTo(frame.width, frame.height) ?? false,
+    });
+  }
+
+  /// 原生端转换好的 NV21 直接作为 ML Kit 的内存输入；宽高已由原生端补齐到偶数。
+  /// 配置了 [regionCache] 且帧带有分块哈希时增量识别，否则识别整帧
+  Future<List<OcrResult>> processNv21Frame(CapturedFrame frame) {
+    final OcrRegionCache? cache = regionCache;
+    if (cache != null && frame.hasTileHashes) {
+      return _processIncremental(frame, cache);
+    }
+    return _processFullFrame(frame);
+  }
+
+  /// 未变化的区域复用缓存，变化的区域单独识别；变化超过一半时直接识别整帧
+  Future<List<OcrResult>> _processIncremental(
+      CapturedFrame frame, OcrRegionCache cache) async {
+    final String context = '${script.name}/${frame.preprocess.name}';
+    final List<OcrResult> results = [];
+    final List<OcrRegion> changed = [];
+    int changedRows = 0;
+    for (final OcrRegion region in cache.layoutFor(frame)) {
+      final ui.Rect bounds = cache.regionBounds(frame, region);
+      final List<OcrResult>? cached =
+          cache.lookup(cache.keyOf(frame, region, context), bounds);
+      if (cached != null) {
+        results.addAll(cached);
+      } else {
+        changed.add(region);
+        changedRows += region.endRow - region.firstRow;
+      }
+    }
+    final int rows = (frame.height + frame.tileSize - 1) ~/ frame.tileSize;
+    try {
+      if (changedRows * 2 > rows) {
+        final List<OcrResult> full = await _processFullFrame(frame);
+        cache.remember(frame, full, context);
+        return full;
+      }
+      for (final OcrRegion region in changed) {
+        results.addAll(await _recognizeRegion(frame, cache, region));
+      }
+    } catch (e, s) {
+      log.e("[LocalOcrService] Error processing changed regions: $e",
+          error: e, stackTrace: s);
+      return [];
+    }
+    results.sort((a, b) {
+      final int byTop = a.boundingBox.top.compareTo(b.boundingBox.top);
+      return byTop != 0 ? byTop : a.boundingBox.left.compareTo(b.boundingBox.left);
+    });
+    cache.remember(frame, results, context);
+    log.d(
+        "[LocalOcrService] Incremental OCR: ${changed.length} changed region(s), $changedRows/$rows tile rows, cache ${cache.stats()}");
+    return results;
+  }
+
+  /// 识别一个区域：上下各多裁半个分块，避免贴边的文字被截断，只保留中心落在区域内的结果
+  Future<List<OcrResult>> _recognizeRegion(
+      CapturedFrame frame, OcrRegionCache cache, OcrRegion region) {
+    final ui.Rect bounds = cache.regionBounds(frame, region);
+    final int margin = frame.tileSize ~/ 2;
+    final int paddedHeight = frame.height + (frame.height & 1);
+    final int top = max(0, bounds.top.toInt() - margin) & ~1;
+    final int bottom = min(paddedHeight, bounds.bottom.toInt() + margin + 1) & ~1;
+    final OcrTile tile = OcrTile(0, top, frame.rowStride, bottom - top);
+    final InputImage inputImage =
+        _nv21Input(OcrTiling.cropNv21(frame, tile), tile.width, tile.height);
+    return _recognize((script) async {
+      final List<OcrResult> results =
+          _toOcrResults(await _pool.process(script, inputImage));
+      return results
+          .map((r) => r.transformed(1, 1, dy: top.toDouble()))
+          .where((r) =>
+              r.boundingBox.center.dy >= bounds.top &&
+              r.boundingBox.center.dy < bounds.bottom)
+          .toList();
+    });
+  }
+
+  /// 配置了 [tiling] 且帧足够大时分块识别，否则整帧识别一次
+  Future<List<OcrResult>> _processFullFrame(CapturedFrame frame) {
+    final OcrTilingConfig? config = tiling;
+    if (config != null && config.appliesTo(frame.width, frame.height)) {
+      return processTiledFrame(frame, config);
+    }
+    return processWholeFrame(frame);
+  }
+
+  /// 整帧识别一次
+  Future<List<OcrResult>> processWholeFrame(CapturedFrame frame) async {
+    try {
+      final InputImage inputImage = _nv21Input(frame.bytes, frame.rowStride,
+          frame.height + (frame.height & 1));
+      return await _recognize((script) async =>
+          _toOcrResults(await _pool.process(script, inputImage)));
+    } catch (e, s) {
+      log.e("[LocalOcrService] Error processing NV21 frame with ML Kit: $e",
+          error: e, stackTrace: s);
+      return [];
+    }
+  }
+
+  /// 把帧切成相互重叠的块，最多 [OcrTilingConfig.maxConcurrency] 块同时识别，再合并接缝处的结果
+  Future<List<OcrResult>> processTiledFrame(
+      CapturedFrame frame, OcrTilingConfig config) async {
+    try {
+      final List<OcrTile> tiles = OcrTiling.plan(frame, config);
+      final int paddedHeight = frame.height + (frame.height & 1);
+      return await _recognize((script) async {
+        final List<OcrTileResult?> tileResults =
+            List<OcrTileResult?>.filled(tiles.length, null);
+        int next = 0;
+        Future<void> worker() async {
+          while (next < tiles.length) {
+            final int index = next++;
+            final OcrTile tile = tiles[index];
+            final InputImage inputImage = _nv21Input(
+                OcrTiling.cropNv21(frame, tile), tile.width, tile.height);
+            tileResults[index] = OcrTileResult(
+                tile, _toOcrResults(await _pool.process(script, inputImage)));
+          }
+        }
+
+        await Future.wait(List.generate(
+            min(config.maxConcurrency, tiles.length), (_) => worker()));
+        return OcrTiling.merge(tileResults.whereType<OcrTileResult>().toList(),
+            frame.rowStride, paddedHeight);
+      });
+    } catch (e, s) {
+      log.e("[LocalOcrService] Error processing tiled NV21 frame with ML Kit: $e",
+          error: e, stackTrace: s);
+      return [];
+    }
+  }
+
+  static InputImage _nv21Input(Uint8List bytes, int width, int height) {
+    return InputImage.fromBytes(
+      bytes: bytes,
+      metadata: InputImageMetadata(
+        size: ui.Size(width.toDouble(), height.toDouble()),
+        // 截屏帧已是屏幕正向，无需旋转
+        rotation: InputImageRotation.rotation0deg,
+        format: InputImageFormat.nv21,
+        bytesPerRow: width,
+      ),
+    );
+  }
+
+  /// PNG 输入：ML Kit 无法从内存解码图片，需写入临时文件再由 InputImage.fromFilePath 读回
   Future<List<OcrResult>> processImageBytes(Uint8List pngImageBytes) async {
     File? tempFile; // Keep a reference to delete it later
     try {
-      // 1. Decode PNG bytes to dart:ui.Image to get dimensions (optional if not needed otherwise)
-      //    We could skip this if we directly save pngImageBytes to a file,
-      //    but if you need ui.Image for other reasons, keep it.
-      //    For ML Kit from file, it will read dimensions itself.
-      // final ui.Image uiImage = await decodeImageFromList(pngImageBytes);
-
-      // 2. Save the PNG bytes to a temporary file
       final Directory tempDir = await getTemporaryDirectory();
       final String tempPath =
           '${tempDir.path}/ocr_temp_image_${DateTime.now().millisecondsSinceEpoch}.png';
       tempFile = File(tempPath);
       await tempFile.writeAsBytes(pngImageBytes, flush: true);
 
-      // 3. Create InputImage from the file path
       final InputImage inputImage = InputImage.fromFilePath(tempFile.path);
-
-      // 4. Process the image
-      final RecognizedText recognizedText =
-          await _textRecognizer.processImage(inputImage);
-
-      final List<OcrResult> ocrResults = [];
-      for (TextBlock block in recognizedText.blocks) {
-        ocrResults.add(OcrResult(
-          text: block.text,
-          boundingBox: block.boundingBox,
-          cornerPoints: block.cornerPoints,
-        ));
-      }
-
-      // uiImage.dispose(); // Only if you decoded and used ui.Image earlier
-
-      return ocrResults;
+      return await _recognize((script) async =>
+          _toOcrResults(await _pool.process(script, inputImage)));
     } catch (e, s) {
       log.e("[LocalOcrService] Error processing image with ML Kit: $e",
           error: e, stackTrace: s);
       return [];
     } finally {
-      // 5. Clean up the temporary file
       try {
         if (tempFile != null && await tempFile.exists()) {
           await tempFile.delete();
-          // log.d("[LocalOcrService] Temporary OCR image deleted: ${tempFile.path}");
         }
       } catch (e, s) {
         log.w("[LocalOcrService] Error deleting temporary OCR image: $e",
@@ -65,7 +258,111 @@ class LocalOcrService {
     }
   }
 
+  /// 按 [script] 选择体系并用 [run] 识别（整帧或分块）；自动模式下按结果判断是否换模型重识别
+  Future<List<OcrResult>> _recognize(
+      Future<List<OcrResult>> Function(TextRecognitionScript script) run) async {
+    final TextRecognitionScript? pinned = recognitionScriptOf(script);
+    if (pinned != null) {
+      return run(pinned);
+    }
+    TextRecognitionScript current =
+        _pool.lastDetectedScript ?? _scriptForLocale();
+    List<OcrResult> results = await run(current);
+    String text = _joinedText(results);
+    final TextRecognitionScript? detected = ScriptDetector.detect(text);
+    if (detected != null &&
+        detected != current &&
+        detected != TextRecognitionScript.latin) {
+      log.i(
+          "[LocalOcrService] ${current.name} recognizer found ${detected.name} text, retrying");
+      current = detected;
+      results = await run(current);
+    } else if (current == TextRecognitionScript.latin &&
+        text.trim().isNotEmpty &&
+        ScriptDetector.quality(text) < minRecognitionQuality) {
+      double best = ScriptDetector.quality(text);
+      for (final TextRecognitionScript candidate in _probeOrder()) {
+        final List<OcrResult> probe = await run(candidate);
+        final String probeText = _joinedText(probe);
+        final double quality = ScriptDetector.quality(probeText);
+        if (quality > best) {
+          best = quality;
+          results = probe;
+          current = ScriptDetector.detect(probeText) ?? candidate;
+        }
+        if (best >= minRecognitionQuality) break;
+      }
+      log.i(
+          "[LocalOcrService] Latin result looked garbled, switched to ${current.name} (quality ${best.toStringAsFixed(2)})");
+    } else if (detected == TextRecognitionScript.latin) {
+      // 画面只有拉丁文字，下一帧改用更轻的拉丁模型
+      current = TextRecognitionScript.latin;
+    }
+    _pool.lastDetectedScript = current;
+    return results;
+  }
+
+  static String _joinedText(List<OcrResult> results) =>
+      results.map((r) => r.text).join('\n');
+
+  /// 拉丁模型认不出时的试用顺序：系统语言对应的体系优先
+  List<TextRecognitionScript> _probeOrder() {
+    final TextRecognitionScript preferred = _scriptForLocale();
+    return [
+      if (preferred != TextRecognitionScript.latin) preferred,
+      for (final TextRecognitionScript s in const [
+        TextRecognitionScript.chinese,
+        TextRecognitionScript.japanese,
+        TextRecognitionScript.korean,
+        TextRecognitionScript.devanagiri,
+      ])
+        if (s != preferred) s,
+    ];
+  }
+
+  static TextRecognitionScript _scriptForLocale() {
+    switch (ui.PlatformDispatcher.instance.locale.languageCode) {
+      case 'zh':
+        return TextRecognitionScript.chinese;
+      case 'ja':
+        return TextRecognitionScript.japanese;
+      case 'ko':
+        return TextRecognitionScript.korean;
+      case 'hi':
+      case 'mr':
+      case 'ne':
+        return TextRecognitionScript.devanagiri;
+      default:
+        return TextRecognitionScript.latin;
+    }
+  }
+
+  List<OcrResult> _toOcrResults(RecognizedText recognizedText) {
+    final List<OcrResult> ocrResults = [];
+    for (TextBlock block in recognizedText.blocks) {
+      ocrResults.add(OcrResult(
+        text: block.text,
+        boundingBox: block.boundingBox,
+        cornerPoints: block.cornerPoints,
+        confidence: _blockConfidence(block),
+      ));
+    }
+    return ocrResults;
+  }
+
+  /// 块的置信度取各行的最小值：一行认不清整块就不可信。ML Kit 不提供行置信度时（如 iOS）为 null
+  static double? _blockConfidence(TextBlock block) {
+    double? confidence;
+    for (final TextLine line in block.lines) {
+      final double? c = line.confidence;
+      if (c != null && (confidence == null || c < confidence)) confidence = c;
+    }
+    return confidence;
+  }
+
   void dispose() {
-    _textRecognizer.close();
+    if (_ownsPool) {
+      _pool.dispose();
+    }
   }
 }
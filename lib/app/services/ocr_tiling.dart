@@ -0,0 +1,297 @@
+import 'dart:math';
+import 'dart:typed_data';
+import 'dart:ui' as ui;
+
+import 'package:transla_screen/app/core/models/captured_frame.dart';
+import 'package:transla_screen/app/core/models/ocr_result.dart';
+
+/// 分块 OCR 的参数
+///
+/// 高分辨率屏幕 (1440p+) 整帧识别时 ML Kit 会先缩小输入，小字容易漏识别，单次识别也慢。
+/// 长边不小于 [minFrameSize] 的帧切成边长 [tileSize]、相邻重叠 [overlap] 像素的块，
+/// 最多 [maxConcurrency] 块同时识别。重叠应不小于一行文字的高度，保证每行至少完整落在一个块内。
+class OcrTilingConfig {
+  static const int defaultTileSize = 1280;
+  static const int defaultOverlap = 128;
+  static const int defaultMaxConcurrency = 2;
+  static const int defaultMinFrameSize = 2000;
+
+  final int tileSize;
+  final int overlap;
+  final int maxConcurrency;
+  final int minFrameSize;
+
+  const OcrTilingConfig({
+    this.tileSize = defaultTileSize,
+    this.overlap = defaultOverlap,
+    this.maxConcurrency = defaultMaxConcurrency,
+    this.minFrameSize = defaultMinFrameSize,
+  });
+
+  bool appliesTo(int width, int height) => max(width, height) >= minFrameSize;
+
+  @override
+  String toString() =>
+      'OcrTilingConfig(tile $tileSize, overlap $overlap, x$maxConcurrency, min $minFrameSize)';
+}
+
+/// 帧中的一块，坐标和宽高均为偶数（NV21 的色度按 2x2 采样）
+class OcrTile {
+  final int left;
+  final int top;
+  final int width;
+  final int height;
+
+  const OcrTile(this.left, this.top, this.width, this.height);
+
+  int get right => left + width;
+  int get bottom => top + height;
+
+  @override
+  String toString() => 'OcrTile($left, $top, ${width}x$height)';
+}
+
+/// 一块的识别结果，坐标相对块的左上角
+class OcrTileResult {
+  final OcrTile tile;
+  final List<OcrResult> results;
+
+  OcrTileResult(this.tile, this.results);
+}
+
+/// 分块规划、NV21 裁剪和跨接缝的结果合并
+class OcrTiling {
+  /// 结果框离块的内部边缘（与其他块相邻的边）不超过该距离时，认为被接缝截断
+  static const double seamMargin = 4;
+
+  /// 同一文字在相邻块中各识别一次时，框的 IoU 和文字相似度的下限
+  static const double duplicateIoU = 0.5;
+  static const double duplicateContainment = 0.6;
+  static const double duplicateSimilarity = 0.5;
+
+  /// 按配置切分 NV21 帧（按补齐到偶数后的尺寸），块在每个方向上均匀分布
+  static List<OcrTile> plan(CapturedFrame frame, OcrTilingConfig config) {
+    final int width = frame.rowStride;
+    final int height = frame.height + (frame.height & 1);
+    final List<List<int>> columns = _axis(width, config.tileSize, config.overlap);
+    final List<List<int>> rows = _axis(height, config.tileSize, config.overlap);
+    return [
+      for (final List<int> row in rows)
+        for (final List<int> column in columns)
+          OcrTile(column[0], row[0], column[1], row[1]),
+    ];
+  }
+
+  /// 一个方向上的 [起点, 长度] 列表；length 为偶数
+  static List<List<int>> _axis(int length, int tile, int overlap) {
+    final int size = tile & ~1;
+    if (length <= size) return [
+      [0, length]
+    ];
+    final int count = ((length - overlap) / (size - overlap)).ceil();
+    final double step = (length - size) / (count - 1);
+    return [
+      for (int i = 0; i < count; i++)
+        [(i * step).floor() & ~1, size],
+    ]..last[0] = length - size;
+  }
+
+  /// 从 NV21 帧中拷贝出一块，返回紧密排列的 NV21（每行 tile.width 字节）
+  static Uint8List cropNv21(CapturedFrame frame, OcrTile tile) {
+    final Uint8List source = frame.bytes;
+    final int stride = frame.rowStride;
+    final int paddedHeight = frame.height + (frame.height & 1);
+    final Uint8List out = Uint8List(tile.width * tile.height * 3 ~/ 2);
+    for (int r = 0; r < tile.height; r++) {
+      final int src = (tile.top + r) * stride + tile.left;
+      out.setRange(r * tile.width, (r + 1) * tile.width, source, src);
+    }
+    final int chromaSource = stride * paddedHeight;
+    final int chromaOut = tile.width * tile.height;
+    for (int r = 0; r < tile.height ~/ 2; r++) {
+      final int src = chromaSource + (tile.top ~/ 2 + r) * stride + tile.left;
+      out.setRange(chromaOut + r * tile.width,
+          chromaOut + (r + 1) * tile.width, source, src);
+    }
+    return out;
+  }
+
+  /// 把各块的结果换算到帧坐标并合并
+  ///
+  /// 重叠区内的同一段文字会在两个块中各识别一次：框的 IoU（或较小框被包含的比例）足够大且文字相似时
+  /// 视为重复，保留未被接缝截断、面积较大的一个。一段文字比重叠区还宽时两个块都只看到一部分，
+  /// 两者都贴着同一条接缝且在另一方向上对齐时拼接为一个结果。
+  static List<OcrResult> merge(
+      List<OcrTileResult> tileResults, int frameWidth, int frameHeight) {
+    final List<_Candidate> candidates = [
+      for (final OcrTileResult tileResult in tileResults)
+        for (final OcrResult result in tileResult.results)
+          _Candidate.of(
+              result.transformed(1, 1,
+                  dx: tileResult.tile.left.toDouble(),
+                  dy: tileResult.tile.top.toDouble()),
+              tileResult.tile,
+              frameWidth,
+              frameHeight),
+    ];
+    // 未截断的优先，其次面积大的优先：重复时先进入结果的就是应保留的那个
+    candidates.sort((a, b) {
+      if (a.isClipped != b.isClipped) return a.isClipped ? 1 : -1;
+      return _area(b.box).compareTo(_area(a.box));
+    });
+
+    final List<_Candidate> kept = [];
+    for (final _Candidate candidate in candidates) {
+      bool handled = false;
+      for (int i = 0; i < kept.length; i++) {
+        final _Candidate existing = kept[i];
+        if (_isDuplicate(candidate, existing)) {
+          handled = true;
+          break;
+        }
+        final _Candidate? joined = _joinAcrossSeam(existing, candidate);
+        if (joined != null) {
+          kept[i] = joined;
+          handled = true;
+          break;
+        }
+      }
+      if (!handled) kept.add(candidate);
+    }
+    // 恢复阅读顺序：从上到下、从左到右
+    kept.sort((a, b) {
+      final int byRow = a.box.top.compareTo(b.box.top);
+      if ((a.box.top - b.box.top).abs() > min(a.box.height, b.box.height) / 2) {
+        return byRow;
+      }
+      return a.box.left.compareTo(b.box.left);
+    });
+    return kept.map((c) => c.result).toList();
+  }
+
+  static bool _isDuplicate(_Candidate a, _Candidate b) {
+    final ui.Rect intersection = a.box.intersect(b.box);
+    if (intersection.width <= 0 || intersection.height <= 0) return false;
+    final double overlap = _area(intersection);
+    final double union = _area(a.box) + _area(b.box) - overlap;
+    final double iou = union <= 0 ? 0 : overlap / union;
+    final double containment = overlap / min(_area(a.box), _area(b.box));
+    if (iou < duplicateIoU && containment < duplicateContainment) return false;
+    return textSimilarity(a.result.text, b.result.text) >= duplicateSimilarity;
+  }
+
+  /// 两个结果都贴着同一条接缝、在接缝方向上互相重叠时拼接；否则返回 null
+  static _Candidate? _joinAcrossSeam(_Candidate a, _Candidate b) {
+    final ui.Rect intersection = a.box.intersect(b.box);
+    final bool touching = intersection.width >= 0 && intersection.height >= 0;
+    if (!touching) return null;
+    // 左右相邻的块：一个在右侧被截断，另一个在左侧被截断，且垂直方向大致对齐
+    final _Candidate left = a.box.left <= b.box.left ? a : b;
+    final _Candidate right = identical(left, a) ? b : a;
+    if (left.clippedRight &&
+        right.clippedLeft &&
+        _overlapRatio(a.box.top, a.box.bottom, b.box.top, b.box.bottom) >= 0.5) {
+      return _Candidate.joined(left, right, ' ');
+    }
+    final _Candidate top = a.box.top <= b.box.top ? a : b;
+    final _Candidate bottom = identical(top, a) ? b : a;
+    if (top.clippedBottom &&
+        bottom.clippedTop &&
+        _overlapRatio(a.box.left, a.box.right, b.box.left, b.box.right) >= 0.5) {
+      return _Candidate.joined(top, bottom, '\n');
+    }
+    return null;
+  }
+
+  /// 一维区间重叠长度占较短区间的比例
+  static double _overlapRatio(double a0, double a1, double b0, double b1) {
+    final double overlap = min(a1, b1) - max(a0, b0);
+    final double shorter = min(a1 - a0, b1 - b0);
+    return shorter <= 0 ? 0 : max(0, overlap) / shorter;
+  }
+
+  static double _area(ui.Rect r) => max(0, r.width) * max(0, r.height);
+
+  /// 拼接两段被接缝截断的文字：去掉 first 末尾与 second 开头的重复部分
+  static String joinText(String first, String second, String separator) {
+    final int longest = min(first.length, second.length);
+    for (int n = longest; n >= 2; n--) {
+      if (first.endsWith(second.substring(0, n))) {
+        return first + second.substring(n);
+      }
+    }
+    return '$first$separator$second';
+  }
+
+  /// 去掉空白后的编辑距离相似度 (0~1)；一方包含另一方时为 1
+  static double textSimilarity(String a, String b) {
+    final String x = a.replaceAll(RegExp(r'\s+'), '');
+    final String y = b.replaceAll(RegExp(r'\s+'), '');
+    if (x.isEmpty || y.isEmpty) return x == y ? 1 : 0;
+    if (x.contains(y) || y.contains(x)) return 1;
+    List<int> previous = List<int>.generate(y.length + 1, (j) => j);
+    for (int i = 1; i <= x.length; i++) {
+      final List<int> current = List<int>.filled(y.length + 1, 0)..[0] = i;
+      for (int j = 1; j <= y.length; j++) {
+        final int cost = x.codeUnitAt(i - 1) == y.codeUnitAt(j - 1) ? 0 : 1;
+        current[j] = min(min(current[j - 1] + 1, previous[j] + 1),
+            previous[j - 1] + cost);
+      }
+      previous = current;
+    }
+    return 1 - previous[y.length] / max(x.length, y.length);
+  }
+}
+
+class _Candidate {
+  final OcrResult result;
+  final bool clippedLeft;
+  final bool clippedTop;
+  final bool clippedRight;
+  final bool clippedBottom;
+
+  _Candidate(this.result, this.clippedLeft, this.clippedTop, this.clippedRight,
+      this.clippedBottom);
+
+  /// 只检查块的内部边缘：贴着帧边缘的结果不算被截断
+  factory _Candidate.of(
+      OcrResult result, OcrTile tile, int frameWidth, int frameHeight) {
+    final ui.Rect box = result.boundingBox;
+    const double m = OcrTiling.seamMargin;
+    return _Candidate(
+      result,
+      tile.left > 0 && box.left <= tile.left + m,
+      tile.top > 0 && box.top <= tile.top + m,
+      tile.right < frameWidth && box.right >= tile.right - m,
+      tile.bottom < frameHeight && box.bottom >= tile.bottom - m,
+    );
+  }
+
+  /// [first] 在左/上，[second] 在右/下；拼接后外侧的截断标记保留
+  factory _Candidate.joined(
+      _Candidate first, _Candidate second, String separator) {
+    final ui.Rect box = first.box.expandToInclude(second.box);
+    final bool horizontal = separator == ' ';
+    return _Candidate(
+      OcrResult.fromRect(
+        OcrTiling.joinText(first.result.text, second.result.text, separator),
+        box,
+        confidence: _minConfidence(
+            first.result.confidence, second.result.confidence),
+      ),
+      horizontal ? first.clippedLeft : first.clippedLeft || second.clippedLeft,
+      horizontal ? first.clippedTop || second.clippedTop : first.clippedTop,
+      horizontal ? second.clippedRight : first.clippedRight || second.clippedRight,
+      horizontal
+          ? first.clippedBottom || second.clippedBottom
+          : second.clippedBottom,
+    );
+  }
+
+  static double? _minConfidence(double? a, double? b) =>
+      a == null ? b : (b == null ? a : min(a, b));
+
+  ui.Rect get box => result.boundingBox;
+
+  bool get isClipped => clippedLeft || clippedTop || clippedRight || clippedBottom;
+}
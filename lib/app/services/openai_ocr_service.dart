@@ -1,10 +1,15 @@
+import 'dart:async';
 import 'dart:convert';
 import 'dart:typed_data';
 import 'dart:math'; // For Point
 import 'package:http/http.dart' as http;
+import 'package:transla_screen/app/core/constants/enums.dart';
+import 'package:transla_screen/app/core/models/captured_frame.dart';
 import 'package:transla_screen/app/core/models/ocr_result.dart'; // Updated import
 import 'dart:ui' as ui; // For ui.Rect for OcrResult
+import 'package:transla_screen/app/services/json_array_stream_parser.dart';
 import 'package:transla_screen/app/services/logger_service.dart'; // Import logger
+import 'package:transla_screen/app/services/latency_tracer.dart';
 
 // Default values if not configured - API key MUST be provided.
 const String _defaultOpenAiApiEndpoint =
@@ -12,56 +17,153 @@ const String _defaultOpenAiApiEndpoint =
 const String _defaultOpenAiModel =
     'gpt-4-vision-preview'; // Or 'gpt-4o', 'gpt-4-turbo'
 
+/// 云端视觉 OCR
+///
+/// 上传前在原生端按长边上限 [maxUploadEdge] 缩小并以有损 WebP 编码；请求体不再整体 jsonEncode：
+/// JSON 的前后两段固定，中间的 base64 图片按块编码后直接写入请求流，不会在内存中拼出数 MB 的字符串，
+/// 每块之间让出事件循环，UI 线程不会因编码卡顿。模型返回的坐标基于上传的（缩小后的）图片，
+/// 由 [CapturedFrame.toScreenSpace] 换算回屏幕坐标。
+///
+/// 每次请求的请求体积、首字节时间和总耗时记录在 [lastUploadStats]，首字节时间同时上报为
+/// [LatencyTracer.stageOcrCloudTtfb]。
+///
+/// [streamResults] 开启时用 [processFrameStream] 以 SSE 流式读取模型输出，数组中的每个对象一闭合就产出
+/// 对应的 [OcrResult]，密集的画面不必等整个回复生成完毕才开始翻译。
 class OpenAiOcrService {
+  /// 缺省的上传长边上限：视觉模型会把更大的图片缩小后再识别，超出部分只增加上传量
+  static const int defaultMaxUploadEdge = 1600;
+
+  /// base64 分块编码的输入块大小，3 的倍数保证各块的编码结果可以直接拼接
+  static const int _uploadChunkBytes = 48 * 1024;
+
+  /// 请求体中第 [index] 张图片的占位符，发送时替换为 base64 数据
+  static String _imagePlaceholder(int index) =>
+      '__TRANSLA_SCREEN_IMAGE_${index}__';
+
   final http.Client _httpClient;
   final String apiKey;
   final String apiEndpoint;
   final String model;
 
+  /// 截屏时在原生端做的预处理，由设置按引擎选择
+  final FramePreprocess preferredPreprocess;
+
+  /// 上传图片的长边上限（像素），0 表示保持截屏分辨率
+  final int maxUploadEdge;
+
+  /// 是否以流式方式读取识别结果，见 [processFrameStream]
+  final bool streamResults;
+
+  /// 上一次请求的 {requestBytes, imageBytes, ttfbMs, totalMs} 及图片尺寸等描述
+  Map<String, dynamic> lastUploadStats = const {};
+
   OpenAiOcrService({
     required this.apiKey,
     String? apiEndpoint,
     String? model,
+    this.preferredPreprocess = FramePreprocess.none,
+    this.maxUploadEdge = defaultMaxUploadEdge,
+    this.streamResults = true,
     http.Client? client,
   })  : _httpClient = client ?? http.Client(),
         apiEndpoint = apiEndpoint ?? _defaultOpenAiApiEndpoint,
         model = model ?? _defaultOpenAiModel;
 
-  Future<List<OcrResult>> processImageBytes(
-      Uint8List pngImageBytes, int imageWidth, int imageHeight) async {
-    if (apiKey.isEmpty || apiKey == 'YOUR_OPENAI_API_KEY') {
-      log.w('OpenAI API Key is not set or is invalid. Please configure it.');
-      return [
-        OcrResult(
-            text: "OpenAI API Key not configured or invalid.",
-            boundingBox: ui.Rect.zero,
-            cornerPoints: [])
-      ];
-    }
+  /// 视觉接口只接受编码后的图片；上传使用有损 WebP，体积和原生端编码耗时都远小于 PNG，
+  /// data URI 的 MIME 类型取自帧格式
+  FrameFormat get preferredFrameFormat => FrameFormat.webp;
 
-    final String base64Image = base64Encode(pngImageBytes);
+  /// 有损编码质量，文字边缘在该质量下仍足够清晰
+  int get preferredFrameQuality => 80;
 
-    final String prompt =
-        "Analyze this image and return all detected text along with their bounding box coordinates in the format: [{ \"text\": \"...\", \"bbox\": [x1, y1, x2, y2] }, ...]. The bounding box coordinates should be absolute pixel values based on the image dimensions (width: $imageWidth, height: $imageHeight). If no text is found, return an empty list []. Ensure the output is a valid JSON array.";
+  /// 请求帧时交给原生端的长边上限，null 表示不缩小
+  int? get preferredMaxEdge => maxUploadEdge > 0 ? maxUploadEdge : null;
 
-    final Map<String, dynamic> requestBody = {
-      'model': model,
-      'messages': [
-        {
-          'role': 'user',
-          'content': [
-            {'type': 'text', 'text': prompt},
-            {
-              'type': 'image_url',
-              'image_url': {'url': 'data:image/png;base64,$base64Image'}
-            }
-          ]
+  /// 直接使用原生帧头中的宽高，无需在 Dart 端解码图片
+  Future<List<OcrResult>> processFrame(CapturedFrame frame) async {
+    if (!frame.isEncoded) {
+      log.e(
+          'OpenAI OCR requires an encoded frame, got ${frame.format.name}.');
+      return [];
+    }
+    return LatencyTracer.trace(
+        LatencyTracer.stageOcr,
+        () => processImageBytes(frame.bytes, frame.width, frame.height,
+            mimeType: frame.mimeType),
+        arguments: {
+          'engine': 'openai',
+          'bytes': frame.bytes.length,
+          'size': '${frame.width}x${frame.height}',
+          'preprocess': frame.preprocess.name,
+        });
+  }
+
+  /// 流式识别：请求 `stream: true`，逐行读取 SSE，把各段输出送入 [JsonArrayStreamParser]，
+  /// 每个对象闭合时立即产出对应的结果（坐标基于本帧）。数组闭合后即断开连接。
+  /// 出错时与 [processImageBytes] 一样产出一条错误提示结果
+  Stream<OcrResult> processFrameStream(CapturedFrame frame) async* {
+    if (!frame.isEncoded) {
+      log.e(
+          'OpenAI OCR requires an encoded frame, got ${frame.format.name}.');
+      return;
+    }
+    if (!_hasValidApiKey) {
+      log.w('OpenAI API Key is not set or is invalid. Please configure it.');
+      yield _errorResult("OpenAI API Key not configured or invalid.");
+      return;
+    }
+    final Stopwatch stopwatch = Stopwatch()..start();
+    final JsonArrayStreamParser parser = JsonArrayStreamParser();
+    int count = 0;
+    try {
+      final http.StreamedResponse streamed = await _send(
+          _requestBody(frame.width, frame.height, frame.mimeType, stream: true),
+          [frame.bytes],
+          {'width': frame.width, 'height': frame.height});
+      if (streamed.statusCode != 200) {
+        final String body = await streamed.stream.bytesToString();
+        log.e('OpenAI API Error: ${streamed.statusCode} - $body');
+        yield _errorResult(
+            "OpenAI API Error ${streamed.statusCode}. Details in logs.");
+        return;
+      }
+      await for (final String line in streamed.stream
+          .transform(utf8.decoder)
+          .transform(const LineSplitter())) {
+        final String? delta = JsonArrayStreamParser.sseDelta(line);
+        if (delta == null) continue;
+        for (final Map<String, dynamic> item in parser.add(delta)) {
+          final List<double>? box = _bboxOf(item);
+          if (box == null) continue;
+          if (count++ == 0) {
+            LatencyTracer.record(LatencyTracer.stageOcrCloudFirstResult,
+                stopwatch.elapsedMicroseconds / 1000.0);
+          }
+          yield _toOcrResult(item['text'] as String, box, frame.width,
+              frame.height, _isNormalized(box));
         }
-      ],
-      'max_tokens': 2000, // Increased slightly
-      // Add response_format for gpt-4-turbo and later models to enforce JSON output
-      // 'response_format': { 'type': 'json_object' }, // Uncomment if model supports it
-    };
+        if (parser.isFinished) break;
+      }
+    } catch (e, s) {
+      log.e('Error streaming OpenAI OCR response: $e', error: e, stackTrace: s);
+      yield _errorResult("Exception calling OpenAI: $e");
+    } finally {
+      final double totalMs = stopwatch.elapsedMicroseconds / 1000.0;
+      LatencyTracer.record(LatencyTracer.stageOcr, totalMs);
+      _finishUploadStats(totalMs, {'results': count, 'streamed': true});
+    }
+  }
+
+  Future<List<OcrResult>> processImageBytes(
+      Uint8List imageBytes, int imageWidth, int imageHeight,
+      {String mimeType = 'image/png'}) async {
+    if (!_hasValidApiKey) {
+      log.w('OpenAI API Key is not set or is invalid. Please configure it.');
+      return [_errorResult("OpenAI API Key not configured or invalid.")];
+    }
+
+    final Map<String, dynamic> requestBody =
+        _requestBody(imageWidth, imageHeight, mimeType);
 
     // If using a model that supports JSON mode (like gpt-4-1106-preview or gpt-4o when 'json_object' is specified)
     // the prompt needs to explicitly instruct the model to produce JSON.
@@ -71,14 +173,11 @@ class OpenAiOcrService {
     // }
 
     try {
-      final response = await _httpClient.post(
-        Uri.parse(apiEndpoint),
-        headers: {
-          'Content-Type': 'application/json',
-          'Authorization': 'Bearer $apiKey',
-        },
-        body: jsonEncode(requestBody),
-      );
+      final Stopwatch stopwatch = Stopwatch()..start();
+      final http.Response response = await http.Response.fromStream(
+          await _send(requestBody, [imageBytes],
+              {'width': imageWidth, 'height': imageHeight}));
+      _finishUploadStats(stopwatch.elapsedMicroseconds / 1000.0);
 
       if (response.statusCode == 200) {
         final Map<String, dynamic> responseBody =
@@ -110,73 +209,263 @@ class OpenAiOcrService {
             // If response_format: {'type': 'json_object'} was used and supported,
             // 'content' should directly be a parsable JSON string.
             final List<dynamic> resultsJson = jsonDecode(content);
-            final List<OcrResult> ocrResults = [];
+            final List<MapEntry<String, List<double>>> boxes = [];
             for (var item in resultsJson) {
-              if (item is Map<String, dynamic> &&
-                  item['text'] != null &&
-                  item['bbox'] != null &&
-                  item['bbox'] is List &&
-                  item['bbox'].length == 4) {
-                final List<dynamic> bboxRaw = item['bbox'];
-                final double x1 = (bboxRaw[0] as num).toDouble();
-                final double y1 = (bboxRaw[1] as num).toDouble();
-                final double x2 = (bboxRaw[2] as num).toDouble();
-                final double y2 = (bboxRaw[3] as num).toDouble();
-
-                ocrResults.add(OcrResult(
-                  text: item['text'] as String,
-                  boundingBox: ui.Rect.fromLTRB(x1, y1, x2, y2),
-                  cornerPoints: [
-                    Point(x1.toInt(), y1.toInt()),
-                    Point(x2.toInt(), y1.toInt()),
-                    Point(x2.toInt(), y2.toInt()),
-                    Point(x1.toInt(), y2.toInt()),
-                  ],
-                ));
-              }
+              final List<double>? box =
+                  item is Map<String, dynamic> ? _bboxOf(item) : null;
+              if (box != null) boxes.add(MapEntry(item['text'] as String, box));
             }
-            return ocrResults;
+            return [
+              for (final MapEntry<String, List<double>> box in boxes)
+                _toOcrResult(box.key, box.value, imageWidth, imageHeight,
+                    _isNormalized(box.value)),
+            ];
           } catch (e, s) {
             log.e(
                 'Error parsing OpenAI OCR results JSON: $e. Problematic content: ${responseBody['choices'][0]['message']['content']}. Processed content for parsing: $content',
                 error: e,
                 stackTrace: s);
             return [
-              OcrResult(
-                  text:
-                      "Error parsing OpenAI response JSON: $e. Check logs for raw content.",
-                  boundingBox: ui.Rect.zero,
-                  cornerPoints: [])
+              _errorResult(
+                  "Error parsing OpenAI response JSON: $e. Check logs for raw content.")
             ];
           }
         } else {
           log.e(
               'OpenAI response does not contain expected content structure. Response body: ${response.body}');
           return [
-            OcrResult(
-                text: "OpenAI response structure error. Full response in logs.",
-                boundingBox: ui.Rect.zero,
-                cornerPoints: [])
+            _errorResult("OpenAI response structure error. Full response in logs.")
           ];
         }
       } else {
         log.e('OpenAI API Error: ${response.statusCode} - ${response.body}');
         return [
-          OcrResult(
-              text: "OpenAI API Error ${response.statusCode}. Details in logs.",
-              boundingBox: ui.Rect.zero,
-              cornerPoints: [])
+          _errorResult("OpenAI API Error ${response.statusCode}. Details in logs.")
         ];
       }
     } catch (e, s) {
       log.e('Error calling OpenAI API: $e', error: e, stackTrace: s);
-      return [
-        OcrResult(
-            text: "Exception calling OpenAI: $e",
-            boundingBox: ui.Rect.zero,
-            cornerPoints: [])
-      ];
+      return [_errorResult("Exception calling OpenAI: $e")];
+    }
+  }
+
+  /// 混合 OCR 的云端部分：一次请求识别多张裁剪图（编码后的区域帧），框已由本地检测给出，
+  /// 模型只需返回每张图中的文字。返回与 [crops] 一一对应的文字，模型没有给出或请求失败时为 null
+  Future<List<String?>> recognizeCrops(List<CapturedFrame> crops) async {
+    final List<String?> texts = List<String?>.filled(crops.length, null);
+    if (crops.isEmpty) return texts;
+    if (!_hasValidApiKey) {
+      log.w('OpenAI API Key is not set or is invalid. Please configure it.');
+      return texts;
+    }
+    final String prompt =
+        "You are given ${crops.length} cropped images of text, numbered 0 to ${crops.length - 1} in the order they appear. Transcribe the text in each crop exactly as shown, keeping line breaks. Return only a valid JSON array in the format: [{ \"crop\": 0, \"text\": \"...\" }, ...], with one entry per crop and an empty string for crops without readable text.";
+    final Map<String, dynamic> requestBody = {
+      'model': model,
+      'messages': [
+        {
+          'role': 'user',
+          'content': [
+            {'type': 'text', 'text': prompt},
+            for (int i = 0; i < crops.length; i++)
+              {
+                'type': 'image_url',
+                'image_url': {
+                  'url': 'data:${crops[i].mimeType};base64,${_imagePlaceholder(i)}'
+                }
+              },
+          ]
+        }
+      ],
+      'max_tokens': 2000,
+    };
+    try {
+      final Stopwatch stopwatch = Stopwatch()..start();
+      final http.Response response = await http.Response.fromStream(
+          await _send(requestBody, [
+        for (final CapturedFrame crop in crops) crop.bytes
+      ], {
+        'crops': crops.length,
+        'pixels': crops.fold<int>(0, (sum, c) => sum + c.width * c.height),
+      }));
+      _finishUploadStats(stopwatch.elapsedMicroseconds / 1000.0);
+      if (response.statusCode != 200) {
+        log.e('OpenAI API Error: ${response.statusCode} - ${response.body}');
+        return texts;
+      }
+      final dynamic content = jsonDecode(
+          utf8.decode(response.bodyBytes))['choices']?[0]?['message']?['content'];
+      if (content is! String) {
+        log.e('OpenAI crop response has no content: ${response.body}');
+        return texts;
+      }
+      // 解析器跳过数组前的 Markdown 围栏等内容
+      for (final Map<String, dynamic> item
+          in JsonArrayStreamParser().add(content)) {
+        final dynamic index = item['crop'];
+        final dynamic text = item['text'];
+        if (index is int && index >= 0 && index < texts.length && text is String) {
+          texts[index] = text;
+        }
+      }
+    } catch (e, s) {
+      log.e('Error recognizing crops with OpenAI: $e', error: e, stackTrace: s);
+    }
+    return texts;
+  }
+
+  bool get _hasValidApiKey =>
+      apiKey.isNotEmpty && apiKey != 'YOUR_OPENAI_API_KEY';
+
+  static OcrResult _errorResult(String text) =>
+      OcrResult(text: text, boundingBox: ui.Rect.zero, cornerPoints: []);
+
+  /// 请求体中的图片数据以占位符代替，发送时由 [_send] 流式写入
+  Map<String, dynamic> _requestBody(
+      int imageWidth, int imageHeight, String mimeType,
+      {bool stream = false}) {
+    final String prompt =
+        "Analyze this image and return all detected text along with their bounding box coordinates in the format: [{ \"text\": \"...\", \"bbox\": [x1, y1, x2, y2] }, ...]. The bounding box coordinates should be absolute pixel values based on the image dimensions (width: $imageWidth, height: $imageHeight). If no text is found, return an empty list []. Ensure the output is a valid JSON array.";
+
+    return {
+      'model': model,
+      'messages': [
+        {
+          'role': 'user',
+          'content': [
+            {'type': 'text', 'text': prompt},
+            {
+              'type': 'image_url',
+              'image_url': {
+                'url': 'data:$mimeType;base64,${_imagePlaceholder(0)}'
+              }
+            }
+          ]
+        }
+      ],
+      'max_tokens': 2000, // Increased slightly
+      if (stream) 'stream': true,
+      // Add response_format for gpt-4-turbo and later models to enforce JSON output
+      // 'response_format': { 'type': 'json_object' }, // Uncomment if model supports it
+    };
+  }
+
+  /// 流式发送请求：JSON 中的固定部分直接写入，各图片按块 base64 编码后写入占位符所在的位置，
+  /// 请求长度预先算出（不用分块传输）。收到响应头时返回并记录首字节时间；
+  /// 总耗时由调用方读完响应后经 [_finishUploadStats] 补上
+  Future<http.StreamedResponse> _send(Map<String, dynamic> requestBody,
+      List<Uint8List> images, Map<String, dynamic> stats) async {
+    final String json = jsonEncode(requestBody);
+    final List<List<int>> texts = [];
+    int position = 0;
+    for (int i = 0; i < images.length; i++) {
+      final int at = json.indexOf(_imagePlaceholder(i), position);
+      texts.add(utf8.encode(json.substring(position, at)));
+      position = at + _imagePlaceholder(i).length;
+    }
+    texts.add(utf8.encode(json.substring(position)));
+    final int imageBytes = images.fold(0, (sum, image) => sum + image.length);
+    final int length = texts.fold(0, (sum, t) => sum + t.length) +
+        images.fold(0, (sum, image) => sum + (image.length + 2) ~/ 3 * 4);
+    final http.StreamedRequest request =
+        http.StreamedRequest('POST', Uri.parse(apiEndpoint))
+          ..headers['Content-Type'] = 'application/json'
+          ..headers['Authorization'] = 'Bearer $apiKey'
+          ..contentLength = length;
+
+    final Stopwatch stopwatch = Stopwatch()..start();
+    final Future<http.StreamedResponse> pending = _httpClient.send(request);
+    // 请求体在单独的任务中写入，这里直接等待响应：连接或 DNS 失败时客户端不会读取请求体，
+    // 若先等写完（sink.close）会永远挂起，而失败的 pending 也没有人处理
+    bool aborted = false;
+    unawaited(_writeBody(request, texts, images, () => aborted));
+    final http.StreamedResponse response;
+    try {
+      response = await pending;
+    } catch (_) {
+      aborted = true;
+      rethrow;
+    }
+    final double ttfbMs = stopwatch.elapsedMicroseconds / 1000.0;
+    LatencyTracer.record(LatencyTracer.stageOcrCloudTtfb, ttfbMs);
+    lastUploadStats = {
+      ...stats,
+      'requestBytes': length,
+      'imageBytes': imageBytes,
+      'ttfbMs': ttfbMs,
+    };
+    return response;
+  }
+
+  /// 按顺序写入固定部分和各图片的 base64 块；请求已失败时停止，不等待没有读者的 sink 关闭
+  static Future<void> _writeBody(
+      http.StreamedRequest request,
+      List<List<int>> texts,
+      List<Uint8List> images,
+      bool Function() aborted) async {
+    try {
+      for (int i = 0; i < images.length; i++) {
+        request.sink.add(texts[i]);
+        final Uint8List image = images[i];
+        for (int start = 0; start < image.length; start += _uploadChunkBytes) {
+          if (aborted()) return;
+          final int end = min(start + _uploadChunkBytes, image.length);
+          request.sink.add(ascii
+              .encode(base64Encode(Uint8List.sublistView(image, start, end))));
+          // 让出事件循环，大图编码期间 UI 仍可绘制
+          await Future<void>.delayed(Duration.zero);
+        }
+      }
+      if (aborted()) return;
+      request.sink.add(texts.last);
+    } catch (e, s) {
+      // 把错误交给请求流，send 返回的 Future 随之失败
+      request.sink.addError(e, s);
     }
+    unawaited(request.sink.close());
+  }
+
+  void _finishUploadStats(double totalMs,
+      [Map<String, dynamic> extra = const {}]) {
+    lastUploadStats = {...lastUploadStats, 'totalMs': totalMs, ...extra};
+    log.d('[OpenAiOcrService] Upload: $lastUploadStats');
+  }
+
+  /// 取出 {"text": ..., "bbox": [x1, y1, x2, y2]} 中的框；字段缺失或格式不对时返回 null
+  static List<double>? _bboxOf(Map<String, dynamic> item) {
+    final dynamic bbox = item['bbox'];
+    if (item['text'] is! String || bbox is! List || bbox.length != 4) {
+      return null;
+    }
+    if (bbox.any((v) => v is! num)) return null;
+    return [for (final dynamic v in bbox) (v as num).toDouble()];
+  }
+
+  /// 个别模型返回 0~1 的归一化坐标。逐框判断，流式与整体解析结果一致：
+  /// 全部落在 0~1 且至少有一个非整数时才视为归一化，像素坐标的小框（如 [0, 0, 1, 1]）不会被放大
+  static bool _isNormalized(List<double> box) =>
+      box.every((v) => v >= 0 && v <= 1.0) &&
+      box.any((v) => v != v.roundToDouble());
+
+  /// 模型给出的框基于上传的图片；归一化坐标按图片尺寸放大，超出图片范围的部分裁掉
+  static OcrResult _toOcrResult(String text, List<double> box, int imageWidth,
+      int imageHeight, bool normalized) {
+    final double sx = normalized ? imageWidth.toDouble() : 1;
+    final double sy = normalized ? imageHeight.toDouble() : 1;
+    final double x1 = (box[0] * sx).clamp(0, imageWidth).toDouble();
+    final double y1 = (box[1] * sy).clamp(0, imageHeight).toDouble();
+    final double x2 = (box[2] * sx).clamp(0, imageWidth).toDouble();
+    final double y2 = (box[3] * sy).clamp(0, imageHeight).toDouble();
+    return OcrResult(
+      text: text,
+      boundingBox: ui.Rect.fromLTRB(x1, y1, x2, y2),
+      cornerPoints: [
+        Point(x1.toInt(), y1.toInt()),
+        Point(x2.toInt(), y1.toInt()),
+        Point(x2.toInt(), y2.toInt()),
+        Point(x1.toInt(), y2.toInt()),
+      ],
+    );
   }
 
   void dispose() {
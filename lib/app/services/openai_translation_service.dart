@@ -1,21 +1,104 @@
+import 'dart:async';
 import 'dart:convert';
+import 'dart:math';
+import 'dart:ui' as ui;
 import 'package:http/http.dart' as http;
 import 'package:transla_screen/app/services/logger_service.dart';
+import 'package:transla_screen/app/services/latency_tracer.dart';
 import 'package:transla_screen/app/core/models/ocr_result.dart';
+import 'package:transla_screen/app/services/json_array_stream_parser.dart';
+import 'package:transla_screen/app/services/translation_memory.dart';
 
+/// OpenAI 翻译
+///
+/// 设置了 [memory] 时，每次翻译先查翻译记忆，只有未命中的原文才发往接口，成功的译文写回记忆。
+///
+/// 结构化翻译按阅读顺序把 OCR 块分成估算 token 数不超过 [chunkTokenBudget] 的分块，相邻的块尽量落在同一分块中
+/// 保留上下文；各分块最多 [maxConcurrency] 个并发请求，按分块顺序合并结果。文字多的画面不再是一个又慢、
+/// 又可能因 max_tokens 被截断的大请求。
 class OpenAiTranslationService {
+  /// 每个分块的原文估算 token 数上限
+  static const int defaultChunkTokenBudget = 400;
+  static const int defaultMaxConcurrency = 4;
+
+  /// 块之间的垂直间距超过块高的该倍数时视为段落分隔，分块已过半预算时在此处切开
+  static const double _paragraphGapRatio = 1.5;
+
   final http.Client _httpClient;
   final String apiKey;
   final String apiEndpoint;
   final String model;
+  final int chunkTokenBudget;
+  final int maxConcurrency;
+
+  /// 持久化的翻译记忆，由调用方持有，重建服务后仍然保留
+  final TranslationMemory? memory;
 
   OpenAiTranslationService({
     required this.apiKey,
     required this.apiEndpoint,
     required this.model,
+    this.memory,
+    this.chunkTokenBudget = defaultChunkTokenBudget,
+    this.maxConcurrency = defaultMaxConcurrency,
     http.Client? client,
   }) : _httpClient = client ?? http.Client();
 
+  /// 粗略估算 token 数：ASCII 约 4 个字符一个 token，其他字符（CJK 等）约一个字符一个 token
+  static int estimateTokens(String text) {
+    int ascii = 0;
+    int other = 0;
+    for (final int unit in text.codeUnits) {
+      if (unit < 0x80) {
+        ascii++;
+      } else {
+        other++;
+      }
+    }
+    return (ascii + 3) ~/ 4 + other;
+  }
+
+  /// 把 OCR 块按阅读顺序（先行后列，顶部相差不到半个块高视为同一行）分组，每组估算 token 数不超过 [tokenBudget]；
+  /// 单个超出预算的块单独成组。分组已过半预算时遇到段落间距提前切开，让同一段落留在同一组
+  static List<List<String>> chunkTexts(
+      List<OcrResult> results, int tokenBudget) {
+    final List<OcrResult> ordered = List<OcrResult>.of(results)
+      ..sort((a, b) {
+        final ui.Rect ra = a.boundingBox;
+        final ui.Rect rb = b.boundingBox;
+        final double tolerance = min(ra.height, rb.height) / 2;
+        if ((ra.top - rb.top).abs() > tolerance) {
+          return ra.top.compareTo(rb.top);
+        }
+        return ra.left.compareTo(rb.left);
+      });
+    final List<List<String>> chunks = [];
+    List<String> current = [];
+    int tokens = 0;
+    OcrResult? previous;
+    for (final OcrResult result in ordered) {
+      final int cost = estimateTokens(result.text);
+      final bool paragraphBreak = previous != null &&
+          result.boundingBox.top - previous.boundingBox.bottom >
+              previous.boundingBox.height * _paragraphGapRatio;
+      if (current.isNotEmpty &&
+          (tokens + cost > tokenBudget ||
+              (paragraphBreak && tokens * 2 >= tokenBudget))) {
+        chunks.add(current);
+        current = [];
+        tokens = 0;
+      }
+      current.add(result.text);
+      tokens += cost;
+      previous = result;
+    }
+    if (current.isNotEmpty) chunks.add(current);
+    return chunks;
+  }
+
+  String _namespace(String targetLanguage) =>
+      TranslationMemory.namespaceOf(targetLanguage, model, apiEndpoint);
+
   Future<String> translate(
       String textToTranslate, String targetLanguage) async {
     if (apiKey.isEmpty || apiKey == 'YOUR_OPENAI_API_KEY') {
@@ -27,6 +110,9 @@ class OpenAiTranslationService {
     if (textToTranslate.isEmpty) {
       return ''; // Nothing to translate
     }
+    final String? remembered = (await memory?.lookup(
+        [textToTranslate], _namespace(targetLanguage)))?[textToTranslate];
+    if (remembered != null) return remembered;
 
     final String prompt =
         'Translate the following text to $targetLanguage. Return only the translated text, without any additional explanations, introductory phrases, or quotation marks. If the input text is already in $targetLanguage or cannot be meaningfully translated (e.g., it is a random string of characters), try to return the original text or an appropriate indication that no translation was performed. Text to translate: "$textToTranslate"';
@@ -76,7 +162,10 @@ class OpenAiTranslationService {
             translatedText =
                 translatedText.substring(1, translatedText.length - 1);
           }
-          return translatedText.trim();
+          translatedText = translatedText.trim();
+          memory?.store({textToTranslate: translatedText},
+              _namespace(targetLanguage));
+          return translatedText;
         } else {
           log.e(
               'OpenAI Translation response does not contain expected content structure. Response body: ${response.body}');
@@ -96,6 +185,13 @@ class OpenAiTranslationService {
 
   /// 结构化翻译，接收OCR结果数组，返回对应的翻译
   Future<Map<String, String>> translateStructured(
+      List<OcrResult> ocrResults, String targetLanguage) {
+    return LatencyTracer.trace(LatencyTracer.stageTranslate,
+        () => _translateStructured(ocrResults, targetLanguage),
+        arguments: {'items': ocrResults.length});
+  }
+
+  Future<Map<String, String>> _translateStructured(
       List<OcrResult> ocrResults, String targetLanguage) async {
     if (apiKey.isEmpty || apiKey == 'YOUR_OPENAI_API_KEY') {
       log.w(
@@ -107,9 +203,206 @@ class OpenAiTranslationService {
       return {}; // Nothing to translate
     }
 
+    // 先查翻译记忆，只翻译未命中的原文（同一原文只发送一次）
+    final String namespace = _namespace(targetLanguage);
+    final List<String> texts =
+        ocrResults.map((result) => result.text).toSet().toList();
+    final Map<String, String> remembered =
+        await memory?.lookup(texts, namespace) ?? const {};
+    final List<String> pending =
+        texts.where((text) => !remembered.containsKey(text)).toList();
+    if (pending.isEmpty) {
+      log.d('[OpenAiTranslationService] All ${texts.length} texts served '
+          'from translation memory: ${memory!.stats()}');
+      return Map<String, String>.of(remembered);
+    }
+
+    // 每条原文只取第一次出现的块参与分组
+    final Set<String> unsent = pending.toSet();
+    final List<List<String>> chunks = chunkTexts([
+      for (final OcrResult result in ocrResults)
+        if (unsent.remove(result.text)) result
+    ], chunkTokenBudget);
+    final List<Map<String, String>> chunkResults =
+        List<Map<String, String>>.filled(chunks.length, const {});
+    await _forEachChunk(chunks.length, (index) async {
+      chunkResults[index] =
+          await _translateChunk(chunks[index], targetLanguage, namespace);
+    });
+
+    // 按分块顺序合并，结果与完成顺序无关；部分分块失败时保留成功的译文，全部失败才返回错误
+    final Map<String, String> merged = Map<String, String>.of(remembered);
+    String? error;
+    int failed = 0;
+    for (final Map<String, String> chunk in chunkResults) {
+      if (chunk.containsKey('error')) {
+        error ??= chunk['error'];
+        failed++;
+      } else {
+        merged.addAll(chunk);
+      }
+    }
+    log.d('[OpenAiTranslationService] Translated ${pending.length}/'
+        '${texts.length} texts in ${chunks.length} chunks'
+        '${failed > 0 ? ' ($failed failed)' : ''}'
+        '${memory != null ? ', memory: ${memory!.stats()}' : ''}');
+    if (failed == chunks.length) return {'error': error!};
+    return merged;
+  }
+
+  /// 流式结构化翻译：翻译记忆命中的译文立即产出，其余分块以 `stream: true` 请求，模型每输出完一条
+  /// 就产出一条 {原文: 译文}，不必等整个回复或其他分块结束。分块与并发同 [translateStructured]，
+  /// 产出顺序即到达顺序。没有产出任何译文且所有分块都失败时，流以错误结束
+  Stream<MapEntry<String, String>> translateStructuredStream(
+      List<OcrResult> ocrResults, String targetLanguage) {
+    final StreamController<MapEntry<String, String>> controller =
+        StreamController();
+    final Stopwatch stopwatch = Stopwatch()..start();
+    int produced = 0;
+    void emit(String text, String translation) {
+      if (produced++ == 0) {
+        LatencyTracer.record(LatencyTracer.stageTranslateFirstItem,
+            stopwatch.elapsedMicroseconds / 1000.0);
+      }
+      controller.add(MapEntry(text, translation));
+    }
+
+    Future<void> run() async {
+      if (apiKey.isEmpty || apiKey == 'YOUR_OPENAI_API_KEY') {
+        log.w(
+            'OpenAI Translation API Key is not set or is invalid. Please configure it in settings.');
+        controller.addError(StateError('Translation API Key not configured.'));
+        return;
+      }
+      final String namespace = _namespace(targetLanguage);
+      final List<String> texts =
+          ocrResults.map((result) => result.text).toSet().toList();
+      final Map<String, String> remembered =
+          await memory?.lookup(texts, namespace) ?? const {};
+      remembered.forEach(emit);
+      final Set<String> unsent = texts
+          .where((text) => !remembered.containsKey(text))
+          .toSet();
+      final List<List<String>> chunks = chunkTexts([
+        for (final OcrResult result in ocrResults)
+          if (unsent.remove(result.text)) result
+      ], chunkTokenBudget);
+      int failed = 0;
+      await _forEachChunk(chunks.length, (index) async {
+        if (!await _translateChunkStream(
+            chunks[index], targetLanguage, namespace, emit)) {
+          failed++;
+        }
+      });
+      log.d('[OpenAiTranslationService] Streamed $produced/${texts.length} '
+          'translations in ${chunks.length} chunks'
+          '${failed > 0 ? ' ($failed failed)' : ''}');
+      if (produced == 0 && failed > 0) {
+        controller.addError(StateError('Translation failed. Check logs.'));
+      }
+    }
+
+    run().catchError((Object e, StackTrace s) {
+      log.e('Error streaming translations: $e', error: e, stackTrace: s);
+      controller.addError(e, s);
+    }).whenComplete(() {
+      LatencyTracer.record(
+          LatencyTracer.stageTranslate, stopwatch.elapsedMicroseconds / 1000.0);
+      controller.close();
+    });
+    return controller.stream;
+  }
+
+  /// 固定数量的 worker 依次领取分块，并发数不超过 [maxConcurrency]，共用同一个 http.Client
+  Future<void> _forEachChunk(
+      int count, Future<void> Function(int index) task) async {
+    int next = 0;
+    Future<void> worker() async {
+      while (next < count) {
+        await task(next++);
+      }
+    }
+
+    await Future.wait(
+        [for (int i = 0; i < min(maxConcurrency, count); i++) worker()]);
+  }
+
+  /// 流式翻译一个分块：要求模型按输入顺序输出 `[{"id": 序号, "text": 译文}, ...]`，
+  /// 每个对象闭合时回调 [onItem]。结束后把本分块的译文写入翻译记忆；返回是否拿到了译文
+  Future<bool> _translateChunkStream(
+      List<String> texts,
+      String targetLanguage,
+      String namespace,
+      void Function(String text, String translation) onItem) async {
+    final String inputJson = jsonEncode(texts);
+    final String prompt = '''
+Translate the following text items to $targetLanguage.
+Input is a JSON array of text items; the id of each item is its position in the array, starting at 0.
+Return a JSON array in the same order, formatted as [{"id": 0, "text": "translation"}, ...].
+Only return the valid JSON array without any explanations, markdown formatting, or additional text.
+Input: $inputJson
+''';
+    final Map<String, dynamic> requestBody = {
+      'model': model,
+      'messages': [
+        {
+          'role': 'system',
+          'content':
+              'You are a helpful translation assistant that returns valid JSON.'
+        },
+        {'role': 'user', 'content': prompt}
+      ],
+      'max_tokens': inputJson.length * 2 + 200,
+      'temperature': 0.3,
+      'stream': true,
+    };
+
+    final Map<String, String> translated = {};
+    try {
+      final http.Request request = http.Request('POST', Uri.parse(apiEndpoint))
+        ..headers['Content-Type'] = 'application/json'
+        ..headers['Authorization'] = 'Bearer $apiKey'
+        ..body = jsonEncode(requestBody);
+      final http.StreamedResponse response = await _httpClient.send(request);
+      if (response.statusCode != 200) {
+        log.e(
+            'OpenAI Translation API Error: ${response.statusCode} - ${await response.stream.bytesToString()}');
+        return false;
+      }
+      final JsonArrayStreamParser parser = JsonArrayStreamParser();
+      await for (final String line in response.stream
+          .transform(utf8.decoder)
+          .transform(const LineSplitter())) {
+        final String? delta = JsonArrayStreamParser.sseDelta(line);
+        if (delta == null) continue;
+        for (final Map<String, dynamic> item in parser.add(delta)) {
+          final dynamic id = item['id'];
+          final dynamic text = item['text'];
+          if (id is int &&
+              id >= 0 &&
+              id < texts.length &&
+              text is String &&
+              !translated.containsKey(texts[id])) {
+            translated[texts[id]] = text;
+            onItem(texts[id], text);
+          }
+        }
+        if (parser.isFinished) break;
+      }
+    } catch (e, s) {
+      log.e('Error streaming OpenAI translation: $e', error: e, stackTrace: s);
+    } finally {
+      memory?.store(translated, namespace);
+    }
+    return translated.isNotEmpty;
+  }
+
+  /// 翻译一个分块，返回 {原文: 译文}，失败时返回 {'error': 描述}
+  Future<Map<String, String>> _translateChunk(
+      List<String> texts, String targetLanguage, String namespace) async {
     // 构建JSON结构的输入
     final Map<String, dynamic> inputData = {
-      'texts': ocrResults.map((result) => result.text).toList(),
+      'texts': texts,
     };
 
     final String inputJson = jsonEncode(inputData);
@@ -177,6 +470,12 @@ Input: $inputJson
               }
             });
 
+            // 只记住请求中原文的译文，模型改写过的键不入记忆
+            final Set<String> requested = texts.toSet();
+            memory?.store(
+                Map<String, String>.fromEntries(result.entries
+                    .where((e) => requested.contains(e.key))),
+                namespace);
             return result;
           } catch (e) {
             log.e(
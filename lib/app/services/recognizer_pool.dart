@@ -0,0 +1,231 @@
+import 'dart:io';
+
+import 'package:google_mlkit_text_recognition/google_mlkit_text_recognition.dart';
+import 'package:transla_screen/app/core/constants/enums.dart';
+import 'package:transla_screen/app/services/latency_tracer.dart';
+import 'package:transla_screen/app/services/logger_service.dart';
+
+/// 按文字体系懒加载的 ML Kit [TextRecognizer] 池
+///
+/// 中/日/韩/天城文模型已随 APK 打包，但每个识别器加载模型后常驻数十 MB，不能全部常驻。
+/// 池中每个体系的识别器在首次使用时才创建，最近使用的 [maxResident] 个保持常驻，
+/// 超出时关闭最久未用的一个；系统内存紧张时 [trim] 只保留最近使用的一个。
+///
+/// 每个体系记录创建耗时、识别次数和耗时、首次识别前后的 RSS 增量（模型在首次识别时加载，
+/// 以此近似该模型的常驻内存），供 [report] 查询，用于调整 [maxResident]。
+class RecognizerPool {
+  static const int defaultMaxResident = 2;
+
+  final int maxResident;
+
+  // 按最近使用排序，最后一个最热
+  final Map<TextRecognitionScript, TextRecognizer> _resident = {};
+  final Map<TextRecognitionScript, ScriptStats> _stats = {};
+
+  /// 自动选择体系时上一帧判断出的体系，随池保留，服务重建后仍然有效
+  TextRecognitionScript? lastDetectedScript;
+
+  RecognizerPool({this.maxResident = defaultMaxResident});
+
+  /// 用 [script] 对应的识别器识别，识别器不存在时创建
+  Future<RecognizedText> process(
+      TextRecognitionScript script, InputImage inputImage) async {
+    final ScriptStats stats =
+        _stats.putIfAbsent(script, () => ScriptStats(script));
+    final TextRecognizer recognizer = _acquire(script, stats);
+    final bool firstUse = stats.residentBytes == null;
+    final int rssBefore = firstUse ? ProcessInfo.currentRss : 0;
+    final Stopwatch stopwatch = Stopwatch()..start();
+    try {
+      return await recognizer.processImage(inputImage);
+    } finally {
+      final double elapsedMs = stopwatch.elapsedMicroseconds / 1000.0;
+      stats.recordUse(elapsedMs);
+      if (firstUse) {
+        stats.residentBytes = ProcessInfo.currentRss - rssBefore;
+      }
+      LatencyTracer.record('${LatencyTracer.stageOcrScriptPrefix}${script.name}',
+          elapsedMs);
+    }
+  }
+
+  TextRecognizer _acquire(TextRecognitionScript script, ScriptStats stats) {
+    final TextRecognizer? existing = _resident.remove(script);
+    if (existing != null) {
+      _resident[script] = existing; // 移到末尾，标记为最近使用
+      return existing;
+    }
+    final Stopwatch stopwatch = Stopwatch()..start();
+    final TextRecognizer recognizer = TextRecognizer(script: script);
+    stats.recordCreate(stopwatch.elapsedMicroseconds / 1000.0);
+    _resident[script] = recognizer;
+    log.i("[RecognizerPool] Created ${script.name} recognizer "
+        "(${_resident.length}/$maxResident resident)");
+    while (_resident.length > maxResident) {
+      _evict(_resident.keys.first);
+    }
+    return recognizer;
+  }
+
+  /// 系统内存紧张时只保留最近使用的 [keep] 个识别器
+  void trim({int keep = 1}) {
+    while (_resident.length > keep) {
+      _evict(_resident.keys.first);
+    }
+  }
+
+  void _evict(TextRecognitionScript script) {
+    final TextRecognizer? recognizer = _resident.remove(script);
+    if (recognizer == null) return;
+    recognizer.close();
+    final ScriptStats? stats = _stats[script];
+    if (stats != null) {
+      stats.evictions++;
+      stats.residentBytes = null; // 重新加载时再测一次
+    }
+    log.i("[RecognizerPool] Evicted ${script.name} recognizer");
+  }
+
+  bool isResident(TextRecognitionScript script) => _resident.containsKey(script);
+
+  /// 体系名 → {resident, created, evictions, uses, createMs, lastMs, avgMs, residentBytes}
+  Map<String, dynamic> report() {
+    return {
+      for (final ScriptStats stats in _stats.values)
+        stats.script.name: stats.toMap(isResident(stats.script)),
+    };
+  }
+
+  void dispose() {
+    for (final TextRecognizer recognizer in _resident.values) {
+      recognizer.close();
+    }
+    _resident.clear();
+  }
+}
+
+/// 单个文字体系识别器的统计
+class ScriptStats {
+  final TextRecognitionScript script;
+  int created = 0;
+  int evictions = 0;
+  int uses = 0;
+  double createMs = 0;
+  double lastMs = 0;
+  double totalMs = 0;
+
+  /// 首次识别前后的 RSS 增量；识别器被关闭后为 null
+  int? residentBytes;
+
+  ScriptStats(this.script);
+
+  void recordCreate(double ms) {
+    created++;
+    createMs = ms;
+  }
+
+  void recordUse(double ms) {
+    uses++;
+    lastMs = ms;
+    totalMs += ms;
+  }
+
+  Map<String, dynamic> toMap(bool resident) => {
+        'resident': resident,
+        'created': created,
+        'evictions': evictions,
+        'uses': uses,
+        'createMs': createMs,
+        'lastMs': lastMs,
+        'avgMs': uses == 0 ? 0 : totalMs / uses,
+        if (residentBytes != null) 'residentBytes': residentBytes,
+      };
+}
+
+/// 根据识别结果中的字符判断文字体系
+///
+/// ML Kit 的中/日/韩/天城文模型都同时识别拉丁字母，因此识别结果的字符分布可以说明画面用的是哪种文字：
+/// 出现假名 → 日文，谚文 → 韩文，天城文 → 天城文，只有汉字 → 中文。
+/// 拉丁模型遇到 CJK 文字时输出的是零散的符号和短片段，用 [quality] 判断是否需要换模型重试。
+class ScriptDetector {
+  /// 按字符统计判断体系；没有任何可归类的文字时返回 null
+  static TextRecognitionScript? detect(String text) {
+    int latin = 0, han = 0, kana = 0, hangul = 0, devanagari = 0;
+    for (final int rune in text.runes) {
+      if (_isLatinLetter(rune)) {
+        latin++;
+      } else if (_isHan(rune)) {
+        han++;
+      } else if (_isKana(rune)) {
+        kana++;
+      } else if (_isHangul(rune)) {
+        hangul++;
+      } else if (_isDevanagari(rune)) {
+        devanagari++;
+      }
+    }
+    // 假名、谚文、天城文出现少量即可确定；汉字在中日文中都有，假名优先
+    if (kana > 0 && kana * 10 >= han) return TextRecognitionScript.japanese;
+    if (hangul > 0 && hangul >= han) return TextRecognitionScript.korean;
+    if (devanagari > 0 && devanagari >= latin) {
+      return TextRecognitionScript.devanagiri;
+    }
+    if (han > 0) return TextRecognitionScript.chinese;
+    if (latin > 0) return TextRecognitionScript.latin;
+    return null;
+  }
+
+  /// 识别结果的可信度：非空白字符中属于字母、数字或表意文字的比例（0~1）
+  static double quality(String text) {
+    int total = 0, letters = 0;
+    for (final int rune in text.runes) {
+      if (rune <= 0x20 || rune == 0x3000) continue;
+      total++;
+      if (_isLatinLetter(rune) ||
+          (rune >= 0x30 && rune <= 0x39) ||
+          _isHan(rune) ||
+          _isKana(rune) ||
+          _isHangul(rune) ||
+          _isDevanagari(rune)) {
+        letters++;
+      }
+    }
+    return total == 0 ? 0 : letters / total;
+  }
+
+  static bool _isLatinLetter(int rune) =>
+      (rune >= 0x41 && rune <= 0x5A) ||
+      (rune >= 0x61 && rune <= 0x7A) ||
+      (rune >= 0xC0 && rune <= 0x24F && rune != 0xD7 && rune != 0xF7);
+
+  static bool _isHan(int rune) =>
+      (rune >= 0x4E00 && rune <= 0x9FFF) || (rune >= 0x3400 && rune <= 0x4DBF);
+
+  static bool _isKana(int rune) =>
+      (rune >= 0x3040 && rune <= 0x30FF) || (rune >= 0x31F0 && rune <= 0x31FF);
+
+  static bool _isHangul(int rune) =>
+      (rune >= 0xAC00 && rune <= 0xD7AF) ||
+      (rune >= 0x1100 && rune <= 0x11FF) ||
+      (rune >= 0x3130 && rune <= 0x318F);
+
+  static bool _isDevanagari(int rune) => rune >= 0x0900 && rune <= 0x097F;
+}
+
+/// 设置中的 [OcrScript] 与 ML Kit 体系的对应；auto 返回 null
+TextRecognitionScript? recognitionScriptOf(OcrScript script) {
+  switch (script) {
+    case OcrScript.auto:
+      return null;
+    case OcrScript.latin:
+      return TextRecognitionScript.latin;
+    case OcrScript.chinese:
+      return TextRecognitionScript.chinese;
+    case OcrScript.japanese:
+      return TextRecognitionScript.japanese;
+    case OcrScript.korean:
+      return TextRecognitionScript.korean;
+    case OcrScript.devanagari:
+      return TextRecognitionScript.devanagiri;
+  }
+}
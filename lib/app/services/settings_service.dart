@@ -1,5 +1,8 @@
 import 'package:shared_preferences/shared_preferences.dart';
 import 'package:transla_screen/app/core/constants/enums.dart'; // Updated import
+import 'package:transla_screen/app/services/hybrid_ocr_service.dart';
+import 'package:transla_screen/app/services/ocr_tiling.dart';
+import 'package:transla_screen/app/services/openai_ocr_service.dart';
 
 class SettingsService {
   static const String _keySelectedOcrEngine = 'selected_ocr_engine';
@@ -16,6 +19,19 @@ class SettingsService {
       'openai_translation_model_name';
   static const String _keyTargetLanguage =
       'target_language'; // Key for target language
+  static const String _keyCaptureScale = 'capture_scale';
+  // 每个 OCR 引擎单独的预处理方式，键为 ocr_preprocess_<引擎名>
+  static const String _keyOcrPreprocessPrefix = 'ocr_preprocess_';
+  static const String _keyLocalOcrScript = 'local_ocr_script';
+  static const String _keyLocalOcrTiling = 'local_ocr_tiling';
+  static const String _keyLocalOcrTileSize = 'local_ocr_tile_size';
+  static const String _keyLocalOcrTileOverlap = 'local_ocr_tile_overlap';
+  static const String _keyLocalOcrTileConcurrency =
+      'local_ocr_tile_concurrency';
+  static const String _keyOpenAiOcrMaxEdge = 'openai_ocr_max_edge';
+  static const String _keyOpenAiOcrStream = 'openai_ocr_stream';
+  static const String _keyOpenAiTranslationStream = 'openai_translation_stream';
+  static const String _keyHybridOcrThreshold = 'hybrid_ocr_confidence_threshold';
 
   // Default values
   static const String defaultOpenAiEndpoint =
@@ -27,6 +43,10 @@ class SettingsService {
       'https://api.openai.com/v1/chat/completions'; // Added default
   static const String defaultOpenAiTranslationModel = 'gpt-3.5-turbo';
   static const String defaultTargetLanguage = '中文'; // Default target language
+  // 截屏缩放比例：原生端以 屏幕尺寸 * scale 创建 VirtualDisplay
+  static const double defaultCaptureScale = 1.0;
+  static const double minCaptureScale = 0.25;
+  static const double maxCaptureScale = 1.0;
 
   Future<SharedPreferences> _getPrefs() async {
     return await SharedPreferences.getInstance();
@@ -41,10 +61,8 @@ class SettingsService {
   Future<OcrEngineType> getSelectedOcrEngine() async {
     final prefs = await _getPrefs();
     final String? engineName = prefs.getString(_keySelectedOcrEngine);
-    if (engineName == OcrEngineType.openai.name) {
-      return OcrEngineType.openai;
-    }
-    return OcrEngineType.local; // Default to local
+    return OcrEngineType.values.firstWhere((e) => e.name == engineName,
+        orElse: () => OcrEngineType.local); // Default to local
   }
 
   // --- OpenAI API Key ---
@@ -144,4 +162,119 @@ class SettingsService {
     final prefs = await _getPrefs();
     return prefs.getString(_keyTargetLanguage) ?? defaultTargetLanguage;
   }
+
+  // --- Capture Scale ---
+  Future<void> setCaptureScale(double scale) async {
+    final prefs = await _getPrefs();
+    await prefs.setDouble(
+        _keyCaptureScale, scale.clamp(minCaptureScale, maxCaptureScale));
+  }
+
+  Future<double> getCaptureScale() async {
+    final prefs = await _getPrefs();
+    return (prefs.getDouble(_keyCaptureScale) ?? defaultCaptureScale)
+        .clamp(minCaptureScale, maxCaptureScale);
+  }
+
+  // --- OpenAI OCR Upload Size ---
+  /// 上传图片的长边上限，0 表示保持截屏分辨率
+  Future<void> setOpenAiOcrMaxEdge(int maxEdge) async {
+    final prefs = await _getPrefs();
+    await prefs.setInt(_keyOpenAiOcrMaxEdge, maxEdge < 0 ? 0 : maxEdge);
+  }
+
+  Future<int> getOpenAiOcrMaxEdge() async {
+    final prefs = await _getPrefs();
+    return prefs.getInt(_keyOpenAiOcrMaxEdge) ??
+        OpenAiOcrService.defaultMaxUploadEdge;
+  }
+
+  // --- OpenAI OCR Streaming ---
+  Future<void> setOpenAiOcrStream(bool enabled) async {
+    final prefs = await _getPrefs();
+    await prefs.setBool(_keyOpenAiOcrStream, enabled);
+  }
+
+  Future<bool> getOpenAiOcrStream() async {
+    final prefs = await _getPrefs();
+    return prefs.getBool(_keyOpenAiOcrStream) ?? true;
+  }
+
+  // --- OpenAI Translation Streaming ---
+  /// 开启时译文蒙版先显示原文占位，译文流式到达后逐项填入
+  Future<void> setOpenAiTranslationStream(bool enabled) async {
+    final prefs = await _getPrefs();
+    await prefs.setBool(_keyOpenAiTranslationStream, enabled);
+  }
+
+  Future<bool> getOpenAiTranslationStream() async {
+    final prefs = await _getPrefs();
+    return prefs.getBool(_keyOpenAiTranslationStream) ?? true;
+  }
+
+  // --- Hybrid OCR ---
+  Future<void> setHybridOcrThreshold(double threshold) async {
+    final prefs = await _getPrefs();
+    await prefs.setDouble(_keyHybridOcrThreshold, threshold.clamp(0.0, 1.0));
+  }
+
+  /// 本地块置信度低于该值时交给云端识别
+  Future<double> getHybridOcrThreshold() async {
+    final prefs = await _getPrefs();
+    return prefs.getDouble(_keyHybridOcrThreshold) ??
+        HybridOcrService.defaultConfidenceThreshold;
+  }
+
+  // --- Local OCR Script ---
+  Future<void> setLocalOcrScript(OcrScript script) async {
+    final prefs = await _getPrefs();
+    await prefs.setString(_keyLocalOcrScript, script.name);
+  }
+
+  Future<OcrScript> getLocalOcrScript() async {
+    final prefs = await _getPrefs();
+    final String? name = prefs.getString(_keyLocalOcrScript);
+    return OcrScript.values
+        .firstWhere((s) => s.name == name, orElse: () => OcrScript.auto);
+  }
+
+  // --- Local OCR Tiling ---
+  Future<void> setLocalOcrTiling(bool enabled,
+      {OcrTilingConfig config = const OcrTilingConfig()}) async {
+    final prefs = await _getPrefs();
+    await prefs.setBool(_keyLocalOcrTiling, enabled);
+    await prefs.setInt(_keyLocalOcrTileSize, config.tileSize);
+    await prefs.setInt(_keyLocalOcrTileOverlap, config.overlap);
+    await prefs.setInt(_keyLocalOcrTileConcurrency, config.maxConcurrency);
+  }
+
+  /// 未开启分块时返回 null
+  Future<OcrTilingConfig?> getLocalOcrTiling() async {
+    final prefs = await _getPrefs();
+    if (!(prefs.getBool(_keyLocalOcrTiling) ?? false)) return null;
+    return OcrTilingConfig(
+      tileSize: prefs.getInt(_keyLocalOcrTileSize) ??
+          OcrTilingConfig.defaultTileSize,
+      overlap: prefs.getInt(_keyLocalOcrTileOverlap) ??
+          OcrTilingConfig.defaultOverlap,
+      maxConcurrency: prefs.getInt(_keyLocalOcrTileConcurrency) ??
+          OcrTilingConfig.defaultMaxConcurrency,
+    );
+  }
+
+  // --- OCR Preprocess (per engine) ---
+  Future<void> setOcrPreprocess(
+      OcrEngineType engine, FramePreprocess preprocess) async {
+    final prefs = await _getPrefs();
+    await prefs.setString(
+        '$_keyOcrPreprocessPrefix${engine.name}', preprocess.name);
+  }
+
+  Future<FramePreprocess> getOcrPreprocess(OcrEngineType engine) async {
+    final prefs = await _getPrefs();
+    final String? name =
+        prefs.getString('$_keyOcrPreprocessPrefix${engine.name}');
+    return FramePreprocess.values.firstWhere((p) => p.name == name,
+        orElse: () => FramePreprocess.none);
+  }
 }
@@ -0,0 +1,93 @@
+import 'dart:ffi';
+import 'dart:typed_data';
+
+typedef _MmapNative = Pointer<Void> Function(
+    Pointer<Void> addr, IntPtr length, Int32 prot, Int32 flags, Int32 fd, IntPtr offset);
+typedef _MmapDart = Pointer<Void> Function(
+    Pointer<Void> addr, int length, int prot, int flags, int fd, int offset);
+typedef _MunmapNative = Int32 Function(Pointer<Void> addr, IntPtr length);
+typedef _MunmapDart = int Function(Pointer<Void> addr, int length);
+
+/// 原生端共享帧槽位的只读映射（见 SharedFrameRing.java）
+///
+/// 原生端把 raw 帧写入 mmap 的槽位文件，通道上只传 fd / 容量 / 偏移等描述。
+/// 这里用 dart:ffi 调用 libc 的 mmap 映射同一个 fd，像素以外部 TypedData 视图返回，不经过 Dart 堆拷贝。
+/// 槽位头部 8 字节为代数，原生端覆盖槽位前会先清零，用 [generationOf] 判断视图是否仍然有效。
+///
+/// 槽位的描述符编号（descriptorId）或容量变化时解除旧映射再重新映射：fd 数值在原生端关闭后可能被复用，
+/// 只比较 fd 会拿到已删除文件的旧映射。原生端只会重用已归还（或会话结束时收回）的槽位，
+/// 此时旧视图按约定已不再访问，解除映射是安全的。
+class SharedFrameMemory {
+  static const int _protRead = 0x1;
+  static const int _mapShared = 0x01;
+
+  static final _MmapDart _mmap = DynamicLibrary.process()
+      .lookupFunction<_MmapNative, _MmapDart>('mmap');
+  static final _MunmapDart _munmap = DynamicLibrary.process()
+      .lookupFunction<_MunmapNative, _MunmapDart>('munmap');
+
+  // 槽位号 → 当前映射
+  static final Map<int, _SlotMapping> _mappings = {};
+
+  /// 返回槽位中 [offset] 起 [length] 字节的外部视图；槽位的描述符或容量变化时解除旧映射并重新映射
+  static Uint8List view(
+      {required int slot,
+      required int fd,
+      required int descriptorId,
+      required int capacity,
+      required int offset,
+      required int length}) {
+    final _SlotMapping mapping = _mapSlot(slot, fd, descriptorId, capacity);
+    return Pointer<Uint8>.fromAddress(mapping.address + offset)
+        .asTypedList(length);
+  }
+
+  /// 槽位当前的代数；与帧描述中的代数不同说明槽位已被原生端回收覆盖
+  static int? generationOf(int slot) {
+    final _SlotMapping? mapping = _mappings[slot];
+    if (mapping == null) return null;
+    return Pointer<Int64>.fromAddress(mapping.address).value;
+  }
+
+  /// 解除所有映射；调用前必须已归还全部共享帧，之后的帧会重新映射
+  static void dispose() {
+    _mappings.values.forEach(_unmap);
+    _mappings.clear();
+  }
+
+  static _SlotMapping _mapSlot(
+      int slot, int fd, int descriptorId, int capacity) {
+    final _SlotMapping? current = _mappings.remove(slot);
+    if (current != null &&
+        current.fd == fd &&
+        current.descriptorId == descriptorId &&
+        current.capacity >= capacity) {
+      _mappings[slot] = current;
+      return current;
+    }
+    if (current != null) _unmap(current);
+    final Pointer<Void> address =
+        _mmap(nullptr, capacity, _protRead, _mapShared, fd, 0);
+    // MAP_FAILED == (void *) -1
+    if (address.address == -1 || address.address == 0xFFFFFFFF) {
+      throw StateError('mmap failed for shared frame slot $slot (fd $fd)');
+    }
+    final _SlotMapping mapping =
+        _SlotMapping(fd, descriptorId, capacity, address.address);
+    _mappings[slot] = mapping;
+    return mapping;
+  }
+
+  static void _unmap(_SlotMapping mapping) {
+    _munmap(Pointer<Void>.fromAddress(mapping.address), mapping.capacity);
+  }
+}
+
+class _SlotMapping {
+  final int fd;
+  final int descriptorId;
+  final int capacity;
+  final int address;
+
+  _SlotMapping(this.fd, this.descriptorId, this.capacity, this.address);
+}
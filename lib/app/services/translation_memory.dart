@@ -0,0 +1,370 @@
+import 'dart:collection';
+import 'dart:convert';
+import 'dart:io';
+import 'dart:isolate';
+import 'dart:typed_data';
+
+import 'package:path_provider/path_provider.dart';
+import 'package:transla_screen/app/services/logger_service.dart';
+
+/// 持久化的翻译记忆：按规范化的原文、目标语言和模型/接口缓存译文
+///
+/// 两级存储：内存中是按估算占用限制在 [memoryBudgetBytes] 以内的 LRU；其后是应用支持目录下的追加日志
+/// （每行一条 `[键, 译文]` 的 JSON），内存中只保留键哈希到日志偏移的索引，未命中内存时按偏移读出单条记录并提升到内存。
+/// 日志超过 [diskBudgetBytes] 时压缩：按最近使用顺序保留约 3/4 预算的记录重写文件，其余计为淘汰。
+///
+/// [warmUp] 在后台 isolate 中解析日志、建立索引并把最近的记录装入内存，由调用方不等待地启动；
+/// 查询会等预热完成。文件读写经由同一条 Future 链串行执行。
+class TranslationMemory {
+  static const int defaultMemoryBudgetBytes = 256 * 1024;
+  static const int defaultDiskBudgetBytes = 4 * 1024 * 1024;
+  static const String fileName = 'translation_memory.jsonl';
+
+  static const int _fnvOffsetBasis = 0xcbf29ce484222325;
+  static const int _fnvPrime = 0x100000001b3;
+
+  final int memoryBudgetBytes;
+  final int diskBudgetBytes;
+  final Future<File> Function() _fileProvider;
+
+  final LinkedHashMap<String, String> _memory = LinkedHashMap();
+  int _memoryBytes = 0;
+
+  // 键哈希 -> 该键最新一条记录在日志中的位置，按最近使用排序
+  final LinkedHashMap<int, _DiskEntry> _index = LinkedHashMap();
+  File? _file;
+  int _fileLength = 0;
+
+  Future<void>? _warm;
+  Future<void> _io = Future<void>.value();
+
+  int memoryHits = 0;
+  int diskHits = 0;
+  int misses = 0;
+  int memoryEvictions = 0;
+  int diskEvictions = 0;
+
+  /// [fileProvider] 缺省为应用支持目录下的 [fileName]
+  TranslationMemory(
+      {this.memoryBudgetBytes = defaultMemoryBudgetBytes,
+      this.diskBudgetBytes = defaultDiskBudgetBytes,
+      Future<File> Function()? fileProvider})
+      : _fileProvider = fileProvider ?? _defaultFile;
+
+  static Future<File> _defaultFile() async =>
+      File('${(await getApplicationSupportDirectory()).path}/$fileName');
+
+  /// 同一段文字的不同排版（首尾空白、换行、连续空格）视为同一原文
+  static String normalize(String text) =>
+      text.trim().replaceAll(RegExp(r'\s+'), ' ');
+
+  /// 区分目标语言和翻译来源，换模型或接口后不会拿到其他模型的译文
+  static String namespaceOf(
+          String targetLanguage, String model, String endpoint) =>
+      '$targetLanguage|$model|$endpoint';
+
+  static String _keyOf(String namespace, String text) =>
+      '$namespace\u0000${normalize(text)}';
+
+  /// 后台预热，可重复调用；失败时只记录日志，记忆从空开始
+  Future<void> warmUp() => _warm ??= _load();
+
+  /// 查询多条原文，返回命中的 {原文: 译文}（键为传入的原文）
+  Future<Map<String, String>> lookup(
+      Iterable<String> texts, String namespace) async {
+    await warmUp();
+    final Map<String, String> hits = {};
+    final Map<String, List<String>> onDisk = {};
+    for (final String text in texts) {
+      final String key = _keyOf(namespace, text);
+      final String? value = _memory.remove(key);
+      if (value != null) {
+        _memory[key] = value; // 移到末尾，标记为最近使用
+        memoryHits++;
+        hits[text] = value;
+      } else if (_index.containsKey(_hash(key))) {
+        (onDisk[key] ??= []).add(text);
+      } else {
+        misses++;
+      }
+    }
+    if (onDisk.isNotEmpty) {
+      final Map<String, String> loaded = await _readFromDisk(onDisk.keys);
+      onDisk.forEach((key, sources) {
+        final String? value = loaded[key];
+        if (value == null) {
+          misses += sources.length;
+          return;
+        }
+        diskHits += sources.length;
+        _putInMemory(key, value);
+        for (final String text in sources) {
+          hits[text] = value;
+        }
+      });
+    }
+    return hits;
+  }
+
+  /// 记住一批译文：立即写入内存，日志在后台追加
+  void store(Map<String, String> translations, String namespace) {
+    if (translations.isEmpty) return;
+    final List<MapEntry<String, String>> entries = [];
+    translations.forEach((text, translation) {
+      if (normalize(text).isEmpty) return;
+      final String key = _keyOf(namespace, text);
+      _putInMemory(key, translation);
+      entries.add(MapEntry(key, translation));
+    });
+    if (entries.isEmpty) return;
+    // 追加必须排在加载日志之后，偏移才与文件一致
+    warmUp();
+    _enqueue(() => _append(entries));
+  }
+
+  /// 等待已排队的日志读写（包括预热）完成
+  Future<void> flush() async {
+    await warmUp();
+    await _enqueue(() async {});
+  }
+
+  Map<String, dynamic> stats() {
+    final int lookups = memoryHits + diskHits + misses;
+    return {
+      'memoryEntries': _memory.length,
+      'memoryBytes': _memoryBytes,
+      'diskEntries': _index.length,
+      'diskBytes': _fileLength,
+      'memoryHits': memoryHits,
+      'diskHits': diskHits,
+      'misses': misses,
+      'hitRate': lookups == 0
+          ? 0.0
+          : ((memoryHits + diskHits) / lookups * 1000).round() / 1000,
+      'memoryEvictions': memoryEvictions,
+      'diskEvictions': diskEvictions,
+    };
+  }
+
+  /// 清空内存和日志
+  Future<void> clear() async {
+    await warmUp();
+    _memory.clear();
+    _memoryBytes = 0;
+    _index.clear();
+    await _enqueue(() async {
+      final File? file = _file;
+      if (file != null && await file.exists()) await file.delete();
+      _fileLength = 0;
+    });
+  }
+
+  void _putInMemory(String key, String value) {
+    final String? old = _memory.remove(key);
+    if (old != null) _memoryBytes -= _bytesOf(key, old);
+    _memory[key] = value;
+    _memoryBytes += _bytesOf(key, value);
+    while (_memoryBytes > memoryBudgetBytes && _memory.length > 1) {
+      final String oldest = _memory.keys.first;
+      _memoryBytes -= _bytesOf(oldest, _memory.remove(oldest)!);
+      memoryEvictions++;
+    }
+  }
+
+  /// Dart 字符串按 UTF-16 存储，另加约 64 字节的对象和哈希表开销
+  static int _bytesOf(String key, String value) =>
+      (key.length + value.length) * 2 + 64;
+
+  Future<void> _enqueue(Future<void> Function() task) {
+    final Future<void> next = _io.then((_) => task()).catchError(
+        (Object e, StackTrace s) => log.e('[TranslationMemory] IO failed: $e',
+            error: e, stackTrace: s));
+    _io = next;
+    return next;
+  }
+
+  Future<void> _load() => _enqueue(() async {
+        final File file = await _fileProvider();
+        _file = file;
+        if (!await file.exists()) return;
+        final Uint8List bytes = await file.readAsBytes();
+        final List<_LogRecord> records = await _parseLogInBackground(bytes);
+        // 上次写到一半被中断时最后一行不完整：截掉它，否则下一次追加会接在这行后面一起损坏
+        int length = bytes.length;
+        while (length > 0 && bytes[length - 1] != 0x0A) {
+          length--;
+        }
+        if (length < bytes.length) {
+          log.w('[TranslationMemory] Dropping truncated last line '
+              '(${bytes.length - length} bytes)');
+          final RandomAccessFile raf = await file.open(mode: FileMode.append);
+          try {
+            await raf.truncate(length);
+          } finally {
+            await raf.close();
+          }
+        }
+        _fileLength = length;
+        for (final _LogRecord r in records) {
+          final int hash = _hash(r.key);
+          _index.remove(hash);
+          _index[hash] = _DiskEntry(r.offset, r.length);
+        }
+        // 从最近的记录往前装入内存，直到占满内存预算
+        int budget = memoryBudgetBytes;
+        int start = records.length;
+        final Set<String> seen = {};
+        while (start > 0) {
+          final _LogRecord r = records[start - 1];
+          if (seen.add(r.key)) {
+            budget -= _bytesOf(r.key, r.value);
+            if (budget < 0) break;
+          }
+          start--;
+        }
+        // 预热期间已写入内存的译文比日志中的更新
+        final Set<String> newer = _memory.keys.toSet();
+        for (int i = start; i < records.length; i++) {
+          if (newer.contains(records[i].key)) continue;
+          _putInMemory(records[i].key, records[i].value);
+        }
+        log.i('[TranslationMemory] Loaded ${_index.length} entries '
+            '($length bytes), ${_memory.length} in memory');
+      });
+
+  Future<Map<String, String>> _readFromDisk(Iterable<String> keys) async {
+    final Map<String, String> values = {};
+    await _enqueue(() async {
+      final File? file = _file;
+      if (file == null || !await file.exists()) return;
+      final RandomAccessFile raf = await file.open();
+      try {
+        for (final String key in keys) {
+          final int hash = _hash(key);
+          final _DiskEntry? entry = _index.remove(hash);
+          if (entry == null) continue;
+          _index[hash] = entry;
+          await raf.setPosition(entry.offset);
+          final _LogRecord? record =
+              _decodeLine(await raf.read(entry.length), entry.offset);
+          // 哈希碰撞时键不一致，按未命中处理
+          if (record != null && record.key == key) values[key] = record.value;
+        }
+      } finally {
+        await raf.close();
+      }
+    });
+    return values;
+  }
+
+  Future<void> _append(List<MapEntry<String, String>> entries) async {
+    final File file = _file ?? await _fileProvider();
+    _file = file;
+    final BytesBuilder builder = BytesBuilder(copy: false);
+    for (final MapEntry<String, String> e in entries) {
+      final List<int> line = utf8.encode('${jsonEncode([e.key, e.value])}\n');
+      final int hash = _hash(e.key);
+      _index.remove(hash);
+      _index[hash] = _DiskEntry(_fileLength + builder.length, line.length - 1);
+      builder.add(line);
+    }
+    await file.parent.create(recursive: true);
+    await file.writeAsBytes(builder.takeBytes(),
+        mode: FileMode.append, flush: false);
+    _fileLength = await file.length();
+    if (_fileLength > diskBudgetBytes) await _compact(file);
+  }
+
+  /// 按索引的最近使用顺序保留约 3/4 预算的记录，重写日志
+  Future<void> _compact(File file) async {
+    final Uint8List bytes = await file.readAsBytes();
+    final int keepBudget = diskBudgetBytes * 3 ~/ 4;
+    final List<MapEntry<int, _DiskEntry>> newestFirst =
+        _index.entries.toList().reversed.toList();
+    final List<MapEntry<int, _DiskEntry>> kept = [];
+    int size = 0;
+    for (final MapEntry<int, _DiskEntry> e in newestFirst) {
+      if (e.value.offset + e.value.length > bytes.length) continue;
+      if (size + e.value.length + 1 > keepBudget) break;
+      size += e.value.length + 1;
+      kept.add(e);
+    }
+    final BytesBuilder builder = BytesBuilder(copy: false);
+    final LinkedHashMap<int, _DiskEntry> index = LinkedHashMap();
+    for (final MapEntry<int, _DiskEntry> e in kept.reversed) {
+      index[e.key] = _DiskEntry(builder.length, e.value.length);
+      builder.add(Uint8List.sublistView(
+          bytes, e.value.offset, e.value.offset + e.value.length));
+      builder.addByte(0x0A);
+    }
+    final File tmp = File('${file.path}.tmp');
+    await tmp.writeAsBytes(builder.takeBytes(), flush: true);
+    await tmp.rename(file.path);
+    diskEvictions += _index.length - index.length;
+    _index
+      ..clear()
+      ..addAll(index);
+    _fileLength = size;
+    log.d('[TranslationMemory] Compacted log: ${stats()}');
+  }
+
+  static int _hash(String key) {
+    int h = _fnvOffsetBasis;
+    for (final int unit in key.codeUnits) {
+      h = (h ^ unit) * _fnvPrime;
+    }
+    return h;
+  }
+}
+
+class _DiskEntry {
+  final int offset;
+  // 不含换行符
+  final int length;
+
+  const _DiskEntry(this.offset, this.length);
+}
+
+class _LogRecord {
+  final String key;
+  final String value;
+  final int offset;
+  final int length;
+
+  const _LogRecord(this.key, this.value, this.offset, this.length);
+}
+
+/// 顶层函数：发往后台 isolate 的闭包只捕获 [bytes]。在实例方法里创建的闭包会连带捕获整个
+/// TranslationMemory（其中的 Future 带有等待中的回调），无法发送到其他 isolate
+Future<List<_LogRecord>> _parseLogInBackground(Uint8List bytes) =>
+    Isolate.run(() => _parseLog(bytes));
+
+/// 在后台 isolate 中按行解析日志；写到一半被中断的行等无法解析的行被跳过
+List<_LogRecord> _parseLog(Uint8List bytes) {
+  final List<_LogRecord> records = [];
+  int start = 0;
+  for (int i = 0; i < bytes.length; i++) {
+    if (bytes[i] != 0x0A) continue;
+    final _LogRecord? record =
+        _decodeLine(Uint8List.sublistView(bytes, start, i), start);
+    if (record != null) records.add(record);
+    start = i + 1;
+  }
+  return records;
+}
+
+_LogRecord? _decodeLine(List<int> line, int offset) {
+  try {
+    final dynamic value = jsonDecode(utf8.decode(line));
+    if (value is List &&
+        value.length == 2 &&
+        value[0] is String &&
+        value[1] is String) {
+      return _LogRecord(
+          value[0] as String, value[1] as String, offset, line.length);
+    }
+  } on FormatException {
+    // 损坏的行
+  }
+  return null;
+}
@@ -0,0 +1,93 @@
+import 'package:flutter_test/flutter_test.dart';
+import 'package:transla_screen/app/services/json_array_stream_parser.dart';
+
+/// 把 [text] 按 [chunkSize] 切开逐段送入，返回解析出的全部对象
+List<Map<String, dynamic>> parseInChunks(String text, int chunkSize) {
+  final JsonArrayStreamParser parser = JsonArrayStreamParser();
+  final List<Map<String, dynamic>> objects = [];
+  for (int i = 0; i < text.length; i += chunkSize) {
+    final int end = i + chunkSize < text.length ? i + chunkSize : text.length;
+    objects.addAll(parser.add(text.substring(i, end)));
+  }
+  return objects;
+}
+
+List<String> textsOf(List<Map<String, dynamic>> objects) =>
+    [for (final Map<String, dynamic> o in objects) o['text'] as String];
+
+void main() {
+  const String array =
+      '[{"text": "Hello", "bbox": [1, 2, 3, 4]}, {"text": "World", "bbox": [5, 6, 7, 8]}]';
+
+  test('objects are returned as soon as they close, for any chunking', () {
+    for (final int size in [1, 2, 3, 7, 16, array.length]) {
+      final List<Map<String, dynamic>> objects = parseInChunks(array, size);
+      expect(textsOf(objects), ['Hello', 'World'], reason: 'chunk size $size');
+      expect(objects[1]['bbox'], [5, 6, 7, 8]);
+    }
+
+    final JsonArrayStreamParser parser = JsonArrayStreamParser();
+    expect(parser.add('[{"text": "a"}, {"text"'), [
+      {'text': 'a'}
+    ]);
+    expect(parser.isFinished, isFalse);
+    expect(parser.add(': "b"}]'), [
+      {'text': 'b'}
+    ]);
+    expect(parser.isFinished, isTrue);
+  });
+
+  test('brackets, braces and quotes inside strings do not change depth', () {
+    const String tricky =
+        r'[{"text": "a ] b } c [ { \"quoted\" \\", "bbox": [0, 0, 1, 1]}, {"text": "next"}]';
+    for (final int size in [1, 5, tricky.length]) {
+      expect(textsOf(parseInChunks(tricky, size)),
+          ['a ] b } c [ { "quoted" \\', 'next']);
+    }
+  });
+
+  test('a Markdown fence before the array is skipped', () {
+    const String fenced = '```json\n$array\n```';
+    for (final int size in [1, 4, fenced.length]) {
+      expect(textsOf(parseInChunks(fenced, size)), ['Hello', 'World']);
+    }
+  });
+
+  test('brackets in a prose prefix do not start the array', () {
+    const String prose =
+        'Here are the results [bbox in px]:\n```json\n$array\n```';
+    for (final int size in [1, 3, prose.length]) {
+      expect(textsOf(parseInChunks(prose, size)), ['Hello', 'World']);
+    }
+    expect(textsOf(parseInChunks('See [1]. Results: [ {"text": "x"}]', 1)),
+        ['x']);
+  });
+
+  test('nested arrays at the top level do not end parsing early', () {
+    const String nested =
+        '[[{"text": "a"}, {"text": "b"}], [{"text": "c"}]] tail [{"text": "d"}]';
+    final JsonArrayStreamParser parser = JsonArrayStreamParser();
+    final List<Map<String, dynamic>> objects = [];
+    for (int i = 0; i < nested.length; i++) {
+      objects.addAll(parser.add(nested[i]));
+    }
+    expect(textsOf(objects), ['a', 'b', 'c']);
+    expect(parser.isFinished, isTrue);
+  });
+
+  test('objects that are not valid JSON are skipped', () {
+    expect(
+        textsOf(parseInChunks('[{"text": "a"}, {oops}, {"text": "b"}]', 4)),
+        ['a', 'b']);
+  });
+
+  test('sseDelta extracts the content delta', () {
+    expect(
+        JsonArrayStreamParser.sseDelta(
+            'data: {"choices": [{"delta": {"content": "[{"}}]}'),
+        '[{');
+    expect(JsonArrayStreamParser.sseDelta('data: [DONE]'), isNull);
+    expect(JsonArrayStreamParser.sseDelta(': keep-alive'), isNull);
+    expect(JsonArrayStreamParser.sseDelta('data: {"choices": []}'), isNull);
+  });
+}
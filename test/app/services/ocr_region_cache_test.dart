@@ -0,0 +1,157 @@
+import 'dart:math';
+import 'dart:typed_data';
+import 'dart:ui' as ui;
+
+import 'package:flutter_test/flutter_test.dart';
+import 'package:transla_screen/app/core/constants/enums.dart';
+import 'package:transla_screen/app/core/models/captured_frame.dart';
+import 'package:transla_screen/app/core/models/ocr_result.dart';
+import 'package:transla_screen/app/services/ocr_region_cache.dart';
+
+const int tileSize = 16;
+const int width = 64; // 每行 4 个分块
+
+/// 每个分块一个不同的哈希；[height] 为 256 时共 16 行分块
+Int64List distinctHashes(int height) {
+  final int rows = (height + tileSize - 1) ~/ tileSize;
+  return Int64List.fromList(
+      List<int>.generate(rows * width ~/ tileSize, (i) => i * 7919 + 1));
+}
+
+CapturedFrame frameWith(Int64List hashes, {int height = 256}) => CapturedFrame(
+      format: FrameFormat.nv21,
+      bytes: Uint8List(0),
+      width: width,
+      height: height,
+      rowStride: width,
+      pixelFormat: 'nv21',
+      timestampNs: 0,
+      tileSize: tileSize,
+      tileHashes: hashes,
+    );
+
+OcrResult result(String text, double left, double top, double right,
+        double bottom) =>
+    OcrResult.fromRect(text, ui.Rect.fromLTRB(left, top, right, bottom));
+
+List<List<int>> rowsOf(List<OcrRegion> layout) =>
+    [for (final OcrRegion r in layout) [r.firstRow, r.endRow]];
+
+void main() {
+  const String context = 'latin';
+
+  group('bands', () {
+    test('without a previous layout the frame is cut into fixed bands', () {
+      final OcrRegionCache cache = OcrRegionCache();
+      expect(rowsOf(cache.layoutFor(frameWith(distinctHashes(256)))), [
+        [0, 4],
+        [4, 8],
+        [8, 12],
+        [12, 16],
+      ]);
+
+      // 最后一条不满 bandRows 行，范围截到帧高
+      final CapturedFrame short = frameWith(distinctHashes(200), height: 200);
+      final List<OcrRegion> layout = cache.layoutFor(short);
+      expect(rowsOf(layout).last, [12, 13]);
+      expect(cache.regionBounds(short, layout.last),
+          const ui.Rect.fromLTRB(0, 192, 64, 200));
+    });
+
+    test('bands spanned by one result are merged and reused for the same size',
+        () {
+      final OcrRegionCache cache = OcrRegionCache();
+      final CapturedFrame frame = frameWith(distinctHashes(256));
+      // 分块行 3..4，跨过第 0 条与第 1 条的边界
+      cache.remember(frame, [result('across', 4, 56, 60, 72)], context);
+
+      expect(rowsOf(cache.layoutFor(frame)), [
+        [0, 8],
+        [8, 12],
+        [12, 16],
+      ]);
+      expect(
+          rowsOf(cache.layoutFor(frameWith(distinctHashes(200), height: 200))),
+          hasLength(4));
+    });
+  });
+
+  group('keyOf', () {
+    const OcrRegion region = OcrRegion(4, 8);
+
+    test('depends only on the hashes inside the region and the context', () {
+      final OcrRegionCache cache = OcrRegionCache();
+      final Int64List hashes = distinctHashes(256);
+      final int key = cache.keyOf(frameWith(hashes), region, context);
+
+      expect(cache.keyOf(frameWith(distinctHashes(256)), region, context), key);
+      expect(cache.keyOf(frameWith(hashes), region, 'chinese'), isNot(key));
+
+      final Int64List outside = Int64List.fromList(hashes)..[0] = -1;
+      expect(cache.keyOf(frameWith(outside), region, context), key);
+      final Int64List inside = Int64List.fromList(hashes)..[4 * 4 + 1] = -1;
+      expect(cache.keyOf(frameWith(inside), region, context), isNot(key));
+    });
+
+    test('regions of different height do not share a key', () {
+      final OcrRegionCache cache = OcrRegionCache();
+      // 同样的分块哈希，但第二帧最后一行分块只有 8 像素高
+      final Int64List hashes = distinctHashes(256);
+      expect(
+          cache.keyOf(frameWith(hashes, height: 248), const OcrRegion(12, 16),
+              context),
+          isNot(cache.keyOf(frameWith(hashes), const OcrRegion(12, 16), context)));
+    });
+  });
+
+  group('lookup', () {
+    test('returns cached results translated to where the content is now', () {
+      final OcrRegionCache cache = OcrRegionCache();
+      final Int64List hashes = distinctHashes(256);
+      final CapturedFrame before = frameWith(hashes);
+      cache.remember(before, [result('moved', 10, 130, 50, 140)], context);
+
+      // 整条内容向上滚动了 4 行分块：第 8..11 行的哈希出现在第 4..7 行
+      final Int64List scrolledHashes = Int64List.fromList(hashes)
+        ..setRange(4 * 4, 8 * 4, hashes, 8 * 4);
+      final CapturedFrame after = frameWith(scrolledHashes);
+      const OcrRegion region = OcrRegion(4, 8);
+      final List<OcrResult>? hit = cache.lookup(
+          cache.keyOf(after, region, context),
+          cache.regionBounds(after, region));
+
+      expect(hit, isNotNull);
+      expect(hit!.single.text, 'moved');
+      expect(hit.single.boundingBox, const ui.Rect.fromLTRB(10, 66, 50, 76));
+      expect(hit.single.cornerPoints.first, const Point<int>(10, 66));
+
+      expect(
+          cache.lookup(cache.keyOf(after, region, 'chinese'),
+              cache.regionBounds(after, region)),
+          isNull);
+      expect(cache.stats()['hits'], 1);
+      expect(cache.stats()['misses'], 1);
+    });
+
+    test('least recently used regions are evicted over the budget', () {
+      // 含一个结果的区域约 226 字节，空区域 64 字节
+      final OcrRegionCache cache = OcrRegionCache(budgetBytes: 300);
+      final CapturedFrame frame = frameWith(distinctHashes(256));
+      cache.remember(frame, [result('x', 4, 4, 20, 12)], context);
+
+      expect(cache.stats()['entries'], 3);
+      expect(cache.stats()['evictions'], 1);
+      expect(cache.bytes, lessThanOrEqualTo(300));
+      const OcrRegion first = OcrRegion(0, 4);
+      expect(
+          cache.lookup(cache.keyOf(frame, first, context),
+              cache.regionBounds(frame, first)),
+          isNull);
+      const OcrRegion last = OcrRegion(12, 16);
+      expect(
+          cache.lookup(cache.keyOf(frame, last, context),
+              cache.regionBounds(frame, last)),
+          isEmpty);
+    });
+  });
+}
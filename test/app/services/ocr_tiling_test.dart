@@ -0,0 +1,118 @@
+import 'dart:typed_data';
+import 'dart:ui' as ui;
+
+import 'package:flutter_test/flutter_test.dart';
+import 'package:transla_screen/app/core/constants/enums.dart';
+import 'package:transla_screen/app/core/models/captured_frame.dart';
+import 'package:transla_screen/app/core/models/ocr_result.dart';
+import 'package:transla_screen/app/services/ocr_tiling.dart';
+
+CapturedFrame nv21Frame(int width, int height) => CapturedFrame(
+      format: FrameFormat.nv21,
+      bytes: Uint8List(0),
+      width: width,
+      height: height,
+      rowStride: width,
+      pixelFormat: 'nv21',
+      timestampNs: 0,
+    );
+
+OcrResult result(String text, double left, double top, double right,
+        double bottom) =>
+    OcrResult.fromRect(text, ui.Rect.fromLTRB(left, top, right, bottom));
+
+void main() {
+  group('plan', () {
+    const OcrTilingConfig config = OcrTilingConfig();
+
+    test('tiles cover the frame with even offsets and at least the overlap',
+        () {
+      final List<OcrTile> tiles = OcrTiling.plan(nv21Frame(2560, 1440), config);
+
+      expect(tiles, hasLength(6));
+      expect(tiles.map((t) => t.left).toSet(), {0, 640, 1280});
+      expect(tiles.map((t) => t.top).toSet(), {0, 160});
+      for (final OcrTile tile in tiles) {
+        expect(tile.width, OcrTilingConfig.defaultTileSize);
+        expect(tile.height, OcrTilingConfig.defaultTileSize);
+        expect(tile.left.isEven && tile.top.isEven, isTrue);
+        expect(tile.right, lessThanOrEqualTo(2560));
+        expect(tile.bottom, lessThanOrEqualTo(1440));
+      }
+      final List<int> lefts = tiles.map((t) => t.left).toSet().toList()..sort();
+      for (int i = 1; i < lefts.length; i++) {
+        expect(lefts[i - 1] + OcrTilingConfig.defaultTileSize - lefts[i],
+            greaterThanOrEqualTo(config.overlap));
+      }
+    });
+
+    test('a frame no larger than one tile is a single padded tile', () {
+      final List<OcrTile> tiles = OcrTiling.plan(nv21Frame(720, 1001), config);
+
+      expect(tiles, hasLength(1));
+      expect(tiles.single.width, 720);
+      expect(tiles.single.height, 1002);
+    });
+  });
+
+  group('joinText', () {
+    test('drops the characters repeated on both sides of the seam', () {
+      expect(OcrTiling.joinText('The quick brown', 'brown fox', ' '),
+          'The quick brown fox');
+      expect(OcrTiling.joinText('设置中的隐', '的隐私选项', '\n'), '设置中的隐私选项');
+    });
+
+    test('uses the separator when nothing repeats', () {
+      expect(OcrTiling.joinText('Hello', 'world', ' '), 'Hello world');
+      // 只重复一个字符时不认为是同一段文字
+      expect(OcrTiling.joinText('ab', 'bc', ' '), 'ab bc');
+    });
+  });
+
+  group('merge', () {
+    // 1920x1280 的帧切成左右两块，重叠区为 x 640..1280
+    const OcrTile left = OcrTile(0, 0, 1280, 1280);
+    const OcrTile right = OcrTile(640, 0, 1280, 1280);
+
+    test('text seen in both tiles of the overlap is kept once', () {
+      final List<OcrResult> merged = OcrTiling.merge([
+        OcrTileResult(left, [result('Duplicate', 700, 100, 900, 130)]),
+        OcrTileResult(right, [result('Duplicate', 60, 100, 260, 130)]),
+      ], 1920, 1280);
+
+      expect(merged, hasLength(1));
+      expect(merged.single.boundingBox, const ui.Rect.fromLTRB(700, 100, 900, 130));
+    });
+
+    test('a line cut by the seam in both tiles is stitched together', () {
+      final List<OcrResult> merged = OcrTiling.merge([
+        OcrTileResult(left, [
+          result('The quick brown', 500, 300, 1280, 330),
+          result('Header', 40, 20, 200, 50),
+        ]),
+        OcrTileResult(right, [result('brown fox jumps', 0, 300, 760, 330)]),
+      ], 1920, 1280);
+
+      expect(merged.map((r) => r.text), ['Header', 'The quick brown fox jumps']);
+      expect(merged[1].boundingBox, const ui.Rect.fromLTRB(500, 300, 1400, 330));
+    });
+
+    test('results at the outer frame edge are not treated as clipped', () {
+      final List<OcrResult> merged = OcrTiling.merge([
+        OcrTileResult(right, [result('Edge', 1100, 600, 1280, 630)]),
+        OcrTileResult(left, [result('Other', 0, 600, 120, 630)]),
+      ], 1920, 1280);
+
+      expect(merged.map((r) => r.text), ['Other', 'Edge']);
+      expect(merged[1].boundingBox, const ui.Rect.fromLTRB(1740, 600, 1920, 630));
+    });
+  });
+
+  test('textSimilarity ignores whitespace and treats containment as equal',
+      () {
+    expect(OcrTiling.textSimilarity('Hello  world', 'Helloworld'), 1);
+    expect(OcrTiling.textSimilarity('Settings', 'Settings menu'), 1);
+    expect(OcrTiling.textSimilarity('abcd', 'abce'), closeTo(0.75, 1e-9));
+    expect(OcrTiling.textSimilarity('', 'x'), 0);
+  });
+}
@@ -0,0 +1,84 @@
+import 'dart:ui' as ui;
+
+import 'package:flutter_test/flutter_test.dart';
+import 'package:transla_screen/app/core/models/ocr_result.dart';
+import 'package:transla_screen/app/services/openai_translation_service.dart';
+
+/// 左上角在 ([left], [top])、高 16 的块
+OcrResult block(String text, double top, {double left = 0}) =>
+    OcrResult.fromRect(text, ui.Rect.fromLTWH(left, top, 200, 16));
+
+/// 40 个 ASCII 字符，估算 10 个 token
+String tenTokens(String tag) => tag.padRight(40, '.');
+
+void main() {
+  test('estimateTokens counts ASCII by four and other characters by one', () {
+    expect(OpenAiTranslationService.estimateTokens(''), 0);
+    expect(OpenAiTranslationService.estimateTokens('abcd'), 1);
+    expect(OpenAiTranslationService.estimateTokens('abcde'), 2);
+    expect(OpenAiTranslationService.estimateTokens('你好'), 2);
+    expect(OpenAiTranslationService.estimateTokens('设置 menu'), 4);
+    expect(OpenAiTranslationService.estimateTokens(tenTokens('a')), 10);
+  });
+
+  group('chunkTexts', () {
+    test('a chunk never goes over the token budget', () {
+      final List<OcrResult> blocks = [
+        for (int i = 0; i < 5; i++) block(tenTokens('$i'), i * 20.0),
+      ];
+
+      final List<List<String>> chunks =
+          OpenAiTranslationService.chunkTexts(blocks, 25);
+      expect(chunks.map((c) => c.length), [2, 2, 1]);
+      expect(chunks.expand((c) => c), blocks.map((b) => b.text));
+    });
+
+    test('splits at a paragraph gap once half the budget is used', () {
+      final List<List<String>> chunks = OpenAiTranslationService.chunkTexts([
+        block(tenTokens('a'), 0),
+        block(tenTokens('b'), 20),
+        // 与上一块间距 64，超过块高的 1.5 倍
+        block(tenTokens('c'), 100),
+        // 同样是段落间距，但当前分块只用了四分之一预算
+        block(tenTokens('d'), 180),
+      ], 40);
+
+      expect(chunks, [
+        [tenTokens('a'), tenTokens('b')],
+        [tenTokens('c'), tenTokens('d')],
+      ]);
+    });
+
+    test('a block larger than the budget becomes a chunk of its own', () {
+      final String oversized = 'y' * 100; // 25 个 token
+      final List<List<String>> chunks = OpenAiTranslationService.chunkTexts([
+        block('ab', 0),
+        block(oversized, 20),
+        block('cd', 40),
+      ], 10);
+
+      expect(chunks, [
+        ['ab'],
+        [oversized],
+        ['cd'],
+      ]);
+    });
+
+    test('blocks are taken in reading order', () {
+      final List<List<String>> chunks = OpenAiTranslationService.chunkTexts([
+        block('next line', 40),
+        // 比同行左侧的块低 2 像素，仍在半个块高的容差内
+        block('right', 2, left: 300),
+        block('left', 0),
+      ], 400);
+
+      expect(chunks, [
+        ['left', 'right', 'next line'],
+      ]);
+    });
+
+    test('no blocks give no chunks', () {
+      expect(OpenAiTranslationService.chunkTexts([], 400), isEmpty);
+    });
+  });
+}
@@ -0,0 +1,93 @@
+import 'dart:io';
+
+import 'package:flutter_test/flutter_test.dart';
+import 'package:logger/logger.dart';
+import 'package:transla_screen/app/services/logger_service.dart';
+import 'package:transla_screen/app/services/translation_memory.dart';
+
+void main() {
+  final String namespace =
+      TranslationMemory.namespaceOf('zh', 'model', 'endpoint');
+  late Directory dir;
+  late File file;
+
+  setUpAll(() => LoggerService.logger = Logger(level: Level.off));
+
+  setUp(() {
+    dir = Directory.systemTemp.createTempSync('translation_memory_test');
+    file = File('${dir.path}/${TranslationMemory.fileName}');
+  });
+
+  tearDown(() => dir.deleteSync(recursive: true));
+
+  TranslationMemory open({int memoryBudgetBytes = 64 * 1024}) =>
+      TranslationMemory(
+          memoryBudgetBytes: memoryBudgetBytes, fileProvider: () async => file);
+
+  test('lookups normalize whitespace and are scoped by namespace', () async {
+    final TranslationMemory memory = open();
+    memory.store({'Hello  world\n': '你好世界'}, namespace);
+
+    expect(await memory.lookup([' Hello world', 'Bye'], namespace),
+        {' Hello world': '你好世界'});
+    final String japanese =
+        TranslationMemory.namespaceOf('ja', 'model', 'endpoint');
+    expect(await memory.lookup(['Hello world'], japanese), isEmpty);
+    expect(memory.stats()['memoryHits'], 1);
+    expect(memory.stats()['misses'], 2);
+  });
+
+  test('least recently used entries are evicted from memory but stay on disk',
+      () async {
+    // 每条估算 104 字节，预算只够两条
+    final TranslationMemory memory = open(memoryBudgetBytes: 250);
+    memory.store({'a': 'A'}, namespace);
+    memory.store({'b': 'B'}, namespace);
+    expect(await memory.lookup(['a'], namespace), {'a': 'A'});
+    memory.store({'c': 'C'}, namespace);
+
+    expect(memory.stats()['memoryEntries'], 2);
+    expect(memory.stats()['memoryEvictions'], 1);
+
+    // b 最久未使用，已被淘汰出内存，从日志中读回
+    await memory.flush();
+    expect(await memory.lookup(['b'], namespace), {'b': 'B'});
+    expect(memory.stats()['diskHits'], 1);
+    expect(await memory.lookup(['c'], namespace), {'c': 'C'});
+    expect(memory.stats()['diskHits'], 1);
+  });
+
+  test('a truncated last line is dropped on reload and later appends survive',
+      () async {
+    final TranslationMemory first = open();
+    first.store({'a': 'A', 'b': 'B'}, namespace);
+    await first.flush();
+    // 模拟写到一半时进程被杀
+    file.writeAsStringSync('["$namespace\\u0000c", "C', mode: FileMode.append);
+
+    final TranslationMemory second = open();
+    expect(await second.lookup(['a', 'b', 'c'], namespace),
+        {'a': 'A', 'b': 'B'});
+    expect(file.readAsStringSync().endsWith('\n'), isTrue);
+    second.store({'d': 'D'}, namespace);
+    await second.flush();
+
+    final TranslationMemory third = open();
+    expect(await third.lookup(['a', 'b', 'd'], namespace),
+        {'a': 'A', 'b': 'B', 'd': 'D'});
+    expect(third.stats()['diskEntries'], 3);
+    expect(file.readAsStringSync().split('\n').where((l) => l.isNotEmpty),
+        hasLength(3));
+  });
+
+  test('clear removes memory and log', () async {
+    final TranslationMemory memory = open();
+    memory.store({'a': 'A'}, namespace);
+    await memory.flush();
+    await memory.clear();
+
+    expect(await memory.lookup(['a'], namespace), isEmpty);
+    expect(file.existsSync(), isFalse);
+    expect(await open().lookup(['a'], namespace), isEmpty);
+  });
+}
@@ -0,0 +1,153 @@
+import 'dart:convert';
+import 'dart:io';
+import 'dart:math';
+import 'dart:ui' as ui;
+
+import 'package:flutter_test/flutter_test.dart';
+import 'package:logger/logger.dart';
+import 'package:transla_screen/app/core/models/ocr_result.dart';
+import 'package:transla_screen/app/services/logger_service.dart';
+import 'package:transla_screen/app/services/openai_translation_service.dart';
+
+/// 运行: flutter test test/benchmark/translation_chunking_benchmark.dart
+/// （文件名不以 _test 结尾，默认的 flutter test 不会执行）
+void main() {
+  setUpAll(() => LoggerService.logger = Logger(level: Level.warning));
+
+  test('single request vs chunked structured translation', () async {
+    final List<Map<String, dynamic>> report =
+        await TranslationChunkingBenchmark.run();
+    // ignore: avoid_print
+    print('TranslationChunkingBenchmark: $report');
+    for (final Map<String, dynamic> row in report) {
+      expect(row['singleComplete'], isTrue, reason: '${row['blocks']} 块');
+      expect(row['chunkedComplete'], isTrue, reason: '${row['blocks']} 块');
+    }
+  }, timeout: const Timeout(Duration(minutes: 5)));
+}
+
+/// 单请求与分块并发结构化翻译的耗时对比（设备或桌面上运行，不访问真实接口）
+///
+/// 在本机回环地址上启动一个模拟 chat/completions 的桩服务：按请求中的原文生成译文，
+/// 响应前等待 [baseLatencyMs] 加每个输出 token [msPerToken] 的时间，模拟首 token 延迟和逐 token 生成。
+/// 对 10 / 50 / 200 个块的合成画面分别用单请求（预算不限、并发 1）和默认分块配置各翻译 [iterations] 次，
+/// 取耗时中位数，并检查两种方式是否都拿到了全部译文。
+class TranslationChunkingBenchmark {
+  static const List<int> defaultBlockCounts = [10, 50, 200];
+
+  static Future<List<Map<String, dynamic>>> run(
+      {List<int> blockCounts = defaultBlockCounts,
+      int iterations = 3,
+      int baseLatencyMs = 300,
+      double msPerToken = 10,
+      int chunkTokenBudget = OpenAiTranslationService.defaultChunkTokenBudget,
+      int maxConcurrency =
+          OpenAiTranslationService.defaultMaxConcurrency}) async {
+    final HttpServer server =
+        await HttpServer.bind(InternetAddress.loopbackIPv4, 0);
+    server.listen((request) => _serve(request, baseLatencyMs, msPerToken));
+    final String endpoint =
+        'http://${server.address.address}:${server.port}/v1/chat/completions';
+    final OpenAiTranslationService single = OpenAiTranslationService(
+        apiKey: 'stub',
+        apiEndpoint: endpoint,
+        model: 'stub',
+        chunkTokenBudget: 1 << 30,
+        maxConcurrency: 1);
+    final OpenAiTranslationService chunked = OpenAiTranslationService(
+        apiKey: 'stub',
+        apiEndpoint: endpoint,
+        model: 'stub',
+        chunkTokenBudget: chunkTokenBudget,
+        maxConcurrency: maxConcurrency);
+    final List<Map<String, dynamic>> report = [];
+    try {
+      for (final int count in blockCounts) {
+        final List<OcrResult> blocks = _syntheticBlocks(count);
+        final List<double> singleMs = [];
+        final List<double> chunkedMs = [];
+        Map<String, String> singleResult = {};
+        Map<String, String> chunkedResult = {};
+        // 交替运行，避免连接预热只影响其中一种方式
+        for (int i = 0; i < iterations; i++) {
+          Stopwatch stopwatch = Stopwatch()..start();
+          singleResult = await single.translateStructured(blocks, 'stub');
+          singleMs.add(stopwatch.elapsedMicroseconds / 1000.0);
+          stopwatch = Stopwatch()..start();
+          chunkedResult = await chunked.translateStructured(blocks, 'stub');
+          chunkedMs.add(stopwatch.elapsedMicroseconds / 1000.0);
+        }
+        report.add({
+          'blocks': count,
+          'chunks':
+              OpenAiTranslationService.chunkTexts(blocks, chunkTokenBudget)
+                  .length,
+          'singleMs': _median(singleMs),
+          'chunkedMs': _median(chunkedMs),
+          'singleComplete': _complete(blocks, singleResult),
+          'chunkedComplete': _complete(blocks, chunkedResult),
+        });
+      }
+    } finally {
+      single.dispose();
+      chunked.dispose();
+      await server.close(force: true);
+    }
+    return report;
+  }
+
+  /// 从提示词中取出原文数组，逐条生成译文并按估算的输出 token 数延迟响应
+  static Future<void> _serve(
+      HttpRequest request, int baseLatencyMs, double msPerToken) async {
+    final Map<String, dynamic> body =
+        jsonDecode(await utf8.decoder.bind(request).join());
+    final String prompt = body['messages'][1]['content'] as String;
+    final String input =
+        prompt.substring(prompt.indexOf('Input: ') + 'Input: '.length).trim();
+    final List<dynamic> texts = jsonDecode(input)['texts'] as List<dynamic>;
+    final Map<String, String> translations = {
+      for (final dynamic text in texts) text as String: '译:$text'
+    };
+    final String content = jsonEncode(translations);
+    await Future<void>.delayed(Duration(
+        milliseconds: baseLatencyMs +
+            (OpenAiTranslationService.estimateTokens(content) * msPerToken)
+                .round()));
+    request.response
+      ..headers.contentType = ContentType.json
+      ..write(jsonEncode({
+        'choices': [
+          {
+            'message': {'role': 'assistant', 'content': content}
+          }
+        ]
+      }));
+    await request.response.close();
+  }
+
+  /// 合成画面：每行一个块，每 8 行一段，块文字长短不一
+  static List<OcrResult> _syntheticBlocks(int count) {
+    final Random random = Random(count);
+    const List<String> words = [
+      'Settings', 'account', 'notifications', 'privacy', 'the', 'message',
+      'was', 'sent', 'to', 'your', 'friends', 'and', 'family', 'yesterday',
+    ];
+    return List<OcrResult>.generate(count, (i) {
+      final double top = i * 48.0 + (i ~/ 8) * 64.0;
+      final ui.Rect box = ui.Rect.fromLTWH(32, top, 640, 36);
+      final int length = 3 + random.nextInt(10);
+      final String text = [
+        for (int w = 0; w < length; w++) words[random.nextInt(words.length)]
+      ].join(' ');
+      return OcrResult.fromRect('$i $text', box);
+    });
+  }
+
+  static bool _complete(List<OcrResult> blocks, Map<String, String> result) =>
+      blocks.every((b) => result.containsKey(b.text));
+
+  static double _median(List<double> values) {
+    final List<double> sorted = List<double>.of(values)..sort();
+    return sorted.isEmpty ? 0 : sorted[sorted.length ~/ 2];
+  }
+}